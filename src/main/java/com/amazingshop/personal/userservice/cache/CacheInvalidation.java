@@ -0,0 +1,27 @@
+package com.amazingshop.personal.userservice.cache;
+
+/**
+ * Сброс локального L1 на остальных инстансах, рассылается через Redis pub/sub.
+ * Формат сообщения: "origin|KIND|cacheName|key", ключ последний и может содержать '|'.
+ */
+public record CacheInvalidation(String origin, Kind kind, String cacheName, String key) {
+
+    public enum Kind {
+        /** Удалён один ключ */
+        EVICT,
+        /** Кэш очищен целиком, key пустой */
+        CLEAR
+    }
+
+    public String toMessage() {
+        return origin + "|" + kind.name() + "|" + cacheName + "|" + (key != null ? key : "");
+    }
+
+    public static CacheInvalidation fromMessage(String message) {
+        String[] parts = message.split("\\|", 4);
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Malformed cache invalidation message: " + message);
+        }
+        return new CacheInvalidation(parts[0], Kind.valueOf(parts[1]), parts[2], parts[3]);
+    }
+}
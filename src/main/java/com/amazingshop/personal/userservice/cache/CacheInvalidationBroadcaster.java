@@ -0,0 +1,67 @@
+package com.amazingshop.personal.userservice.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Рассылка сбросов L1 другим инстансам. Сообщение уходит только при evict/clear,
+ * чтение из кэша в Redis pub/sub не ходит.
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBroadcaster {
+
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+    private final boolean enabled;
+    private final String channel;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public CacheInvalidationBroadcaster(ObjectProvider<StringRedisTemplate> redisTemplate,
+                                        @Value("${cache.invalidation.pubsub.enabled:true}") boolean enabled,
+                                        @Value("${cache.invalidation.pubsub.channel:user-service:cache-invalidation}") String channel) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.channel = channel;
+    }
+
+    public String channel() {
+        return channel;
+    }
+
+    /**
+     * Свои сообщения инстанс получает обратно из канала — по origin они пропускаются
+     */
+    public boolean isOwn(CacheInvalidation invalidation) {
+        return instanceId.equals(invalidation.origin());
+    }
+
+    public void publishEvict(String cacheName, String key) {
+        publish(new CacheInvalidation(instanceId, CacheInvalidation.Kind.EVICT, cacheName, key));
+    }
+
+    public void publishClear(String cacheName) {
+        publish(new CacheInvalidation(instanceId, CacheInvalidation.Kind.CLEAR, cacheName, ""));
+    }
+
+    private void publish(CacheInvalidation invalidation) {
+        if (!enabled) {
+            return;
+        }
+        StringRedisTemplate template = redisTemplate.getIfAvailable();
+        if (template == null) {
+            return;
+        }
+        try {
+            template.convertAndSend(channel, invalidation.toMessage());
+        } catch (Exception e) {
+            // L2 уже сброшен, чужие L1 догонят не позже своего TTL
+            log.warn("Failed to broadcast cache invalidation {} for {}: {}",
+                    invalidation.kind(), invalidation.cacheName(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.amazingshop.personal.userservice.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Защита от cache stampede: загрузка одного ключа выполняется один раз.
+ * <p>
+ * Внутри инстанса параллельные промахи ждут загрузку, которую начал первый поток. Между инстансами —
+ * по желанию короткая аренда в Redis (SET NX PX): кто её не получил, ждёт значение в L2 и загружает
+ * сам, только если аренда истекла без результата. Для ключей, загруженных этим инстансом, запись
+ * обновляется заранее в фоне по XFetch: чем ближе истечение и дольше загрузка, тем вероятнее обновление.
+ * <p>
+ * Метрика cache.loads с тегом result: leader — загрузка выполнена, coalesced — дождались чужой
+ * загрузки в инстансе, lease-wait — значение положил другой инстанс, early-refresh — фоновое обновление.
+ */
+@Slf4j
+@Component
+public class CacheLoadCoordinator implements AutoCloseable {
+
+    private static final String LEASE_PREFIX = "user-service:cache-lease:";
+    private static final long LEASE_POLL_MS = 25;
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean leaseEnabled;
+    private final Duration leaseTtl;
+    private final double earlyRefreshBeta;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor refresher;
+
+    @Autowired
+    public CacheLoadCoordinator(ObjectProvider<StringRedisTemplate> redisTemplate, MeterRegistry meterRegistry,
+                                @Value("${cache.stampede.lease.enabled:false}") boolean leaseEnabled,
+                                @Value("${cache.stampede.lease.ttl:2s}") Duration leaseTtl,
+                                @Value("${cache.stampede.early-refresh.beta:1.0}") double earlyRefreshBeta,
+                                @Value("${cache.stampede.early-refresh.threads:2}") int refreshThreads) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.leaseEnabled = leaseEnabled;
+        this.leaseTtl = leaseTtl;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        // Лишнее фоновое обновление можно просто пропустить — запись ещё жива
+        this.refresher = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1000), new RefreshThreadFactory(), new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Загрузка после промаха. remoteLookup перечитывает L2 (значение могли положить, пока ждали),
+     * loader загружает значение и сам кладёт его в кэш.
+     */
+    public Object load(String cacheName, String key, Supplier<Cache.ValueWrapper> remoteLookup, Callable<?> loader) {
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        String flightKey = cacheName + "::" + key;
+        CompletableFuture<Object> running = inFlight.putIfAbsent(flightKey, own);
+        if (running != null) {
+            count(cacheName, "coalesced");
+            return join(running);
+        }
+        try {
+            own.complete(loadOnce(cacheName, key, remoteLookup, loader));
+        } catch (Throwable e) {
+            own.completeExceptionally(e);
+        } finally {
+            inFlight.remove(flightKey, own);
+        }
+        return join(own);
+    }
+
+    /**
+     * XFetch: обновить заранее, если now - delta * beta * ln(rand) >= expiresAt
+     */
+    public boolean shouldRefreshEarly(long loadMillis, long expiresAtMillis) {
+        return shouldRefreshEarly(System.currentTimeMillis(), loadMillis, earlyRefreshBeta,
+                ThreadLocalRandom.current().nextDouble(), expiresAtMillis);
+    }
+
+    /**
+     * Фоновое обновление; если ключ уже загружается, второй загрузки не будет
+     */
+    public void refreshAsync(String cacheName, String key, Callable<?> loader) {
+        String flightKey = cacheName + "::" + key;
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(flightKey, own) != null) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    count(cacheName, "early-refresh");
+                    own.complete(loader.call());
+                } catch (Throwable e) {
+                    log.warn("Early refresh of {}::{} failed: {}", cacheName, key, e.getMessage());
+                    own.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(flightKey, own);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(flightKey, own);
+            own.cancel(false);
+        }
+    }
+
+    /**
+     * Ожидание значения, которое кладёт в L2 другой инстанс, не дольше срока аренды; null — не дождались.
+     * Для загрузчика, который проиграл гонку уже после захвата аренды (например, условный UPDATE в БД).
+     */
+    public Cache.ValueWrapper awaitRemote(String cacheName, Supplier<Cache.ValueWrapper> remoteLookup) {
+        Cache.ValueWrapper loaded = awaitOtherInstance(remoteLookup);
+        if (loaded != null) {
+            count(cacheName, "lease-wait");
+        }
+        return loaded;
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdown();
+    }
+
+    static boolean shouldRefreshEarly(long nowMillis, long loadMillis, double beta, double random, long expiresAtMillis) {
+        // random в (0, 1]: ln(random) <= 0, поэтому слагаемое сдвигает «сейчас» вперёд
+        double logRandom = Math.log(Math.max(random, Double.MIN_NORMAL));
+        return nowMillis - loadMillis * beta * logRandom >= expiresAtMillis;
+    }
+
+    private Object loadOnce(String cacheName, String key, Supplier<Cache.ValueWrapper> remoteLookup,
+                            Callable<?> loader) throws Exception {
+        StringRedisTemplate template = leaseEnabled ? redisTemplate.getIfAvailable() : null;
+        if (template == null) {
+            count(cacheName, "leader");
+            return loader.call();
+        }
+
+        String leaseKey = LEASE_PREFIX + cacheName + ":" + key;
+        String token = UUID.randomUUID().toString();
+        if (!acquire(template, leaseKey, token)) {
+            Cache.ValueWrapper loaded = awaitRemote(cacheName, remoteLookup);
+            if (loaded != null) {
+                return loaded.get();
+            }
+            // Аренда истекла без значения: загружаем сами, не дожидаясь следующей
+        }
+        try {
+            count(cacheName, "leader");
+            return loader.call();
+        } finally {
+            release(template, leaseKey, token);
+        }
+    }
+
+    private boolean acquire(StringRedisTemplate template, String leaseKey, String token) {
+        try {
+            return Boolean.TRUE.equals(template.opsForValue().setIfAbsent(leaseKey, token, leaseTtl));
+        } catch (RuntimeException e) {
+            log.debug("Cache lease unavailable, loading without it: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    private void release(StringRedisTemplate template, String leaseKey, String token) {
+        try {
+            template.execute(RELEASE_SCRIPT, List.of(leaseKey), token);
+        } catch (RuntimeException e) {
+            // Аренда истечёт сама
+            log.debug("Failed to release cache lease {}: {}", leaseKey, e.getMessage());
+        }
+    }
+
+    private Cache.ValueWrapper awaitOtherInstance(Supplier<Cache.ValueWrapper> remoteLookup) {
+        long deadline = System.nanoTime() + leaseTtl.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(LEASE_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Cache.ValueWrapper loaded = remoteLookup.get();
+            if (loaded != null) {
+                return loaded;
+            }
+        }
+        return null;
+    }
+
+    private void count(String cacheName, String result) {
+        counters.computeIfAbsent(cacheName + ":" + result, ignored -> Counter.builder("cache.loads")
+                .description("Cache loads after a miss: performed, coalesced with a load in progress or refreshed early")
+                .tags("cache", cacheName, "result", result)
+                .register(meterRegistry)).increment();
+    }
+
+    private static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class RefreshThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "cache-refresh-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
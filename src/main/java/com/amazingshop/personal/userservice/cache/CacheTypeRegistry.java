@@ -0,0 +1,43 @@
+package com.amazingshop.personal.userservice.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Явный список типов, которые кладутся в кэш, с короткими номерами вместо имён классов.
+ * <p>
+ * Номер записывается в заголовок значения, поэтому однажды выданный номер не меняется
+ * и не переиспользуется. Незарегистрированный тип не сериализуется — это ошибка конфигурации.
+ */
+public class CacheTypeRegistry {
+
+    /** Зарезервирован под NullValue (закэшированный null) */
+    public static final int NULL_TYPE_ID = 0;
+
+    private final Map<Class<?>, Integer> ids = new HashMap<>();
+    private final Map<Integer, Class<?>> types = new HashMap<>();
+
+    public CacheTypeRegistry register(int id, Class<?> type) {
+        if (id <= NULL_TYPE_ID || id > 0xFFFF) {
+            throw new IllegalArgumentException("Cache type id must be in 1..65535: " + id);
+        }
+        if (types.containsKey(id) || ids.containsKey(type)) {
+            throw new IllegalStateException("Duplicate cache type registration: " + id + " -> " + type.getName());
+        }
+        ids.put(type, id);
+        types.put(id, type);
+        return this;
+    }
+
+    /**
+     * Номер типа или -1, если тип не зарегистрирован
+     */
+    public int idOf(Class<?> type) {
+        Integer id = ids.get(type);
+        return id != null ? id : -1;
+    }
+
+    public Class<?> typeOf(int id) {
+        return types.get(id);
+    }
+}
@@ -0,0 +1,9 @@
+package com.amazingshop.personal.userservice.cache;
+
+/**
+ * Значение, которое занимает в L1 больше одной единицы веса (списки чатов, сообщений)
+ */
+public interface CacheWeighted {
+
+    int cacheWeight();
+}
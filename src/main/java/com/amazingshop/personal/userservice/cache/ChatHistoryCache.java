@@ -0,0 +1,216 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.dto.responses.ChatMessageResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * История сообщений чата в Redis-списке: заголовок и по элементу на сообщение в Smile.
+ * <p>
+ * Новое сообщение дописывается в конец (RPUSH) вместо сброса всей истории, поэтому запись
+ * стоит O(1) при любой длине чата, а следующее чтение не идёт в БД. Заголовок — маркер
+ * полной истории: без него список не читается, а пустой чат тоже кэшируется.
+ * <p>
+ * Рядом лежит счётчик записей. Загрузка из БД кладёт историю, только если счётчик не изменился
+ * с начала загрузки и списка ещё нет, — иначе сообщение, записанное во время загрузки,
+ * потерялось бы в кэше. В ключе есть id владельца: попадание означает, что права уже проверены.
+ */
+@Slf4j
+@Component
+public class ChatHistoryCache {
+
+    private static final String KEY_PREFIX = "user-service:chat-history:";
+    private static final byte[] HEADER = "h1".getBytes(StandardCharsets.UTF_8);
+    private static final int PUSH_BATCH = 1000;
+
+    private static final RedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('INCR', KEYS[2])
+            redis.call('PEXPIRE', KEYS[2], ARGV[1])
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+              return 0
+            end
+            redis.call('RPUSH', KEYS[1], ARGV[2])
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            return redis.call('LLEN', KEYS[1]) - 1
+            """, Long.class);
+
+    private static final RedisScript<Long> FILL_SCRIPT = new DefaultRedisScript<>("""
+            local version = redis.call('GET', KEYS[2]) or ''
+            if version ~= ARGV[1] or redis.call('EXISTS', KEYS[1]) == 1 then
+              return 0
+            end
+            redis.call('RPUSH', KEYS[1], ARGV[3])
+            local batch = tonumber(ARGV[4])
+            for i = 5, #ARGV, batch do
+              redis.call('RPUSH', KEYS[1], unpack(ARGV, i, math.min(i + batch - 1, #ARGV)))
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            return 1
+            """, Long.class);
+
+    // Счётчик тоже растёт: загрузка, начатая до удаления, не вернёт историю в кэш
+    private static final RedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('DEL', KEYS[1])
+            redis.call('INCR', KEYS[2])
+            redis.call('PEXPIRE', KEYS[2], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+    private final SmileCacheSerializer serializer;
+    private final byte[] ttlMillis;
+
+    @Autowired
+    public ChatHistoryCache(ObjectProvider<StringRedisTemplate> redisTemplate,
+                            @Value("${cache.chat-history.ttl:30m}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.serializer = new SmileCacheSerializer(new CacheTypeRegistry()
+                .register(1, ChatMessageResponse.class));
+        this.ttlMillis = ascii(ttl.toMillis());
+    }
+
+    /**
+     * История из Redis или из loader (он же проверяет права) с сохранением в кэш
+     */
+    public List<ChatMessageResponse> getOrLoad(Long userId, Long chatId, Supplier<List<ChatMessageResponse>> loader) {
+        StringRedisTemplate template = redisTemplate.getIfAvailable();
+        if (template == null) {
+            return loader.get();
+        }
+        String key = key(userId, chatId);
+        byte[] version;
+        try {
+            List<byte[]> cached = template.execute((RedisCallback<List<byte[]>>) connection ->
+                    connection.listCommands().lRange(bytes(key), 0, -1));
+            List<ChatMessageResponse> hit = decode(cached);
+            if (hit != null) {
+                return hit;
+            }
+            version = template.execute((RedisCallback<byte[]>) connection ->
+                    connection.stringCommands().get(bytes(versionKey(key))));
+        } catch (RuntimeException e) {
+            log.warn("Chat history cache unavailable for chat {}: {}", chatId, e.getMessage());
+            return loader.get();
+        }
+
+        List<ChatMessageResponse> messages = loader.get();
+        fill(template, key, version != null ? version : new byte[0], messages);
+        return messages;
+    }
+
+    /**
+     * Дописывает сообщение в закэшированную историю; внутри транзакции — после коммита
+     */
+    public void append(Long userId, Long chatId, ChatMessageResponse message) {
+        AfterCommit.run(() -> appendNow(key(userId, chatId), message));
+    }
+
+    public void evict(Long userId, Long chatId) {
+        AfterCommit.run(() -> evictNow(key(userId, chatId)));
+    }
+
+    private void appendNow(String key, ChatMessageResponse message) {
+        StringRedisTemplate template = redisTemplate.getIfAvailable();
+        if (template == null) {
+            return;
+        }
+        try {
+            template.execute(APPEND_SCRIPT, RedisSerializer.byteArray(), null,
+                    List.of(key, versionKey(key)), ttlMillis, encode(message));
+        } catch (RuntimeException e) {
+            // Список без этого сообщения читать нельзя
+            log.warn("Failed to append message to cached history {}: {}", key, e.getMessage());
+            evictNow(key);
+        }
+    }
+
+    private void fill(StringRedisTemplate template, String key, byte[] version, List<ChatMessageResponse> messages) {
+        List<byte[]> args = new ArrayList<>(messages.size() + 4);
+        args.add(version);
+        args.add(ttlMillis);
+        args.add(HEADER);
+        args.add(ascii(PUSH_BATCH));
+        for (ChatMessageResponse message : messages) {
+            args.add(encode(message));
+        }
+        try {
+            Long filled = template.execute(FILL_SCRIPT, RedisSerializer.byteArray(), null,
+                    List.of(key, versionKey(key)), args.toArray());
+            if (filled == null || filled == 0) {
+                log.debug("Skipped caching history {}: written concurrently", key);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to cache chat history {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void evictNow(String key) {
+        StringRedisTemplate template = redisTemplate.getIfAvailable();
+        if (template == null) {
+            return;
+        }
+        try {
+            template.execute(EVICT_SCRIPT, RedisSerializer.byteArray(), null,
+                    List.of(key, versionKey(key)), ttlMillis);
+        } catch (RuntimeException e) {
+            log.warn("Failed to evict chat history {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * null — промах: списка нет, он без заголовка или записан другим форматом
+     */
+    private List<ChatMessageResponse> decode(List<byte[]> cached) {
+        if (cached == null || cached.isEmpty() || !Arrays.equals(HEADER, cached.get(0))) {
+            return null;
+        }
+        List<ChatMessageResponse> messages = new ArrayList<>(cached.size() - 1);
+        for (byte[] element : cached.subList(1, cached.size())) {
+            if (!(serializer.deserialize(element) instanceof ChatMessageResponse message)) {
+                return null;
+            }
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    byte[] encode(ChatMessageResponse message) {
+        return serializer.serialize(message);
+    }
+
+    static byte[] header() {
+        return HEADER.clone();
+    }
+
+    // Оба ключа в одном слоте Redis Cluster
+    static String key(Long userId, Long chatId) {
+        return KEY_PREFIX + "{" + userId + ":" + chatId + "}";
+    }
+
+    private static String versionKey(String key) {
+        return key + ":version";
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,25 @@
+package com.amazingshop.personal.userservice.cache;
+
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * TTL записи Redis со случайной добавкой до base * jitter: ключи, загруженные одновременно
+ * (после деплоя или сброса), истекают вразброс, а не все в одну секунду.
+ */
+public record JitteredTtl(Duration base, double jitter) implements RedisCacheWriter.TtlFunction {
+
+    public JitteredTtl {
+        if (jitter < 0) {
+            throw new IllegalArgumentException("TTL jitter must not be negative: " + jitter);
+        }
+    }
+
+    @Override
+    public Duration getTimeToLive(Object key, Object value) {
+        long extraMillis = (long) (base.toMillis() * jitter * ThreadLocalRandom.current().nextDouble());
+        return base.plusMillis(extraMillis);
+    }
+}
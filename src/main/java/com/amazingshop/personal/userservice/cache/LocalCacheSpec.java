@@ -0,0 +1,36 @@
+package com.amazingshop.personal.userservice.cache;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Размер и TTL локального L1 одного кэша.
+ * <p>
+ * Формат cache.l1.specs: "cacheName:maxWeight:ttl,cacheName:...". Вес записи — 1,
+ * для {@link CacheWeighted} и коллекций — число элементов. Кэши без спецификации L1 не получают.
+ */
+public record LocalCacheSpec(long maxWeight, Duration ttl) {
+
+    public static Map<String, LocalCacheSpec> parse(String specsConfig) {
+        Map<String, LocalCacheSpec> specs = new LinkedHashMap<>();
+        for (String entry : specsConfig.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":", 3);
+            if (parts.length < 3) {
+                throw new IllegalStateException("Invalid cache.l1.specs entry for cache: " + parts[0]);
+            }
+            LocalCacheSpec spec = new LocalCacheSpec(Long.parseLong(parts[1].trim()),
+                    DurationStyle.detectAndParse(parts[2].trim()));
+            if (spec.maxWeight() <= 0 || spec.ttl().isZero() || spec.ttl().isNegative()) {
+                throw new IllegalStateException("cache.l1.specs entry must have positive size and ttl: " + parts[0]);
+            }
+            specs.put(parts[0].trim(), spec);
+        }
+        return Map.copyOf(specs);
+    }
+}
@@ -0,0 +1,96 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Бинарный формат значений кэша: 4 байта своего заголовка и тело в Smile.
+ * <p>
+ * Заголовок — магический байт, версия формата и номер типа из {@link CacheTypeRegistry}.
+ * Имена классов в значение не пишутся: вложенные объекты восстанавливаются по объявленным
+ * типам полей, повторяющиеся имена полей Smile кодирует ссылками. Значение чужой версии
+ * читается как промах кэша, а не как ошибка — при rolling deploy записи просто перезагружаются.
+ */
+@Slf4j
+public class SmileCacheSerializer implements RedisSerializer<Object> {
+
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final byte MAGIC = (byte) 0xCA;
+    private static final int HEADER_LENGTH = 4;
+    private static final byte[] NULL_VALUE = {MAGIC, FORMAT_VERSION, 0, CacheTypeRegistry.NULL_TYPE_ID};
+
+    private final CacheTypeRegistry registry;
+    private final ObjectMapper mapper;
+
+    public SmileCacheSerializer(CacheTypeRegistry registry) {
+        this.registry = registry;
+        SmileFactory factory = SmileFactory.builder()
+                // Флаги в заголовке Smile включают ссылки на повторяющиеся имена полей
+                .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+                .build();
+        this.mapper = new ObjectMapper(factory)
+                .registerModule(new JavaTimeModule())
+                // Новые поля DTO не ломают чтение инстансами, которые о них ещё не знают
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null || value instanceof NullValue) {
+            return NULL_VALUE.clone();
+        }
+        int typeId = registry.idOf(value.getClass());
+        if (typeId < 0) {
+            throw new SerializationException("Type is not registered for caching: " + value.getClass().getName());
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        out.write(MAGIC);
+        out.write(FORMAT_VERSION);
+        out.write(typeId >>> 8);
+        out.write(typeId);
+        try {
+            mapper.writeValue(out, value);
+        } catch (IOException e) {
+            throw new SerializationException("Could not write cache value: " + e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC || bytes[1] != FORMAT_VERSION) {
+            log.debug("Skipping cache value in unknown format");
+            return null;
+        }
+        int typeId = ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+        if (typeId == CacheTypeRegistry.NULL_TYPE_ID) {
+            return NullValue.INSTANCE;
+        }
+        Class<?> type = registry.typeOf(typeId);
+        if (type == null) {
+            // Тип добавлен более новой версией сервиса
+            log.debug("Skipping cache value of unknown type id {}", typeId);
+            return null;
+        }
+        try {
+            return mapper.readValue(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, type);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read cache value: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Локальный Caffeine (L1) перед Redis (L2).
+ * <p>
+ * Попадание в L1 обходится без сети и Jackson; промах читает L2 и кладёт значение в L1.
+ * Запись идёт в оба уровня, evict/clear сначала сбрасывают L2, затем L1, и рассылаются
+ * остальным инстансам. Если сообщение потерялось, чужой L1 устаревает не дольше своего TTL,
+ * поэтому TTL L1 задаётся короче TTL Redis.
+ * <p>
+ * Значения L1 общие для всех потоков: закэшированные объекты нельзя изменять на месте.
+ * Попадания и промахи пишутся в cache.gets с тегом tier=l1 / tier=l2.
+ * <p>
+ * {@link #get(Object, Callable)} (@Cacheable(sync = true)) загружает промах один раз на ключ через
+ * {@link CacheLoadCoordinator}. Для значений, загруженных этим инстансом, запоминаются время загрузки
+ * и срок в Redis: горячий ключ обновляется в фоне до истечения, а не всеми запросами сразу после него.
+ * <p>
+ * {@link #getAll(Collection)} читает промахи L1 из Redis одним MGET по тем же ключам и тем же
+ * сериализатором, что и RedisCache.
+ */
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    static final String TIER_TAG = "tier";
+
+    private final String name;
+    private final Cache remote;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final CacheInvalidationBroadcaster broadcaster;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+    private final CacheLoadCoordinator loads;
+    private final Duration remoteTtl;
+    private final com.github.benmanes.caffeine.cache.Cache<String, LoadStamp> loadStamps;
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+
+    /**
+     * @param remoteTtl     базовый TTL записей в Redis; null — заранее не обновлять
+     * @param redisTemplate соединение для MGET; без него (или если L2 не RedisCache) getAll читает L2 по ключу
+     */
+    public TwoLevelCache(String name, Cache remote, LocalCacheSpec spec,
+                         CacheInvalidationBroadcaster broadcaster, MeterRegistry meterRegistry,
+                         CacheLoadCoordinator loads, Duration remoteTtl,
+                         ObjectProvider<StringRedisTemplate> redisTemplate) {
+        super(true);
+        this.name = name;
+        this.remote = remote;
+        this.redisTemplate = redisTemplate;
+        this.broadcaster = broadcaster;
+        this.loads = loads;
+        this.remoteTtl = remoteTtl;
+        this.loadStamps = remoteTtl != null
+                ? Caffeine.newBuilder().maximumSize(spec.maxWeight()).expireAfterWrite(remoteTtl).build()
+                : null;
+        this.local = Caffeine.newBuilder()
+                .maximumWeight(spec.maxWeight())
+                .weigher(TwoLevelCache::weigh)
+                .expireAfterWrite(spec.ttl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, name, TIER_TAG, "l1");
+        this.remoteHits = remoteCounter(meterRegistry, name, "hit");
+        this.remoteMisses = remoteCounter(meterRegistry, name, "miss");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = localKey(key);
+        Object stored = local.getIfPresent(localKey);
+        if (stored != null) {
+            return stored;
+        }
+
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        Object storeValue = toStoreValue(wrapper.get());
+        local.put(localKey, storeValue);
+        return storeValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = localKey(key);
+        Object stored = local.getIfPresent(localKey);
+        if (stored != null) {
+            refreshEarlyIfDue(key, localKey, valueLoader);
+            return (T) fromStoreValue(stored);
+        }
+
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper != null) {
+            remoteHits.increment();
+            local.put(localKey, toStoreValue(wrapper.get()));
+            refreshEarlyIfDue(key, localKey, valueLoader);
+            return (T) wrapper.get();
+        }
+        remoteMisses.increment();
+        Object value = loads.load(name, localKey, () -> remote.get(key), () -> loadAndStore(key, localKey, valueLoader));
+        local.put(localKey, toStoreValue(value));
+        return (T) value;
+    }
+
+    /**
+     * Пакетное чтение без загрузки: L1, затем оставшиеся ключи одним запросом в L2.
+     * Найденное в L2 кладётся в L1. В результате только ключи со значением, в порядке keys.
+     */
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> found = new LinkedHashMap<>();
+        List<Object> remoteKeys = new ArrayList<>();
+        for (Object key : keys) {
+            Object stored = local.getIfPresent(localKey(key));
+            if (stored != null) {
+                addFound(found, key, stored);
+            } else {
+                remoteKeys.add(key);
+            }
+        }
+        if (remoteKeys.isEmpty()) {
+            return found;
+        }
+
+        List<Object> storeValues = remoteGetAll(remoteKeys);
+        for (int i = 0; i < remoteKeys.size(); i++) {
+            Object key = remoteKeys.get(i);
+            Object stored = storeValues.get(i);
+            if (stored == null) {
+                remoteMisses.increment();
+                continue;
+            }
+            remoteHits.increment();
+            local.put(localKey(key), stored);
+            addFound(found, key, stored);
+        }
+        return found;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        local.put(localKey(key), toStoreValue(value));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        local.put(localKey(key), toStoreValue(existing != null ? existing.get() : value));
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        String localKey = localKey(key);
+        remote.evict(key);
+        evictLocal(localKey);
+        broadcaster.publishEvict(name, localKey);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        String localKey = localKey(key);
+        boolean present = remote.evictIfPresent(key);
+        evictLocal(localKey);
+        // В L2 ключ мог уже истечь, а в чужом L1 ещё лежать
+        broadcaster.publishEvict(name, localKey);
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        clearLocal();
+        broadcaster.publishClear(name);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean notEmpty = remote.invalidate();
+        clearLocal();
+        broadcaster.publishClear(name);
+        return notEmpty;
+    }
+
+    /**
+     * Сброс по сообщению другого инстанса: L2 там уже сброшен, трогаем только L1
+     */
+    void evictLocal(String localKey) {
+        local.invalidate(localKey);
+        if (loadStamps != null) {
+            loadStamps.invalidate(localKey);
+        }
+    }
+
+    void clearLocal() {
+        local.invalidateAll();
+        if (loadStamps != null) {
+            loadStamps.invalidateAll();
+        }
+    }
+
+    private Object loadAndStore(Object key, String localKey, Callable<?> valueLoader) {
+        long started = System.nanoTime();
+        Object value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        remote.put(key, value);
+        local.put(localKey, toStoreValue(value));
+        if (loadStamps != null) {
+            long loadMillis = Duration.ofNanos(System.nanoTime() - started).toMillis();
+            // Срок без jitter: настоящий не раньше, поэтому обновление не опоздает
+            loadStamps.put(localKey, new LoadStamp(loadMillis, System.currentTimeMillis() + remoteTtl.toMillis()));
+        }
+        return value;
+    }
+
+    private void addFound(Map<Object, Object> found, Object key, Object stored) {
+        Object value = fromStoreValue(stored);
+        if (value != null) {
+            found.put(key, value);
+        }
+    }
+
+    /**
+     * Значения L2 в форме хранения (null — ключа нет), по одному на ключ
+     */
+    private List<Object> remoteGetAll(List<Object> keys) {
+        StringRedisTemplate template = redisTemplate != null ? redisTemplate.getIfAvailable() : null;
+        if (template == null || !(remote instanceof RedisCache redisCache)) {
+            List<Object> values = new ArrayList<>(keys.size());
+            for (Object key : keys) {
+                ValueWrapper wrapper = remote.get(key);
+                values.add(wrapper != null ? toStoreValue(wrapper.get()) : null);
+            }
+            return values;
+        }
+
+        RedisCacheConfiguration configuration = redisCache.getCacheConfiguration();
+        String prefix = configuration.usePrefix() ? configuration.getKeyPrefixFor(name) : "";
+        byte[][] rawKeys = new byte[keys.size()][];
+        for (int i = 0; i < rawKeys.length; i++) {
+            rawKeys[i] = (prefix + localKey(keys.get(i))).getBytes(StandardCharsets.UTF_8);
+        }
+        List<byte[]> rawValues;
+        try {
+            rawValues = template.execute((RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(rawKeys));
+        } catch (RuntimeException e) {
+            // Как промах: вызывающий загрузит значения сам
+            log.debug("MGET from cache {} failed: {}", name, e.getMessage());
+            rawValues = null;
+        }
+        if (rawValues == null) {
+            return Collections.nCopies(keys.size(), null);
+        }
+        // NullValue сериализуется как обычное значение и возвращается в форме хранения
+        List<Object> values = new ArrayList<>(rawValues.size());
+        for (byte[] raw : rawValues) {
+            values.add(raw != null ? configuration.getValueSerializationPair().read(ByteBuffer.wrap(raw)) : null);
+        }
+        return values;
+    }
+
+    private void refreshEarlyIfDue(Object key, String localKey, Callable<?> valueLoader) {
+        LoadStamp stamp = loadStamps != null ? loadStamps.getIfPresent(localKey) : null;
+        if (stamp != null && loads.shouldRefreshEarly(stamp.loadMillis(), stamp.expiresAtMillis())) {
+            loads.refreshAsync(name, localKey, () -> loadAndStore(key, localKey, valueLoader));
+        }
+    }
+
+    /**
+     * Ключ L1 — строковая форма ключа, как у RedisCache, чтобы "5" из сообщения совпадал с Long 5
+     */
+    static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    static int weigh(String key, Object value) {
+        if (value instanceof CacheWeighted weighted) {
+            return Math.max(1, weighted.cacheWeight());
+        }
+        if (value instanceof Collection<?> collection) {
+            return Math.max(1, collection.size());
+        }
+        if (value instanceof Map<?, ?> map) {
+            return Math.max(1, map.size());
+        }
+        return 1;
+    }
+
+    private record LoadStamp(long loadMillis, long expiresAtMillis) {
+    }
+
+    private static Counter remoteCounter(MeterRegistry meterRegistry, String name, String result) {
+        return Counter.builder("cache.gets")
+                .description("The number of times cache lookup methods have returned a cached (hit) or uncached (miss) value.")
+                .tags("cache", name, TIER_TAG, "l2", "result", result)
+                .register(meterRegistry);
+    }
+}
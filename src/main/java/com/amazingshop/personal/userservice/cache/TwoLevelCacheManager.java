@@ -0,0 +1,85 @@
+package com.amazingshop.personal.userservice.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CacheManager поверх Redis: кэши из cache.l1.specs получают локальный L1,
+ * остальные (например, refreshGrace) отдаются из Redis как есть.
+ * Базовые TTL Redis нужны L1-кэшам для раннего обновления горячих ключей.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final CacheManager remote;
+    private final Map<String, LocalCacheSpec> specs;
+    private final CacheInvalidationBroadcaster broadcaster;
+    private final MeterRegistry meterRegistry;
+    private final CacheLoadCoordinator loads;
+    private final Map<String, Duration> remoteTtls;
+    private final Duration defaultRemoteTtl;
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remote, Map<String, LocalCacheSpec> specs,
+                                CacheInvalidationBroadcaster broadcaster, MeterRegistry meterRegistry,
+                                CacheLoadCoordinator loads, Map<String, Duration> remoteTtls,
+                                Duration defaultRemoteTtl, ObjectProvider<StringRedisTemplate> redisTemplate) {
+        this.remote = remote;
+        this.specs = specs;
+        this.broadcaster = broadcaster;
+        this.meterRegistry = meterRegistry;
+        this.loads = loads;
+        this.remoteTtls = remoteTtls;
+        this.defaultRemoteTtl = defaultRemoteTtl;
+        this.redisTemplate = redisTemplate;
+        log.info("Two-level cache enabled for: {}", specs.keySet());
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remote.getCacheNames();
+    }
+
+    /**
+     * Сброс L1 по сообщению другого инстанса; свои сообщения и кэши без L1 пропускаются
+     */
+    public void apply(CacheInvalidation invalidation) {
+        if (broadcaster.isOwn(invalidation)
+                || !(caches.get(invalidation.cacheName()) instanceof TwoLevelCache cache)) {
+            return;
+        }
+        switch (invalidation.kind()) {
+            case EVICT -> cache.evictLocal(invalidation.key());
+            case CLEAR -> cache.clearLocal();
+        }
+    }
+
+    private Cache createCache(String name) {
+        Cache remoteCache = remote.getCache(name);
+        LocalCacheSpec spec = specs.get(name);
+        if (remoteCache == null || spec == null) {
+            return remoteCache;
+        }
+        return new TwoLevelCache(name, remoteCache, spec, broadcaster, meterRegistry, loads,
+                remoteTtls.getOrDefault(name, defaultRemoteTtl), redisTemplate);
+    }
+}
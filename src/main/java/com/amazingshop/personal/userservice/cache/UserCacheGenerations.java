@@ -0,0 +1,153 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Поколение кэша пользователя: входит в ключи его записей (userChats, recentChats).
+ * <p>
+ * Запись пользователя увеличивает только его поколение — старые ключи больше не читаются
+ * и доживают свой TTL, кэш остальных пользователей не трогается. Это O(1) вместо
+ * allEntries = true, которое очищало кэш всех пользователей в кластере.
+ * <p>
+ * Счётчик общий в Redis, на инстансе он читается из небольшого локального кэша и сбрасывается
+ * по pub/sub. Поколение не меньше текущего времени в мс: если ключ счётчика истёк,
+ * следующее поколение всё равно больше всех прежних и старые записи не оживают.
+ */
+@Slf4j
+@Component(UserCacheGenerations.NAME)
+public class UserCacheGenerations {
+
+    public static final String NAME = "userCacheGenerations";
+
+    private static final String KEY_PREFIX = "user-service:cache-gen:";
+    private static final char NULL_PART = '~';
+    private static final RedisScript<Long> ADVANCE_SCRIPT = new DefaultRedisScript<>("""
+            local generation = redis.call('INCR', KEYS[1])
+            local floor = tonumber(ARGV[1])
+            if generation < floor then
+              redis.call('SET', KEYS[1], ARGV[1])
+              generation = floor
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            return generation
+            """, Long.class);
+
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+    private final CacheInvalidationBroadcaster broadcaster;
+    private final Cache<Long, Long> local;
+    private final long keyTtlMillis;
+    private final Clock clock;
+
+    @Autowired
+    public UserCacheGenerations(ObjectProvider<StringRedisTemplate> redisTemplate,
+                                CacheInvalidationBroadcaster broadcaster,
+                                @Value("${spring.cache.redis.time-to-live:60s}") Duration cacheTtl,
+                                @Value("${cache.generations.local-ttl:5s}") Duration localTtl,
+                                @Value("${cache.generations.max-size:100000}") long maxSize) {
+        this(redisTemplate, broadcaster, cacheTtl, localTtl, maxSize, Clock.systemUTC());
+    }
+
+    public UserCacheGenerations(ObjectProvider<StringRedisTemplate> redisTemplate, CacheInvalidationBroadcaster broadcaster,
+                                Duration cacheTtl, Duration localTtl, long maxSize, Clock clock) {
+        this.redisTemplate = redisTemplate;
+        this.broadcaster = broadcaster;
+        // Счётчик живёт дольше любой записи, созданной при нём
+        this.keyTtlMillis = cacheTtl.multipliedBy(2).toMillis();
+        this.clock = clock;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(localTtl)
+                .build();
+    }
+
+    public long current(Long userId) {
+        try {
+            return local.get(userId, this::load);
+        } catch (RuntimeException e) {
+            // Без Redis поколение неизвестно: уникальное значение даёт промах вместо устаревших данных
+            log.warn("Cache generation unavailable for user {}, bypassing cache: {}", userId, e.getMessage());
+            return clock.millis();
+        }
+    }
+
+    /**
+     * Ключ записи пользователя: "userId:поколение:части". Каждая часть — "длина#значение",
+     * null — "~": ни ':' внутри значения, ни пустая строка вместо null не дают чужой ключ
+     */
+    public String key(Long userId, Object... parts) {
+        StringBuilder key = new StringBuilder().append(userId).append(':').append(current(userId));
+        for (Object part : parts) {
+            key.append(':');
+            if (part == null) {
+                key.append(NULL_PART);
+                continue;
+            }
+            String value = part.toString();
+            key.append(value.length()).append('#').append(value);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Новое поколение пользователя. Внутри транзакции — после коммита, чтобы параллельное
+     * чтение не закэшировало под новым ключом ещё не зафиксированные данные.
+     */
+    public void advance(Long userId) {
+        AfterCommit.run(() -> advanceNow(userId));
+    }
+
+    /**
+     * Сброс локального значения по сообщению другого инстанса
+     */
+    public void apply(CacheInvalidation invalidation) {
+        if (broadcaster.isOwn(invalidation)) {
+            return;
+        }
+        switch (invalidation.kind()) {
+            case EVICT -> local.invalidate(Long.valueOf(invalidation.key()));
+            case CLEAR -> local.invalidateAll();
+        }
+    }
+
+    private void advanceNow(Long userId) {
+        Long known = local.getIfPresent(userId);
+        long localNext = Math.max(known != null ? known + 1 : 0, clock.millis());
+        long generation = localNext;
+        StringRedisTemplate template = redisTemplate.getIfAvailable();
+        if (template != null) {
+            try {
+                Long advanced = template.execute(ADVANCE_SCRIPT, List.of(KEY_PREFIX + userId),
+                        String.valueOf(localNext), String.valueOf(keyTtlMillis));
+                generation = advanced != null ? advanced : localNext;
+            } catch (RuntimeException e) {
+                // Локально старые записи уже не читаются, остальные инстансы догонят по TTL
+                log.warn("Failed to advance cache generation for user {}: {}", userId, e.getMessage());
+            }
+        }
+        local.put(userId, generation);
+        broadcaster.publishEvict(NAME, String.valueOf(userId));
+    }
+
+    private Long load(Long userId) {
+        StringRedisTemplate template = redisTemplate.getIfAvailable();
+        if (template == null) {
+            // Без общего счётчика прежнее поколение не восстановить — начинаем новое
+            return clock.millis();
+        }
+        String value = template.opsForValue().get(KEY_PREFIX + userId);
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+}
@@ -0,0 +1,206 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.repositories.UsersRepository;
+import com.amazingshop.personal.userservice.util.BloomFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Быстрый ответ «такого пользователя нет» для поиска по username и email без обращения к БД.
+ * <p>
+ * Фильтр Блума всех username и email строится при старте потоковым чтением таблицы Users;
+ * до этого он не используется. «Нет» из фильтра — точный ответ. Ложные «возможно есть»
+ * и удалённых пользователей (из фильтра не удалить) закрывает короткий кэш промахов.
+ * <p>
+ * Новый username или email попадает в фильтр и сбрасывает промах сразу при сохранении, ещё раз
+ * после коммита, и рассылается остальным инстансам через pub/sub. Без рассылки чужой инстанс
+ * не узнал бы о регистрации, поэтому и фильтр, и кэш промахов работают только вместе с
+ * cache.invalidation.pubsub: кэш промахов без неё выключен, а фильтр (cache.user-existence.bloom.enabled)
+ * без неё не даёт запустить приложение.
+ */
+@Slf4j
+@Component
+public class UserExistenceFilter {
+
+    public static final String NAME = "userExistence";
+
+    private static final String USERNAME = "u:";
+    private static final String EMAIL = "e:";
+
+    private final UsersRepository usersRepository;
+    private final CacheInvalidationBroadcaster broadcaster;
+    private final boolean bloomEnabled;
+    private final boolean negativeCacheEnabled;
+    private final double falsePositiveRate;
+    private final long minCapacity;
+    private final Cache<String, Boolean> missing;
+    private final Counter bloomAbsent;
+    private final Counter negativeHits;
+
+    private volatile BloomFilter filter;
+    // Фильтр, который сейчас строится: сохранения на время перестройки пишутся и в него
+    private volatile BloomFilter building;
+
+    @Autowired
+    public UserExistenceFilter(UsersRepository usersRepository, CacheInvalidationBroadcaster broadcaster,
+                               MeterRegistry meterRegistry,
+                               @Value("${cache.user-existence.bloom.enabled:false}") boolean bloomEnabled,
+                               @Value("${cache.invalidation.pubsub.enabled:true}") boolean pubSubEnabled,
+                               @Value("${cache.user-existence.bloom.fpp:0.01}") double falsePositiveRate,
+                               @Value("${cache.user-existence.bloom.min-capacity:100000}") long minCapacity,
+                               @Value("${cache.user-existence.negative-ttl:30s}") Duration negativeTtl,
+                               @Value("${cache.user-existence.negative-max-size:100000}") long negativeMaxSize) {
+        if (bloomEnabled && !pubSubEnabled) {
+            throw new IllegalStateException(
+                    "cache.user-existence.bloom.enabled requires cache.invalidation.pubsub.enabled");
+        }
+        this.usersRepository = usersRepository;
+        this.broadcaster = broadcaster;
+        this.bloomEnabled = bloomEnabled;
+        // Без рассылки промах, закэшированный здесь, пережил бы регистрацию на другом инстансе
+        this.negativeCacheEnabled = pubSubEnabled;
+        this.falsePositiveRate = falsePositiveRate;
+        this.minCapacity = minCapacity;
+        this.missing = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(negativeTtl)
+                .build();
+        this.bloomAbsent = skippedCounter(meterRegistry, "bloom");
+        this.negativeHits = skippedCounter(meterRegistry, "negative-cache");
+    }
+
+    /**
+     * Поиск по username через loader, если пользователь может существовать
+     */
+    public <T> Optional<T> byUsername(String username, Function<String, Optional<T>> loader) {
+        return lookup(USERNAME, username, loader);
+    }
+
+    public <T> Optional<T> byEmail(String email, Function<String, Optional<T>> loader) {
+        return lookup(EMAIL, email, loader);
+    }
+
+    /**
+     * Username и email сохранённого пользователя больше не считаются отсутствующими
+     */
+    public void recordExisting(String username, String email) {
+        addNow(USERNAME, username);
+        addNow(EMAIL, email);
+        AfterCommit.run(() -> {
+            // Повторно: промах, прочитанный до коммита, и перестройка, не увидевшая строку, его не переживут
+            addNow(USERNAME, username);
+            addNow(EMAIL, email);
+            publish(USERNAME, username);
+            publish(EMAIL, email);
+        });
+    }
+
+    /**
+     * Сохранение на другом инстансе
+     */
+    public void apply(CacheInvalidation invalidation) {
+        if (broadcaster.isOwn(invalidation)) {
+            return;
+        }
+        switch (invalidation.kind()) {
+            case EVICT -> add(invalidation.key());
+            case CLEAR -> missing.invalidateAll();
+        }
+    }
+
+    /**
+     * Строит фильтр по всей таблице Users. Размер — вдвое больше текущего числа ключей (по два
+     * на пользователя), чтобы новые регистрации не поднимали долю ложных «есть» до рестарта.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        if (!bloomEnabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        long capacity = Math.max(minCapacity, usersRepository.count() * 4);
+        BloomFilter next = new BloomFilter(capacity, falsePositiveRate);
+        building = next;
+        long users = 0;
+        try (Stream<UsersRepository.UserKeysView> keys = usersRepository.streamAllKeys()) {
+            for (UsersRepository.UserKeysView view : (Iterable<UsersRepository.UserKeysView>) keys::iterator) {
+                next.put(USERNAME + view.getUsername());
+                next.put(EMAIL + view.getEmail());
+                users++;
+            }
+            filter = next;
+        } finally {
+            building = null;
+        }
+        log.info("User existence filter built: {} users, {} bits, {} hashes in {} ms", users, next.bitCount(),
+                next.hashCount(), Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+
+    private <T> Optional<T> lookup(String field, String value, Function<String, Optional<T>> loader) {
+        if (value == null) {
+            return loader.apply(null);
+        }
+        String key = field + value;
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(key)) {
+            bloomAbsent.increment();
+            return Optional.empty();
+        }
+        if (negativeCacheEnabled && missing.getIfPresent(key) != null) {
+            negativeHits.increment();
+            return Optional.empty();
+        }
+        Optional<T> found = loader.apply(value);
+        if (found.isEmpty() && negativeCacheEnabled) {
+            missing.put(key, Boolean.TRUE);
+        }
+        return found;
+    }
+
+    private void addNow(String field, String value) {
+        if (value != null) {
+            add(field + value);
+        }
+    }
+
+    private void add(String key) {
+        // building читается первым: rebuild публикует filter раньше, чем сбрасывает building
+        BloomFilter next = building;
+        BloomFilter current = filter;
+        if (next != null) {
+            next.put(key);
+        }
+        if (current != null) {
+            current.put(key);
+        }
+        missing.invalidate(key);
+    }
+
+    private void publish(String field, String value) {
+        if (value != null) {
+            broadcaster.publishEvict(NAME, field + value);
+        }
+    }
+
+    private static Counter skippedCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("user.lookups.skipped")
+                .description("Username and email lookups answered as absent without a database query")
+                .tags("source", source)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,201 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.models.UserIdentity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Кэш UserIdentity с двумя ключами: проекция хранится один раз по id,
+ * username ведёт на id через индекс userIdByUsername.
+ * <p>
+ * Изменение пользователя сбрасывает обе записи одним вызовом {@link #evict}, поэтому копии
+ * по разным ключам не расходятся. Индекс проверяется по username самой проекции: устаревшая
+ * ссылка даёт промах, а не чужого пользователя. Отсутствующие пользователи не кэшируются.
+ * Промах по одному ключу загружается один раз — через {@link CacheLoadCoordinator}.
+ * Пакетное чтение идёт в Redis одним MGET на кэш, промахи — одним запросом в БД.
+ */
+@Slf4j
+@Component
+public class UserIdentityCache {
+
+    public static final String BY_ID = "userIdentity";
+    public static final String ID_BY_USERNAME = "userIdByUsername";
+
+    private final Cache byId;
+    private final Cache idByUsername;
+    private final CacheLoadCoordinator loads;
+
+    @Autowired
+    public UserIdentityCache(CacheManager cacheManager, CacheLoadCoordinator loads) {
+        this.byId = cacheManager.getCache(BY_ID);
+        this.idByUsername = cacheManager.getCache(ID_BY_USERNAME);
+        this.loads = loads;
+    }
+
+    public Optional<UserIdentity> getByUsername(String username, Function<String, Optional<UserIdentity>> loader) {
+        UserIdentity cached = cachedByUsername(username);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return load(ID_BY_USERNAME, username, () -> wrap(cachedByUsername(username)), () -> loader.apply(username));
+    }
+
+    public Optional<UserIdentity> getById(Long id, Function<Long, Optional<UserIdentity>> loader) {
+        UserIdentity cached = cached(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return load(BY_ID, String.valueOf(id), () -> wrap(cached(id)), () -> loader.apply(id));
+    }
+
+    /**
+     * Пакетное чтение: найденное в кэше отдаётся сразу, промахи загружаются одним вызовом loader.
+     * Порядок результата — порядок ids, отсутствующих пользователей в нём нет.
+     */
+    public Map<Long, UserIdentity> getAllById(Collection<Long> ids,
+                                              Function<Collection<Long>, ? extends Collection<UserIdentity>> loader) {
+        Map<Object, Object> cached = cachedAll(byId, ids);
+        Map<Long, UserIdentity> found = new LinkedHashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            UserIdentity identity = cached.get(id) instanceof UserIdentity value ? value : null;
+            found.put(id, identity);
+            if (identity == null) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (UserIdentity loaded : loader.apply(missing)) {
+                put(loaded);
+                found.put(loaded.id(), loaded);
+            }
+        }
+        found.values().removeIf(identity -> identity == null);
+        log.debug("Multi-get of {} user identities: {} loaded from the database", found.size(), missing.size());
+        return found;
+    }
+
+    /**
+     * Пакетное чтение по username: MGET индекса, затем MGET проекций, промахи — одним вызовом loader.
+     * Отсутствующих пользователей в результате нет.
+     */
+    public Map<String, UserIdentity> getAllByUsername(Collection<String> usernames,
+                                                      Function<Collection<String>, ? extends Collection<UserIdentity>> loader) {
+        Map<Object, Object> indexed = cachedAll(idByUsername, usernames);
+        Set<Long> ids = new LinkedHashSet<>();
+        // JSON-кодек может вернуть число как Integer
+        indexed.values().forEach(id -> ids.add(((Number) id).longValue()));
+        Map<Object, Object> cached = ids.isEmpty() ? Map.of() : cachedAll(byId, ids);
+
+        Map<String, UserIdentity> found = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String username : usernames) {
+            Object id = indexed.get(username);
+            Object identity = id != null ? cached.get(((Number) id).longValue()) : null;
+            if (identity instanceof UserIdentity value && value.username().equals(username)) {
+                found.put(username, value);
+            } else {
+                missing.add(username);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (UserIdentity loaded : loader.apply(missing)) {
+                put(loaded);
+                found.put(loaded.username(), loaded);
+            }
+        }
+        log.debug("Multi-get of {} user identities by username: {} loaded from the database", found.size(), missing.size());
+        return found;
+    }
+
+    public void put(UserIdentity identity) {
+        byId.put(identity.id(), identity);
+        idByUsername.put(identity.username(), identity.id());
+    }
+
+    /**
+     * Сбрасывает обе записи пользователя. Внутри транзакции — ещё раз после коммита, чтобы
+     * параллельное чтение не вернуло в кэш данные, которые видело до фиксации.
+     * Без username он берётся из закэшированной проекции; если её нет, оставшийся индекс
+     * безвреден — без записи по id он даёт промах.
+     */
+    public void evict(Long userId, String username) {
+        AfterCommit.runNowAndAfterCommit(() -> evictNow(userId, username));
+    }
+
+    private void evictNow(Long userId, String username) {
+        String indexed = username;
+        if (indexed == null && userId != null) {
+            UserIdentity cached = cached(userId);
+            indexed = cached != null ? cached.username() : null;
+        }
+        if (userId != null) {
+            byId.evict(userId);
+        }
+        if (indexed != null) {
+            idByUsername.evict(indexed);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<UserIdentity> load(String cacheName, String key, Supplier<Cache.ValueWrapper> recheck,
+                                        Supplier<Optional<UserIdentity>> loader) {
+        return (Optional<UserIdentity>) loads.load(cacheName, key, recheck, () -> {
+            Optional<UserIdentity> loaded = loader.get();
+            loaded.ifPresent(this::put);
+            return loaded;
+        });
+    }
+
+    private UserIdentity cachedByUsername(String username) {
+        Long id = cachedId(username);
+        UserIdentity cached = id != null ? cached(id) : null;
+        return cached != null && cached.username().equals(username) ? cached : null;
+    }
+
+    private static Cache.ValueWrapper wrap(UserIdentity cached) {
+        return cached != null ? new SimpleValueWrapper(Optional.of(cached)) : null;
+    }
+
+    /**
+     * L1 и один MGET для двухуровневого кэша; иначе по ключу
+     */
+    private static Map<Object, Object> cachedAll(Cache cache, Collection<?> keys) {
+        if (cache instanceof TwoLevelCache twoLevel) {
+            return twoLevel.getAll(keys);
+        }
+        Map<Object, Object> found = new LinkedHashMap<>();
+        for (Object key : keys) {
+            Cache.ValueWrapper wrapper = cache.get(key);
+            if (wrapper != null && wrapper.get() != null) {
+                found.put(key, wrapper.get());
+            }
+        }
+        return found;
+    }
+
+    private UserIdentity cached(Long id) {
+        return byId.get(id, UserIdentity.class);
+    }
+
+    private Long cachedId(String username) {
+        // JSON-кодек может вернуть число как Integer
+        Cache.ValueWrapper wrapper = idByUsername.get(username);
+        return wrapper != null && wrapper.get() instanceof Number id ? id.longValue() : null;
+    }
+}
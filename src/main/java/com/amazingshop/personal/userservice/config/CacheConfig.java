@@ -1,17 +1,35 @@
 package com.amazingshop.personal.userservice.config;
 
+import com.amazingshop.personal.userservice.cache.CacheInvalidationBroadcaster;
+import com.amazingshop.personal.userservice.cache.CacheLoadCoordinator;
+import com.amazingshop.personal.userservice.cache.CacheTypeRegistry;
+import com.amazingshop.personal.userservice.cache.JitteredTtl;
+import com.amazingshop.personal.userservice.cache.LocalCacheSpec;
+import com.amazingshop.personal.userservice.cache.SmileCacheSerializer;
+import com.amazingshop.personal.userservice.cache.TwoLevelCacheManager;
+import com.amazingshop.personal.userservice.cache.UserIdentityCache;
+import com.amazingshop.personal.userservice.dto.responses.ChatMessagesListResponse;
+import com.amazingshop.personal.userservice.dto.responses.ChatsListResponse;
+import com.amazingshop.personal.userservice.models.UserIdentity;
+import com.amazingshop.personal.userservice.security.jwt.SealedTokenPair;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
 import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.interceptor.KeyGenerator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -19,30 +37,33 @@ import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.lang.reflect.Method;
 import java.time.Duration;
-import java.util.Arrays;
+import java.util.Map;
 
 import static com.fasterxml.jackson.databind.ObjectMapper.DefaultTyping.NON_FINAL;
 
 @Configuration
 public class CacheConfig {
     private final Duration cacheTtl;
+    private final Duration refreshGraceWindow;
+    private final Duration userIdentityTtl;
+    private final String localCacheSpecs;
+    private final String cacheCodec;
+    private final double ttlJitter;
 
-    public CacheConfig(@Value("${spring.cache.redis.time-to-live:60s}") Duration cacheTtl) {
-        this.cacheTtl = cacheTtl;
-    }
+    private static final String CODEC_SMILE = "smile";
 
-    @Bean("userChatsKeyGenerator")
-    public KeyGenerator userChatsKeyGenerator() {
-        return new KeyGenerator() {
-
-            @Override
-            public Object generate(Object target, Method method, Object... params) {
-                return Arrays.stream(params)
-                        .map(value -> value == null ? "" : value.toString())
-                        .reduce((left, right) -> left + ":" + right)
-                        .orElse("");
-            }
-        };
+    public CacheConfig(@Value("${spring.cache.redis.time-to-live:60s}") Duration cacheTtl,
+                       @Value("${jwt.refresh-grace-window:10s}") Duration refreshGraceWindow,
+                       @Value("${cache.user-identity.ttl:10m}") Duration userIdentityTtl,
+                       @Value("${cache.l1.specs:}") String localCacheSpecs,
+                       @Value("${cache.codec:smile}") String cacheCodec,
+                       @Value("${cache.ttl-jitter:0.1}") double ttlJitter) {
+        this.cacheTtl = cacheTtl;
+        this.refreshGraceWindow = refreshGraceWindow;
+        this.userIdentityTtl = userIdentityTtl;
+        this.localCacheSpecs = localCacheSpecs;
+        this.cacheCodec = cacheCodec;
+        this.ttlJitter = ttlJitter;
     }
 
     @Bean("currentUserKeyGenerator")
@@ -57,6 +78,60 @@ public class CacheConfig {
 
     @Bean
     public RedisCacheManager redisCacheManager(RedisConnectionFactory connectionFactory) {
+        RedisCacheConfiguration cacheConfiguration = RedisCacheConfiguration.defaultCacheConfig()
+                .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
+                .entryTtl(new JitteredTtl(cacheTtl, ttlJitter));
+
+        if (CODEC_SMILE.equals(cacheCodec)) {
+            // Свой префикс ключей: инстансы с JSON-кодеком при rolling deploy не читают бинарные записи
+            String versionTag = "smile" + SmileCacheSerializer.FORMAT_VERSION;
+            cacheConfiguration = cacheConfiguration
+                    .computePrefixWith(cacheName -> cacheName + "::" + versionTag + "::")
+                    .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                            new SmileCacheSerializer(cacheTypeRegistry())));
+        } else {
+            cacheConfiguration = cacheConfiguration
+                    .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jsonCacheSerializer()));
+        }
+
+        return RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(cacheConfiguration)
+                // Пара токенов после ротации живёт только grace-окно
+                .withCacheConfiguration("refreshGrace", cacheConfiguration.entryTtl(refreshGraceWindow))
+                // Обе записи пользователя сбрасываются при любом изменении, TTL только ограничивает объём
+                .withCacheConfiguration(UserIdentityCache.BY_ID,
+                        cacheConfiguration.entryTtl(new JitteredTtl(userIdentityTtl, ttlJitter)))
+                .withCacheConfiguration(UserIdentityCache.ID_BY_USERNAME,
+                        cacheConfiguration.entryTtl(new JitteredTtl(userIdentityTtl, ttlJitter)))
+                .build();
+    }
+
+    /**
+     * Базовые TTL кэшей, отличные от spring.cache.redis.time-to-live
+     */
+    private Map<String, Duration> remoteTtls() {
+        return Map.of("refreshGrace", refreshGraceWindow,
+                UserIdentityCache.BY_ID, userIdentityTtl,
+                UserIdentityCache.ID_BY_USERNAME, userIdentityTtl);
+    }
+
+    /**
+     * Типы значений кэша для бинарного кодека. Номера не меняются и не переиспользуются.
+     */
+    public static CacheTypeRegistry cacheTypeRegistry() {
+        // 1 — прежняя сущность User, 4 — открытая пара токенов TokenPairResponse; больше не кэшируются
+        return new CacheTypeRegistry()
+                .register(2, ChatsListResponse.class)
+                .register(3, ChatMessagesListResponse.class)
+                .register(5, UserIdentity.class)
+                .register(6, Long.class)
+                .register(7, SealedTokenPair.class);
+    }
+
+    /**
+     * Прежний JSON-кодек с именами классов в каждом объекте (cache.codec=json)
+     */
+    public static GenericJackson2JsonRedisSerializer jsonCacheSerializer() {
         // Настраиваем ObjectMapper для поддержки LocalDateTime и типов
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
@@ -66,17 +141,29 @@ public class CacheConfig {
         PolymorphicTypeValidator ptv = BasicPolymorphicTypeValidator.builder()
                 .allowIfSubType(Object.class)
                 .build();
-        objectMapper.activateDefaultTyping(ptv, NON_FINAL);
-
-        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+        // NON_FINAL пропускает record (они final) — без имени класса UserIdentity читался бы как Map
+        ObjectMapper.DefaultTypeResolverBuilder typer = new ObjectMapper.DefaultTypeResolverBuilder(NON_FINAL, ptv) {
+            @Override
+            public boolean useForType(JavaType type) {
+                return type.isRecordType() || super.useForType(type);
+            }
+        };
+        objectMapper.setDefaultTyping(typer.init(JsonTypeInfo.Id.CLASS, null).inclusion(JsonTypeInfo.As.PROPERTY));
 
-        RedisCacheConfiguration cacheConfiguration = RedisCacheConfiguration.defaultCacheConfig()
-                .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
-                .entryTtl(cacheTtl);
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    }
 
-        return RedisCacheManager.builder(connectionFactory)
-                .cacheDefaults(cacheConfiguration)
-                .build();
+    /**
+     * Основной CacheManager для @Cacheable: локальный Caffeine перед Redis
+     */
+    @Bean
+    @Primary
+    public TwoLevelCacheManager cacheManager(RedisCacheManager redisCacheManager,
+                                             CacheInvalidationBroadcaster broadcaster,
+                                             MeterRegistry meterRegistry,
+                                             CacheLoadCoordinator loads,
+                                             ObjectProvider<StringRedisTemplate> redisTemplate) {
+        return new TwoLevelCacheManager(redisCacheManager, LocalCacheSpec.parse(localCacheSpecs),
+                broadcaster, meterRegistry, loads, remoteTtls(), cacheTtl, redisTemplate);
     }
-}
\ No newline at end of file
+}
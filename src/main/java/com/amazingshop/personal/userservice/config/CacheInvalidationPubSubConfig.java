@@ -0,0 +1,51 @@
+package com.amazingshop.personal.userservice.config;
+
+import com.amazingshop.personal.userservice.cache.CacheInvalidation;
+import com.amazingshop.personal.userservice.cache.CacheInvalidationBroadcaster;
+import com.amazingshop.personal.userservice.cache.TwoLevelCacheManager;
+import com.amazingshop.personal.userservice.cache.UserCacheGenerations;
+import com.amazingshop.personal.userservice.cache.UserExistenceFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Подписка на сбросы L1, поколений кэша пользователей и новые username/email от других инстансов
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "cache.invalidation.pubsub.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationPubSubConfig {
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                            CacheInvalidationBroadcaster broadcaster,
+                                                                            TwoLevelCacheManager cacheManager,
+                                                                            UserCacheGenerations cacheGenerations,
+                                                                            UserExistenceFilter existenceFilter) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> {
+            try {
+                CacheInvalidation invalidation = CacheInvalidation.fromMessage(
+                        new String(message.getBody(), StandardCharsets.UTF_8));
+                if (UserCacheGenerations.NAME.equals(invalidation.cacheName())) {
+                    cacheGenerations.apply(invalidation);
+                } else if (UserExistenceFilter.NAME.equals(invalidation.cacheName())) {
+                    existenceFilter.apply(invalidation);
+                } else {
+                    cacheManager.apply(invalidation);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Skipping malformed cache invalidation message: {}", e.getMessage());
+            }
+        }, new ChannelTopic(broadcaster.channel()));
+        return container;
+    }
+}
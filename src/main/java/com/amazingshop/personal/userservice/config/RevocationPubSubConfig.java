@@ -0,0 +1,39 @@
+package com.amazingshop.personal.userservice.config;
+
+import com.amazingshop.personal.userservice.security.revocation.RevocationBroadcaster;
+import com.amazingshop.personal.userservice.security.revocation.RevocationEvent;
+import com.amazingshop.personal.userservice.security.revocation.RevocationSync;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Подписка на события отзыва от других инстансов
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "jwt.revocation.pubsub.enabled", havingValue = "true", matchIfMissing = true)
+public class RevocationPubSubConfig {
+
+    @Bean
+    public RedisMessageListenerContainer revocationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                     RevocationBroadcaster broadcaster,
+                                                                     RevocationSync revocationSync) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> {
+            try {
+                revocationSync.apply(RevocationEvent.fromMessage(new String(message.getBody(), StandardCharsets.UTF_8)));
+            } catch (RuntimeException e) {
+                log.warn("Skipping malformed revocation message: {}", e.getMessage());
+            }
+        }, new ChannelTopic(broadcaster.channel()));
+        return container;
+    }
+}
@@ -1,10 +1,17 @@
 package com.amazingshop.personal.userservice.config;
 
 import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.security.clients.ServiceClientRegistry;
+import com.amazingshop.personal.userservice.security.hashing.BoundedPasswordEncoder;
+import com.amazingshop.personal.userservice.security.hashing.PasswordEncoders;
 import com.amazingshop.personal.userservice.security.jwt.JwtAuthenticationEntryPoint;
 import com.amazingshop.personal.userservice.security.jwt.JwtFilter;
+import com.amazingshop.personal.userservice.security.web.PublicEndpoints;
 import com.amazingshop.personal.userservice.services.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -14,7 +21,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -22,6 +28,7 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
@@ -53,8 +60,10 @@ public class SecurityConfig {
 
                 .authorizeHttpRequests(auth -> auth
                         // Public endpoints (Публичные эндпоинты)
-                        .requestMatchers("/api/v1/auth/**").permitAll()
-                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                        .requestMatchers(PublicEndpoints.PATTERNS).permitAll()
+
+                        // Internal endpoints (Внутренние эндпоинты) - сервисные токены по scope
+                        .requestMatchers(HttpMethod.POST, "/api/v1/auth/introspect").hasAuthority(ServiceClientRegistry.SCOPE_AUTHORITY_PREFIX + "introspect")
 
                         // Admin endpoints (Админские эндпоинты)
                         .requestMatchers("/api/v1/admin/**").hasRole(Role.ADMIN.toString())
@@ -65,6 +74,7 @@ public class SecurityConfig {
                         // Custom endpoints (Пользовательские эндпоинты)
                         .requestMatchers(HttpMethod.GET, "/api/v1/users/me").hasAnyRole(Role.USER.toString(), Role.ADMIN.toString())
                         .requestMatchers(HttpMethod.PUT, "/api/v1/users/me").hasAnyRole(Role.USER.toString(), Role.ADMIN.toString())
+                        .requestMatchers(HttpMethod.POST, "/api/v1/auth/logout-all").hasAnyRole(Role.USER.toString(), Role.ADMIN.toString())
 
                         // The remaining endpoints require authentication (Остальные эндпоинты требуют аутентификации)
                         .anyRequest().authenticated())
@@ -79,9 +89,38 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * JwtFilter — @Component, без этого Spring Boot зарегистрировал бы его ещё и в servlet-цепочке
+     * для всех URL; он должен работать только внутри SecurityFilterChain
+     */
+    @Bean
+    public FilterRegistrationBean<JwtFilter> jwtFilterRegistration(JwtFilter jwtFilter) {
+        FilterRegistrationBean<JwtFilter> registration = new FilterRegistrationBean<>(jwtFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    /**
+     * Хеширование выполняется на ограниченном пуле, а не на потоках Tomcat, при переполнении — 503.
+     * Алгоритм и его параметры берутся из настроек, устаревшие хеши обновляются при входе
+     * через UserDetailsPasswordService (UserDetailsServiceImpl).
+     */
     @Bean
-    public PasswordEncoder getPasswordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder getPasswordEncoder(
+            @Value("${spring.security.password.encoding-id:bcrypt}") String encodingId,
+            @Value("${spring.security.bcrypt.strength:12}") int bcryptStrength,
+            @Value("${spring.security.password.pbkdf2-iterations:310000}") int pbkdf2Iterations,
+            @Value("${spring.security.password.argon2-memory-kib:19456}") int argon2MemoryKib,
+            @Value("${spring.security.password.argon2-iterations:2}") int argon2Iterations,
+            @Value("${spring.security.bcrypt.executor.threads:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int threads,
+            @Value("${spring.security.bcrypt.executor.queue-capacity:64}") int queueCapacity,
+            @Value("${spring.security.bcrypt.executor.max-wait:2s}") Duration maxWait,
+            @Value("${spring.security.bcrypt.executor.retry-after:1s}") Duration retryAfter,
+            MeterRegistry meterRegistry) {
+        PasswordEncoder delegate = PasswordEncoders.delegating(encodingId, bcryptStrength, pbkdf2Iterations,
+                argon2MemoryKib, argon2Iterations);
+        return new BoundedPasswordEncoder(delegate, threads, queueCapacity,
+                maxWait, retryAfter, meterRegistry);
     }
 
     @Bean
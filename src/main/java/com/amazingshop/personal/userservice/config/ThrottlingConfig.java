@@ -0,0 +1,47 @@
+package com.amazingshop.personal.userservice.config;
+
+import com.amazingshop.personal.userservice.security.throttling.InMemorySlidingWindowCounter;
+import com.amazingshop.personal.userservice.security.throttling.RedisSlidingWindowCounter;
+import com.amazingshop.personal.userservice.security.throttling.SlidingWindowCounter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Clock;
+
+/**
+ * Хранилище счётчиков для LoginThrottle: память инстанса (по умолчанию) или Redis для кластера
+ */
+@Configuration
+public class ThrottlingConfig {
+
+    private final InMemorySlidingWindowCounter localCounter;
+
+    public ThrottlingConfig(@Value("${auth.throttling.max-keys:100000}") long maxKeys) {
+        this.localCounter = new InMemorySlidingWindowCounter(Clock.systemUTC(), maxKeys);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "auth.throttling.store", havingValue = "memory", matchIfMissing = true)
+    public SlidingWindowCounter inMemoryLoginAttemptCounter() {
+        return localCounter;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "auth.throttling.store", havingValue = "redis")
+    public SlidingWindowCounter redisLoginAttemptCounter(StringRedisTemplate redisTemplate,
+                                                         @Value("${auth.throttling.redis-key-prefix:user-service:throttle:}") String keyPrefix) {
+        return new RedisSlidingWindowCounter(redisTemplate, keyPrefix, Clock.systemUTC(), localCounter);
+    }
+
+    /**
+     * Локальные счётчики нужны и в режиме Redis как запасной вариант, поэтому чистятся всегда
+     */
+    @Scheduled(fixedDelayString = "${auth.throttling.purge-interval:PT1M}")
+    public void purgeIdleCounters() {
+        localCounter.purgeIdle();
+    }
+}
@@ -1,11 +1,13 @@
 package com.amazingshop.personal.userservice.controllers;
 
+import com.amazingshop.personal.userservice.dto.requests.InvalidateSessionsRequest;
 import com.amazingshop.personal.userservice.dto.requests.UserDTO;
 import com.amazingshop.personal.userservice.dto.responses.UserResponse;
 import com.amazingshop.personal.userservice.interfaces.AdminService;
 import com.amazingshop.personal.userservice.interfaces.EntityMapper;
 import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.User;
+import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -97,4 +99,28 @@ public class AdminController {
         UserDTO userDTO = entityMapper.toUserDTO(promotedUser);
         return ResponseEntity.ok(userDTO);
     }
+
+    /**
+     * Админский эндпоинт - отзыв всех сессий списка пользователей
+     * POST /api/v1/admin/sessions/invalidate
+     */
+    @PostMapping("/sessions/invalidate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Integer>> invalidateSessions(@RequestBody @Valid InvalidateSessionsRequest request) {
+        log.info("Admin requested to invalidate sessions of users: {}", request.getUserIds());
+        int invalidated = adminService.invalidateSessions(request.getUserIds());
+        return ResponseEntity.ok(Map.of("invalidatedUsers", invalidated));
+    }
+
+    /**
+     * Админский эндпоинт - отзыв сессий всех пользователей
+     * POST /api/v1/admin/sessions/invalidate-all
+     */
+    @PostMapping("/sessions/invalidate-all")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Long>> invalidateAllSessions() {
+        log.warn("Admin requested to invalidate sessions of all users");
+        long globalEpoch = adminService.invalidateAllSessions();
+        return ResponseEntity.ok(Map.of("globalEpoch", globalEpoch));
+    }
 }
\ No newline at end of file
@@ -2,19 +2,35 @@ package com.amazingshop.personal.userservice.controllers;
 
 
 import com.amazingshop.personal.userservice.dto.requests.AuthenticationDTO;
+import com.amazingshop.personal.userservice.dto.requests.IntrospectionRequest;
 import com.amazingshop.personal.userservice.dto.requests.RefreshTokenRequest;
 import com.amazingshop.personal.userservice.dto.requests.UserDTO;
+import com.amazingshop.personal.userservice.dto.responses.IntrospectionResponse;
+import com.amazingshop.personal.userservice.dto.responses.ServiceTokenResponse;
 import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
 import com.amazingshop.personal.userservice.interfaces.AuthenticationService;
+import com.amazingshop.personal.userservice.interfaces.ClientCredentialsService;
+import com.amazingshop.personal.userservice.interfaces.IntrospectionService;
 import com.amazingshop.personal.userservice.interfaces.RegistrationService;
 import com.amazingshop.personal.userservice.interfaces.TokenService;
+import com.amazingshop.personal.userservice.security.details.AuthenticatedUser;
+import com.amazingshop.personal.userservice.security.web.CurrentUser;
+import com.amazingshop.personal.userservice.util.exceptions.OAuthErrorException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
 @Slf4j
 @RestController
 @RequestMapping("/auth")
@@ -23,14 +39,20 @@ public class AuthController {
     private final RegistrationService registrationService;
     private final AuthenticationService authenticationService;
     private final TokenService tokenService;
+    private final IntrospectionService introspectionService;
+    private final ClientCredentialsService clientCredentialsService;
 
     @Autowired
     public AuthController(RegistrationService registrationService,
                           AuthenticationService authenticationService,
-                          TokenService tokenService) {
+                          TokenService tokenService,
+                          IntrospectionService introspectionService,
+                          ClientCredentialsService clientCredentialsService) {
         this.registrationService = registrationService;
         this.authenticationService = authenticationService;
         this.tokenService = tokenService;
+        this.introspectionService = introspectionService;
+        this.clientCredentialsService = clientCredentialsService;
     }
 
     /**
@@ -38,10 +60,12 @@ public class AuthController {
      * POST /api/v1/auth/signup
      */
     @PostMapping("/signup")
-    public ResponseEntity<TokenPairResponse> performRegistration(@RequestBody @Valid UserDTO userDTO) {
+    public ResponseEntity<TokenPairResponse> performRegistration(@RequestBody @Valid UserDTO userDTO,
+                                                                 HttpServletRequest httpRequest) {
         log.info("Registration attempt for username: {}", userDTO.getUsername());
 
-        TokenPairResponse response = registrationService.register(userDTO);
+        // За доверенным прокси remoteAddr уже адрес клиента (server.forward-headers-strategy)
+        TokenPairResponse response = registrationService.register(userDTO, httpRequest.getRemoteAddr());
 
         log.info("User registered successfully: {}", userDTO.getUsername());
 
@@ -54,10 +78,12 @@ public class AuthController {
      * POST /api/v1/auth/login
      */
     @PostMapping("/login")
-    public ResponseEntity<TokenPairResponse> performLogin(@RequestBody @Valid AuthenticationDTO authenticationDTO) {
+    public ResponseEntity<TokenPairResponse> performLogin(@RequestBody @Valid AuthenticationDTO authenticationDTO,
+                                                          HttpServletRequest httpRequest) {
         log.info("Login attempt for username: {}", authenticationDTO.getUsername());
 
-        TokenPairResponse response = authenticationService.performLogin(authenticationDTO);
+        // За доверенным прокси remoteAddr уже адрес клиента (server.forward-headers-strategy)
+        TokenPairResponse response = authenticationService.performLogin(authenticationDTO, httpRequest.getRemoteAddr());
 
         log.info("User logged in successfully: {}", authenticationDTO.getUsername());
 
@@ -83,13 +109,56 @@ public class AuthController {
     }
 
     /**
-     * Logout - инвалидация refresh token
+     * Сервисный токен для внутренних сервисов (grant_type=client_credentials).
+     * Учётные данные клиента — в HTTP Basic или в полях client_id/client_secret
+     * POST /api/v1/auth/token
+     */
+    @PostMapping(value = "/token", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public ResponseEntity<ServiceTokenResponse> issueServiceToken(
+            @RequestParam("grant_type") String grantType,
+            @RequestParam(value = "scope", required = false) String scope,
+            @RequestParam(value = "client_id", required = false) String clientId,
+            @RequestParam(value = "client_secret", required = false) String clientSecret,
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!"client_credentials".equals(grantType)) {
+            throw new OAuthErrorException(HttpStatus.BAD_REQUEST, OAuthErrorException.UNSUPPORTED_GRANT_TYPE,
+                    "Only client_credentials is supported");
+        }
+
+        if (authorization != null && authorization.startsWith("Basic ")) {
+            String[] credentials = decodeBasic(authorization.substring(6).trim());
+            clientId = credentials[0];
+            clientSecret = credentials[1];
+        }
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(clientCredentialsService.issueToken(clientId, clientSecret, scope));
+    }
+
+    /**
+     * Пакетная проверка access token для внутренних сервисов: валидность, username, userId, role, exp.
+     * Требует сервисный токен со scope introspect
+     * POST /api/v1/auth/introspect
+     */
+    @PostMapping("/introspect")
+    public ResponseEntity<IntrospectionResponse> introspect(@RequestBody @Valid IntrospectionRequest request) {
+        return ResponseEntity.ok(introspectionService.introspect(request.getTokens()));
+    }
+
+    /**
+     * Logout - инвалидация refresh token и, если передан, текущего access token
      * POST /auth/logout
      */
     @PostMapping("/logout")
-    public ResponseEntity<Void> logout(@RequestBody @Valid RefreshTokenRequest request) {
+    public ResponseEntity<Void> logout(@RequestBody @Valid RefreshTokenRequest request,
+                                       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
         try {
-            authenticationService.logout(request);
+            // Access token из заголовка (если передан) отзывается сразу, не дожидаясь exp
+            String accessToken = authorization != null && authorization.startsWith("Bearer ")
+                    ? authorization.substring(7).trim()
+                    : null;
+            authenticationService.logout(request, accessToken);
 
             log.info("Logout request processed successfully");
             return ResponseEntity.ok().build();
@@ -99,4 +168,34 @@ public class AuthController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Выход на всех устройствах - отзыв всех access и refresh token текущего пользователя
+     * POST /api/v1/auth/logout-all
+     */
+    @PostMapping("/logout-all")
+    public ResponseEntity<Void> logoutEverywhere(@CurrentUser AuthenticatedUser currentUser) {
+        authenticationService.logoutEverywhere(currentUser.id());
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * client_id:client_secret из HTTP Basic (RFC 6749, 2.3.1 — обе части form-urlencoded)
+     */
+    private static String[] decodeBasic(String encoded) {
+        try {
+            String decoded = new String(Base64.getDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            if (separator <= 0) {
+                throw OAuthErrorException.invalidClient("Malformed Basic credentials");
+            }
+            return new String[]{
+                    URLDecoder.decode(decoded.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(decoded.substring(separator + 1), StandardCharsets.UTF_8)
+            };
+        } catch (IllegalArgumentException e) {
+            // Не Base64 или битое %-кодирование
+            throw OAuthErrorException.invalidClient("Malformed Basic credentials");
+        }
+    }
+}
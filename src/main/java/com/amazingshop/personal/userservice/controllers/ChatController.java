@@ -9,9 +9,10 @@ import com.amazingshop.personal.userservice.dto.responses.ChatResponse;
 import com.amazingshop.personal.userservice.dto.responses.ChatsListResponse;
 import com.amazingshop.personal.userservice.interfaces.ChatService;
 import com.amazingshop.personal.userservice.interfaces.EntityMapper;
-import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.Chat;
 import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.security.details.AuthenticatedUser;
+import com.amazingshop.personal.userservice.security.web.CurrentUser;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -22,49 +23,51 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/chats")
 public class ChatController {
     private final ChatService chatService;
-    private final UserService userService;
     private final EntityMapper entityMapper;
 
     @Autowired
-    public ChatController(ChatService chatService, UserService userService, EntityMapper entityMapper) {
+    public ChatController(ChatService chatService, EntityMapper entityMapper) {
         this.chatService = chatService;
-        this.userService = userService;
         this.entityMapper = entityMapper;
     }
 
     @GetMapping
     public ResponseEntity<ChatsListResponse> getChats(
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String subject
     ) {
-        ChatsListResponse response = chatService.getUserChats(userService.getCurrentUserId(), search, subject);
+        ChatsListResponse response = chatService.getUserChats(currentUser.id(), search, subject);
         return ResponseEntity.ok(response);
     }
 
     @PostMapping
-    public ResponseEntity<ChatResponse> createChat(@RequestBody CreateChatRequest request) {
-        Chat chat = chatService.createChat(userService.getCurrentUserId(), request.getTitle(), request.getSubject());
+    public ResponseEntity<ChatResponse> createChat(@CurrentUser AuthenticatedUser currentUser,
+                                                   @RequestBody CreateChatRequest request) {
+        Chat chat = chatService.createChat(currentUser.id(), request.getTitle(), request.getSubject());
         return ResponseEntity.ok(entityMapper.toChatResponse(chat));
     }
 
     @DeleteMapping("/{chatId}")
-    public ResponseEntity<Void> deleteChat(@PathVariable Long chatId) {
-        chatService.deleteChat(chatId, userService.getCurrentUserId());
+    public ResponseEntity<Void> deleteChat(@CurrentUser AuthenticatedUser currentUser, @PathVariable Long chatId) {
+        chatService.deleteChat(chatId, currentUser.id());
         return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/{chatId}/messages")
-    public ResponseEntity<ChatMessagesListResponse> getChatMessages(@PathVariable Long chatId) {
-        ChatMessagesListResponse response = chatService.getChatMessages(chatId, userService.getCurrentUserId());
+    public ResponseEntity<ChatMessagesListResponse> getChatMessages(@CurrentUser AuthenticatedUser currentUser,
+                                                                    @PathVariable Long chatId) {
+        ChatMessagesListResponse response = chatService.getChatMessages(chatId, currentUser.id());
         return ResponseEntity.ok(response);
     }
 
     @PostMapping("/{chatId}/messages")
-    public ResponseEntity<ChatMessageResponse> addMessage(@PathVariable Long chatId,
+    public ResponseEntity<ChatMessageResponse> addMessage(@CurrentUser AuthenticatedUser currentUser,
+                                                          @PathVariable Long chatId,
                                                           @RequestBody AddMessageRequest request
     ) {
         ChatMessage message = chatService.addMessage(
-                chatId, userService.getCurrentUserId(), request.getContent(), request.getRole(), request.getTemplateUsed()
+                chatId, currentUser.id(), request.getContent(), request.getRole(), request.getTemplateUsed()
         );
         return ResponseEntity.ok(entityMapper.toChatMessageResponse(message));
     }
@@ -72,22 +75,24 @@ public class ChatController {
     // Получить последние чаты для sidebar
     @GetMapping("/recent")
     public ResponseEntity<ChatsListResponse> getRecentChats(
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestParam(defaultValue = "20") int limit) {
-        ChatsListResponse response = chatService.getRecentChats(userService.getCurrentUserId(), limit);
+        ChatsListResponse response = chatService.getRecentChats(currentUser.id(), limit);
         return ResponseEntity.ok(response);
     }
 
     @PutMapping("/{chatId}/title")
     public ResponseEntity<ChatResponse> updateChatTitle(
+            @CurrentUser AuthenticatedUser currentUser,
             @PathVariable Long chatId,
             @RequestBody UpdateChatTitleRequest request) {
-        Chat updatedChat = chatService.updateChatTitle(chatId, userService.getCurrentUserId(), request.getNewTitle());
+        Chat updatedChat = chatService.updateChatTitle(chatId, currentUser.id(), request.getNewTitle());
         return ResponseEntity.ok(entityMapper.toChatResponse(updatedChat));
     }
 
     @DeleteMapping("/all")
-    public ResponseEntity<Void> deleteAllChats() {
-        chatService.deleteAllChats(userService.getCurrentUserId());
+    public ResponseEntity<Void> deleteAllChats(@CurrentUser AuthenticatedUser currentUser) {
+        chatService.deleteAllChats(currentUser.id());
         return ResponseEntity.noContent().build();
     }
 }
\ No newline at end of file
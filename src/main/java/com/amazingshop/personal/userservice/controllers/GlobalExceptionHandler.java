@@ -1,18 +1,23 @@
 package com.amazingshop.personal.userservice.controllers;
 
-import com.amazingshop.personal.userservice.dto.responses.ErrorResponse;
+import com.amazingshop.personal.userservice.util.errors.ErrorResponseWriter;
+import com.amazingshop.personal.userservice.util.exceptions.OAuthErrorException;
+import com.amazingshop.personal.userservice.util.exceptions.PasswordHashingOverloadedException;
+import com.amazingshop.personal.userservice.util.exceptions.TooManyRequestsException;
 import com.amazingshop.personal.userservice.util.exceptions.UnauthorizedException;
 import com.amazingshop.personal.userservice.util.exceptions.UserNotFoundException;
 import com.amazingshop.personal.userservice.util.exceptions.UserValidationException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.validation.FieldError;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingRequestHeaderException;
@@ -21,73 +26,82 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.servlet.NoHandlerFoundException;
 
+import java.io.IOException;
 import java.nio.file.AccessDeniedException;
-import java.time.LocalDateTime;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
+/**
+ * Тела ошибок пишутся напрямую в ответ через {@link ErrorResponseWriter}: постоянные сообщения
+ * закодированы заранее, под ботами и волнами истёкших токенов обработчики почти не аллоцируют
+ */
 @Slf4j
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private final ErrorResponseWriter errorResponseWriter;
+    private final ErrorResponseWriter.Template malformedJson;
+    private final ErrorResponseWriter.Template invalidCredentials;
+    private final ErrorResponseWriter.Template invalidToken;
+    private final ErrorResponseWriter.Template userNotFound;
+    private final ErrorResponseWriter.Template tooManyAttempts;
+    private final ErrorResponseWriter.Template serviceBusy;
+    private final ErrorResponseWriter.Template endpointNotFound;
+    private final ErrorResponseWriter.Template internalError;
+    private final ErrorResponseWriter.Template serviceUnavailable;
+    private final ErrorResponseWriter.Template unexpectedError;
+
+    @Autowired
+    public GlobalExceptionHandler(ErrorResponseWriter errorResponseWriter) {
+        this.errorResponseWriter = errorResponseWriter;
+        this.malformedJson = errorResponseWriter.template("Malformed JSON request");
+        this.invalidCredentials = errorResponseWriter.template("Invalid username or password");
+        this.invalidToken = errorResponseWriter.template("Invalid or expired JWT token");
+        this.userNotFound = errorResponseWriter.template("User not found");
+        this.tooManyAttempts = errorResponseWriter.template("Too many attempts, please retry later");
+        this.serviceBusy = errorResponseWriter.template("Service is busy, please retry later");
+        this.endpointNotFound = errorResponseWriter.template("Endpoint not found");
+        this.internalError = errorResponseWriter.template("Internal server error occurred");
+        this.serviceUnavailable = errorResponseWriter.template("Service temporarily unavailable");
+        this.unexpectedError = errorResponseWriter.template("An unexpected error occurred!");
+    }
+
     /// //////////////////////////////////////////////////////
     /// Validation and input data (Валидация и входные данные)
     /// //////////////////////////////////////////////////////
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
-    public ResponseEntity<Map<String, Object>> handlerExceptions(MethodArgumentNotValidException e) {
+    public void handlerExceptions(MethodArgumentNotValidException e, HttpServletResponse response) throws IOException {
         log.warn("Validation failed: {}", e.getMessage());
-
-        Map<String, String> fieldErrors = e.getBindingResult().getFieldErrors().stream().
-                collect(Collectors.toMap(
-                        FieldError::getField,
-                        fieldError -> Optional.ofNullable(fieldError.getDefaultMessage())
-                                .orElse("Validation error occurred!"),
-                        (existing, replacement) -> existing // Если дубликат поля, оставляем первую ошибку
-                ));
-
-        Map<String, Object> errorResponse = new LinkedHashMap<>();
-        errorResponse.put("timestamp", LocalDateTime.now());
-        errorResponse.put("status", HttpStatus.BAD_REQUEST.value());
-        errorResponse.put("error", "Validation Failed");
-        errorResponse.put("message", "Input validation failed");
-        errorResponse.put("fieldErrors", fieldErrors);
-
-
-        return ResponseEntity.badRequest().body(errorResponse);
+        // Если дубликат поля, в ответе остаётся первая ошибка
+        errorResponseWriter.writeValidationErrors(response, e.getBindingResult().getFieldErrors());
     }
 
     @ExceptionHandler(UserValidationException.class)
-    public ResponseEntity<ErrorResponse> handleUserValidationException(UserValidationException e) {
+    public void handleUserValidationException(UserValidationException e,
+                                              HttpServletResponse response) throws IOException {
         log.warn("User validation failed: {}", e.getMessage());
-        return new ResponseEntity<>(
-                ErrorResponse.makeErrorResponse(e.getMessage()),
-                HttpStatus.BAD_REQUEST  // ← 400 вместо 500
-        );
+        errorResponseWriter.write(response, HttpStatus.BAD_REQUEST, e.getMessage()); // ← 400 вместо 500
     }
 
     @ExceptionHandler(HttpMessageNotReadableException.class)
-    public ResponseEntity<ErrorResponse> handlerHttpMessageNotReadableException(HttpMessageNotReadableException e) {
+    public void handlerHttpMessageNotReadableException(HttpMessageNotReadableException e,
+                                                       HttpServletResponse response) throws IOException {
         log.warn("Malformed JSON request: {}", e.getMessage());
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("Malformed JSON request"),
-                HttpStatus.BAD_REQUEST);
+        malformedJson.write(response, HttpStatus.BAD_REQUEST);
     }
 
     @ExceptionHandler(MethodArgumentTypeMismatchException.class)
-    public ResponseEntity<ErrorResponse> handlerMethodArgumentTypeMismatchException(MethodArgumentTypeMismatchException e) {
+    public void handlerMethodArgumentTypeMismatchException(MethodArgumentTypeMismatchException e,
+                                                           HttpServletResponse response) throws IOException {
         log.warn("Invalid parameter type: {} for parameter: {}", e.getValue(), e.getName());
         String message = String.format("Invalid value '%s' for parameter '%s'", e.getValue(), e.getName());
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse(message),
-                HttpStatus.BAD_REQUEST);
+        errorResponseWriter.write(response, HttpStatus.BAD_REQUEST, message);
     }
 
     @ExceptionHandler(MissingRequestHeaderException.class)
-    public ResponseEntity<ErrorResponse> handlerMissingRequestHeaderException(MissingRequestHeaderException e) {
+    public void handlerMissingRequestHeaderException(MissingRequestHeaderException e,
+                                                     HttpServletResponse response) throws IOException {
         log.warn("Missing required header: {}", e.getHeaderName());
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("Missing required header: " + e.getHeaderName()),
-                HttpStatus.BAD_REQUEST);
+        errorResponseWriter.write(response, HttpStatus.BAD_REQUEST, "Missing required header: " + e.getHeaderName());
     }
 
     /// ///////////////////////////////////////////////////////////////
@@ -95,31 +109,42 @@ public class GlobalExceptionHandler {
     /// ///////////////////////////////////////////////////////////////
 
     @ExceptionHandler(BadCredentialsException.class)
-    public ResponseEntity<ErrorResponse> handlerValidationException(BadCredentialsException e) {
+    public void handlerValidationException(BadCredentialsException e, HttpServletResponse response) throws IOException {
         log.warn("Authentication failed: {}", e.getMessage());
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("Invalid username or password"),
-                HttpStatus.UNAUTHORIZED);
+        invalidCredentials.write(response, HttpStatus.UNAUTHORIZED);
+    }
+
+    /**
+     * Token endpoint: тело по RFC 6749, для invalid_client — WWW-Authenticate, ответ не кэшируется
+     */
+    @ExceptionHandler(OAuthErrorException.class)
+    public void handleOAuthErrorException(OAuthErrorException e, HttpServletResponse response) throws IOException {
+        log.warn("Token request rejected: {} ({})", e.getError(), e.getMessage());
+        if (e.getStatus() == HttpStatus.UNAUTHORIZED) {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Basic");
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        errorResponseWriter.writeOAuthError(response, e.getStatus(), e.getError(), e.getMessage());
     }
 
     @ExceptionHandler(JWTVerificationException.class)
-    public ResponseEntity<ErrorResponse> handlerJWTVerificationException(JWTVerificationException e) {
+    public void handlerJWTVerificationException(JWTVerificationException e,
+                                                HttpServletResponse response) throws IOException {
         log.warn("JWT verification failed: {}", e.getMessage());
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("Invalid or expired JWT token"),
-                HttpStatus.UNAUTHORIZED);
+        invalidToken.write(response, HttpStatus.UNAUTHORIZED);
     }
 
     @ExceptionHandler(UsernameNotFoundException.class)
-    public ResponseEntity<ErrorResponse> handlerUsernameNotFoundException(UsernameNotFoundException e) {
+    public void handlerUsernameNotFoundException(UsernameNotFoundException e,
+                                                 HttpServletResponse response) throws IOException {
         log.warn("User not found: {}", e.getMessage());
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("User not found"),
-                HttpStatus.UNAUTHORIZED);
+        userNotFound.write(response, HttpStatus.UNAUTHORIZED);
     }
 
     @ExceptionHandler(AccessDeniedException.class)
-    public ResponseEntity<ErrorResponse> handlerAccessDeniedException(AccessDeniedException e) {
+    public void handlerAccessDeniedException(AccessDeniedException e, HttpServletResponse response) throws IOException {
         log.warn("Access denied: {}", e.getMessage());
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("Invalid or expired JWT token"),
-                HttpStatus.FORBIDDEN);
+        invalidToken.write(response, HttpStatus.FORBIDDEN);
     }
 
     /// ////////////////////////////////////////////////
@@ -127,14 +152,14 @@ public class GlobalExceptionHandler {
     /// ////////////////////////////////////////////////
 
     @ExceptionHandler(UserNotFoundException.class)
-    public ResponseEntity<ErrorResponse> handlerUserNotFoundException(UserNotFoundException e) {
+    public void handlerUserNotFoundException(UserNotFoundException e, HttpServletResponse response) throws IOException {
         log.warn("User not found: {}", e.getMessage());
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("User not found"),
-                HttpStatus.NOT_FOUND);
+        userNotFound.write(response, HttpStatus.NOT_FOUND);
     }
 
     @ExceptionHandler(DataIntegrityViolationException.class)
-    public ResponseEntity<ErrorResponse> handleDataIntegrityViolationException(DataIntegrityViolationException e) {
+    public void handleDataIntegrityViolationException(DataIntegrityViolationException e,
+                                                      HttpServletResponse response) throws IOException {
         log.error("Database constraint violation: {}", e.getMessage());
         String message = "Data integrity violation";
 
@@ -144,17 +169,42 @@ public class GlobalExceptionHandler {
         } else if (e.getMessage().contains("foreign key")) {
             message = "Referenced resource not found";
         }
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse(message),
-                HttpStatus.CONFLICT);
+        errorResponseWriter.write(response, HttpStatus.CONFLICT, message);
     }
 
     @ExceptionHandler(UnauthorizedException.class)
-    public ResponseEntity<ErrorResponse> handleUnauthorizedException(UnauthorizedException e) {
+    public void handleUnauthorizedException(UnauthorizedException e, HttpServletResponse response) throws IOException {
         log.warn("Unauthorized access attempt: {}", e.getMessage());
-        return new ResponseEntity<>(
-                ErrorResponse.makeErrorResponse(e.getMessage()),
-                HttpStatus.FORBIDDEN // 403
-        );
+        errorResponseWriter.write(response, HttpStatus.FORBIDDEN, e.getMessage()); // 403
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public void handleTooManyRequestsException(TooManyRequestsException e,
+                                               HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())));
+        tooManyAttempts.write(response, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @ExceptionHandler(PasswordHashingOverloadedException.class)
+    public void handlePasswordHashingOverloadedException(PasswordHashingOverloadedException e,
+                                                          HttpServletResponse response) throws IOException {
+        log.warn("Password hashing overloaded: {}", e.getMessage());
+        long retryAfterSeconds = Math.max(1, e.getRetryAfter().toSeconds());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        serviceBusy.write(response, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * DaoAuthenticationProvider оборачивает сбои загрузки пользователя, перегрузку пула хеширования достаём из cause
+     */
+    @ExceptionHandler(InternalAuthenticationServiceException.class)
+    public void handleInternalAuthenticationServiceException(InternalAuthenticationServiceException e,
+                                                             HttpServletResponse response) throws IOException {
+        if (e.getCause() instanceof PasswordHashingOverloadedException overloaded) {
+            handlePasswordHashingOverloadedException(overloaded, response);
+            return;
+        }
+        handlerException(e, response);
     }
 
     /// ///////////////////////////////////////
@@ -162,19 +212,19 @@ public class GlobalExceptionHandler {
     /// ///////////////////////////////////////
 
     @ExceptionHandler(NoHandlerFoundException.class)
-    public ResponseEntity<ErrorResponse> handleNoHandlerFoundException(NoHandlerFoundException e) {
+    public void handleNoHandlerFoundException(NoHandlerFoundException e,
+                                              HttpServletResponse response) throws IOException {
         log.warn("No handler found for {} {}", e.getHttpMethod(), e.getRequestURL());
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("Endpoint not found"),
-                HttpStatus.NOT_FOUND);
+        endpointNotFound.write(response, HttpStatus.NOT_FOUND);
     }
 
     @ExceptionHandler(HttpRequestMethodNotSupportedException.class)
-    public ResponseEntity<ErrorResponse> handleHttpRequestMethodNotSupportedException(HttpRequestMethodNotSupportedException e) {
+    public void handleHttpRequestMethodNotSupportedException(HttpRequestMethodNotSupportedException e,
+                                                             HttpServletResponse response) throws IOException {
         log.warn("Method not supported: {}", e.getMethod());
         String message = String.format("Method %s not supported. Supported methods: %s",
                 e.getMethod(), String.join(", ", e.getSupportedMethods()));
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse(message),
-                HttpStatus.METHOD_NOT_ALLOWED);
+        errorResponseWriter.write(response, HttpStatus.METHOD_NOT_ALLOWED, message);
     }
 
     /// ////////////////////////////////
@@ -182,24 +232,22 @@ public class GlobalExceptionHandler {
     /// ////////////////////////////////
 
     @ExceptionHandler(NullPointerException.class)
-    public ResponseEntity<ErrorResponse> handlerNullPointerException(NullPointerException e) {
+    public void handlerNullPointerException(NullPointerException e, HttpServletResponse response) throws IOException {
         log.error("Null pointer exception occurred", e);
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("Internal server error occurred"),
-                HttpStatus.INTERNAL_SERVER_ERROR);
+        internalError.write(response, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
     @ExceptionHandler(IllegalArgumentException.class)
-    public ResponseEntity<ErrorResponse> handleIllegalArgumentException(IllegalArgumentException e) {
+    public void handleIllegalArgumentException(IllegalArgumentException e,
+                                               HttpServletResponse response) throws IOException {
         log.warn("Illegal argument: {}", e.getMessage());
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("Invalid argument: " + e.getMessage()),
-                HttpStatus.BAD_REQUEST);
+        errorResponseWriter.write(response, HttpStatus.BAD_REQUEST, "Invalid argument: " + e.getMessage());
     }
 
     @ExceptionHandler(IllegalStateException.class)
-    public ResponseEntity<ErrorResponse> handleIllegalStateException(IllegalStateException e) {
+    public void handleIllegalStateException(IllegalStateException e, HttpServletResponse response) throws IOException {
         log.error("Illegal state: {}", e.getMessage());
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("Service temporarily unavailable"),
-                HttpStatus.INTERNAL_SERVER_ERROR);
+        serviceUnavailable.write(response, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
     /// ///////////////////////////////////
@@ -207,9 +255,8 @@ public class GlobalExceptionHandler {
     /// ///////////////////////////////////
 
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<ErrorResponse> handlerException(Exception e) {
+    public void handlerException(Exception e, HttpServletResponse response) throws IOException {
         log.error("Unexpected error occurred", e);
-        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("An unexpected error occurred!"),
-                HttpStatus.INTERNAL_SERVER_ERROR);
+        unexpectedError.write(response, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.amazingshop.personal.userservice.controllers;
+
+import com.amazingshop.personal.userservice.security.jwt.EcKeys;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Открытые ключи подписи для локальной проверки токенов другими сервисами (ai-service).
+ * <p>
+ * Обычный @Controller, а не @RestController, чтобы путь не получил префикс /api/v1.
+ * Ответ кэшируется клиентами по Cache-Control и ETag; при незнакомом kid клиент перечитывает JWKS.
+ */
+@Controller
+public class JwksController {
+
+    private final JwtUtil jwtUtil;
+    private final CacheControl cacheControl;
+
+    @Autowired
+    public JwksController(JwtUtil jwtUtil, @Value("${jwt.jwks.max-age:5m}") Duration maxAge) {
+        this.jwtUtil = jwtUtil;
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic();
+    }
+
+    /**
+     * GET /.well-known/jwks.json
+     */
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> jwks() {
+        List<Map<String, Object>> keys = jwtUtil.publicSigningKeys().entrySet().stream()
+                .map(entry -> EcKeys.toJwk(entry.getKey(), entry.getValue()))
+                .toList();
+
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .eTag(Integer.toHexString(keys.hashCode()))
+                .body(Map.of("keys", keys));
+    }
+}
@@ -2,6 +2,8 @@ package com.amazingshop.personal.userservice.controllers;
 
 import com.amazingshop.personal.userservice.dto.responses.CurrentUserResponse;
 import com.amazingshop.personal.userservice.interfaces.UserService;
+import com.amazingshop.personal.userservice.security.details.AuthenticatedUser;
+import com.amazingshop.personal.userservice.security.web.CurrentUser;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -28,8 +30,8 @@ public class UsersController {
      * БЕЗ чувствительной информации (пароля, refresh token)
      */
     @GetMapping("/me")
-    public ResponseEntity<CurrentUserResponse> getCurrentUser() {
-        CurrentUserResponse response = userService.getCurrentUserResponse();
+    public ResponseEntity<CurrentUserResponse> getCurrentUser(@CurrentUser AuthenticatedUser currentUser) {
+        CurrentUserResponse response = userService.getCurrentUserResponse(currentUser.id());
 
         log.info("User info requested for: {}", response.getUsername());
         return ResponseEntity.ok(response);
@@ -43,8 +45,9 @@ public class UsersController {
      * Username, password, role обновляются через отдельные эндпоинты
      */
     @PutMapping("/me")
-    public ResponseEntity<CurrentUserResponse> updateCurrentUser(@RequestBody Map<String, String> updates) {
-        CurrentUserResponse response = userService.updateCurrentUserResponse(updates);
+    public ResponseEntity<CurrentUserResponse> updateCurrentUser(@CurrentUser AuthenticatedUser currentUser,
+                                                                 @RequestBody Map<String, String> updates) {
+        CurrentUserResponse response = userService.updateCurrentUserResponse(currentUser.id(), updates);
 
         log.info("User info updated for: {}", response.getUsername());
         return ResponseEntity.ok(response);
@@ -0,0 +1,16 @@
+package com.amazingshop.personal.userservice.dto.requests;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class IntrospectionRequest {
+
+    @NotEmpty(message = "At least one token is required")
+    @Size(max = 100, message = "No more than 100 tokens per request")
+    private List<@NotBlank(message = "Token should not be blank") String> tokens;
+}
@@ -0,0 +1,16 @@
+package com.amazingshop.personal.userservice.dto.requests;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class InvalidateSessionsRequest {
+
+    @NotEmpty(message = "At least one user id is required")
+    @Size(max = 1000, message = "No more than 1000 users per request")
+    private List<@NotNull(message = "User id should not be null") Long> userIds;
+}
@@ -1,5 +1,6 @@
 package com.amazingshop.personal.userservice.dto.responses;
 
+import com.amazingshop.personal.userservice.cache.CacheWeighted;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -11,6 +12,11 @@ import java.util.List;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
-public class ChatMessagesListResponse {
+public class ChatMessagesListResponse implements CacheWeighted {
     private List<ChatMessageResponse> messages;
-}
\ No newline at end of file
+
+    @Override
+    public int cacheWeight() {
+        return messages != null ? messages.size() : 1;
+    }
+}
@@ -1,5 +1,6 @@
 package com.amazingshop.personal.userservice.dto.responses;
 
+import com.amazingshop.personal.userservice.cache.CacheWeighted;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -11,7 +12,12 @@ import java.util.List;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
-public class ChatsListResponse {
+public class ChatsListResponse implements CacheWeighted {
 
     private List<ChatResponse> chats;
+
+    @Override
+    public int cacheWeight() {
+        return chats != null ? chats.size() : 1;
+    }
 }
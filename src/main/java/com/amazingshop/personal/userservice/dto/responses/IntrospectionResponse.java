@@ -0,0 +1,20 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Результаты в том же порядке, что и токены в запросе
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class IntrospectionResponse {
+
+    private List<TokenIntrospectionResponse> results;
+}
@@ -0,0 +1,26 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ответ token endpoint для grant_type=client_credentials (RFC 6749, 4.4.3)
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ServiceTokenResponse {
+
+    @JsonProperty("access_token")
+    private String accessToken;
+
+    @JsonProperty("token_type")
+    private String tokenType;
+
+    @JsonProperty("expires_in")
+    private long expiresIn;
+
+    private String scope;
+}
@@ -0,0 +1,29 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Результат проверки одного токена; для неактивного токена остальные поля не заполняются
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TokenIntrospectionResponse {
+
+    private boolean active;
+    private String username;
+    private Long userId;
+    private Role role;
+    private Long expiresAt;  // epoch seconds
+
+    public static TokenIntrospectionResponse inactive() {
+        return new TokenIntrospectionResponse(false, null, null, null, null);
+    }
+}
@@ -0,0 +1,13 @@
+package com.amazingshop.personal.userservice.enums;
+
+/**
+ * Результат условной ротации refresh-сессии
+ */
+public enum RefreshRotationOutcome {
+    /** Этот запрос выиграл UPDATE и выдаёт новую пару */
+    ROTATED,
+    /** Токен только что ротирован параллельным запросом, в пределах grace-окна */
+    CONCURRENT_DUPLICATE,
+    /** Сессии нет, она истекла или токен использован повторно вне grace-окна */
+    REJECTED;
+}
@@ -9,4 +9,6 @@ public interface AdminService {
     List<User> getAllUsers();
     void deleteUser(Long userId);
     User promoteToAdmin(Long userId);
+    int invalidateSessions(List<Long> userIds);
+    long invalidateAllSessions();
 }
@@ -5,6 +5,7 @@ import com.amazingshop.personal.userservice.dto.requests.RefreshTokenRequest;
 import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
 
 public interface AuthenticationService {
-    TokenPairResponse performLogin(AuthenticationDTO authenticationDTO);
-    void logout(RefreshTokenRequest request);
+    TokenPairResponse performLogin(AuthenticationDTO authenticationDTO, String clientIp);
+    void logout(RefreshTokenRequest request, String accessToken);
+    void logoutEverywhere(Long userId);
 }
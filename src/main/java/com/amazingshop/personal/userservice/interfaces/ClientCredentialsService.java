@@ -0,0 +1,7 @@
+package com.amazingshop.personal.userservice.interfaces;
+
+import com.amazingshop.personal.userservice.dto.responses.ServiceTokenResponse;
+
+public interface ClientCredentialsService {
+    ServiceTokenResponse issueToken(String clientId, String clientSecret, String requestedScope);
+}
@@ -7,6 +7,7 @@ import com.amazingshop.personal.userservice.models.Chat;
 import com.amazingshop.personal.userservice.models.ChatMessage;
 import com.amazingshop.personal.userservice.models.User;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 import java.util.List;
 
@@ -14,6 +15,8 @@ import java.util.List;
 public interface EntityMapper {
 
     // User mapping
+    // Эпоха токенов меняется только сервером: DTO не может её ни сбросить, ни передать
+    @Mapping(target = "tokenEpoch", ignore = true)
     User toUser(UserDTO userDTO);
     UserDTO toUserDTO(User user);
 
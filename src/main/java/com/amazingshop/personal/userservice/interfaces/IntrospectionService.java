@@ -0,0 +1,9 @@
+package com.amazingshop.personal.userservice.interfaces;
+
+import com.amazingshop.personal.userservice.dto.responses.IntrospectionResponse;
+
+import java.util.List;
+
+public interface IntrospectionService {
+    IntrospectionResponse introspect(List<String> tokens);
+}
@@ -0,0 +1,11 @@
+package com.amazingshop.personal.userservice.interfaces;
+
+import com.amazingshop.personal.userservice.enums.RefreshRotationOutcome;
+
+public interface RefreshSessionService {
+    void openSession(Long userId, String refreshToken);
+    RefreshRotationOutcome rotate(Long userId, String currentRefreshToken, String newRefreshToken);
+    boolean isJustRotated(String refreshToken);
+    boolean revoke(String refreshToken);
+    int purgeExpired();
+}
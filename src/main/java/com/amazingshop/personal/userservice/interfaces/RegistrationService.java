@@ -5,5 +5,5 @@ import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
 import com.amazingshop.personal.userservice.models.User;
 
 public interface RegistrationService {
-    TokenPairResponse register(UserDTO userDTO);
+    TokenPairResponse register(UserDTO userDTO, String clientIp);
 }
@@ -0,0 +1,9 @@
+package com.amazingshop.personal.userservice.interfaces;
+
+import java.util.Collection;
+
+public interface SessionInvalidationService {
+    void invalidateUser(Long userId);
+    int invalidateUsers(Collection<Long> userIds);
+    long invalidateAll();
+}
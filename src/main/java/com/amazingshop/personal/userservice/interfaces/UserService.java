@@ -1,20 +1,28 @@
 package com.amazingshop.personal.userservice.interfaces;
 
 import com.amazingshop.personal.userservice.dto.responses.CurrentUserResponse;
+import com.amazingshop.personal.userservice.enums.Role;
 import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.models.UserIdentity;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 public interface UserService {
+    Optional<UserIdentity> findIdentityByUsername(String username);
+    Map<Long, UserIdentity> findIdentitiesByIds(Collection<Long> ids);
+    Map<String, UserIdentity> findIdentitiesByUsernames(Collection<String> usernames);
     Optional<User> findByUsername(String username);
     Optional<User> findByEmail(String email);
     User findUserByIdOrThrow(Long id);
     List<User> findAll();
     User save(User user);
     void deleteById(Long id);
-    Long getCurrentUserId();
-    CurrentUserResponse getCurrentUserResponse();
-    CurrentUserResponse updateCurrentUserResponse(Map<String, String> updates);
+    void updatePasswordHash(Long userId, String username, String encodedPassword);
+    void updateRole(Long userId, String username, Role role);
+    Map<Long, Long> incrementTokenEpochs(Collection<Long> userIds);
+    CurrentUserResponse getCurrentUserResponse(Long userId);
+    CurrentUserResponse updateCurrentUserResponse(Long userId, Map<String, String> updates);
 }
@@ -0,0 +1,29 @@
+package com.amazingshop.personal.userservice.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Глобальная эпоха токенов — одна строка. Её увеличение отзывает токены всех пользователей разом
+ */
+@Data
+@Entity
+@Table(name = "Global_Token_Epoch")
+@NoArgsConstructor
+@AllArgsConstructor
+public class GlobalTokenEpoch {
+
+    public static final short SINGLETON_ID = 1;
+
+    @Id
+    @Column(name = "id")
+    private Short id;
+
+    @Column(name = "epoch", nullable = false)
+    private long epoch;
+}
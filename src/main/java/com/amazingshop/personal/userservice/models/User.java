@@ -47,11 +47,9 @@ public class User {
     @Column(name = "profile_picture_url")
     private String profilePictureUrl;
 
-    @Column(name = "refresh_token", length = 500)
-    private String refreshToken;
-
-    @Column(name = "refresh_token_expiry")
-    private LocalDateTime refreshTokenExpiry;
+    // Эпоха токенов: увеличение отзывает все access и refresh token пользователя
+    @Column(name = "token_epoch", nullable = false)
+    private long tokenEpoch;
 
     // Автоматически устанавливаем createdAt и роль по умолчанию
     @PrePersist
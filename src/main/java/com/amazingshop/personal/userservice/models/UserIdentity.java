@@ -0,0 +1,14 @@
+package com.amazingshop.personal.userservice.models;
+
+import com.amazingshop.personal.userservice.enums.Role;
+
+/**
+ * Неизменяемая проекция User для кэша: только то, что нужно для проверки токенов и выдачи новых.
+ * Хеш пароля, email и профиль сюда не попадают — они читаются из БД там, где нужны.
+ */
+public record UserIdentity(Long id, String username, Role role, long tokenEpoch) {
+
+    public static UserIdentity of(User user) {
+        return new UserIdentity(user.getId(), user.getUsername(), user.getRole(), user.getTokenEpoch());
+    }
+}
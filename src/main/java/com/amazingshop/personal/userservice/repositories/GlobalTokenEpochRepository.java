@@ -0,0 +1,16 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.models.GlobalTokenEpoch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface GlobalTokenEpochRepository extends JpaRepository<GlobalTokenEpoch, Short> {
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE GlobalTokenEpoch e SET e.epoch = e.epoch + 1 WHERE e.id = :id")
+    int increment(@Param("id") Short id);
+}
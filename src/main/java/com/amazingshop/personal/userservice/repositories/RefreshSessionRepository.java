@@ -0,0 +1,70 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.models.RefreshSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface RefreshSessionRepository extends JpaRepository<RefreshSession, Long> {
+
+    Optional<RefreshSession> findByTokenHash(String tokenHash);
+
+    /**
+     * Compare-and-swap по уникальному индексу: заменяет хэш, только если сессия
+     * с текущим хэшем ещё жива. 0 — токен уже использован, отозван или истёк.
+     * Прежний хэш и время ротации остаются для распознавания параллельных дублей.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            UPDATE RefreshSession s
+               SET s.tokenHash = :newHash, s.expiresAt = :newExpiresAt,
+                   s.previousTokenHash = :currentHash, s.rotatedAt = :now
+             WHERE s.tokenHash = :currentHash
+               AND s.userId = :userId
+               AND s.expiresAt > :now
+            """)
+    int rotate(@Param("userId") Long userId,
+               @Param("currentHash") String currentHash,
+               @Param("newHash") String newHash,
+               @Param("newExpiresAt") LocalDateTime newExpiresAt,
+               @Param("now") LocalDateTime now);
+
+    boolean existsByPreviousTokenHashAndRotatedAtAfter(String previousTokenHash, LocalDateTime rotatedAfter);
+
+    /**
+     * Повторное использование уже ротированного токена вне grace-окна — отзываем всю сессию
+     */
+    @Modifying
+    @Query("DELETE FROM RefreshSession s WHERE s.previousTokenHash = :previousTokenHash")
+    int deleteByPreviousTokenHash(@Param("previousTokenHash") String previousTokenHash);
+
+    /**
+     * До db/contract/V7: refresh token, который прежняя версия сервиса записала в Users.
+     * Условный UPDATE забирает его ровно один раз. После V7 колонок нет — вызывать только
+     * при jwt.refresh-sessions.legacy-fallback=true.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE Users SET refresh_token = NULL, refresh_token_expiry = NULL
+             WHERE id = :userId
+               AND refresh_token = :token
+               AND refresh_token_expiry > :now
+            """, nativeQuery = true)
+    int claimLegacyToken(@Param("userId") Long userId,
+                         @Param("token") String token,
+                         @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM RefreshSession s WHERE s.tokenHash = :tokenHash")
+    int deleteByTokenHash(@Param("tokenHash") String tokenHash);
+
+    @Modifying
+    @Query("DELETE FROM RefreshSession s WHERE s.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -1,13 +1,23 @@
 package com.amazingshop.personal.userservice.repositories;
 
+import com.amazingshop.personal.userservice.enums.Role;
 import com.amazingshop.personal.userservice.models.User;
+import org.hibernate.jpa.HibernateHints;
+import jakarta.persistence.QueryHint;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Size;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UsersRepository extends JpaRepository<User, Long> {
@@ -16,4 +26,41 @@ public interface UsersRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(@NotEmpty(message = "Email should be not empty") @Email(
                                                message = "Email should be valid") String email);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update User u set u.password = :password where u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update User u set u.role = :role where u.id = :id")
+    int updateRole(@Param("id") Long id, @Param("role") Role role);
+
+    /**
+     * Один UPDATE на весь список: все токены этих пользователей перестают совпадать по эпохе
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update User u set u.tokenEpoch = u.tokenEpoch + 1 where u.id in :ids")
+    int incrementTokenEpochs(@Param("ids") Collection<Long> ids);
+
+    List<TokenEpochView> findTokenEpochsByIdIn(Collection<Long> ids);
+
+    List<User> findAllByUsernameIn(Collection<String> usernames);
+
+    /**
+     * Все username и email для фильтра существования; читать внутри транзакции и закрывать поток
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select u.username as username, u.email as email from User u")
+    Stream<UserKeysView> streamAllKeys();
+
+    interface UserKeysView {
+        String getUsername();
+        String getEmail();
+    }
+
+    interface TokenEpochView {
+        Long getId();
+        String getUsername();
+        long getTokenEpoch();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.amazingshop.personal.userservice.security.clients;
+
+import java.util.Set;
+
+/**
+ * Зарегистрированный внутренний сервис: хранится только SHA-256 секрета
+ */
+public record ServiceClient(String clientId, byte[] secretSha256, Set<String> scopes) {
+}
@@ -0,0 +1,85 @@
+package com.amazingshop.personal.userservice.security.clients;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Небольшой реестр внутренних сервисов из конфигурации, целиком в памяти.
+ * <p>
+ * Формат auth.service-clients: "clientId:sha256(secret):scope scope,clientId:...".
+ * Секреты сервисов длинные и случайные, поэтому SHA-256 достаточно и проверка стоит микросекунды.
+ * Клиент, убранный из конфигурации, теряет доступ и по уже выданным токенам.
+ */
+@Slf4j
+@Component
+public class ServiceClientRegistry {
+
+    public static final String SCOPE_AUTHORITY_PREFIX = "SCOPE_";
+
+    private final Map<String, ServiceClient> clients;
+
+    public ServiceClientRegistry(@Value("${auth.service-clients:}") String clientsConfig) {
+        Map<String, ServiceClient> parsed = new LinkedHashMap<>();
+        for (String entry : clientsConfig.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":", 3);
+            if (parts.length < 3) {
+                throw new IllegalStateException("Invalid auth.service-clients entry for client: " + parts[0]);
+            }
+            Set<String> scopes = Arrays.stream(parts[2].trim().split("\\s+"))
+                    .filter(scope -> !scope.isBlank())
+                    .collect(Collectors.toUnmodifiableSet());
+            parsed.put(parts[0], new ServiceClient(parts[0], HexFormat.of().parseHex(parts[1].trim()), scopes));
+        }
+        this.clients = Map.copyOf(parsed);
+        log.info("Service client registry initialized with clients: {}", clients.keySet());
+    }
+
+    /**
+     * Клиент, если секрет совпал (сравнение за постоянное время)
+     */
+    public Optional<ServiceClient> authenticate(String clientId, String secret) {
+        if (clientId == null || secret == null) {
+            return Optional.empty();
+        }
+        ServiceClient client = clients.get(clientId);
+        byte[] presented = sha256(secret);
+        byte[] expected = client != null ? client.secretSha256() : new byte[presented.length];
+        boolean matches = MessageDigest.isEqual(expected, presented);
+        return client != null && matches ? Optional.of(client) : Optional.empty();
+    }
+
+    /**
+     * Актуальные scopes клиента; пусто, если клиент больше не зарегистрирован
+     */
+    public Set<String> currentScopes(String clientId) {
+        ServiceClient client = clientId != null ? clients.get(clientId) : null;
+        return client != null ? client.scopes() : Set.of();
+    }
+
+    public boolean isRegistered(String clientId) {
+        return clientId != null && clients.containsKey(clientId);
+    }
+
+    static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
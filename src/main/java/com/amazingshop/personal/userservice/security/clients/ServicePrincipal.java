@@ -0,0 +1,15 @@
+package com.amazingshop.personal.userservice.security.clients;
+
+import java.security.Principal;
+import java.util.Set;
+
+/**
+ * Principal запроса с сервисным токеном: идентичность клиента и выданные ему scopes
+ */
+public record ServicePrincipal(String clientId, Set<String> scopes) implements Principal {
+
+    @Override
+    public String getName() {
+        return clientId;
+    }
+}
@@ -0,0 +1,13 @@
+package com.amazingshop.personal.userservice.security.details;
+
+import com.amazingshop.personal.userservice.enums.Role;
+
+/**
+ * Идентичность текущего пользователя, уже известная из principal — без похода в БД/кэш
+ */
+public record AuthenticatedUser(
+        Long id,
+        String username,
+        Role role
+) {
+}
@@ -1,5 +1,6 @@
 package com.amazingshop.personal.userservice.security.details;
 
+import com.amazingshop.personal.userservice.enums.Role;
 import com.amazingshop.personal.userservice.models.User;
 import lombok.Getter;
 import org.springframework.security.core.GrantedAuthority;
@@ -18,6 +19,17 @@ public class UserDetailsImpl implements UserDetails {
         this.user = user;
     }
 
+    /**
+     * Облегчённый principal из claims проверенного access token — без пароля и без похода в БД/кэш
+     */
+    public static UserDetailsImpl fromClaims(Long userId, String username, Role role) {
+        User user = new User();
+        user.setId(userId);
+        user.setUsername(username);
+        user.setRole(role);
+        return new UserDetailsImpl(user);
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return Collections.singleton(new SimpleGrantedAuthority("ROLE_" + user.getRole().toString()));
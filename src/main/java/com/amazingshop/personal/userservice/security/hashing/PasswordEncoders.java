@@ -0,0 +1,61 @@
+package com.amazingshop.personal.userservice.security.hashing;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.util.ClassUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Сборка DelegatingPasswordEncoder из настроек spring.security.*.
+ * <p>
+ * Новые хеши пишутся с префиксом {encodingId}. Старые хеши без префикса считаются BCrypt,
+ * поэтому уже зарегистрированные пользователи входят как раньше, а при входе перехешируются.
+ */
+public final class PasswordEncoders {
+
+    public static final String BCRYPT = "bcrypt";
+    public static final String PBKDF2 = "pbkdf2";
+    public static final String ARGON2 = "argon2";
+
+    private static final String BOUNCY_CASTLE_ARGON2 = "org.bouncycastle.crypto.generators.Argon2BytesGenerator";
+
+    private PasswordEncoders() {
+    }
+
+    /**
+     * @param bcryptStrength   cost BCrypt (log2 числа раундов)
+     * @param pbkdf2Iterations число итераций PBKDF2-HMAC-SHA256
+     * @param argon2MemoryKib  память Argon2id в КиБ
+     * @param argon2Iterations число проходов Argon2id
+     */
+    public static DelegatingPasswordEncoder delegating(String encodingId, int bcryptStrength, int pbkdf2Iterations,
+                                                       int argon2MemoryKib, int argon2Iterations) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, bcrypt);
+        encoders.put(PBKDF2, new Pbkdf2PasswordEncoder("", 16, pbkdf2Iterations,
+                Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256));
+        if (isArgon2Available()) {
+            encoders.put(ARGON2, new Argon2PasswordEncoder(16, 32, 1, argon2MemoryKib, argon2Iterations));
+        }
+
+        if (!encoders.containsKey(encodingId)) {
+            throw new IllegalStateException("Unsupported password encoding id: " + encodingId
+                    + (ARGON2.equals(encodingId) ? " (BouncyCastle is not on the classpath)" : ""));
+        }
+
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(encodingId, encoders);
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        return delegating;
+    }
+
+    public static boolean isArgon2Available() {
+        return ClassUtils.isPresent(BOUNCY_CASTLE_ARGON2, PasswordEncoders.class.getClassLoader());
+    }
+}
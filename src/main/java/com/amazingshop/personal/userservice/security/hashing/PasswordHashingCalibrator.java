@@ -0,0 +1,82 @@
+package com.amazingshop.personal.userservice.security.hashing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Замер стоимости одной проверки пароля на текущем хосте после старта.
+ * <p>
+ * По медиане считается потолок логинов в секунду для пула хеширования,
+ * чтобы cost и spring.security.bcrypt.executor.threads подбирались осознанно.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "spring.security.password.calibrate-on-startup", havingValue = "true", matchIfMissing = true)
+public class PasswordHashingCalibrator {
+
+    private static final String SAMPLE_PASSWORD = "calibration-Passw0rd!";
+
+    private final PasswordEncoder passwordEncoder;
+    private final String encodingId;
+    private final int threads;
+    private final int samples;
+    private final Duration targetLatency;
+
+    @Autowired
+    public PasswordHashingCalibrator(PasswordEncoder passwordEncoder,
+                                     @Value("${spring.security.password.encoding-id:bcrypt}") String encodingId,
+                                     @Value("${spring.security.bcrypt.executor.threads:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int threads,
+                                     @Value("${spring.security.password.calibration-samples:5}") int samples,
+                                     @Value("${spring.security.password.target-latency:250ms}") Duration targetLatency) {
+        this.passwordEncoder = passwordEncoder;
+        this.encodingId = encodingId;
+        this.threads = threads;
+        this.samples = samples;
+        this.targetLatency = targetLatency;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void calibrate() {
+        try {
+            Duration median = measure();
+            double perSecond = threads * 1000.0 / Math.max(1, median.toMillis());
+            log.info("Password hashing calibration: encoding={}, median verify={} ms over {} samples, "
+                            + "capacity ~{} logins/s on {} hashing threads",
+                    encodingId, median.toMillis(), samples, Math.round(perSecond), threads);
+
+            if (median.compareTo(targetLatency.multipliedBy(2)) > 0) {
+                log.warn("Password hashing takes {} ms, more than twice the target {} ms — consider lowering the cost",
+                        median.toMillis(), targetLatency.toMillis());
+            } else if (median.compareTo(targetLatency.dividedBy(2)) < 0) {
+                log.warn("Password hashing takes {} ms, less than half the target {} ms — consider raising the cost",
+                        median.toMillis(), targetLatency.toMillis());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Password hashing calibration failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Медиана matches (путь логина), первый encode служит прогревом
+     */
+    Duration measure() {
+        String encoded = passwordEncoder.encode(SAMPLE_PASSWORD);
+        long[] nanos = new long[Math.max(1, samples)];
+        for (int i = 0; i < nanos.length; i++) {
+            long start = System.nanoTime();
+            passwordEncoder.matches(SAMPLE_PASSWORD, encoded);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return Duration.ofNanos(nanos[nanos.length / 2]);
+    }
+}
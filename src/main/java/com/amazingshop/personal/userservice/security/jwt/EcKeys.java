@@ -0,0 +1,94 @@
+package com.amazingshop.personal.userservice.security.jwt;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Загрузка ключей P-256 из конфигурации и их представление в виде JWK (RFC 7517/7518)
+ */
+public final class EcKeys {
+
+    private static final String CURVE = "secp256r1";
+    private static final int COORDINATE_LENGTH = 32;
+
+    private EcKeys() {
+    }
+
+    /**
+     * Открытый ключ X.509 (SubjectPublicKeyInfo): PEM или голый Base64
+     */
+    public static ECPublicKey publicKey(String encoded) {
+        try {
+            return (ECPublicKey) KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(decode(encoded)));
+        } catch (GeneralSecurityException | ClassCastException e) {
+            throw new IllegalStateException("Invalid EC public key", e);
+        }
+    }
+
+    /**
+     * Закрытый ключ PKCS#8: PEM или голый Base64
+     */
+    public static ECPrivateKey privateKey(String encoded) {
+        try {
+            return (ECPrivateKey) KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(decode(encoded)));
+        } catch (GeneralSecurityException | ClassCastException e) {
+            throw new IllegalStateException("Invalid EC private key", e);
+        }
+    }
+
+    public static KeyPair generate() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec(CURVE));
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("EC key generation is not available", e);
+        }
+    }
+
+    public static Map<String, Object> toJwk(String keyId, ECPublicKey key) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "EC");
+        jwk.put("crv", "P-256");
+        jwk.put("kid", keyId);
+        jwk.put("use", "sig");
+        jwk.put("alg", "ES256");
+        jwk.put("x", encoder.encodeToString(coordinate(key.getW().getAffineX())));
+        jwk.put("y", encoder.encodeToString(coordinate(key.getW().getAffineY())));
+        return jwk;
+    }
+
+    /**
+     * Координата ровно в 32 байта big-endian, без знакового байта BigInteger
+     */
+    private static byte[] coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length == COORDINATE_LENGTH) {
+            return bytes;
+        }
+        if (bytes.length > COORDINATE_LENGTH) {
+            return Arrays.copyOfRange(bytes, bytes.length - COORDINATE_LENGTH, bytes.length);
+        }
+        byte[] fixed = new byte[COORDINATE_LENGTH];
+        System.arraycopy(bytes, 0, fixed, COORDINATE_LENGTH - bytes.length, bytes.length);
+        return fixed;
+    }
+
+    private static byte[] decode(String encoded) {
+        String base64 = encoded.replaceAll("-----(BEGIN|END)[A-Z ]+-----", "").replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+}
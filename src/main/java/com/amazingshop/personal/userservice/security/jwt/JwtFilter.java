@@ -1,20 +1,33 @@
 package com.amazingshop.personal.userservice.security.jwt;
 
+import com.amazingshop.personal.userservice.security.clients.ServiceClientRegistry;
+import com.amazingshop.personal.userservice.security.clients.ServicePrincipal;
+import com.amazingshop.personal.userservice.security.details.UserDetailsImpl;
+import com.amazingshop.personal.userservice.security.revocation.AccessTokenDenylist;
+import com.amazingshop.personal.userservice.security.revocation.PrincipalRevocationRegistry;
+import com.amazingshop.personal.userservice.security.web.PublicEndpoints;
 import com.amazingshop.personal.userservice.services.UserDetailsServiceImpl;
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Component
 @Slf4j
@@ -22,11 +35,38 @@ public class JwtFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailsServiceImpl userDetailsService;
+    private final PrincipalRevocationRegistry revocationRegistry;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final AccessTokenDenylist denylist;
+    private final JwtAuthenticationEntryPoint authenticationEntryPoint;
+    private final ServiceClientRegistry clientRegistry;
+
+    /**
+     * Собирать principal из claims access token без загрузки пользователя
+     */
+    @Value("${jwt.stateless-principal:true}")
+    private boolean statelessPrincipal = true;
 
     @Autowired
-    public JwtFilter(JwtUtil jwtUtil, UserDetailsServiceImpl userDetailsService) {
+    public JwtFilter(JwtUtil jwtUtil, UserDetailsServiceImpl userDetailsService,
+                     PrincipalRevocationRegistry revocationRegistry, VerifiedTokenCache verifiedTokenCache,
+                     AccessTokenDenylist denylist, JwtAuthenticationEntryPoint authenticationEntryPoint,
+                     ServiceClientRegistry clientRegistry) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.revocationRegistry = revocationRegistry;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.denylist = denylist;
+        this.authenticationEntryPoint = authenticationEntryPoint;
+        this.clientRegistry = clientRegistry;
+    }
+
+    /**
+     * Публичные маршруты не трогают токен вовсе: даже устаревший Bearer-заголовок не проверяется
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return PublicEndpoints.matches(request);
     }
 
     @Override
@@ -49,9 +89,8 @@ public class JwtFilter extends OncePerRequestFilter {
         String jwt = authHeader.substring(7).trim();
 
         if (jwt.isEmpty()) {
-            log.warn("Empty JWT token in Authorization header from IP: {}", request);
-            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid JWT token in Bearer Header");
-            filterChain.doFilter(request, response);
+            log.debug("Empty JWT token in Authorization header from IP: {}", request.getRemoteAddr());
+            reject(request, response, "Empty bearer token");
             return;
         }
 
@@ -62,10 +101,24 @@ public class JwtFilter extends OncePerRequestFilter {
         }
 
         try {
-            String username = jwtUtil.validateTokenAndRetrieveClaim(jwt);
+            // Повторный запрос с тем же токеном не проверяет подпись заново, refresh token сюда не пройдёт
+            ParsedToken token = verifiedTokenCache.get(jwt, jwtUtil::parseBearerToken);
+            String username = token.username();
+
+            // Отзыв проверяется в памяти, уже после кэша: отозванный токен не аутентифицируется
+            if (denylist.isRevoked(token)) {
+                log.debug("Revoked access token presented for user: {}", username);
+                filterChain.doFilter(request, response);
+                return;
+            }
 
-            if (username != null && !username.isBlank()) {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            if (token.isServiceToken()) {
+                if (!authenticateServiceClient(token)) {
+                    reject(request, response, "Unknown service client");
+                    return;
+                }
+            } else if (username != null && !username.isBlank()) {
+                UserDetails userDetails = resolvePrincipal(token);
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(
                                 userDetails, null, userDetails.getAuthorities());
@@ -74,10 +127,56 @@ public class JwtFilter extends OncePerRequestFilter {
                 log.debug("Successfully authenticated user: {} via JWT", username);
             }
 
+        } catch (JWTVerificationException e) {
+            // Все непубличные маршруты требуют аутентификации — отвечаем 401 сразу, без остальной цепочки
+            log.debug("JWT rejected: {}", e.getMessage());
+            reject(request, response, e.getMessage());
+            return;
         } catch (Exception e) {
             log.debug("JWT authentication failed: {}", e.getMessage());
             log.trace("Full stack trace for JWT failure", e);
         }
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Сервисный токен: только claims и реестр клиентов, без UserDetailsService.
+     * Права — пересечение scopes токена с текущими scopes клиента в реестре.
+     */
+    private boolean authenticateServiceClient(ParsedToken token) {
+        if (!clientRegistry.isRegistered(token.clientId())) {
+            log.debug("Service token for unregistered client: {}", token.clientId());
+            return false;
+        }
+        Set<String> currentScopes = clientRegistry.currentScopes(token.clientId());
+        Set<String> scopes = token.scopes().stream()
+                .filter(currentScopes::contains)
+                .collect(Collectors.toUnmodifiableSet());
+        List<SimpleGrantedAuthority> authorities = scopes.stream()
+                .map(scope -> new SimpleGrantedAuthority(ServiceClientRegistry.SCOPE_AUTHORITY_PREFIX + scope))
+                .toList();
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new ServicePrincipal(token.clientId(), scopes), null, authorities));
+        log.debug("Authenticated service client: {} with scopes: {}", token.clientId(), scopes);
+        return true;
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, String reason) throws IOException {
+        SecurityContextHolder.clearContext();
+        response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+        authenticationEntryPoint.commence(request, response, new BadCredentialsException(reason));
+    }
+
+    /**
+     * Principal из claims токена, если они есть и пользователь не менялся после выдачи токена.
+     * Иначе (старый токен без claims, смена роли, удаление) — актуальные данные через UserDetailsService.
+     */
+    private UserDetails resolvePrincipal(ParsedToken token) {
+        if (statelessPrincipal && token.hasIdentityClaims()
+                && !revocationRegistry.isStale(token.userId(), token.issuedAt())) {
+            return UserDetailsImpl.fromClaims(token.userId(), token.username(), token.role());
+        }
+        return userDetailsService.loadPrincipalByUsername(token.username());
+    }
 }
\ No newline at end of file
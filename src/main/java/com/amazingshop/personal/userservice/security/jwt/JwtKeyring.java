@@ -0,0 +1,143 @@
+package com.amazingshop.personal.userservice.security.jwt;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Набор заранее собранных подписывающих алгоритмов и верификаторов, индексированный по kid.
+ * <p>
+ * Algorithm и JWTVerifier из java-jwt неизменяемы и потокобезопасны, поэтому строятся
+ * один раз на ключ, а не на каждый запрос. Состояние хранится в неизменяемом снимке,
+ * который целиком подменяется при добавлении ключа — чтение идёт без блокировок.
+ * <p>
+ * Ротация — через рестарт: новый ключ в jwt.key-id/jwt.secret (или jwt.ec.*),
+ * прежний — в jwt.previous-keys (jwt.ec.previous-public-keys), пока не истекут его токены.
+ * <p>
+ * Ключи бывают HMAC (общий секрет) и ES256 (открытый ключ публикуется в JWKS).
+ * Алгоритм зафиксирован в верификаторе каждого kid, поэтому подменить alg в заголовке нельзя.
+ */
+public class JwtKeyring {
+
+    static final String SUBJECT = "User details";
+    static final String SERVICE_SUBJECT = "Service client";
+    static final String ISSUER = "ShporaAi";
+
+    private volatile Snapshot snapshot;
+
+    public JwtKeyring(String activeKeyId, String activeSecret, Map<String, String> verificationOnlyKeys) {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        verificationOnlyKeys.forEach((kid, secret) -> entries.put(kid, Entry.hmac(secret)));
+        entries.put(activeKeyId, Entry.hmac(activeSecret));
+        this.snapshot = new Snapshot(activeKeyId, activeKeyId, Collections.unmodifiableMap(entries));
+    }
+
+    /**
+     * Активный ключ для подписи новых токенов
+     */
+    public String activeKeyId() {
+        return snapshot.activeKeyId();
+    }
+
+    public Algorithm signer() {
+        Snapshot current = snapshot;
+        return current.entries().get(current.activeKeyId()).algorithm();
+    }
+
+    /**
+     * Верификатор для kid из заголовка токена.
+     * Токены без kid (выпущенные до появления keyring) проверяются исходным ключом из jwt.secret.
+     */
+    public JWTVerifier verifier(String keyId) {
+        Entry entry = entry(keyId);
+        return entry != null ? entry.verifier() : null;
+    }
+
+    /**
+     * Верификатор, который дополнительно требует claim "type" нужного типа
+     */
+    public JWTVerifier verifier(String keyId, TokenType type) {
+        Entry entry = entry(keyId);
+        return entry != null ? entry.typedVerifiers().get(type) : null;
+    }
+
+    private Entry entry(String keyId) {
+        Snapshot current = snapshot;
+        return current.entries().get(keyId != null ? keyId : current.legacyKeyId());
+    }
+
+    /**
+     * Активный ключ ES256: подпись закрытым ключом, открытый публикуется в JWKS.
+     * HMAC-ключи остаются доступными для проверки ещё живых токенов.
+     */
+    public synchronized void activate(String newKeyId, ECPublicKey publicKey, ECPrivateKey privateKey) {
+        put(newKeyId, Entry.ec(publicKey, privateKey), true);
+    }
+
+    /**
+     * Открытый ключ только для проверки (предыдущий ключ ES256 после ротации)
+     */
+    public synchronized void addVerificationKey(String keyId, ECPublicKey publicKey) {
+        put(keyId, Entry.ec(publicKey, null), false);
+    }
+
+    /**
+     * Открытые ключи для JWKS; HMAC-ключи сюда не попадают
+     */
+    public Map<String, ECPublicKey> publicKeys() {
+        Map<String, ECPublicKey> keys = new LinkedHashMap<>();
+        snapshot.entries().forEach((kid, entry) -> {
+            if (entry.publicKey() != null) {
+                keys.put(kid, entry.publicKey());
+            }
+        });
+        return keys;
+    }
+
+    private void put(String keyId, Entry entry, boolean activate) {
+        Snapshot current = snapshot;
+        Map<String, Entry> entries = new LinkedHashMap<>(current.entries());
+        entries.put(keyId, entry);
+        String activeKeyId = activate ? keyId : current.activeKeyId();
+        snapshot = new Snapshot(activeKeyId, current.legacyKeyId(), Collections.unmodifiableMap(entries));
+    }
+
+    private record Snapshot(String activeKeyId, String legacyKeyId, Map<String, Entry> entries) {
+    }
+
+    private record Entry(Algorithm algorithm, ECPublicKey publicKey, JWTVerifier verifier,
+                         Map<TokenType, JWTVerifier> typedVerifiers) {
+
+        static Entry hmac(String secret) {
+            return of(Algorithm.HMAC256(secret), null);
+        }
+
+        static Entry ec(ECPublicKey publicKey, ECPrivateKey privateKey) {
+            return of(Algorithm.ECDSA256(publicKey, privateKey), publicKey);
+        }
+
+        private static Entry of(Algorithm algorithm, ECPublicKey publicKey) {
+            JWTVerifier verifier = JWT.require(algorithm)
+                    .withSubject(SUBJECT)
+                    .withIssuer(ISSUER)
+                    .build();
+
+            Map<TokenType, JWTVerifier> typedVerifiers = new EnumMap<>(TokenType.class);
+            for (TokenType type : TokenType.values()) {
+                typedVerifiers.put(type, JWT.require(algorithm)
+                        .withSubject(type == TokenType.SERVICE ? SERVICE_SUBJECT : SUBJECT)
+                        .withIssuer(ISSUER)
+                        .withClaim("type", type.claimValue())
+                        .build());
+            }
+            return new Entry(algorithm, publicKey, verifier, Collections.unmodifiableMap(typedVerifiers));
+        }
+    }
+}
@@ -1,19 +1,35 @@
 package com.amazingshop.personal.userservice.security.jwt;
 
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.models.UserIdentity;
+import com.amazingshop.personal.userservice.security.revocation.TokenEpochRegistry;
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
 import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.exceptions.SignatureVerificationException;
 import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.security.KeyPair;
+import java.security.interfaces.ECPublicKey;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.util.Base64;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 
 @Slf4j
@@ -21,6 +37,7 @@ import java.util.UUID;
 @Component
 public class JwtUtil {
 
+    @Getter(AccessLevel.NONE)
     @Value("${jwt.secret}")
     private String secret;
 
@@ -30,43 +47,209 @@ public class JwtUtil {
     @Value("${jwt.refresh-token-expiration:1209600000}")
     private long refreshTokenExpiration;
 
+    @Value("${jwt.key-id:k1}")
+    private String keyId = "k1";
+
+    /**
+     * Предыдущие ключи, только для проверки, в формате "kid:secret,kid:secret"
+     */
+    @Value("${jwt.previous-keys:}")
+    private String previousKeys = "";
+
+    /**
+     * Алгоритм подписи новых токенов: HS256 (jwt.secret) или ES256 (ключи jwt.ec.*, открытые — в JWKS)
+     */
+    @Value("${jwt.algorithm:HS256}")
+    private String algorithm = "HS256";
+
+    @Value("${jwt.ec.key-id:ec1}")
+    private String ecKeyId = "ec1";
+
+    @Getter(AccessLevel.NONE)
+    @Value("${jwt.ec.private-key:}")
+    private String ecPrivateKey = "";
+
+    @Value("${jwt.ec.public-key:}")
+    private String ecPublicKey = "";
+
+    /**
+     * Предыдущие открытые ключи ES256, только для проверки, в формате "kid:base64,kid:base64"
+     */
+    @Value("${jwt.ec.previous-public-keys:}")
+    private String ecPreviousPublicKeys = "";
+
+    /**
+     * Только для локального запуска: без jwt.ec.* ключей сгенерировать временную пару со случайным kid
+     */
+    @Value("${jwt.ec.generate-dev-key:false}")
+    private boolean ecGenerateDevKey = false;
+
+    private JwtKeyring keyring;
+
+    @Getter(AccessLevel.NONE)
+    private TokenEpochRegistry tokenEpochRegistry;
+
+    /**
+     * Источник глобальной эпохи для новых токенов; без него (юнит-тесты без контекста) эпоха 0
+     */
+    @Autowired(required = false)
+    public void setTokenEpochRegistry(TokenEpochRegistry tokenEpochRegistry) {
+        this.tokenEpochRegistry = tokenEpochRegistry;
+    }
+
+    private long globalEpoch() {
+        return tokenEpochRegistry != null ? tokenEpochRegistry.globalEpoch() : 0;
+    }
+
+    @PostConstruct
+    void init() {
+        Map<String, String> verificationOnlyKeys = parseKeyList(previousKeys);
+        keyring = new JwtKeyring(keyId, secret, verificationOnlyKeys);
+
+        // HMAC-ключи остаются для проверки токенов, выданных до перехода на ES256
+        if ("ES256".equalsIgnoreCase(algorithm)) {
+            parseKeyList(ecPreviousPublicKeys).forEach((kid, key) -> keyring.addVerificationKey(kid, EcKeys.publicKey(key)));
+            if (ecPrivateKey.isBlank() || ecPublicKey.isBlank()) {
+                generateDevKey();
+            }
+            keyring.activate(ecKeyId, EcKeys.publicKey(ecPublicKey), EcKeys.privateKey(ecPrivateKey));
+        } else if (!"HS256".equalsIgnoreCase(algorithm)) {
+            throw new IllegalStateException("Unsupported jwt.algorithm: " + algorithm + " (supported: HS256, ES256)");
+        }
+        log.info("JWT keyring initialized, algorithm: {}, active kid: {}, verification-only keys: {}",
+                algorithm, keyring.activeKeyId(), verificationOnlyKeys.keySet());
+    }
+
+    /**
+     * Ключ живёт до рестарта и у каждого инстанса свой, поэтому kid случайный: под общим kid
+     * инстансы отклоняли бы токены друг друга, а кэш JWKS у клиентов отдавал бы чужой ключ
+     */
+    private void generateDevKey() {
+        if (!ecGenerateDevKey) {
+            throw new IllegalStateException("jwt.algorithm=ES256 requires jwt.ec.private-key and jwt.ec.public-key "
+                    + "(jwt.ec.generate-dev-key=true generates a temporary key for local runs only)");
+        }
+        KeyPair keyPair = EcKeys.generate();
+        ecKeyId = "dev-" + UUID.randomUUID();
+        ecPublicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+        ecPrivateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+        log.warn("jwt.ec.private-key/public-key are not set, generated a temporary ES256 key pair with kid {}", ecKeyId);
+    }
+
+    private static Map<String, String> parseKeyList(String keys) {
+        Map<String, String> parsed = new LinkedHashMap<>();
+        for (String pair : keys.split(",")) {
+            int separator = pair.indexOf(':');
+            if (separator > 0) {
+                parsed.put(pair.substring(0, separator).trim(), pair.substring(separator + 1).trim());
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Открытые ключи подписи по kid для /.well-known/jwks.json
+     */
+    public Map<String, ECPublicKey> publicSigningKeys() {
+        return keyring.publicKeys();
+    }
 
     /**
      * Генерация Access Token
      */
     public String generateAccessToken(String username){
         log.debug("Generating JWT token for user: {}", username);
+        return accessTokenBuilder(username).sign(keyring.signer());
+    }
+
+    /**
+     * Генерация Access Token с identity claims (uid, role),
+     * чтобы JwtFilter мог собрать principal без обращения к UserDetailsService
+     */
+    public String generateAccessToken(User user) {
+        return generateAccessToken(UserIdentity.of(user));
+    }
+
+    public String generateAccessToken(UserIdentity user) {
+        log.debug("Generating JWT token with identity claims for user: {}", user.username());
+        return accessTokenBuilder(user.username())
+                .withClaim("uid", user.id())
+                .withClaim("role", user.role().name())
+                .withClaim("tep", user.tokenEpoch())
+                .sign(keyring.signer());
+    }
+
+    private JWTCreator.Builder accessTokenBuilder(String username) {
         Date expirationDate = Date.from(ZonedDateTime.now()
                 .plusSeconds(accessTokenExpiration / 1000)
                 .toInstant());
 
         return JWT.create()
-                .withSubject("User details")
+                .withKeyId(keyring.activeKeyId())
+                .withSubject(JwtKeyring.SUBJECT)
                 .withClaim("username", username)
-                .withClaim("type", "access")
+                .withClaim("type", TokenType.ACCESS.claimValue())
+                .withClaim("gep", globalEpoch())
+                .withJWTId(UUID.randomUUID().toString())
                 .withIssuedAt(new Date())
-                .withIssuer("ShporaAi")
-                .withExpiresAt(expirationDate)
-                .sign(Algorithm.HMAC256(secret));
+                .withIssuer(JwtKeyring.ISSUER)
+                .withExpiresAt(expirationDate);
     }
 
     /**
      * Генерация Refresh Token
      */
     public String generateRefreshToken(String username) {
+        return refreshTokenBuilder(username).sign(keyring.signer());
+    }
+
+    /**
+     * Генерация Refresh Token с id пользователя и его эпохой токенов
+     */
+    public String generateRefreshToken(User user) {
+        return generateRefreshToken(UserIdentity.of(user));
+    }
+
+    public String generateRefreshToken(UserIdentity user) {
+        return refreshTokenBuilder(user.username())
+                .withClaim("uid", user.id())
+                .withClaim("tep", user.tokenEpoch())
+                .sign(keyring.signer());
+    }
+
+    private JWTCreator.Builder refreshTokenBuilder(String username) {
         Date expirationDate = Date.from(ZonedDateTime.now()
                 .plusSeconds(refreshTokenExpiration / 1000)
                 .toInstant());
 
         return JWT.create()
-                .withSubject("User details")
+                .withKeyId(keyring.activeKeyId())
+                .withSubject(JwtKeyring.SUBJECT)
                 .withClaim("username", username)
-                .withClaim("type", "refresh")
-                .withClaim("jti", UUID.randomUUID().toString()) // Уникальный ID
+                .withClaim("type", TokenType.REFRESH.claimValue())
+                .withClaim("gep", globalEpoch())
+                .withJWTId(UUID.randomUUID().toString()) // Уникальный ID
                 .withIssuedAt(new Date())
-                .withIssuer("ShporaAi")
-                .withExpiresAt(expirationDate)
-                .sign(Algorithm.HMAC256(secret));
+                .withIssuer(JwtKeyring.ISSUER)
+                .withExpiresAt(expirationDate);
+    }
+
+    /**
+     * Сервисный токен client credentials: без пользователя, права — только scopes
+     */
+    public String generateServiceToken(String clientId, Set<String> scopes, Duration ttl) {
+        Instant now = Instant.now();
+        return JWT.create()
+                .withKeyId(keyring.activeKeyId())
+                .withSubject(JwtKeyring.SERVICE_SUBJECT)
+                .withClaim("client_id", clientId)
+                .withClaim("scope", String.join(" ", new TreeSet<>(scopes)))
+                .withClaim("type", TokenType.SERVICE.claimValue())
+                .withJWTId(UUID.randomUUID().toString())
+                .withIssuedAt(now)
+                .withIssuer(JwtKeyring.ISSUER)
+                .withExpiresAt(now.plus(ttl))
+                .sign(keyring.signer());
     }
 
     /**
@@ -74,12 +257,7 @@ public class JwtUtil {
      */
     public String validateTokenAndRetrieveClaim(String token) {
         try {
-            JWTVerifier verifier = JWT.require(Algorithm.HMAC256(secret))
-                    .withSubject("User details")
-                    .withIssuer("ShporaAi")
-                    .build();
-
-            DecodedJWT jwt = verifier.verify(token);
+            DecodedJWT jwt = verify(token);
             String username = jwt.getClaim("username").asString();
             log.debug("✅ Valid JWT for user: {}", username);
             return username;
@@ -97,11 +275,72 @@ public class JwtUtil {
     }
 
     /**
-     * Проверка типа токена
+     * Проверка access token (включая claim type) и извлечение всех нужных claims за один разбор
      */
-    public String getTokenType(String token) {
-        DecodedJWT jwt = JWT.decode(token);
-        return jwt.getClaim("type").asString();
+    public ParsedToken parseAccessToken(String token) {
+        return parse(token, TokenType.ACCESS);
+    }
+
+    /**
+     * Bearer-токен запроса: пользовательский access token или сервисный токен, по claim type.
+     * Тип всё равно проверяется верификатором, claim из непроверенного заголовка лишь выбирает его.
+     */
+    public ParsedToken parseBearerToken(String token) {
+        DecodedJWT decoded = JWT.decode(token);
+        TokenType type = TokenType.SERVICE.claimValue().equals(decoded.getClaim("type").asString())
+                ? TokenType.SERVICE
+                : TokenType.ACCESS;
+        return parse(decoded, type);
+    }
+
+    /**
+     * Проверка refresh token (включая claim type) и извлечение всех нужных claims за один разбор
+     */
+    public ParsedToken parseRefreshToken(String token) {
+        return parse(token, TokenType.REFRESH);
+    }
+
+    private ParsedToken parse(String token, TokenType expectedType) {
+        return parse(JWT.decode(token), expectedType);
+    }
+
+    private ParsedToken parse(DecodedJWT decoded, TokenType expectedType) {
+        JWTVerifier verifier = keyring.verifier(decoded.getKeyId(), expectedType);
+        DecodedJWT jwt = verify(decoded, verifier);
+
+        String role = jwt.getClaim("role").asString();
+        String scope = jwt.getClaim("scope").asString();
+        Long tokenEpoch = jwt.getClaim("tep").asLong();
+        Long globalEpoch = jwt.getClaim("gep").asLong();
+        ParsedToken parsedToken = new ParsedToken(
+                jwt.getClaim("username").asString(),
+                expectedType,
+                jwt.getId(),
+                jwt.getClaim("uid").asLong(),
+                role != null ? Role.valueOf(role) : null,
+                jwt.getIssuedAtAsInstant(),
+                jwt.getExpiresAtAsInstant(),
+                jwt.getClaim("client_id").asString(),
+                scope != null && !scope.isBlank() ? Set.of(scope.trim().split("\\s+")) : Set.of(),
+                tokenEpoch != null ? tokenEpoch : 0,
+                globalEpoch != null ? globalEpoch : 0);
+        log.debug("✅ Valid {} JWT for user: {}", expectedType.claimValue(), parsedToken.username());
+        return parsedToken;
+    }
+
+    /**
+     * Разбор заголовка один раз и проверка подписи верификатором из keyring по kid
+     */
+    private DecodedJWT verify(String token) {
+        DecodedJWT decoded = JWT.decode(token);
+        return verify(decoded, keyring.verifier(decoded.getKeyId()));
+    }
+
+    private DecodedJWT verify(DecodedJWT decoded, JWTVerifier verifier) {
+        if (verifier == null) {
+            throw new JWTVerificationException("Unknown JWT key id: " + decoded.getKeyId());
+        }
+        return verifier.verify(decoded);
     }
 
     /**
@@ -0,0 +1,44 @@
+package com.amazingshop.personal.userservice.security.jwt;
+
+import com.amazingshop.personal.userservice.enums.Role;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Проверенный за один разбор (подпись, issuer, тип, срок) токен с уже извлечёнными claims.
+ * userId и role есть только у access token, выпущенных с identity claims.
+ * clientId и scopes есть только у сервисных токенов (client credentials).
+ * tokenEpoch и globalEpoch — эпохи на момент выдачи; у токенов без этих claims они равны 0.
+ */
+public record ParsedToken(
+        String username,
+        TokenType type,
+        String jti,
+        Long userId,
+        Role role,
+        Instant issuedAt,
+        Instant expiresAt,
+        String clientId,
+        Set<String> scopes,
+        long tokenEpoch,
+        long globalEpoch
+) {
+    public ParsedToken(String username, TokenType type, String jti, Long userId, Role role,
+                       Instant issuedAt, Instant expiresAt) {
+        this(username, type, jti, userId, role, issuedAt, expiresAt, null, Set.of());
+    }
+
+    public ParsedToken(String username, TokenType type, String jti, Long userId, Role role,
+                       Instant issuedAt, Instant expiresAt, String clientId, Set<String> scopes) {
+        this(username, type, jti, userId, role, issuedAt, expiresAt, clientId, scopes, 0, 0);
+    }
+
+    public boolean isServiceToken() {
+        return type == TokenType.SERVICE;
+    }
+
+    public boolean hasIdentityClaims() {
+        return userId != null && role != null;
+    }
+}
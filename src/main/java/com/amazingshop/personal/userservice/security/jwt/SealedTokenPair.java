@@ -0,0 +1,84 @@
+package com.amazingshop.personal.userservice.security.jwt;
+
+import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Пара токенов в grace-кэше refresh. Access и refresh token зашифрованы AES-256-GCM ключом,
+ * выведенным из старого refresh token; запись лежит под его SHA-256. Прочитать пару из Redis
+ * может только тот, кто предъявил старый токен.
+ */
+public record SealedTokenPair(String username, long accessTokenExpiresIn, long refreshTokenExpiresIn, byte[] sealed) {
+
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final byte[] KEY_LABEL = "refresh-grace".getBytes(StandardCharsets.US_ASCII);
+    private static final char SEPARATOR = '\n';
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    public static SealedTokenPair seal(TokenPairResponse pair, String refreshToken) {
+        byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        byte[] plaintext = (pair.getAccessToken() + SEPARATOR + pair.getRefreshToken()).getBytes(StandardCharsets.UTF_8);
+        try {
+            byte[] ciphertext = cipher(Cipher.ENCRYPT_MODE, refreshToken, iv, pair.getUsername()).doFinal(plaintext);
+            byte[] sealed = ByteBuffer.allocate(IV_LENGTH + ciphertext.length).put(iv).put(ciphertext).array();
+            return new SealedTokenPair(pair.getUsername(), pair.getAccessTokenExpiresIn(),
+                    pair.getRefreshTokenExpiresIn(), sealed);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not seal token pair", e);
+        }
+    }
+
+    /**
+     * Расшифровка токеном, под SHA-256 которого лежала запись; null — токен не тот или запись повреждена
+     */
+    public TokenPairResponse open(String refreshToken) {
+        if (sealed == null || sealed.length <= IV_LENGTH) {
+            return null;
+        }
+        byte[] plaintext;
+        try {
+            plaintext = cipher(Cipher.DECRYPT_MODE, refreshToken, Arrays.copyOf(sealed, IV_LENGTH), username)
+                    .doFinal(sealed, IV_LENGTH, sealed.length - IV_LENGTH);
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+        String tokens = new String(plaintext, StandardCharsets.UTF_8);
+        int separator = tokens.indexOf(SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+        return new TokenPairResponse(tokens.substring(0, separator), accessTokenExpiresIn,
+                tokens.substring(separator + 1), refreshTokenExpiresIn, username);
+    }
+
+    private static Cipher cipher(int mode, String refreshToken, byte[] iv, String username) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(mode, new SecretKeySpec(deriveKey(refreshToken), "AES"), new GCMParameterSpec(TAG_BITS, iv));
+        // username не зашифрован, но привязан к шифртексту
+        if (username != null) {
+            cipher.updateAAD(username.getBytes(StandardCharsets.UTF_8));
+        }
+        return cipher;
+    }
+
+    /**
+     * HMAC-SHA256 с токеном в роли ключа: не совпадает с SHA-256 токена, по которому ищется запись
+     */
+    private static byte[] deriveKey(String refreshToken) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(refreshToken.getBytes(StandardCharsets.US_ASCII), "HmacSHA256"));
+        return mac.doFinal(KEY_LABEL);
+    }
+}
@@ -0,0 +1,29 @@
+package com.amazingshop.personal.userservice.security.jwt;
+
+/**
+ * Тип токена в claim "type", проверяется верификатором, а не отдельным разбором
+ */
+public enum TokenType {
+    ACCESS("access"),
+    REFRESH("refresh"),
+    SERVICE("service");
+
+    private final String claimValue;
+
+    TokenType(String claimValue) {
+        this.claimValue = claimValue;
+    }
+
+    public String claimValue() {
+        return claimValue;
+    }
+
+    public static TokenType fromClaim(String claimValue) {
+        for (TokenType type : values()) {
+            if (type.claimValue.equals(claimValue)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
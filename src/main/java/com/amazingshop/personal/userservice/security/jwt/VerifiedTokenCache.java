@@ -0,0 +1,80 @@
+package com.amazingshop.personal.userservice.security.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Function;
+
+/**
+ * Кэш уже проверенных токенов: SHA-256 токена -> извлечённые claims.
+ * <p>
+ * Повторные запросы с тем же токеном не делают Base64, разбор JSON и проверку HMAC заново.
+ * Запись живёт не дольше exp самого токена, размер ограничен, чтение без блокировок.
+ * Невалидные токены не кэшируются, отзыв проверяется в JwtFilter уже после кэша.
+ */
+@Slf4j
+@Component
+public class VerifiedTokenCache {
+
+    private static final String CACHE_NAME = "jwtVerifiedTokens";
+
+    private final Cache<String, ParsedToken> cache;
+
+    public VerifiedTokenCache(@Value("${jwt.verified-cache.max-size:10000}") long maxSize,
+                              MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Claims из кэша или результат verifier, который кэшируется только при успешной проверке
+     */
+    public ParsedToken get(String token, Function<String, ParsedToken> verifier) {
+        String key = TokenDigests.sha256Hex(token);
+        ParsedToken cached = cache.getIfPresent(key);
+        if (cached != null && cached.expiresAt() != null && cached.expiresAt().isAfter(Instant.now())) {
+            return cached;
+        }
+
+        ParsedToken verified = verifier.apply(token);
+        if (verified.expiresAt() != null) {
+            cache.put(key, verified);
+        }
+        return verified;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static final class UntilTokenExpiry implements Expiry<String, ParsedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, ParsedToken token, long currentTime) {
+            long nanos = Duration.between(Instant.now(), token.expiresAt()).toNanos();
+            return Math.max(nanos, 0);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, ParsedToken token, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, token, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, ParsedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
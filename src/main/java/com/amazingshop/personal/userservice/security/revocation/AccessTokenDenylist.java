@@ -0,0 +1,123 @@
+package com.amazingshop.personal.userservice.security.revocation;
+
+import com.amazingshop.personal.userservice.security.jwt.ParsedToken;
+import com.amazingshop.personal.userservice.util.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отзыв access token до истечения срока: по jti (logout) или всех токенов пользователя,
+ * выданных до момента отзыва (удаление пользователя).
+ * <p>
+ * Всё хранится в памяти инстанса, JwtFilter проверяет за O(1) без сетевых вызовов:
+ * фильтр Блума отсекает почти все неотозванные jti, точное множество подтверждает попадание.
+ * Изменения расходятся по инстансам через Redis pub/sub и сохраняются в {@link RevocationStore}:
+ * инстанс, запущенный после отзыва, загружает их при старте. Записи живут не дольше самих токенов.
+ * Токены с устаревшей эпохой ("выйти везде") тоже считаются отозванными, см. {@link TokenEpochRegistry}.
+ */
+@Slf4j
+@Component
+public class AccessTokenDenylist {
+
+    private final RevocationBroadcaster broadcaster;
+    private final TokenEpochRegistry tokenEpochs;
+    private final long accessTokenExpirationMs;
+    private final int expectedRevocations;
+
+    private final Map<String, Instant> revokedJtis = new ConcurrentHashMap<>();
+    private final Map<Long, Instant> userTokensValidAfter = new ConcurrentHashMap<>();
+    private volatile BloomFilter jtiFilter;
+
+    public AccessTokenDenylist(RevocationBroadcaster broadcaster, TokenEpochRegistry tokenEpochs,
+                               @Value("${jwt.access-token-expiration:1800000}") long accessTokenExpirationMs,
+                               @Value("${jwt.revocation.expected-revocations:100000}") int expectedRevocations) {
+        this.broadcaster = broadcaster;
+        this.tokenEpochs = tokenEpochs;
+        this.accessTokenExpirationMs = accessTokenExpirationMs;
+        this.expectedRevocations = expectedRevocations;
+        this.jtiFilter = newFilter();
+    }
+
+    /**
+     * Отозвать один access token до его exp
+     */
+    public void revokeToken(String jti, Instant expiresAt) {
+        if (jti == null || expiresAt == null || !expiresAt.isAfter(Instant.now())) {
+            return;
+        }
+        RevocationEvent event = new RevocationEvent(RevocationEvent.Kind.TOKEN, jti, expiresAt);
+        apply(event);
+        broadcaster.publish(event);
+    }
+
+    /**
+     * Отозвать все access token пользователя, выданные до текущего момента
+     */
+    public void revokeAllForUser(Long userId) {
+        // iat в токене с точностью до секунды — токены этой же секунды тоже считаются отозванными
+        Instant validAfter = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        RevocationEvent event = new RevocationEvent(RevocationEvent.Kind.USER, String.valueOf(userId), validAfter);
+        apply(event);
+        broadcaster.publish(event);
+        log.info("All access tokens revoked for user id: {}", userId);
+    }
+
+    /**
+     * Применить событие локально — и своё, и пришедшее от другого инстанса
+     */
+    public void apply(RevocationEvent event) {
+        switch (event.kind()) {
+            case TOKEN -> {
+                revokedJtis.put(event.subject(), event.instant());
+                jtiFilter.put(event.subject());
+            }
+            case USER -> userTokensValidAfter.merge(Long.valueOf(event.subject()), event.instant(),
+                    (current, incoming) -> incoming.isAfter(current) ? incoming : current);
+            default -> log.trace("Ignoring revocation event of kind {}", event.kind());
+        }
+    }
+
+    public boolean isRevoked(ParsedToken token) {
+        if (!tokenEpochs.isCurrent(token)) {
+            return true;
+        }
+        if (token.userId() != null && !userTokensValidAfter.isEmpty()) {
+            Instant validAfter = userTokensValidAfter.get(token.userId());
+            if (validAfter != null && (token.issuedAt() == null || !token.issuedAt().isAfter(validAfter))) {
+                return true;
+            }
+        }
+        String jti = token.jti();
+        return jti != null && jtiFilter.mightContain(jti) && revokedJtis.containsKey(jti);
+    }
+
+    /**
+     * Удаляем записи об уже истекших токенах и пересобираем фильтр Блума без них
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval:PT1M}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        boolean removed = revokedJtis.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+        Instant horizon = now.minusMillis(accessTokenExpirationMs);
+        userTokensValidAfter.values().removeIf(validAfter -> validAfter.isBefore(horizon));
+
+        if (removed) {
+            BloomFilter rebuilt = newFilter();
+            revokedJtis.keySet().forEach(rebuilt::put);
+            jtiFilter = rebuilt;
+            // Второй проход подхватывает jti, отозванные во время пересборки и записанные в старый фильтр
+            revokedJtis.keySet().forEach(rebuilt::put);
+        }
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(expectedRevocations, 0.01);
+    }
+}
@@ -0,0 +1,60 @@
+package com.amazingshop.personal.userservice.security.revocation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Пользователи, у которых роль или само существование изменились после выдачи токена.
+ * <p>
+ * Principal из claims access token может устареть не дольше, чем живёт токен.
+ * Для пользователей из этого реестра JwtFilter не доверяет claims токенов,
+ * выпущенных до изменения, и идёт за актуальными данными через UserDetailsService.
+ * Записи старше времени жизни access token больше не нужны и вычищаются.
+ * Изменения расходятся по инстансам тем же каналом, что и отзыв токенов, и так же сохраняются.
+ */
+@Slf4j
+@Component
+public class PrincipalRevocationRegistry {
+
+    private final Map<Long, Instant> changedAt = new ConcurrentHashMap<>();
+    private final long accessTokenExpirationMs;
+    private final RevocationBroadcaster broadcaster;
+
+    public PrincipalRevocationRegistry(@Value("${jwt.access-token-expiration:1800000}") long accessTokenExpirationMs,
+                                       RevocationBroadcaster broadcaster) {
+        this.accessTokenExpirationMs = accessTokenExpirationMs;
+        this.broadcaster = broadcaster;
+    }
+
+    /**
+     * Отметить изменение пользователя (смена роли, удаление)
+     */
+    public void markChanged(Long userId) {
+        Instant now = Instant.now();
+        apply(userId, now);
+        broadcaster.publish(new RevocationEvent(RevocationEvent.Kind.USER_CHANGED, String.valueOf(userId), now));
+        log.debug("Principal claims invalidated for user id: {}", userId);
+    }
+
+    /**
+     * Изменение, пришедшее от другого инстанса (или своё же эхо)
+     */
+    public void apply(Long userId, Instant changed) {
+        changedAt.merge(userId, changed, (current, incoming) -> incoming.isAfter(current) ? incoming : current);
+        Instant horizon = Instant.now().minusMillis(accessTokenExpirationMs);
+        changedAt.values().removeIf(instant -> instant.isBefore(horizon));
+    }
+
+    /**
+     * Claims токена устарели, если пользователь менялся после его выдачи
+     */
+    public boolean isStale(Long userId, Instant issuedAt) {
+        Instant changed = changedAt.get(userId);
+        return changed != null && (issuedAt == null || !issuedAt.isAfter(changed));
+    }
+}
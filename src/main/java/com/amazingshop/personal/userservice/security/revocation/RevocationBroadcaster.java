@@ -0,0 +1,52 @@
+package com.amazingshop.personal.userservice.security.revocation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Рассылка событий отзыва другим инстансам и запись в {@link RevocationStore} для тех, кто
+ * запустится позже или пропустит сообщение. Только на запись при отзыве —
+ * проверка токена в JwtFilter в Redis не ходит.
+ */
+@Slf4j
+@Component
+public class RevocationBroadcaster {
+
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+    private final RevocationStore store;
+    private final boolean enabled;
+    private final String channel;
+
+    public RevocationBroadcaster(ObjectProvider<StringRedisTemplate> redisTemplate, RevocationStore store,
+                                 @Value("${jwt.revocation.pubsub.enabled:true}") boolean enabled,
+                                 @Value("${jwt.revocation.pubsub.channel:user-service:token-revocation}") String channel) {
+        this.redisTemplate = redisTemplate;
+        this.store = store;
+        this.enabled = enabled;
+        this.channel = channel;
+    }
+
+    public String channel() {
+        return channel;
+    }
+
+    public void publish(RevocationEvent event) {
+        store.save(event);
+        if (!enabled) {
+            return;
+        }
+        StringRedisTemplate template = redisTemplate.getIfAvailable();
+        if (template == null) {
+            return;
+        }
+        try {
+            template.convertAndSend(channel, event.toMessage());
+        } catch (Exception e) {
+            // Локально отзыв уже применён, остальные инстансы узнают о нём не позже истечения токена
+            log.warn("Failed to broadcast revocation {} for {}: {}", event.kind(), event.subject(), e.getMessage());
+        }
+    }
+}
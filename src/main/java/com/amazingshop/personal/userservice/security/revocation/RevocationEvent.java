@@ -0,0 +1,35 @@
+package com.amazingshop.personal.userservice.security.revocation;
+
+import java.time.Instant;
+
+/**
+ * Изменение состояния отзыва, которое рассылается остальным инстансам через Redis pub/sub.
+ * Формат сообщения компактный и не зависит от Jackson: "KIND|subject|epochMillis".
+ */
+public record RevocationEvent(Kind kind, String subject, Instant instant) {
+
+    public enum Kind {
+        /** Отозван один access token по jti, instant — его exp */
+        TOKEN,
+        /** Отозваны все токены пользователя, выданные до instant */
+        USER,
+        /** Роль пользователя изменилась в instant, claims старых токенов устарели */
+        USER_CHANGED,
+        /** Эпоха токенов пользователя выросла, subject — "userId:epoch" */
+        USER_EPOCH,
+        /** Глобальная эпоха токенов выросла, subject — новая эпоха */
+        GLOBAL_EPOCH
+    }
+
+    public String toMessage() {
+        return kind.name() + "|" + subject + "|" + instant.toEpochMilli();
+    }
+
+    public static RevocationEvent fromMessage(String message) {
+        String[] parts = message.split("\\|", 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed revocation message: " + message);
+        }
+        return new RevocationEvent(Kind.valueOf(parts[0]), parts[1], Instant.ofEpochMilli(Long.parseLong(parts[2])));
+    }
+}
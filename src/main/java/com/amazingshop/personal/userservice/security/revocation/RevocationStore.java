@@ -0,0 +1,89 @@
+package com.amazingshop.personal.userservice.security.revocation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * События отзыва в Redis, чтобы их пережил рестарт инстанса и потеря сообщения pub/sub.
+ * <p>
+ * Одна sorted set: элемент — сообщение события в формате pub/sub, score — время записи.
+ * Событие нужно не дольше жизни access token (exp отозванного jti не позже), поэтому более
+ * старые записи удаляются при чтении, а сам ключ истекает, если отзывов больше не было.
+ * Глобальная эпоха сюда не пишется — она хранится в БД.
+ */
+@Slf4j
+@Component
+public class RevocationStore {
+
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+    private final boolean enabled;
+    private final String key;
+    private final long accessTokenExpirationMs;
+
+    public RevocationStore(ObjectProvider<StringRedisTemplate> redisTemplate,
+                           @Value("${jwt.revocation.store.enabled:true}") boolean enabled,
+                           @Value("${jwt.revocation.store.key:user-service:token-revocations}") String key,
+                           @Value("${jwt.access-token-expiration:1800000}") long accessTokenExpirationMs) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.key = key;
+        this.accessTokenExpirationMs = accessTokenExpirationMs;
+    }
+
+    public void save(RevocationEvent event) {
+        StringRedisTemplate template = template();
+        if (template == null || event.kind() == RevocationEvent.Kind.GLOBAL_EPOCH) {
+            return;
+        }
+        try {
+            template.opsForZSet().add(key, event.toMessage(), System.currentTimeMillis());
+            template.expire(key, Duration.ofMillis(accessTokenExpirationMs));
+        } catch (Exception e) {
+            // Локально отзыв уже применён, остальные инстансы узнают о нём через pub/sub
+            log.warn("Failed to store revocation {} for {}: {}", event.kind(), event.subject(), e.getMessage());
+        }
+    }
+
+    /**
+     * События, записанные не раньше sinceMillis и ещё нужные для проверки access token
+     */
+    public List<RevocationEvent> loadSince(long sinceMillis) {
+        StringRedisTemplate template = template();
+        if (template == null) {
+            return List.of();
+        }
+        long horizon = System.currentTimeMillis() - accessTokenExpirationMs;
+        try {
+            template.opsForZSet().removeRangeByScore(key, 0, horizon);
+            Set<String> messages = template.opsForZSet().rangeByScore(key, Math.max(sinceMillis, horizon),
+                    Double.POSITIVE_INFINITY);
+            if (messages == null || messages.isEmpty()) {
+                return List.of();
+            }
+            List<RevocationEvent> events = new ArrayList<>(messages.size());
+            for (String message : messages) {
+                try {
+                    events.add(RevocationEvent.fromMessage(message));
+                } catch (RuntimeException e) {
+                    log.warn("Skipping malformed stored revocation: {}", e.getMessage());
+                }
+            }
+            return events;
+        } catch (Exception e) {
+            log.warn("Failed to load stored revocations: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private StringRedisTemplate template() {
+        return enabled ? redisTemplate.getIfAvailable() : null;
+    }
+}
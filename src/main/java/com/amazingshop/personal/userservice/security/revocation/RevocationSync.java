@@ -0,0 +1,71 @@
+package com.amazingshop.personal.userservice.security.revocation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Доставка событий отзыва в реестры инстанса: из pub/sub сразу, из {@link RevocationStore} —
+ * целиком при старте и догоняющим чтением по расписанию. Новый инстанс отклоняет токены,
+ * отозванные до его запуска, а потерянное сообщение pub/sub применяется не позже интервала.
+ * JwtFilter по-прежнему проверяет токен только в памяти.
+ */
+@Slf4j
+@Component
+public class RevocationSync {
+
+    // Запас на расхождение часов инстансов: события применяются повторно, это безвредно
+    private static final long CLOCK_SKEW_MS = Duration.ofSeconds(30).toMillis();
+
+    private final RevocationStore store;
+    private final AccessTokenDenylist denylist;
+    private final PrincipalRevocationRegistry principalRegistry;
+    private final TokenEpochRegistry tokenEpochRegistry;
+
+    private volatile long loadedFrom;
+
+    public RevocationSync(RevocationStore store, AccessTokenDenylist denylist,
+                          PrincipalRevocationRegistry principalRegistry, TokenEpochRegistry tokenEpochRegistry) {
+        this.store = store;
+        this.denylist = denylist;
+        this.principalRegistry = principalRegistry;
+        this.tokenEpochRegistry = tokenEpochRegistry;
+    }
+
+    /**
+     * Применить событие без повторной рассылки и записи
+     */
+    public void apply(RevocationEvent event) {
+        switch (event.kind()) {
+            case USER_CHANGED -> principalRegistry.apply(Long.valueOf(event.subject()), event.instant());
+            case USER_EPOCH, GLOBAL_EPOCH -> tokenEpochRegistry.apply(event);
+            default -> denylist.apply(event);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        int loaded = loadSince(0);
+        log.info("Stored token revocations loaded: {}", loaded);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.store.reload-interval:PT30S}",
+            initialDelayString = "${jwt.revocation.store.reload-interval:PT30S}")
+    public void reload() {
+        int loaded = loadSince(loadedFrom - CLOCK_SKEW_MS);
+        log.debug("Stored token revocations re-read: {}", loaded);
+    }
+
+    private int loadSince(long sinceMillis) {
+        long started = System.currentTimeMillis();
+        List<RevocationEvent> events = store.loadSince(sinceMillis);
+        events.forEach(this::apply);
+        loadedFrom = started;
+        return events.size();
+    }
+}
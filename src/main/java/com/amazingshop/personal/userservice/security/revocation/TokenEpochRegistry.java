@@ -0,0 +1,122 @@
+package com.amazingshop.personal.userservice.security.revocation;
+
+import com.amazingshop.personal.userservice.security.jwt.ParsedToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Эпохи токенов: пользовательская (users.token_epoch) и глобальная (одна строка в БД).
+ * <p>
+ * Эпохи вшиваются в access и refresh token при выдаче. Токен с эпохой меньше текущей отозван —
+ * "выйти везде" для пользователя, списка пользователей или всех сразу стоит O(1) на пользователя
+ * и не требует обхода сессий ни в БД, ни в Redis.
+ * <p>
+ * Проверка идёт по значениям в памяти; новые эпохи расходятся по инстансам через Redis pub/sub,
+ * пользовательские ещё и хранятся в {@link RevocationStore}, глобальная перечитывается из БД.
+ * Пользовательская эпоха нужна в памяти только пока живут выданные до неё access token —
+ * refresh token дополнительно сверяется с эпохой из строки пользователя.
+ */
+@Slf4j
+@Component
+public class TokenEpochRegistry {
+
+    private final Map<Long, KnownEpoch> userEpochs = new ConcurrentHashMap<>();
+    private final AtomicLong globalEpoch = new AtomicLong();
+    private final RevocationBroadcaster broadcaster;
+    private final long accessTokenExpirationMs;
+
+    public TokenEpochRegistry(RevocationBroadcaster broadcaster,
+                              @Value("${jwt.access-token-expiration:1800000}") long accessTokenExpirationMs) {
+        this.broadcaster = broadcaster;
+        this.accessTokenExpirationMs = accessTokenExpirationMs;
+    }
+
+    public long globalEpoch() {
+        return globalEpoch.get();
+    }
+
+    /**
+     * Новая эпоха пользователя уже записана в БД: применить локально и разослать остальным инстансам
+     */
+    public void advanceUserEpoch(Long userId, long epoch) {
+        RevocationEvent event = new RevocationEvent(RevocationEvent.Kind.USER_EPOCH, userId + ":" + epoch, Instant.now());
+        apply(event);
+        broadcaster.publish(event);
+    }
+
+    /**
+     * Новая глобальная эпоха уже записана в БД: применить локально и разослать остальным инстансам
+     */
+    public void advanceGlobalEpoch(long epoch) {
+        RevocationEvent event = new RevocationEvent(RevocationEvent.Kind.GLOBAL_EPOCH, String.valueOf(epoch), Instant.now());
+        apply(event);
+        broadcaster.publish(event);
+    }
+
+    /**
+     * Глобальная эпоха из БД при старте, без рассылки
+     */
+    public void loadGlobalEpoch(long epoch) {
+        globalEpoch.accumulateAndGet(epoch, Math::max);
+    }
+
+    /**
+     * Применить событие локально — и своё, и пришедшее от другого инстанса. Эпохи только растут.
+     */
+    public void apply(RevocationEvent event) {
+        switch (event.kind()) {
+            case USER_EPOCH -> {
+                int separator = event.subject().indexOf(':');
+                Long userId = Long.valueOf(event.subject().substring(0, separator));
+                long epoch = Long.parseLong(event.subject().substring(separator + 1));
+                userEpochs.merge(userId, new KnownEpoch(epoch, event.instant()),
+                        (current, incoming) -> incoming.epoch() > current.epoch() ? incoming : current);
+            }
+            case GLOBAL_EPOCH -> globalEpoch.accumulateAndGet(Long.parseLong(event.subject()), Math::max);
+            default -> log.trace("Ignoring revocation event of kind {}", event.kind());
+        }
+    }
+
+    /**
+     * Эпохи токена не меньше известных этому инстансу. Сервисные токены — не сессии, эпохи их не касаются
+     */
+    public boolean isCurrent(ParsedToken token) {
+        if (token.isServiceToken()) {
+            return true;
+        }
+        if (token.globalEpoch() < globalEpoch.get()) {
+            return false;
+        }
+        if (token.userId() == null || userEpochs.isEmpty()) {
+            return true;
+        }
+        KnownEpoch known = userEpochs.get(token.userId());
+        return known == null || token.tokenEpoch() >= known.epoch();
+    }
+
+    /**
+     * То же с эпохой из строки пользователя — для refresh token, который живёт дольше записей в памяти
+     */
+    public boolean isCurrent(ParsedToken token, long persistedUserEpoch) {
+        return token.tokenEpoch() >= persistedUserEpoch && isCurrent(token);
+    }
+
+    /**
+     * Access token, выданные до смены эпохи, к этому времени уже истекли
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval:PT1M}")
+    public void purgeExpired() {
+        Instant horizon = Instant.now().minusMillis(accessTokenExpirationMs);
+        userEpochs.values().removeIf(known -> known.changedAt().isBefore(horizon));
+    }
+
+    private record KnownEpoch(long epoch, Instant changedAt) {
+    }
+}
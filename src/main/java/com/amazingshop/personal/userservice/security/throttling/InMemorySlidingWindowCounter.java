@@ -0,0 +1,106 @@
+package com.amazingshop.personal.userservice.security.throttling;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Счётчики в памяти инстанса: Caffeine с ограничением числа ключей (поток запросов с новых IP
+ * и username не раздувает память между чистками), а состояние ключа обновляется CAS над
+ * неизменяемым снимком — без synchronized на горячем пути. Вытесняются редкие ключи.
+ */
+@Slf4j
+public class InMemorySlidingWindowCounter implements SlidingWindowCounter {
+
+    public static final long DEFAULT_MAX_KEYS = 100_000;
+
+    private final Cache<String, AtomicReference<Window>> windows;
+    private final Clock clock;
+
+    public InMemorySlidingWindowCounter(Clock clock) {
+        this(clock, DEFAULT_MAX_KEYS);
+    }
+
+    public InMemorySlidingWindowCounter(Clock clock, long maxKeys) {
+        this.clock = clock;
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .build();
+    }
+
+    @Override
+    public long increment(String key, Duration window) {
+        long windowMillis = window.toMillis();
+        long now = clock.millis();
+        AtomicReference<Window> state = windows.get(key, k -> new AtomicReference<>(Window.EMPTY));
+
+        Window updated;
+        while (true) {
+            Window current = state.get();
+            Window rolled = current.rollTo(now, windowMillis);
+            updated = new Window(rolled.start(), rolled.windowMillis(), rolled.current() + 1, rolled.previous());
+            if (state.compareAndSet(current, updated)) {
+                break;
+            }
+        }
+        return updated.estimate(now);
+    }
+
+    @Override
+    public long estimate(String key, Duration window) {
+        AtomicReference<Window> state = windows.getIfPresent(key);
+        if (state == null) {
+            return 0;
+        }
+        long now = clock.millis();
+        return state.get().rollTo(now, window.toMillis()).estimate(now);
+    }
+
+    /**
+     * Убрать ключи, по которым событий не было дольше двух окон
+     */
+    public int purgeIdle() {
+        long now = clock.millis();
+        int removed = 0;
+        for (var entry : windows.asMap().entrySet()) {
+            if (entry.getValue().get().isIdle(now) && windows.asMap().remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.debug("Purged {} idle throttling counters", removed);
+        }
+        return removed;
+    }
+
+    long size() {
+        windows.cleanUp();
+        return windows.estimatedSize();
+    }
+
+    private record Window(long start, long windowMillis, long current, long previous) {
+
+        static final Window EMPTY = new Window(0, 0, 0, 0);
+
+        Window rollTo(long now, long windowMillis) {
+            long currentStart = now - Math.floorMod(now, windowMillis);
+            if (this.windowMillis == windowMillis && start == currentStart) {
+                return this;
+            }
+            long carried = this.windowMillis == windowMillis && start == currentStart - windowMillis ? current : 0;
+            return new Window(currentStart, windowMillis, 0, carried);
+        }
+
+        long estimate(long now) {
+            return SlidingWindowCounter.weighted(previous, current, windowMillis, now - start);
+        }
+
+        boolean isIdle(long now) {
+            return now - start >= 2 * windowMillis;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.amazingshop.personal.userservice.security.throttling;
+
+import com.amazingshop.personal.userservice.util.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Лимиты на вход и регистрацию, проверяются до AuthenticationManager и хеширования пароля.
+ * <p>
+ * По IP считаются все попытки (перебор многих логинов с одного адреса),
+ * по username — только неудачные (подбор пароля к одному аккаунту с разных адресов),
+ * поэтому успешные входы владельца аккаунта лимит не расходуют.
+ */
+@Slf4j
+@Component
+public class LoginThrottle {
+
+    private static final String LOGIN_IP = "login-ip:";
+    private static final String LOGIN_FAILURES = "login-user:";
+    private static final String SIGNUP_IP = "signup-ip:";
+
+    private final SlidingWindowCounter counter;
+    private final int ipLimit;
+    private final Duration ipWindow;
+    private final int usernameLimit;
+    private final Duration usernameWindow;
+    private final int signupLimit;
+    private final Duration signupWindow;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public LoginThrottle(SlidingWindowCounter counter,
+                         @Value("${auth.throttling.ip.limit:30}") int ipLimit,
+                         @Value("${auth.throttling.ip.window:1m}") Duration ipWindow,
+                         @Value("${auth.throttling.username.limit:10}") int usernameLimit,
+                         @Value("${auth.throttling.username.window:15m}") Duration usernameWindow,
+                         @Value("${auth.throttling.signup.limit:5}") int signupLimit,
+                         @Value("${auth.throttling.signup.window:1h}") Duration signupWindow,
+                         MeterRegistry meterRegistry) {
+        this.counter = counter;
+        this.ipLimit = ipLimit;
+        this.ipWindow = ipWindow;
+        this.usernameLimit = usernameLimit;
+        this.usernameWindow = usernameWindow;
+        this.signupLimit = signupLimit;
+        this.signupWindow = signupWindow;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void checkLogin(String username, String clientIp) {
+        if (counter.estimate(LOGIN_FAILURES + username, usernameWindow) >= usernameLimit) {
+            throw rejected("username", "Too many failed login attempts for user " + username, usernameWindow);
+        }
+        if (clientIp != null && counter.increment(LOGIN_IP + clientIp, ipWindow) > ipLimit) {
+            throw rejected("ip", "Too many login attempts from " + clientIp, ipWindow);
+        }
+    }
+
+    public void recordLoginFailure(String username) {
+        counter.increment(LOGIN_FAILURES + username, usernameWindow);
+    }
+
+    public void checkSignup(String clientIp) {
+        if (clientIp != null && counter.increment(SIGNUP_IP + clientIp, signupWindow) > signupLimit) {
+            throw rejected("signup", "Too many registrations from " + clientIp, signupWindow);
+        }
+    }
+
+    private TooManyRequestsException rejected(String scope, String message, Duration retryAfter) {
+        Counter.builder("auth.throttling.rejected")
+                .tag("scope", scope)
+                .register(meterRegistry)
+                .increment();
+        log.warn(message);
+        return new TooManyRequestsException(message, retryAfter);
+    }
+}
@@ -0,0 +1,87 @@
+package com.amazingshop.personal.userservice.security.throttling;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Общие для кластера счётчики в Redis: по ключу на фиксированное окно, INCR и чтение
+ * предыдущего окна одним Lua-скриптом. Если Redis недоступен, лимит считается локально,
+ * чтобы сбой Redis не открывал и не закрывал вход полностью.
+ */
+@Slf4j
+public class RedisSlidingWindowCounter implements SlidingWindowCounter {
+
+    private static final RedisScript<List> SCRIPT = new DefaultRedisScript<>("""
+            local delta = tonumber(ARGV[1])
+            local current
+            if delta > 0 then
+              current = redis.call('INCRBY', KEYS[1], delta)
+              if current == delta then
+                redis.call('PEXPIRE', KEYS[1], ARGV[2])
+              end
+            else
+              current = tonumber(redis.call('GET', KEYS[1]) or '0')
+            end
+            local previous = tonumber(redis.call('GET', KEYS[2]) or '0')
+            return {current, previous}
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String keyPrefix;
+    private final Clock clock;
+    private final SlidingWindowCounter fallback;
+
+    public RedisSlidingWindowCounter(StringRedisTemplate redisTemplate, String keyPrefix, Clock clock,
+                                     SlidingWindowCounter fallback) {
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = keyPrefix;
+        this.clock = clock;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public long increment(String key, Duration window) {
+        try {
+            return execute(key, window, 1);
+        } catch (RuntimeException e) {
+            log.warn("Redis throttling unavailable, counting locally: {}", e.getMessage());
+            return fallback.increment(key, window);
+        }
+    }
+
+    @Override
+    public long estimate(String key, Duration window) {
+        try {
+            return execute(key, window, 0);
+        } catch (RuntimeException e) {
+            log.warn("Redis throttling unavailable, counting locally: {}", e.getMessage());
+            return fallback.estimate(key, window);
+        }
+    }
+
+    private long execute(String key, Duration window, long delta) {
+        long windowMillis = window.toMillis();
+        long now = clock.millis();
+        long index = now / windowMillis;
+
+        List<?> result = redisTemplate.execute(SCRIPT,
+                List.of(windowKey(key, index), windowKey(key, index - 1)),
+                String.valueOf(delta), String.valueOf(2 * windowMillis));
+        if (result == null || result.size() < 2) {
+            throw new IllegalStateException("Unexpected throttling script result: " + result);
+        }
+        long current = ((Number) result.get(0)).longValue();
+        long previous = ((Number) result.get(1)).longValue();
+        return SlidingWindowCounter.weighted(previous, current, windowMillis, now - index * windowMillis);
+    }
+
+    private String windowKey(String key, long index) {
+        return keyPrefix + key + ":" + index;
+    }
+}
@@ -0,0 +1,27 @@
+package com.amazingshop.personal.userservice.security.throttling;
+
+import java.time.Duration;
+
+/**
+ * Счётчик событий в скользящем окне.
+ * <p>
+ * Окно приближается двумя соседними фиксированными окнами: предыдущее учитывается
+ * с весом оставшейся доли, текущее — целиком. Памяти на ключ O(1), точность достаточна для лимитов.
+ */
+public interface SlidingWindowCounter {
+
+    /**
+     * Учесть событие и вернуть оценку числа событий в окне вместе с ним
+     */
+    long increment(String key, Duration window);
+
+    /**
+     * Оценка числа событий в окне без учёта нового
+     */
+    long estimate(String key, Duration window);
+
+    static long weighted(long previous, long current, long windowMillis, long elapsedInWindow) {
+        double previousWeight = (double) (windowMillis - elapsedInWindow) / windowMillis;
+        return (long) Math.floor(previous * previousWeight) + current;
+    }
+}
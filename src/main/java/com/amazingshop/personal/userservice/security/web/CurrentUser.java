@@ -0,0 +1,15 @@
+package com.amazingshop.personal.userservice.security.web;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Аргумент метода контроллера с текущим пользователем (AuthenticatedUser),
+ * собирается из principal, который уже положил в контекст JwtFilter
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUser {
+}
@@ -0,0 +1,51 @@
+package com.amazingshop.personal.userservice.security.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Публичные маршруты: permitAll в SecurityConfig и полный пропуск JwtFilter.
+ * Один список на оба места, чтобы они не расходились. Маршруты перечислены явно:
+ * внутренние эндпоинты под /auth (introspect) требуют сервисного токена со scope.
+ */
+public final class PublicEndpoints {
+
+    public static final String[] PATTERNS = {
+            "/api/v1/auth/signup",
+            "/api/v1/auth/login",
+            "/api/v1/auth/refresh",
+            "/api/v1/auth/logout",
+            "/api/v1/auth/token",
+            "/actuator/health",
+            "/actuator/health/**",
+            "/.well-known/jwks.json"
+    };
+
+    private static final List<PathPattern> PARSED = Arrays.stream(PATTERNS)
+            .map(PathPatternParser.defaultInstance::parse)
+            .toList();
+
+    private PublicEndpoints() {
+    }
+
+    public static boolean matches(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        String path = contextPath != null && !contextPath.isEmpty() && uri.startsWith(contextPath)
+                ? uri.substring(contextPath.length())
+                : uri;
+
+        PathContainer container = PathContainer.parsePath(path);
+        for (PathPattern pattern : PARSED) {
+            if (pattern.matches(container)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
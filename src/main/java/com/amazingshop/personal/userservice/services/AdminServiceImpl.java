@@ -2,8 +2,11 @@ package com.amazingshop.personal.userservice.services;
 
 import com.amazingshop.personal.userservice.enums.Role;
 import com.amazingshop.personal.userservice.interfaces.AdminService;
+import com.amazingshop.personal.userservice.interfaces.SessionInvalidationService;
 import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.security.revocation.AccessTokenDenylist;
+import com.amazingshop.personal.userservice.security.revocation.PrincipalRevocationRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
@@ -15,9 +18,16 @@ import java.util.List;
 public class AdminServiceImpl implements AdminService {
 
     private final UserService userService;
+    private final PrincipalRevocationRegistry revocationRegistry;
+    private final AccessTokenDenylist denylist;
+    private final SessionInvalidationService sessionInvalidationService;
 
-    public AdminServiceImpl(UserService userService) {
+    public AdminServiceImpl(UserService userService, PrincipalRevocationRegistry revocationRegistry,
+                            AccessTokenDenylist denylist, SessionInvalidationService sessionInvalidationService) {
         this.userService = userService;
+        this.revocationRegistry = revocationRegistry;
+        this.denylist = denylist;
+        this.sessionInvalidationService = sessionInvalidationService;
     }
 
     @Override
@@ -38,6 +48,9 @@ public class AdminServiceImpl implements AdminService {
     public void deleteUser(Long userId) {
         log.info("Admin requested to delete user with id: {}", userId);
         userService.deleteById(userId);
+        revocationRegistry.markChanged(userId);
+        // Уже выданные access token удалённого пользователя перестают работать сразу
+        denylist.revokeAllForUser(userId);
     }
 
     @Override
@@ -45,7 +58,23 @@ public class AdminServiceImpl implements AdminService {
     public User promoteToAdmin(Long userId) {
         log.info("Admin requested to promote user {} to admin", userId);
         User user = userService.findUserByIdOrThrow(userId);
-        user.setRole(Role.ADMIN);
-        return userService.save(user);
+        // Экземпляр из кэша общий, поэтому роль меняется в БД, а результат читается заново
+        userService.updateRole(userId, user.getUsername(), Role.ADMIN);
+        revocationRegistry.markChanged(userId);
+        return userService.findUserByIdOrThrow(userId);
+    }
+
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public int invalidateSessions(List<Long> userIds) {
+        log.info("Admin requested to invalidate sessions of {} users", userIds.size());
+        return sessionInvalidationService.invalidateUsers(userIds);
+    }
+
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public long invalidateAllSessions() {
+        log.warn("Admin requested to invalidate sessions of all users");
+        return sessionInvalidationService.invalidateAll();
     }
 }
\ No newline at end of file
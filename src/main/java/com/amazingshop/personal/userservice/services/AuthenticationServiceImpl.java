@@ -4,18 +4,23 @@ import com.amazingshop.personal.userservice.dto.requests.AuthenticationDTO;
 import com.amazingshop.personal.userservice.dto.requests.RefreshTokenRequest;
 import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
 import com.amazingshop.personal.userservice.interfaces.AuthenticationService;
+import com.amazingshop.personal.userservice.interfaces.RefreshSessionService;
+import com.amazingshop.personal.userservice.interfaces.SessionInvalidationService;
 import com.amazingshop.personal.userservice.interfaces.UserService;
-import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.models.UserIdentity;
 import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.security.jwt.ParsedToken;
+import com.amazingshop.personal.userservice.security.revocation.AccessTokenDenylist;
+import com.amazingshop.personal.userservice.security.throttling.LoginThrottle;
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-
 @Slf4j
 @Service
 public class AuthenticationServiceImpl implements AuthenticationService {
@@ -23,30 +28,47 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
     private final UserService userService;
+    private final RefreshSessionService refreshSessionService;
+    private final AccessTokenDenylist denylist;
+    private final LoginThrottle loginThrottle;
+    private final SessionInvalidationService sessionInvalidationService;
 
     @Autowired
-    public AuthenticationServiceImpl(AuthenticationManager authenticationManager, JwtUtil jwtUtil, UserService userService) {
+    public AuthenticationServiceImpl(AuthenticationManager authenticationManager, JwtUtil jwtUtil,
+                                     UserService userService, RefreshSessionService refreshSessionService,
+                                     AccessTokenDenylist denylist, LoginThrottle loginThrottle,
+                                     SessionInvalidationService sessionInvalidationService) {
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
         this.userService = userService;
+        this.refreshSessionService = refreshSessionService;
+        this.denylist = denylist;
+        this.loginThrottle = loginThrottle;
+        this.sessionInvalidationService = sessionInvalidationService;
     }
 
     @Override
-    public TokenPairResponse performLogin(AuthenticationDTO authenticationDTO) {
-        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
-                authenticationDTO.getUsername(),
-                authenticationDTO.getPassword()));
+    public TokenPairResponse performLogin(AuthenticationDTO authenticationDTO, String clientIp) {
+        // Лимит проверяется до поиска пользователя и сравнения хеша
+        loginThrottle.checkLogin(authenticationDTO.getUsername(), clientIp);
+        try {
+            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
+                    authenticationDTO.getUsername(),
+                    authenticationDTO.getPassword()));
+        } catch (BadCredentialsException e) {
+            loginThrottle.recordLoginFailure(authenticationDTO.getUsername());
+            throw e;
+        }
 
-        User user = userService.findByUsername(authenticationDTO.getUsername())
+        // Пароль уже проверен authenticationManager, для токенов достаточно кэшируемой проекции
+        UserIdentity user = userService.findIdentityByUsername(authenticationDTO.getUsername())
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
-        String accessToken = jwtUtil.generateAccessToken(authenticationDTO.getUsername());
-        String refreshToken = jwtUtil.generateRefreshToken(authenticationDTO.getUsername());
+        String accessToken = jwtUtil.generateAccessToken(user);
+        String refreshToken = jwtUtil.generateRefreshToken(user);
 
-        user.setRefreshToken(refreshToken);
-        user.setRefreshTokenExpiry(LocalDateTime.now()
-                .plusSeconds(jwtUtil.getRefreshTokenExpiration()));
-        userService.save(user);
+        // Новая сессия на каждый вход — другие устройства остаются залогиненными
+        refreshSessionService.openSession(user.id(), refreshToken);
 
         return new TokenPairResponse(
                 accessToken,
@@ -58,17 +80,41 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     }
 
     @Override
-    public void logout(RefreshTokenRequest request) {
-        String username = jwtUtil.validateTokenAndRetrieveClaim(request.getRefreshToken());
+    public void logout(RefreshTokenRequest request, String accessToken) {
+        String username = jwtUtil.parseRefreshToken(request.getRefreshToken()).username();
 
-        User user = userService.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        if (accessToken != null) {
+            revokeAccessToken(accessToken, username);
+        }
+
+        // Удаляем только сессию этого устройства, строку Users не трогаем
+        if (refreshSessionService.revoke(request.getRefreshToken())) {
+            log.info("User logged out successfully: {}", username);
+        } else {
+            log.info("Logout for user {} with already inactive refresh token", username);
+        }
+    }
 
-        // Удаляем refresh token из БД
-        user.setRefreshToken(null);
-        user.setRefreshTokenExpiry(null);
-        userService.save(user);
+    /**
+     * Выход на всех устройствах: эпоха токенов пользователя растёт, все его access и refresh token отзываются
+     */
+    @Override
+    public void logoutEverywhere(Long userId) {
+        sessionInvalidationService.invalidateUser(userId);
+        log.info("User id {} logged out on all devices", userId);
+    }
 
-        log.info("User logged out successfully: {}", username);
+    /**
+     * Access token этого же пользователя отзывается до своего exp, на остальных устройствах сессии живут
+     */
+    private void revokeAccessToken(String accessToken, String username) {
+        try {
+            ParsedToken parsed = jwtUtil.parseAccessToken(accessToken);
+            if (username.equals(parsed.username())) {
+                denylist.revokeToken(parsed.jti(), parsed.expiresAt());
+            }
+        } catch (JWTVerificationException e) {
+            log.debug("Access token on logout is already invalid: {}", e.getMessage());
+        }
     }
 }
@@ -1,5 +1,7 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.cache.ChatHistoryCache;
+import com.amazingshop.personal.userservice.cache.UserCacheGenerations;
 import com.amazingshop.personal.userservice.dto.responses.ChatMessagesListResponse;
 import com.amazingshop.personal.userservice.dto.responses.ChatsListResponse;
 import com.amazingshop.personal.userservice.interfaces.ChatService;
@@ -12,15 +14,18 @@ import com.amazingshop.personal.userservice.util.exceptions.ChatNotFoundExceptio
 import com.amazingshop.personal.userservice.util.exceptions.UnauthorizedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * Чаты и сообщения. Ключи кэша включают поколение пользователя из {@link UserCacheGenerations}:
+ * запись сбрасывает кэш только своего пользователя, а не всех сразу.
+ * История сообщений кэшируется в {@link ChatHistoryCache}: новое сообщение дописывается, а не сбрасывает её.
+ */
 @Slf4j
 @Service
 public class ChatServiceImpl implements ChatService {
@@ -28,17 +33,22 @@ public class ChatServiceImpl implements ChatService {
     private final ChatRepository chatRepository;
     private final ChatMessageRepository chatMessageRepository;
     private final EntityMapper entityMapper;
+    private final UserCacheGenerations cacheGenerations;
+    private final ChatHistoryCache chatHistoryCache;
 
     @Autowired
     public ChatServiceImpl(ChatRepository chatRepository, ChatMessageRepository chatMessageRepository,
-                           EntityMapper entityMapper) {
+                           EntityMapper entityMapper, UserCacheGenerations cacheGenerations,
+                           ChatHistoryCache chatHistoryCache) {
         this.chatRepository = chatRepository;
         this.chatMessageRepository = chatMessageRepository;
         this.entityMapper = entityMapper;
+        this.cacheGenerations = cacheGenerations;
+        this.chatHistoryCache = chatHistoryCache;
     }
 
     @Override
-    @Cacheable(value = "userChats", keyGenerator = "userChatsKeyGenerator")
+    @Cacheable(value = "userChats", sync = true, key = "@userCacheGenerations.key(#userId, #title, #subject)")
     public ChatsListResponse getUserChats(Long userId, String title, String subject) {
         if (title != null && !title.trim().isEmpty()) {
             return new ChatsListResponse(entityMapper.toChatResponseList(
@@ -56,49 +66,41 @@ public class ChatServiceImpl implements ChatService {
 
     @Override
     @Transactional
-    @Caching(evict = {
-            @CacheEvict(value = "userChats", allEntries = true),
-            @CacheEvict(value = "recentChats", allEntries = true)
-    })
     public Chat createChat(Long userId, String title, String subject) {
         Chat chat = new Chat();
         chat.setUserId(userId);
         chat.setTitle(title != null ? truncateTitle(title) : "New Chat");
         chat.setSubject(subject);
-        return chatRepository.save(chat);
+        Chat saved = chatRepository.save(chat);
+        cacheGenerations.advance(userId);
+        return saved;
     }
 
     @Override
     @Transactional
-    @Caching(evict = {
-            @CacheEvict(value = "userChats", allEntries = true),
-            @CacheEvict(value = "recentChats", allEntries = true),
-            @CacheEvict(value = "chatMessages", key = "#chatId + ':' + #userId")
-    })
     public void deleteChat(Long chatId, Long userId) {
         Chat chat = findChatByIdOrThrow(chatId);
         validateChatOwnership(chat, userId);
         chatRepository.deleteById(chatId);
+        cacheGenerations.advance(userId);
+        chatHistoryCache.evict(userId, chatId);
     }
 
 
     @Override
-    @Cacheable(value = "chatMessages", key = "#chatId + ':' + #userId")
     public ChatMessagesListResponse getChatMessages(Long chatId, Long userId) {
-        Chat chat = findChatByIdOrThrow(chatId);
-        validateChatOwnership(chat, userId);
-
-        List<ChatMessage> chatMessageList = chatMessageRepository.findByChatIdOrderByCreatedAtAsc(chatId);
-        return new ChatMessagesListResponse(entityMapper.toChatMessageResponseList(chatMessageList));
+        // Права проверяются при загрузке; ключ истории содержит id владельца
+        return new ChatMessagesListResponse(chatHistoryCache.getOrLoad(userId, chatId, () -> {
+            Chat chat = findChatByIdOrThrow(chatId);
+            validateChatOwnership(chat, userId);
+
+            List<ChatMessage> chatMessageList = chatMessageRepository.findByChatIdOrderByCreatedAtAsc(chatId);
+            return entityMapper.toChatMessageResponseList(chatMessageList);
+        }));
     }
 
     @Override
     @Transactional
-    @Caching(evict = {
-            @CacheEvict(value = "userChats", allEntries = true),
-            @CacheEvict(value = "recentChats", allEntries = true),
-            @CacheEvict(value = "chatMessages", key = "#chatId + ':' + #userId")
-    })
     public ChatMessage addMessage(Long chatId, Long userId, String content, String role, String templateUsed) {
         Chat chat = findChatByIdOrThrow(chatId);
         validateChatOwnership(chat, userId);
@@ -125,13 +127,16 @@ public class ChatServiceImpl implements ChatService {
         // Update chat timestamp
         chat.setUpdatedAt(LocalDateTime.now());
         chatRepository.save(chat);
+        cacheGenerations.advance(userId);
 
-        return chatMessageRepository.save(message);
+        ChatMessage saved = chatMessageRepository.save(message);
+        chatHistoryCache.append(userId, chatId, entityMapper.toChatMessageResponse(saved));
+        return saved;
     }
 
     // Получить последние N чатов
     @Override
-    @Cacheable(value = "recentChats", key = "#userId + ':' + #limit")
+    @Cacheable(value = "recentChats", sync = true, key = "@userCacheGenerations.key(#userId, #limit)")
     public ChatsListResponse getRecentChats(Long userId, int limit) {
         List<Chat> allChats = chatRepository.findByUserIdOrderByUpdatedAtDesc(userId);
         List<Chat> limitedChats = allChats.stream()
@@ -142,10 +147,6 @@ public class ChatServiceImpl implements ChatService {
 
     @Override
     @Transactional
-    @Caching(evict = {
-            @CacheEvict(value = "userChats", allEntries = true),
-            @CacheEvict(value = "recentChats", allEntries = true)
-    })
     public Chat updateChatTitle(Long chatId, Long userId, String newTitle) {
         Chat chat = findChatByIdOrThrow(chatId);
         validateChatOwnership(chat, userId);
@@ -153,19 +154,18 @@ public class ChatServiceImpl implements ChatService {
         chat.setTitle(newTitle);
         chat.setUpdatedAt(LocalDateTime.now());
 
-        return chatRepository.save(chat);
+        Chat saved = chatRepository.save(chat);
+        cacheGenerations.advance(userId);
+        return saved;
     }
 
     @Override
     @Transactional
-    @Caching(evict = {
-            @CacheEvict(value = "userChats", allEntries = true),
-            @CacheEvict(value = "recentChats", allEntries = true),
-            @CacheEvict(value = "chatMessages", allEntries = true)
-    })
     public void deleteAllChats(Long userId) {
         List<Chat> userChats = chatRepository.findByUserIdOrderByUpdatedAtDesc(userId);
         chatRepository.deleteAll(userChats);
+        cacheGenerations.advance(userId);
+        userChats.forEach(chat -> chatHistoryCache.evict(userId, chat.getId()));
     }
 
     private Chat findChatByIdOrThrow(Long chatId) {
@@ -0,0 +1,60 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.responses.ServiceTokenResponse;
+import com.amazingshop.personal.userservice.interfaces.ClientCredentialsService;
+import com.amazingshop.personal.userservice.security.clients.ServiceClient;
+import com.amazingshop.personal.userservice.security.clients.ServiceClientRegistry;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.util.exceptions.OAuthErrorException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class ClientCredentialsServiceImpl implements ClientCredentialsService {
+
+    private final ServiceClientRegistry clientRegistry;
+    private final JwtUtil jwtUtil;
+    private final Duration tokenTtl;
+
+    @Autowired
+    public ClientCredentialsServiceImpl(ServiceClientRegistry clientRegistry, JwtUtil jwtUtil,
+                                        @Value("${auth.service-tokens.ttl:1h}") Duration tokenTtl) {
+        this.clientRegistry = clientRegistry;
+        this.jwtUtil = jwtUtil;
+        this.tokenTtl = tokenTtl;
+    }
+
+    /**
+     * Без scope в запросе выдаются все scopes клиента, иначе — запрошенные, если все они ему разрешены
+     */
+    @Override
+    public ServiceTokenResponse issueToken(String clientId, String clientSecret, String requestedScope) {
+        ServiceClient client = clientRegistry.authenticate(clientId, clientSecret)
+                .orElseThrow(() -> {
+                    log.warn("Client credentials rejected for client: {}", clientId);
+                    return OAuthErrorException.invalidClient("Invalid client credentials");
+                });
+
+        Set<String> scopes = requestedScope == null || requestedScope.isBlank()
+                ? client.scopes()
+                : Arrays.stream(requestedScope.trim().split("\\s+")).collect(Collectors.toSet());
+        if (!client.scopes().containsAll(scopes)) {
+            throw new OAuthErrorException(HttpStatus.BAD_REQUEST, OAuthErrorException.INVALID_SCOPE,
+                    "Requested scope is not allowed for client " + clientId);
+        }
+
+        String token = jwtUtil.generateServiceToken(client.clientId(), scopes, tokenTtl);
+        log.info("Issued service token for client: {} with scopes: {}", client.clientId(), scopes);
+        return new ServiceTokenResponse(token, "Bearer", tokenTtl.toSeconds(), String.join(" ", new TreeSet<>(scopes)));
+    }
+}
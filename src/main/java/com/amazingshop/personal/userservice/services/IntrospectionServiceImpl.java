@@ -0,0 +1,111 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.responses.IntrospectionResponse;
+import com.amazingshop.personal.userservice.dto.responses.TokenIntrospectionResponse;
+import com.amazingshop.personal.userservice.interfaces.IntrospectionService;
+import com.amazingshop.personal.userservice.interfaces.UserService;
+import com.amazingshop.personal.userservice.models.UserIdentity;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.security.jwt.ParsedToken;
+import com.amazingshop.personal.userservice.security.jwt.VerifiedTokenCache;
+import com.amazingshop.personal.userservice.security.revocation.AccessTokenDenylist;
+import com.amazingshop.personal.userservice.security.revocation.PrincipalRevocationRegistry;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Пакетная проверка access token для внутренних сервисов.
+ * <p>
+ * Повторы внутри пакета проверяются один раз, подпись — через VerifiedTokenCache,
+ * отзыв — по denylist в памяти. Identity берётся из claims; пользователи загружаются
+ * только для токенов без claims или с устаревшими claims — одним пакетным чтением на вызов.
+ */
+@Slf4j
+@Service
+public class IntrospectionServiceImpl implements IntrospectionService {
+
+    private final JwtUtil jwtUtil;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final AccessTokenDenylist denylist;
+    private final PrincipalRevocationRegistry revocationRegistry;
+    private final UserService userService;
+
+    @Autowired
+    public IntrospectionServiceImpl(JwtUtil jwtUtil, VerifiedTokenCache verifiedTokenCache, AccessTokenDenylist denylist,
+                                    PrincipalRevocationRegistry revocationRegistry, UserService userService) {
+        this.jwtUtil = jwtUtil;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.denylist = denylist;
+        this.revocationRegistry = revocationRegistry;
+        this.userService = userService;
+    }
+
+    @Override
+    public IntrospectionResponse introspect(List<String> tokens) {
+        Map<String, TokenIntrospectionResponse> byToken = new HashMap<>();
+        Map<String, ParsedToken> needUser = new LinkedHashMap<>();
+        for (String token : new LinkedHashSet<>(tokens)) {
+            TokenIntrospectionResponse result = introspectWithoutUser(token, needUser);
+            if (result != null) {
+                byToken.put(token, result);
+            }
+        }
+
+        Map<String, UserIdentity> users = Map.of();
+        if (!needUser.isEmpty()) {
+            Set<String> usernames = new HashSet<>();
+            needUser.values().forEach(parsed -> usernames.add(parsed.username()));
+            usernames.remove(null);
+            users = userService.findIdentitiesByUsernames(usernames);
+        }
+        for (Map.Entry<String, ParsedToken> entry : needUser.entrySet()) {
+            ParsedToken parsed = entry.getValue();
+            UserIdentity user = parsed.username() != null ? users.get(parsed.username()) : null;
+            byToken.put(entry.getKey(), user != null
+                    ? new TokenIntrospectionResponse(true, user.username(), user.id(), user.role(), expiresAt(parsed))
+                    : TokenIntrospectionResponse.inactive());
+        }
+
+        List<TokenIntrospectionResponse> results = tokens.stream().map(byToken::get).toList();
+        log.debug("Introspected {} tokens ({} distinct, {} needed a user lookup)",
+                tokens.size(), byToken.size(), needUser.size());
+        return new IntrospectionResponse(results);
+    }
+
+    /**
+     * Ответ по подписи, denylist и claims; null — нужен актуальный пользователь, токен добавлен в needUser
+     */
+    private TokenIntrospectionResponse introspectWithoutUser(String token, Map<String, ParsedToken> needUser) {
+        ParsedToken parsed;
+        try {
+            parsed = verifiedTokenCache.get(token, jwtUtil::parseAccessToken);
+        } catch (JWTVerificationException e) {
+            return TokenIntrospectionResponse.inactive();
+        }
+
+        if (denylist.isRevoked(parsed)) {
+            return TokenIntrospectionResponse.inactive();
+        }
+
+        if (parsed.hasIdentityClaims() && !revocationRegistry.isStale(parsed.userId(), parsed.issuedAt())) {
+            return new TokenIntrospectionResponse(true, parsed.username(), parsed.userId(), parsed.role(), expiresAt(parsed));
+        }
+
+        needUser.put(token, parsed);
+        return null;
+    }
+
+    private static Long expiresAt(ParsedToken parsed) {
+        return parsed.expiresAt() != null ? parsed.expiresAt().getEpochSecond() : null;
+    }
+}
@@ -0,0 +1,137 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.enums.RefreshRotationOutcome;
+import com.amazingshop.personal.userservice.interfaces.RefreshSessionService;
+import com.amazingshop.personal.userservice.models.RefreshSession;
+import com.amazingshop.personal.userservice.repositories.RefreshSessionRepository;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.security.jwt.TokenDigests;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Refresh-сессии в отдельной узкой таблице: по строке на вход (устройство),
+ * поиск по SHA-256 токена, ротация одним условным UPDATE без загрузки User.
+ * <p>
+ * Пока идёт выкатка, прежняя версия пишет refresh token в Users.refresh_token. Такой токен
+ * при первом refresh забирается оттуда и становится сессией — до включения db/contract.
+ */
+@Slf4j
+@Service
+public class RefreshSessionServiceImpl implements RefreshSessionService {
+
+    private final RefreshSessionRepository refreshSessionRepository;
+    private final JwtUtil jwtUtil;
+    private final Duration graceWindow;
+    private final boolean legacyFallback;
+
+    @Autowired
+    public RefreshSessionServiceImpl(RefreshSessionRepository refreshSessionRepository, JwtUtil jwtUtil,
+                                     @Value("${jwt.refresh-grace-window:10s}") Duration graceWindow,
+                                     @Value("${jwt.refresh-sessions.legacy-fallback:true}") boolean legacyFallback) {
+        this.refreshSessionRepository = refreshSessionRepository;
+        this.jwtUtil = jwtUtil;
+        this.graceWindow = graceWindow;
+        this.legacyFallback = legacyFallback;
+    }
+
+    @Override
+    @Transactional
+    public void openSession(Long userId, String refreshToken) {
+        RefreshSession session = new RefreshSession();
+        session.setUserId(userId);
+        session.setTokenHash(TokenDigests.sha256Hex(refreshToken));
+        session.setExpiresAt(nextExpiry(LocalDateTime.now()));
+        refreshSessionRepository.save(session);
+        log.debug("Refresh session opened for user id: {}", userId);
+    }
+
+    @Override
+    @Transactional
+    public RefreshRotationOutcome rotate(Long userId, String currentRefreshToken, String newRefreshToken) {
+        LocalDateTime now = LocalDateTime.now();
+        String currentHash = TokenDigests.sha256Hex(currentRefreshToken);
+        String newHash = TokenDigests.sha256Hex(newRefreshToken);
+        int updated = refreshSessionRepository.rotate(
+                userId,
+                currentHash,
+                newHash,
+                nextExpiry(now),
+                now);
+        if (updated == 1) {
+            return RefreshRotationOutcome.ROTATED;
+        }
+
+        if (refreshSessionRepository.existsByPreviousTokenHashAndRotatedAtAfter(currentHash, now.minus(graceWindow))) {
+            log.debug("Concurrent refresh with just rotated token for user id: {}", userId);
+            return RefreshRotationOutcome.CONCURRENT_DUPLICATE;
+        }
+
+        // Старый токен пришёл после grace-окна — похоже на кражу, отзываем сессию целиком
+        if (refreshSessionRepository.deleteByPreviousTokenHash(currentHash) > 0) {
+            log.warn("Reuse of rotated refresh token detected, session revoked for user id: {}", userId);
+            return RefreshRotationOutcome.REJECTED;
+        }
+
+        if (legacyFallback && refreshSessionRepository.claimLegacyToken(userId, currentRefreshToken, now) == 1) {
+            openRotatedSession(userId, currentHash, newHash, now);
+            log.info("Legacy refresh token moved to a session for user id: {}", userId);
+            return RefreshRotationOutcome.ROTATED;
+        }
+        log.warn("Refresh session not found or expired for user id: {}", userId);
+        return RefreshRotationOutcome.REJECTED;
+    }
+
+    /**
+     * Сессия, в которой этот токен только что заменён, ещё открыта (не отозвана и не истекла)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public boolean isJustRotated(String refreshToken) {
+        return refreshSessionRepository.existsByPreviousTokenHashAndRotatedAtAfter(
+                TokenDigests.sha256Hex(refreshToken), LocalDateTime.now().minus(graceWindow));
+    }
+
+    @Override
+    @Transactional
+    public boolean revoke(String refreshToken) {
+        return refreshSessionRepository.deleteByTokenHash(TokenDigests.sha256Hex(refreshToken)) > 0;
+    }
+
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${jwt.refresh-sessions.purge-interval:PT1H}",
+            initialDelayString = "${jwt.refresh-sessions.purge-interval:PT1H}")
+    public int purgeExpired() {
+        int purged = refreshSessionRepository.deleteExpired(LocalDateTime.now());
+        if (purged > 0) {
+            log.info("Purged {} expired refresh sessions", purged);
+        }
+        return purged;
+    }
+
+    /**
+     * Сессия сразу в состоянии «только что ротирована»: параллельный дубль с тем же токеном
+     * получит CONCURRENT_DUPLICATE, как при обычной ротации
+     */
+    private void openRotatedSession(Long userId, String previousHash, String newHash, LocalDateTime now) {
+        RefreshSession session = new RefreshSession();
+        session.setUserId(userId);
+        session.setTokenHash(newHash);
+        session.setExpiresAt(nextExpiry(now));
+        session.setPreviousTokenHash(previousHash);
+        session.setRotatedAt(now);
+        refreshSessionRepository.save(session);
+    }
+
+    private LocalDateTime nextExpiry(LocalDateTime now) {
+        return now.plusSeconds(jwtUtil.getRefreshTokenExpiration());
+    }
+}
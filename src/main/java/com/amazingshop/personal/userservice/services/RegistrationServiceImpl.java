@@ -5,10 +5,12 @@ import com.amazingshop.personal.userservice.dto.requests.UserDTO;
 import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
 import com.amazingshop.personal.userservice.enums.Role;
 import com.amazingshop.personal.userservice.interfaces.EntityMapper;
+import com.amazingshop.personal.userservice.interfaces.RefreshSessionService;
 import com.amazingshop.personal.userservice.interfaces.RegistrationService;
 import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.User;
 import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.security.throttling.LoginThrottle;
 import com.amazingshop.personal.userservice.util.validators.UserValidator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,22 +32,28 @@ public class RegistrationServiceImpl implements RegistrationService {
     private final EntityMapper entityMapper;
     private final JwtUtil jwtUtil;
     private final ApplicationEventPublisher applicationEventPublisher;
+    private final RefreshSessionService refreshSessionService;
+    private final LoginThrottle loginThrottle;
 
     @Autowired
     public RegistrationServiceImpl(PasswordEncoder passwordEncoder,
-                                   UserService userService, UserValidator userValidator, EntityMapper entityMapper, JwtUtil jwtUtil, ApplicationEventPublisher applicationEventPublisher) {
+                                   UserService userService, UserValidator userValidator, EntityMapper entityMapper, JwtUtil jwtUtil, ApplicationEventPublisher applicationEventPublisher,
+                                   RefreshSessionService refreshSessionService, LoginThrottle loginThrottle) {
         this.userService = userService;
         this.userValidator = userValidator;
         this.passwordEncoder = passwordEncoder;
         this.entityMapper = entityMapper;
         this.jwtUtil = jwtUtil;
         this.applicationEventPublisher = applicationEventPublisher;
+        this.refreshSessionService = refreshSessionService;
+        this.loginThrottle = loginThrottle;
     }
 
     @Override
     @Transactional
-    public TokenPairResponse register(UserDTO userDTO) {
+    public TokenPairResponse register(UserDTO userDTO, String clientIp) {
         log.info("Registration attempt for username: {}", userDTO.getUsername());
+        loginThrottle.checkSignup(clientIp);
 
         User user = entityMapper.toUser(userDTO);
         User preparedUser = prepareUserForRegistration(user);
@@ -72,13 +80,10 @@ public class RegistrationServiceImpl implements RegistrationService {
     }
 
     private TokenPairResponse generateTokensAndReturnResponse(User user) {
-        String accessToken = jwtUtil.generateAccessToken(user.getUsername());
-        String refreshToken = jwtUtil.generateRefreshToken(user.getUsername());
+        String accessToken = jwtUtil.generateAccessToken(user);
+        String refreshToken = jwtUtil.generateRefreshToken(user);
 
-        user.setRefreshToken(refreshToken);
-        user.setRefreshTokenExpiry(LocalDateTime.now()
-                .plusSeconds(jwtUtil.getRefreshTokenExpiration()));
-        userService.save(user); // Этот вызов тоже в той же транзакции
+        refreshSessionService.openSession(user.getId(), refreshToken); // в той же транзакции, что и сохранение User
 
         return new TokenPairResponse(
                 accessToken,
@@ -0,0 +1,97 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.cache.AfterCommit;
+import com.amazingshop.personal.userservice.interfaces.SessionInvalidationService;
+import com.amazingshop.personal.userservice.interfaces.UserService;
+import com.amazingshop.personal.userservice.models.GlobalTokenEpoch;
+import com.amazingshop.personal.userservice.repositories.GlobalTokenEpochRepository;
+import com.amazingshop.personal.userservice.security.revocation.TokenEpochRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * "Выйти везде" через эпохи токенов: ни сессии, ни ключи Redis не перебираются,
+ * меняется один счётчик на пользователя (или один глобальный)
+ */
+@Slf4j
+@Service
+public class SessionInvalidationServiceImpl implements SessionInvalidationService {
+
+    private final UserService userService;
+    private final GlobalTokenEpochRepository globalTokenEpochRepository;
+    private final TokenEpochRegistry tokenEpochRegistry;
+
+    @Autowired
+    public SessionInvalidationServiceImpl(UserService userService, GlobalTokenEpochRepository globalTokenEpochRepository,
+                                          TokenEpochRegistry tokenEpochRegistry) {
+        this.userService = userService;
+        this.globalTokenEpochRepository = globalTokenEpochRepository;
+        this.tokenEpochRegistry = tokenEpochRegistry;
+    }
+
+    @Override
+    public void invalidateUser(Long userId) {
+        invalidateUsers(List.of(userId));
+    }
+
+    @Override
+    public int invalidateUsers(Collection<Long> userIds) {
+        Map<Long, Long> epochs = userService.incrementTokenEpochs(userIds);
+        epochs.forEach(tokenEpochRegistry::advanceUserEpoch);
+        log.info("Sessions invalidated for {} users", epochs.size());
+        return epochs.size();
+    }
+
+    @Override
+    @Transactional
+    public long invalidateAll() {
+        if (globalTokenEpochRepository.increment(GlobalTokenEpoch.SINGLETON_ID) == 0) {
+            globalTokenEpochRepository.save(new GlobalTokenEpoch(GlobalTokenEpoch.SINGLETON_ID, 1));
+        }
+        long epoch = globalTokenEpochRepository.findById(GlobalTokenEpoch.SINGLETON_ID)
+                .map(GlobalTokenEpoch::getEpoch)
+                .orElseThrow();
+        // Кластер узнаёт эпоху только после коммита: при откате в БД и в памяти останется прежняя
+        AfterCommit.run(() -> {
+            tokenEpochRegistry.advanceGlobalEpoch(epoch);
+            log.warn("All sessions invalidated, global token epoch: {}", epoch);
+        });
+        return epoch;
+    }
+
+    /**
+     * Текущая глобальная эпоха нужна до первого запроса: иначе новые токены получат устаревшую
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadGlobalEpoch() {
+        readGlobalEpoch();
+        log.info("Global token epoch loaded: {}", tokenEpochRegistry.globalEpoch());
+    }
+
+    /**
+     * Повторное чтение из БД: инстанс, пропустивший сообщение pub/sub, догоняет эпоху за интервал
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.global-epoch-refresh:PT30S}",
+            initialDelayString = "${jwt.revocation.global-epoch-refresh:PT30S}")
+    public void refreshGlobalEpoch() {
+        long before = tokenEpochRegistry.globalEpoch();
+        readGlobalEpoch();
+        if (tokenEpochRegistry.globalEpoch() != before) {
+            log.info("Global token epoch caught up from database: {}", tokenEpochRegistry.globalEpoch());
+        }
+    }
+
+    private void readGlobalEpoch() {
+        globalTokenEpochRepository.findById(GlobalTokenEpoch.SINGLETON_ID)
+                .ifPresent(epoch -> tokenEpochRegistry.loadGlobalEpoch(epoch.getEpoch()));
+    }
+}
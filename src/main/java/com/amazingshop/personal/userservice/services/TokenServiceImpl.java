@@ -1,112 +1,161 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.cache.CacheLoadCoordinator;
 import com.amazingshop.personal.userservice.dto.requests.RefreshTokenRequest;
 import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
+import com.amazingshop.personal.userservice.enums.RefreshRotationOutcome;
+import com.amazingshop.personal.userservice.interfaces.RefreshSessionService;
 import com.amazingshop.personal.userservice.interfaces.TokenService;
 import com.amazingshop.personal.userservice.interfaces.UserService;
-import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.models.UserIdentity;
 import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.security.jwt.ParsedToken;
+import com.amazingshop.personal.userservice.security.jwt.SealedTokenPair;
+import com.amazingshop.personal.userservice.security.jwt.TokenDigests;
+import com.amazingshop.personal.userservice.security.revocation.TokenEpochRegistry;
+import com.amazingshop.personal.userservice.util.exceptions.UnauthorizedException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-
-import java.time.LocalDateTime;
 
+/**
+ * Ротация refresh token. Параллельные запросы с одним токеном ротируют сессию один раз:
+ * внутри инстанса и (при включённой аренде) между инстансами — через {@link CacheLoadCoordinator}.
+ * Остальные получают пару победителя из grace-кэша, где она лежит зашифрованной старым токеном,
+ * и только после проверки эпохи пользователя и того, что сессия не отозвана.
+ */
 @Slf4j
 @Service
 public class TokenServiceImpl implements TokenService {
 
     private final JwtUtil jwtUtil;
     private final UserService userService;
+    private final RefreshSessionService refreshSessionService;
+    private final TokenEpochRegistry tokenEpochRegistry;
+    private final Cache refreshGraceCache;
+    private final CacheLoadCoordinator loads;
+
+    private static final String REFRESH_GRACE_CACHE = "refreshGrace";
 
     @Autowired
-    public TokenServiceImpl(JwtUtil jwtUtil, UserService userService) {
+    public TokenServiceImpl(JwtUtil jwtUtil, UserService userService, RefreshSessionService refreshSessionService,
+                            TokenEpochRegistry tokenEpochRegistry, CacheManager cacheManager, CacheLoadCoordinator loads) {
         this.jwtUtil = jwtUtil;
         this.userService = userService;
+        this.refreshSessionService = refreshSessionService;
+        this.tokenEpochRegistry = tokenEpochRegistry;
+        this.refreshGraceCache = cacheManager.getCache(REFRESH_GRACE_CACHE);
+        this.loads = loads;
     }
 
     @Override
-    @Transactional
     public TokenPairResponse refreshToken(RefreshTokenRequest request) {
         String refreshToken = request.getRefreshToken();
 
-        // 1. Валидация токена и извлечение username
-        String username = validateRefreshTokenAndGetUsername(refreshToken);
+        // 1. Проверка подписи, issuer, типа и срока за один разбор
+        ParsedToken parsed = parseRefreshToken(refreshToken);
+        String username = parsed.username();
 
-        // 2. Проверка типа токена
-        validateRefreshTokenType(refreshToken);
+        // 2. Поиск пользователя (только чтение, через кэш)
+        UserIdentity user = findUserByUsername(username);
 
-        // 3. Поиск пользователя
-        User user = findUserByUsername(username);
+        // 3. Эпоха выросла ("выйти везде") — все refresh token, выданные раньше, недействительны,
+        // в том числе пара, уже лежащая в grace-кэше
+        if (!tokenEpochRegistry.isCurrent(parsed, user.tokenEpoch())) {
+            log.warn("Refresh token with outdated epoch for user: {}", username);
+            throw new UnauthorizedException("Refresh token has been revoked");
+        }
 
-        // 4. Проверка соответствия токена в запросе и токена в БД
-        validateRefreshTokenMatch(refreshToken, user);
+        // 4. Одна ротация на токен, остальные получают ту же пару
+        String currentHash = TokenDigests.sha256Hex(refreshToken);
+        Rotation rotation = (Rotation) loads.load(REFRESH_GRACE_CACHE, currentHash,
+                () -> rotatedPair(refreshToken, currentHash),
+                () -> rotate(user, refreshToken, currentHash));
 
-        // 5. Проверка истечения токена в БД
-        validateRefreshTokenExpiry(user);
+        // 5. Пара из grace-кэша выдаётся, только пока сессия не отозвана и не ротирована дальше
+        if (!rotation.rotatedHere() && !refreshSessionService.isJustRotated(refreshToken)) {
+            log.warn("Rotated pair requested for a revoked refresh session of user: {}", username);
+            throw new UnauthorizedException("Refresh token is not active");
+        }
+        return rotation.pair();
+    }
 
-        // 6. Генерация новых токенов
-        String newAccessToken = jwtUtil.generateAccessToken(username);
-        String newRefreshToken = jwtUtil.generateRefreshToken(username);
+    private Rotation rotate(UserIdentity user, String refreshToken, String currentHash) {
+        String username = user.username();
+        // Дубль, пришедший сразу после ротации, получает уже выданную пару
+        Cache.ValueWrapper alreadyRotated = rotatedPair(refreshToken, currentHash);
+        if (alreadyRotated != null) {
+            log.debug("Returning already rotated token pair for user: {}", username);
+            return (Rotation) alreadyRotated.get();
+        }
 
-        // 7. Обновление токена в БД
-        updateRefreshTokenInDB(user, newRefreshToken);
+        // Ротация сессии: условный UPDATE по хэшу старого токена, строка Users не меняется
+        String newRefreshToken = jwtUtil.generateRefreshToken(user);
+        RefreshRotationOutcome outcome = refreshSessionService.rotate(user.id(), refreshToken, newRefreshToken);
+
+        if (outcome == RefreshRotationOutcome.CONCURRENT_DUPLICATE) {
+            // Победитель на другом инстансе кладёт пару в grace-кэш сразу после своего UPDATE
+            Cache.ValueWrapper fromOtherInstance = loads.awaitRemote(REFRESH_GRACE_CACHE,
+                    () -> rotatedPair(refreshToken, currentHash));
+            if (fromOtherInstance == null) {
+                log.warn("Concurrent refresh for user {} lost the race and no rotated pair is available", username);
+                throw new UnauthorizedException("Refresh token is not active");
+            }
+            return (Rotation) fromOtherInstance.get();
+        }
+        if (outcome != RefreshRotationOutcome.ROTATED) {
+            throw new UnauthorizedException("Refresh token is not active");
+        }
 
-        log.info("Tokens refreshed successfully for user: {}", username);
-        return new TokenPairResponse(
-                newAccessToken,
+        // Новый access token
+        TokenPairResponse response = new TokenPairResponse(
+                jwtUtil.generateAccessToken(user),
                 jwtUtil.getAccessTokenExpiration(),
                 newRefreshToken,
                 jwtUtil.getRefreshTokenExpiration(),
                 username
         );
-    }
-
-    private String validateRefreshTokenAndGetUsername(String refreshToken) {
-        try {
-            String username = jwtUtil.validateTokenAndRetrieveClaim(refreshToken);
-            log.debug("Valid refresh token for user: {}", username);
-            return username;
-        } catch (Exception e) { // Уточни тип исключения, например, TokenExpiredException, SignatureVerificationException
-            log.warn("Invalid or expired refresh token: {}", e.getMessage());
-            throw new RuntimeException("Invalid or expired refresh token", e); // Или кастомное исключение
-        }
-    }
+        refreshGraceCache.put(currentHash, SealedTokenPair.seal(response, refreshToken));
 
-    private void validateRefreshTokenType(String refreshToken) {
-        String tokenType = jwtUtil.getTokenType(refreshToken);
-        if (!"refresh".equals(tokenType)) {
-            log.warn("Invalid token type for refresh: {}", tokenType);
-            throw new RuntimeException("Invalid token type for refresh"); // Или кастомное исключение
-        }
+        log.info("Tokens refreshed successfully for user: {}", username);
+        return new Rotation(response, true);
     }
 
-    private User findUserByUsername(String username) {
-        return userService.findByUsername(username) // Используем новое имя метода
-                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username)); // Или UserNotFoundException
+    /**
+     * Пара, уже выданная по этому токену (этим или другим инстансом), или null
+     */
+    private Cache.ValueWrapper rotatedPair(String refreshToken, String currentHash) {
+        Cache.ValueWrapper stored = refreshGraceCache.get(currentHash);
+        TokenPairResponse pair = stored != null && stored.get() instanceof SealedTokenPair sealed
+                ? sealed.open(refreshToken)
+                : null;
+        return pair != null ? new SimpleValueWrapper(new Rotation(pair, false)) : null;
     }
 
-    private void validateRefreshTokenMatch(String refreshTokenFromRequest, User user) {
-        String refreshTokenInDB = user.getRefreshToken();
-        if (!refreshTokenFromRequest.equals(refreshTokenInDB)) {
-            log.warn("Refresh token mismatch for user: {}", user.getUsername());
-            throw new RuntimeException("Refresh token mismatch"); // Или кастомное исключение
+    private ParsedToken parseRefreshToken(String refreshToken) {
+        try {
+            ParsedToken parsed = jwtUtil.parseRefreshToken(refreshToken);
+            log.debug("Valid refresh token for user: {}", parsed.username());
+            return parsed;
+        } catch (JWTVerificationException e) { // подпись, срок, issuer или не тот тип токена
+            log.warn("Invalid or expired refresh token: {}", e.getMessage());
+            throw new UnauthorizedException("Invalid or expired refresh token");
         }
     }
 
-    private void validateRefreshTokenExpiry(User user) {
-        if (user.getRefreshTokenExpiry().isBefore(LocalDateTime.now())) {
-            log.warn("Refresh token expired in DB for user: {}", user.getUsername());
-            throw new RuntimeException("Refresh token expired in DB"); // Или кастомное исключение
-        }
+    private UserIdentity findUserByUsername(String username) {
+        return userService.findIdentityByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username)); // Или UserNotFoundException
     }
 
-    private void updateRefreshTokenInDB(User user, String newRefreshToken) {
-        user.setRefreshToken(newRefreshToken);
-        user.setRefreshTokenExpiry(LocalDateTime.now()
-                .plusSeconds(jwtUtil.getRefreshTokenExpiration()));
-        userService.save(user); // Используем интерфейс
+    /**
+     * @param rotatedHere сессию ротировал этот запрос (или параллельный на этом инстансе), а не пара из grace-кэша
+     */
+    private record Rotation(TokenPairResponse pair, boolean rotatedHere) {
     }
 }
@@ -2,10 +2,12 @@ package com.amazingshop.personal.userservice.services;
 
 import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.models.UserIdentity;
 import com.amazingshop.personal.userservice.security.details.UserDetailsImpl;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -14,7 +16,7 @@ import java.util.Optional;
 
 @Slf4j
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserService userService;
 
@@ -23,6 +25,9 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         this.userService = userService;
     }
 
+    /**
+     * Для входа: полная сущность с хешем пароля, мимо кэша
+     */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         log.debug("Loading user by username: {}", username);
@@ -37,4 +42,29 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         log.debug("User found: {}", username);
         return new UserDetailsImpl(user.get());
     }
-}
\ No newline at end of file
+
+    /**
+     * Для запросов с токеном: principal из кэшируемой проекции, хеш пароля не нужен
+     */
+    public UserDetails loadPrincipalByUsername(String username) throws UsernameNotFoundException {
+        UserIdentity identity = userService.findIdentityByUsername(username)
+                .orElseThrow(() -> {
+                    log.warn("User not found: {}", username);
+                    return new UsernameNotFoundException("User not found: " + username);
+                });
+        return UserDetailsImpl.fromClaims(identity.id(), identity.username(), identity.role());
+    }
+
+    /**
+     * Вызывается DaoAuthenticationProvider после успешного входа, если хеш записан устаревшим алгоритмом или cost
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = ((UserDetailsImpl) userDetails).getUser();
+        userService.updatePasswordHash(user.getId(), user.getUsername(), newPassword);
+        log.info("Re-hashed password with current parameters for user: {}", user.getUsername());
+
+        user.setPassword(newPassword);
+        return new UserDetailsImpl(user);
+    }
+}
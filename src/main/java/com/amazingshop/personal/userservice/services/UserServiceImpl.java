@@ -1,21 +1,21 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.cache.UserExistenceFilter;
+import com.amazingshop.personal.userservice.cache.UserIdentityCache;
 import com.amazingshop.personal.userservice.dto.responses.CurrentUserResponse;
+import com.amazingshop.personal.userservice.enums.Role;
 import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.models.UserIdentity;
 import com.amazingshop.personal.userservice.repositories.UsersRepository;
-import com.amazingshop.personal.userservice.security.details.UserDetailsImpl;
 import com.amazingshop.personal.userservice.util.exceptions.UserNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.context.annotation.Lazy;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -26,29 +26,59 @@ import java.util.Optional;
 public class UserServiceImpl implements UserService {
 
     private final UsersRepository usersRepository;
-    private UserService self;
+    private final UserIdentityCache identityCache;
+    private final UserExistenceFilter existenceFilter;
 
     @Autowired
-    public UserServiceImpl(UsersRepository usersRepository, @Lazy UserService self) {
+    public UserServiceImpl(UsersRepository usersRepository, UserIdentityCache identityCache,
+                           UserExistenceFilter existenceFilter) {
         this.usersRepository = usersRepository;
-        this.self = self;
+        this.identityCache = identityCache;
+        this.existenceFilter = existenceFilter;
     }
 
+    /**
+     * Горячий путь (токены, refresh, introspection): в кэше только неизменяемая проекция без хеша пароля
+     */
+    @Override
+    public Optional<UserIdentity> findIdentityByUsername(String username) {
+        // Несуществующий username (вход с опечаткой, проверка при регистрации) отсекается без БД
+        return existenceFilter.byUsername(username, checked -> identityCache.getByUsername(checked, name -> {
+            log.debug("Searching for user identity by username: {}", name);
+            return usersRepository.findByUsername(name).map(UserIdentity::of);
+        }));
+    }
+
+    @Override
+    public Map<Long, UserIdentity> findIdentitiesByIds(Collection<Long> ids) {
+        return identityCache.getAllById(ids, missing -> usersRepository.findAllById(missing).stream()
+                .map(UserIdentity::of)
+                .toList());
+    }
+
+    @Override
+    public Map<String, UserIdentity> findIdentitiesByUsernames(Collection<String> usernames) {
+        return identityCache.getAllByUsername(usernames, missing -> usersRepository.findAllByUsernameIn(missing).stream()
+                .map(UserIdentity::of)
+                .toList());
+    }
+
+    /**
+     * Полная сущность с хешем пароля — только для входа и изменений, мимо кэша
+     */
     @Override
-    @Cacheable(value = "userByUsername", key = "#username")
     public Optional<User> findByUsername(String username) {
         log.debug("Searching for user by username: {}", username);
-        return usersRepository.findByUsername(username);
+        return existenceFilter.byUsername(username, usersRepository::findByUsername);
     }
 
     @Override
     public Optional<User> findByEmail(String email) {
         log.debug("Searching for user by email: {}", email);
-        return usersRepository.findByEmail(email);
+        return existenceFilter.byEmail(email, usersRepository::findByEmail);
     }
 
     @Override
-    @Cacheable(value = "userById", key = "#id")
     public User findUserByIdOrThrow(Long id) {
         return usersRepository.findById(id)
                 .orElseThrow(() -> new UserNotFoundException("User with id " + id + " not found"));
@@ -61,39 +91,76 @@ public class UserServiceImpl implements UserService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "userByUsername", key = "#user.username")
     public User save(User user) {
         log.debug("Saving user: {}", user.getUsername());
-        return usersRepository.save(user);
+        User saved = usersRepository.save(user);
+        identityCache.evict(saved.getId(), saved.getUsername());
+        existenceFilter.recordExisting(saved.getUsername(), saved.getEmail());
+        return saved;
+    }
+
+    /**
+     * Обновляет только хеш пароля, остальные поля строки не перезаписываются
+     */
+    @Override
+    @Transactional
+    public void updatePasswordHash(Long userId, String username, String encodedPassword) {
+        if (usersRepository.updatePassword(userId, encodedPassword) == 0) {
+            throw new UserNotFoundException("User with id " + userId + " not found");
+        }
+        identityCache.evict(userId, username);
+        log.debug("Password hash upgraded for user: {}", username);
+    }
+
+    /**
+     * Роль меняется UPDATE по id, обе записи кэша сбрасываются вместе
+     */
+    @Override
+    @Transactional
+    public void updateRole(Long userId, String username, Role role) {
+        if (usersRepository.updateRole(userId, role) == 0) {
+            throw new UserNotFoundException("User with id " + userId + " not found");
+        }
+        identityCache.evict(userId, username);
+        log.debug("Role of user {} changed to {}", username, role);
+    }
+
+    /**
+     * Эпохи токенов растут одним UPDATE на весь список, новые значения читаются одним SELECT.
+     * Кэш сбрасывается, чтобы следующие логины и refresh видели новую эпоху.
+     */
+    @Override
+    @Transactional
+    public Map<Long, Long> incrementTokenEpochs(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        usersRepository.incrementTokenEpochs(userIds);
+        Map<Long, Long> epochs = new HashMap<>();
+        for (UsersRepository.TokenEpochView view : usersRepository.findTokenEpochsByIdIn(userIds)) {
+            epochs.put(view.getId(), view.getTokenEpoch());
+            identityCache.evict(view.getId(), view.getUsername());
+        }
+        log.debug("Token epochs incremented for {} users", epochs.size());
+        return epochs;
     }
 
     @Override
     @Transactional
-    @CacheEvict(value = "userById", key = "#id")
     public void deleteById(Long id) {
         log.info("Deleting user with id: {}", id);
         if (!usersRepository.existsById(id)) {
             throw new UserNotFoundException("User with id " + id + " not found");
         }
         usersRepository.deleteById(id);
+        // Индекс по username без проекции по id никуда не ведёт, поэтому хватает id
+        identityCache.evict(id, null);
     }
 
     @Override
-    public Long getCurrentUserId() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        UserDetailsImpl userDetails = (UserDetailsImpl) auth.getPrincipal();
-        return self.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new UserNotFoundException("User not found!"))
-                .getId();
-    }
-
-    @Override
-    public CurrentUserResponse getCurrentUserResponse() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-
-        User user = self.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new UserNotFoundException("Current user not found"));
+    public CurrentUserResponse getCurrentUserResponse(Long userId) {
+        // Профиль (email, аватар) в кэш идентичности не входит — одно чтение по первичному ключу
+        User user = findUserByIdOrThrow(userId);
 
         // Строим безопасный ответ
         return CurrentUserResponse.builder()
@@ -111,11 +178,9 @@ public class UserServiceImpl implements UserService {
 
     @Override
     @Transactional
-    public CurrentUserResponse updateCurrentUserResponse(Map<String, String> updates) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-
-        User currentUser = self.findByUsername(userDetails.getUsername())
+    public CurrentUserResponse updateCurrentUserResponse(Long userId, Map<String, String> updates) {
+        // Для изменения читаем из БД, а не из кэша, чтобы не перезаписать свежие данные устаревшей копией
+        User currentUser = usersRepository.findById(userId)
                 .orElseThrow(() -> new UserNotFoundException("Current user not found"));
 
         // Обновляем только разрешенные поля
@@ -127,7 +192,7 @@ public class UserServiceImpl implements UserService {
             currentUser.setProfilePictureUrl(updates.get("profilePictureUrl"));
         }
 
-        User updatedUser = self.save(currentUser);
+        User updatedUser = save(currentUser);
 
         return CurrentUserResponse.builder()
                 .id(updatedUser.getId())
@@ -0,0 +1,326 @@
+package com.amazingshop.personal.userservice.util.errors;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.FieldError;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Ответы об ошибках без Jackson и промежуточных Map.
+ * <p>
+ * Постоянная часть JSON кодируется в байты один раз, в ответ дописываются только динамические
+ * поля (timestamp, path, сообщение). Тело собирается в буфер потока и пишется одним вызовом
+ * с Content-Length — на 401 при волне истёкших токенов не создаётся ни ObjectMapper, ни Map.
+ * <p>
+ * Формы ответов прежние: {@code {"message","timestamp","path","status"}} как у ErrorResponse,
+ * у ошибок валидации timestamp — ISO LocalDateTime, как писал Jackson,
+ * у 401 из entry point — {@code {"status","error","message","path"}}, у token endpoint — OAuth
+ * {@code {"error","error_description"}}.
+ */
+@Component
+public class ErrorResponseWriter {
+
+    private static final byte[] UNAUTHORIZED_PREFIX = ascii(
+            "{\"status\":401,\"error\":\"Unauthorized\",\"message\":\"Authentication is required to access this resource\",\"path\":\"");
+    private static final byte[] UNAUTHORIZED_SUFFIX = ascii("\"}");
+
+    private static final byte[] VALIDATION_PREFIX = ascii("{\"timestamp\":");
+    private static final byte[] VALIDATION_BODY = ascii(
+            ",\"status\":400,\"error\":\"Validation Failed\",\"message\":\"Input validation failed\",\"fieldErrors\":{");
+    private static final byte[] VALIDATION_SUFFIX = ascii("}}");
+    private static final String DEFAULT_FIELD_MESSAGE = "Validation error occurred!";
+
+    private static final byte[] MESSAGE_PREFIX = ascii("{\"message\":\"");
+    private static final byte[] MESSAGE_SUFFIX = ascii("\",\"timestamp\":");
+    private static final byte[] ERROR_SUFFIX = ascii(",\"path\":null,\"status\":0}");
+
+    private static final byte[] OAUTH_PREFIX = ascii("{\"error\":\"");
+    private static final byte[] OAUTH_DESCRIPTION = ascii("\",\"error_description\":\"");
+    private static final byte[] OAUTH_SUFFIX = ascii("\"}");
+
+    private static final ThreadLocal<JsonBuffer> BUFFERS = ThreadLocal.withInitial(JsonBuffer::new);
+
+    /**
+     * Шаблон для постоянного сообщения: всё до timestamp закодировано заранее
+     */
+    public Template template(String message) {
+        JsonBuffer buffer = new JsonBuffer();
+        buffer.append(MESSAGE_PREFIX).appendEscaped(message).append(MESSAGE_SUFFIX);
+        return new Template(buffer.toByteArray());
+    }
+
+    /**
+     * Ошибка с сообщением, известным только в момент ответа
+     */
+    public void write(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        send(response, status.value(), writeMessage(BUFFERS.get().reset(), message, System.currentTimeMillis()));
+    }
+
+    public void writeUnauthorized(HttpServletResponse response, String path) throws IOException {
+        send(response, HttpServletResponse.SC_UNAUTHORIZED, writeUnauthorized(BUFFERS.get().reset(), path));
+    }
+
+    public void writeValidationErrors(HttpServletResponse response, List<FieldError> fieldErrors) throws IOException {
+        send(response, HttpServletResponse.SC_BAD_REQUEST,
+                writeValidationErrors(BUFFERS.get().reset(), fieldErrors, LocalDateTime.now()));
+    }
+
+    public void writeOAuthError(HttpServletResponse response, HttpStatus status, String error,
+                                String description) throws IOException {
+        send(response, status.value(), writeOAuthError(BUFFERS.get().reset(), error, description));
+    }
+
+    /**
+     * Тело 401 entry point прямо в поток — для бенчмарков и проверки формы без servlet-ответа
+     */
+    public void writeUnauthorized(OutputStream out, String path) throws IOException {
+        writeUnauthorized(BUFFERS.get().reset(), path).writeTo(out);
+    }
+
+    public void write(OutputStream out, String message) throws IOException {
+        writeMessage(BUFFERS.get().reset(), message, System.currentTimeMillis()).writeTo(out);
+    }
+
+    public void writeValidationErrors(OutputStream out, List<FieldError> fieldErrors) throws IOException {
+        writeValidationErrors(BUFFERS.get().reset(), fieldErrors, LocalDateTime.now()).writeTo(out);
+    }
+
+    private static JsonBuffer writeMessage(JsonBuffer buffer, String message, long timestamp) {
+        return buffer.append(MESSAGE_PREFIX).appendEscaped(message).append(MESSAGE_SUFFIX)
+                .appendLong(timestamp).append(ERROR_SUFFIX);
+    }
+
+    private static JsonBuffer writeOAuthError(JsonBuffer buffer, String error, String description) {
+        buffer.append(OAUTH_PREFIX).appendEscaped(error);
+        if (description != null) {
+            buffer.append(OAUTH_DESCRIPTION).appendEscaped(description);
+        }
+        return buffer.append(OAUTH_SUFFIX);
+    }
+
+    private static JsonBuffer writeUnauthorized(JsonBuffer buffer, String path) {
+        return buffer.append(UNAUTHORIZED_PREFIX).appendEscaped(path).append(UNAUTHORIZED_SUFFIX);
+    }
+
+    /**
+     * При повторе поля остаётся первая ошибка; полей обычно единицы, поэтому дубли ищутся без Map
+     */
+    private static JsonBuffer writeValidationErrors(JsonBuffer buffer, List<FieldError> fieldErrors,
+                                                    LocalDateTime timestamp) {
+        buffer.append(VALIDATION_PREFIX).appendDateTime(timestamp).append(VALIDATION_BODY);
+        boolean first = true;
+        for (int i = 0; i < fieldErrors.size(); i++) {
+            FieldError error = fieldErrors.get(i);
+            if (isDuplicate(fieldErrors, i)) {
+                continue;
+            }
+            if (!first) {
+                buffer.appendByte(',');
+            }
+            first = false;
+            String message = error.getDefaultMessage() != null ? error.getDefaultMessage() : DEFAULT_FIELD_MESSAGE;
+            buffer.appendByte('"').appendEscaped(error.getField()).appendByte('"').appendByte(':')
+                    .appendByte('"').appendEscaped(message).appendByte('"');
+        }
+        return buffer.append(VALIDATION_SUFFIX);
+    }
+
+    private static boolean isDuplicate(List<FieldError> fieldErrors, int index) {
+        String field = fieldErrors.get(index).getField();
+        for (int i = 0; i < index; i++) {
+            if (fieldErrors.get(i).getField().equals(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void send(HttpServletResponse response, int status, JsonBuffer body) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length());
+        body.writeTo(response.getOutputStream());
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Заранее закодированный ответ с постоянным сообщением
+     */
+    public static final class Template {
+
+        private final byte[] prefix;
+
+        private Template(byte[] prefix) {
+            this.prefix = prefix;
+        }
+
+        public void write(HttpServletResponse response, HttpStatus status) throws IOException {
+            send(response, status.value(), body());
+        }
+
+        public void write(OutputStream out) throws IOException {
+            body().writeTo(out);
+        }
+
+        private JsonBuffer body() {
+            return BUFFERS.get().reset().append(prefix).appendLong(System.currentTimeMillis()).append(ERROR_SUFFIX);
+        }
+    }
+
+    /**
+     * Переиспользуемый буфер потока: JSON-экранирование и UTF-8 без промежуточных строк
+     */
+    static final class JsonBuffer {
+
+        private static final int INITIAL_CAPACITY = 512;
+        private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+        private static final byte[] HEX = ascii("0123456789abcdef");
+
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+        private int length;
+        // Дата форматируется сюда, а не в новую строку
+        private final StringBuilder scratch = new StringBuilder(32);
+
+        JsonBuffer reset() {
+            // Случайно большой ответ не должен навсегда оставить большой буфер в потоке
+            if (bytes.length > MAX_RETAINED_CAPACITY) {
+                bytes = new byte[INITIAL_CAPACITY];
+            }
+            length = 0;
+            return this;
+        }
+
+        int length() {
+            return length;
+        }
+
+        JsonBuffer append(byte[] chunk) {
+            ensureCapacity(chunk.length);
+            System.arraycopy(chunk, 0, bytes, length, chunk.length);
+            length += chunk.length;
+            return this;
+        }
+
+        JsonBuffer appendByte(char ascii) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) ascii;
+            return this;
+        }
+
+        JsonBuffer appendLong(long value) {
+            if (value < 0) {
+                appendByte('-');
+                value = -value;
+            }
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            ensureCapacity(digits);
+            for (int i = length + digits - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += digits;
+            return this;
+        }
+
+        /**
+         * Строка ISO-8601 без зоны, как у Jackson JavaTimeModule для LocalDateTime
+         */
+        JsonBuffer appendDateTime(LocalDateTime value) {
+            scratch.setLength(0);
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME.formatTo(value, scratch);
+            ensureCapacity(scratch.length() + 2);
+            bytes[length++] = '"';
+            for (int i = 0; i < scratch.length(); i++) {
+                bytes[length++] = (byte) scratch.charAt(i);
+            }
+            bytes[length++] = '"';
+            return this;
+        }
+
+        JsonBuffer appendEscaped(CharSequence value) {
+            if (value == null) {
+                return this;
+            }
+            // Худший случай — \\u00XX на символ
+            ensureCapacity(value.length() * 6);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    bytes[length++] = '\\';
+                    bytes[length++] = (byte) c;
+                } else if (c < 0x20) {
+                    appendControl(c);
+                } else if (c < 0x80) {
+                    bytes[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xC0 | (c >> 6));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    bytes[length++] = '?';
+                } else {
+                    bytes[length++] = (byte) (0xE0 | (c >> 12));
+                    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return this;
+        }
+
+        private void appendControl(char c) {
+            bytes[length++] = '\\';
+            switch (c) {
+                case '\n' -> bytes[length++] = 'n';
+                case '\r' -> bytes[length++] = 'r';
+                case '\t' -> bytes[length++] = 't';
+                case '\b' -> bytes[length++] = 'b';
+                case '\f' -> bytes[length++] = 'f';
+                default -> {
+                    bytes[length++] = 'u';
+                    bytes[length++] = '0';
+                    bytes[length++] = '0';
+                    bytes[length++] = HEX[c >> 4];
+                    bytes[length++] = HEX[c & 0xF];
+                }
+            }
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, length);
+        }
+
+        byte[] toByteArray() {
+            byte[] copy = new byte[length];
+            System.arraycopy(bytes, 0, copy, 0, length);
+            return copy;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+        }
+    }
+}
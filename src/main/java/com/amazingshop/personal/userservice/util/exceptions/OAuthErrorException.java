@@ -0,0 +1,34 @@
+package com.amazingshop.personal.userservice.util.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Ошибка token endpoint по RFC 6749 (5.2): клиенту отдаётся {@code {"error","error_description"}}
+ */
+public class OAuthErrorException extends RuntimeException {
+
+    public static final String INVALID_CLIENT = "invalid_client";
+    public static final String INVALID_SCOPE = "invalid_scope";
+    public static final String UNSUPPORTED_GRANT_TYPE = "unsupported_grant_type";
+
+    private final HttpStatus status;
+    private final String error;
+
+    public OAuthErrorException(HttpStatus status, String error, String description) {
+        super(description);
+        this.status = status;
+        this.error = error;
+    }
+
+    public static OAuthErrorException invalidClient(String description) {
+        return new OAuthErrorException(HttpStatus.UNAUTHORIZED, INVALID_CLIENT, description);
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
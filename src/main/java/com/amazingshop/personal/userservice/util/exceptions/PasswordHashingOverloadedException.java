@@ -0,0 +1,20 @@
+package com.amazingshop.personal.userservice.util.exceptions;
+
+import java.time.Duration;
+
+/**
+ * Пул хеширования паролей переполнен — запрос отклоняется сразу, клиенту отдаётся 503 с Retry-After
+ */
+public class PasswordHashingOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public PasswordHashingOverloadedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,20 @@
+package com.amazingshop.personal.userservice.util.exceptions;
+
+import java.time.Duration;
+
+/**
+ * Превышен лимит попыток входа или регистрации — клиенту отдаётся 429 с Retry-After
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public TooManyRequestsException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -54,8 +54,7 @@ public class UserValidator implements Validator {
             throw new UserValidationException("Username should be between 2 and 30 characters!");
         }
 
-        Optional<User> existingUser = userService.findByUsername(username);
-        if (existingUser.isPresent()){
+        if (userService.findIdentityByUsername(username).isPresent()){
             throw new UserValidationException("A user with this username already exists!");
         }
     }
@@ -0,0 +1,46 @@
+package db.migration;
+
+import com.amazingshop.personal.userservice.security.jwt.TokenDigests;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Переносит действующие refresh token из Users в Refresh_Sessions, чтобы деплой никого не разлогинил.
+ * SHA-256 считается здесь, а не в SQL: в SQL он не переносим между PostgreSQL и H2.
+ */
+public class V4_1__Copy_refresh_tokens_to_sessions extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id, refresh_token, refresh_token_expiry FROM Users "
+                        + "WHERE refresh_token IS NOT NULL AND refresh_token_expiry > CURRENT_TIMESTAMP");
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO Refresh_Sessions (user_id, token_hash, expires_at) VALUES (?, ?, ?)")) {
+            select.setFetchSize(BATCH_SIZE);
+            int pending = 0;
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    insert.setLong(1, rows.getLong(1));
+                    insert.setString(2, TokenDigests.sha256Hex(rows.getString(2)));
+                    insert.setTimestamp(3, rows.getTimestamp(3));
+                    insert.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        insert.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            if (pending > 0) {
+                insert.executeBatch();
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+-- Вторая половина перехода на Refresh_Sessions (V4): колонки больше не читает ни одна версия сервиса.
+-- Включается через spring.flyway.locations только после того, как прежняя версия нигде не запущена.
+DROP INDEX IF EXISTS idx_refresh_token;
+ALTER TABLE Users DROP COLUMN refresh_token;
+ALTER TABLE Users DROP COLUMN refresh_token_expiry;
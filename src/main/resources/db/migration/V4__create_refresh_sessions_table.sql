@@ -0,0 +1,15 @@
+CREATE TABLE Refresh_Sessions (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    token_hash VARCHAR(64) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    CONSTRAINT uq_refresh_session_token_hash UNIQUE (token_hash),
+    CONSTRAINT fk_refresh_session_user FOREIGN KEY (user_id) REFERENCES Users(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_refresh_session_user_id ON Refresh_Sessions(user_id);
+CREATE INDEX idx_refresh_session_expires_at ON Refresh_Sessions(expires_at);
+
+-- Users.refresh_token и refresh_token_expiry остаются: их ещё читают инстансы прежней версии
+-- во время rolling deploy. Действующие токены копирует V4_1, колонки удаляет db/contract/V7
@@ -0,0 +1,4 @@
+ALTER TABLE Refresh_Sessions ADD COLUMN previous_token_hash VARCHAR(64);
+ALTER TABLE Refresh_Sessions ADD COLUMN rotated_at TIMESTAMP;
+
+CREATE INDEX idx_refresh_session_previous_hash ON Refresh_Sessions(previous_token_hash);
@@ -0,0 +1,8 @@
+ALTER TABLE Users ADD COLUMN token_epoch BIGINT NOT NULL DEFAULT 0;
+
+CREATE TABLE Global_Token_Epoch (
+    id    SMALLINT PRIMARY KEY,
+    epoch BIGINT   NOT NULL
+);
+
+INSERT INTO Global_Token_Epoch (id, epoch) VALUES (1, 0);
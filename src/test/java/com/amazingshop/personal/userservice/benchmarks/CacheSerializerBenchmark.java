@@ -0,0 +1,94 @@
+package com.amazingshop.personal.userservice.benchmarks;
+
+import com.amazingshop.personal.userservice.cache.SmileCacheSerializer;
+import com.amazingshop.personal.userservice.config.CacheConfig;
+import com.amazingshop.personal.userservice.dto.responses.ChatMessageResponse;
+import com.amazingshop.personal.userservice.dto.responses.ChatMessagesListResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кодеки значений кэша на истории чата: прежний JSON с именами классов против Smile
+ * с заголовком версии и номером типа.
+ * <p>
+ * Размер записи в байтах печатается в setUp для каждого числа сообщений.
+ * Запуск: main() из IDE после mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheSerializerBenchmark {
+
+    private static final String QUESTION = "Объясни, пожалуйста, как решать квадратные уравнения через дискриминант, "
+            + "и почему при отрицательном дискриминанте нет действительных корней?";
+    private static final String ANSWER = "Квадратное уравнение ax² + bx + c = 0 решается так: сначала считаем "
+            + "дискриминант D = b² − 4ac. Если D > 0, корней два: x = (−b ± √D) / 2a. Если D = 0, корень один: "
+            + "x = −b / 2a. Если D < 0, квадратный корень из отрицательного числа не существует среди "
+            + "действительных чисел, поэтому и корней нет. Пример: x² − 5x + 6 = 0, D = 25 − 24 = 1, x = 2 и x = 3.";
+
+    @Param({"10", "50"})
+    public int messages;
+
+    private RedisSerializer<Object> json;
+    private RedisSerializer<Object> smile;
+    private ChatMessagesListResponse history;
+    private byte[] jsonBytes;
+    private byte[] smileBytes;
+
+    @Setup
+    public void setUp() {
+        json = CacheConfig.jsonCacheSerializer();
+        smile = new SmileCacheSerializer(CacheConfig.cacheTypeRegistry());
+
+        List<ChatMessageResponse> list = new ArrayList<>();
+        LocalDateTime createdAt = LocalDateTime.of(2025, 3, 1, 18, 0);
+        for (int i = 0; i < messages; i++) {
+            boolean user = i % 2 == 0;
+            list.add(new ChatMessageResponse((long) i + 1, 42L, user ? "user" : "assistant",
+                    user ? QUESTION : ANSWER, user ? null : "MATH", createdAt.plusSeconds(i * 30L)));
+        }
+        history = new ChatMessagesListResponse(list);
+        jsonBytes = json.serialize(history);
+        smileBytes = smile.serialize(history);
+        System.out.printf("%n%d messages: json %d B, smile %d B%n", messages, jsonBytes.length, smileBytes.length);
+    }
+
+    @Benchmark
+    public byte[] jsonSerialize() {
+        return json.serialize(history);
+    }
+
+    @Benchmark
+    public byte[] smileSerialize() {
+        return smile.serialize(history);
+    }
+
+    @Benchmark
+    public Object jsonDeserialize() {
+        return json.deserialize(jsonBytes);
+    }
+
+    @Benchmark
+    public Object smileDeserialize() {
+        return smile.deserialize(smileBytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CacheSerializerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
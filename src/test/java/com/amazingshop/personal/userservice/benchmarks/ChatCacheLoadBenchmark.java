@@ -0,0 +1,111 @@
+package com.amazingshop.personal.userservice.benchmarks;
+
+import com.amazingshop.personal.userservice.cache.CacheInvalidationBroadcaster;
+import com.amazingshop.personal.userservice.cache.CacheLoadCoordinator;
+import com.amazingshop.personal.userservice.cache.LocalCacheSpec;
+import com.amazingshop.personal.userservice.cache.TwoLevelCache;
+import com.amazingshop.personal.userservice.cache.UserCacheGenerations;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный прогон кэша списков чатов: 1000 пользователей, 90% чтений и 10% записей.
+ * <p>
+ * allEntries — прежнее поведение, любая запись очищает кэш всех пользователей;
+ * userGeneration — запись увеличивает поколение только своего пользователя.
+ * Доля попаданий печатается после каждой итерации, для userGeneration она
+ * не должна падать с ростом числа потоков. L2 заменён на ограниченный Caffeine, Redis не нужен.
+ * <p>
+ * Запуск: main() из IDE после mvn test-compile, прогоняется на 8 и 32 потоках.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatCacheLoadBenchmark {
+
+    private static final int USERS = 1000;
+    private static final int WRITE_PERCENT = 10;
+    private static final Object CHATS = new Object();
+
+    @Param({"allEntries", "userGeneration"})
+    public String strategy;
+
+    private Cache cache;
+    private UserCacheGenerations generations;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Setup
+    public void setUp() {
+        ObjectProvider<StringRedisTemplate> noRedis =
+                new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CacheInvalidationBroadcaster broadcaster = new CacheInvalidationBroadcaster(noRedis, false, "benchmark");
+        cache = new TwoLevelCache("userChats", new CaffeineCache("userChats",
+                        Caffeine.newBuilder().maximumSize(200_000).build()),
+                new LocalCacheSpec(100_000, Duration.ofMinutes(5)), broadcaster, meterRegistry,
+                new CacheLoadCoordinator(noRedis, meterRegistry, false, Duration.ofSeconds(2), 1.0, 1), null, noRedis);
+        generations = new UserCacheGenerations(noRedis, broadcaster, Duration.ofSeconds(60), Duration.ofMinutes(5),
+                USERS, Clock.systemUTC());
+    }
+
+    @TearDown(Level.Iteration)
+    public void printHitRatio() {
+        long hitCount = hits.sumThenReset();
+        long total = hitCount + misses.sumThenReset();
+        System.out.printf("%n%s hit ratio: %.3f (%d reads)%n", strategy, total == 0 ? 0.0 : (double) hitCount / total, total);
+    }
+
+    @Benchmark
+    public Object chatTraffic() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long userId = (long) random.nextInt(USERS);
+        if (random.nextInt(100) < WRITE_PERCENT) {
+            if ("allEntries".equals(strategy)) {
+                cache.clear();
+            } else {
+                generations.advance(userId);
+            }
+            return null;
+        }
+
+        Object key = "allEntries".equals(strategy) ? userId + "::" : generations.key(userId, null, null);
+        Cache.ValueWrapper cached = cache.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached.get();
+        }
+        misses.increment();
+        cache.put(key, CHATS);
+        return CHATS;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{8, 32}) {
+            Options options = new OptionsBuilder()
+                    .include(ChatCacheLoadBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.amazingshop.personal.userservice.benchmarks;
+
+import com.amazingshop.personal.userservice.dto.responses.ErrorResponse;
+import com.amazingshop.personal.userservice.util.errors.ErrorResponseWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.validation.FieldError;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Стоимость тел ошибок: прежние ObjectMapper + Map (entry point создавал ObjectMapper на каждый 401,
+ * обработчик валидации — LinkedHashMap и LocalDateTime) против заранее закодированных шаблонов.
+ * <p>
+ * Главное здесь — gc.alloc.rate.norm (байт на операцию) от GCProfiler.
+ * Запуск: main() из IDE после mvn test-compile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErrorResponseBenchmark {
+
+    private static final String PATH = "/api/v1/users/me";
+
+    // Jackson закрывает поток после записи, как и servlet-ответ; nullOutputStream() после close бросает исключение
+    private final OutputStream out = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+    private final ErrorResponseWriter writer = new ErrorResponseWriter();
+    private final ErrorResponseWriter.Template invalidToken = writer.template("Invalid or expired JWT token");
+    private final List<FieldError> fieldErrors = List.of(
+            new FieldError("userDTO", "username", "Username should be for 2 to 30 symbols"),
+            new FieldError("userDTO", "email", "Email should be valid"));
+
+    // Как у Spring MVC: один общий ObjectMapper с JavaTimeModule
+    private ObjectMapper sharedMapper;
+
+    @Setup
+    public void setUp() {
+        sharedMapper = new ObjectMapper();
+        sharedMapper.registerModule(new JavaTimeModule());
+        sharedMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    @Benchmark
+    public void unauthorizedNewObjectMapper() throws IOException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("status", 401);
+        body.put("error", "Unauthorized");
+        body.put("message", "Authentication is required to access this resource");
+        body.put("path", PATH);
+        new ObjectMapper().writeValue(out, body);
+    }
+
+    @Benchmark
+    public void unauthorizedTemplate() throws IOException {
+        writer.writeUnauthorized(out, PATH);
+    }
+
+    @Benchmark
+    public void errorResponseJackson() throws IOException {
+        sharedMapper.writeValue(out, ErrorResponse.makeErrorResponse("Invalid or expired JWT token"));
+    }
+
+    @Benchmark
+    public void errorResponseTemplate() throws IOException {
+        invalidToken.write(out);
+    }
+
+    @Benchmark
+    public void validationLinkedHashMap() throws IOException {
+        Map<String, String> errors = fieldErrors.stream().collect(Collectors.toMap(
+                FieldError::getField,
+                fieldError -> Optional.ofNullable(fieldError.getDefaultMessage()).orElse("Validation error occurred!"),
+                (existing, replacement) -> existing));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", 400);
+        body.put("error", "Validation Failed");
+        body.put("message", "Input validation failed");
+        body.put("fieldErrors", errors);
+        sharedMapper.writeValue(out, body);
+    }
+
+    @Benchmark
+    public void validationTemplate() throws IOException {
+        writer.writeValidationErrors(out, fieldErrors);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ErrorResponseBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
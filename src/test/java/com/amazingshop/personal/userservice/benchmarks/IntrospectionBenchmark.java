@@ -0,0 +1,101 @@
+package com.amazingshop.personal.userservice.benchmarks;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.security.jwt.VerifiedTokenCache;
+import com.amazingshop.personal.userservice.security.revocation.AccessTokenDenylist;
+import com.amazingshop.personal.userservice.security.revocation.PrincipalRevocationRegistry;
+import com.amazingshop.personal.userservice.security.revocation.RevocationBroadcaster;
+import com.amazingshop.personal.userservice.security.revocation.RevocationStore;
+import com.amazingshop.personal.userservice.security.revocation.TokenEpochRegistry;
+import com.amazingshop.personal.userservice.services.IntrospectionServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакет из 100 токенов одним вызовом introspect против 100 одиночных вызовов.
+ * Токены повторяются (fan-out одного запроса ai-service), кэш проверенных токенов прогрет.
+ * Замер на уровне сервиса: в реальности к одиночным вызовам добавляются ещё 99 HTTP round trip.
+ * <p>
+ * Запуск: main() из IDE после mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntrospectionBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-for-jwt-minimum-256-bits-1234567890";
+    private static final int BATCH_SIZE = 100;
+    private static final int DISTINCT_USERS = 20;
+
+    private IntrospectionServiceImpl introspectionService;
+    private List<String> batch;
+
+    @Setup
+    public void setUp() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenExpiration", 1800000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpiration", 1209600000L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+
+        RevocationBroadcaster broadcaster = new RevocationBroadcaster(
+                new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class),
+                new RevocationStore(new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class),
+                        false, "benchmark", 1800000L),
+                false, "benchmark");
+        introspectionService = new IntrospectionServiceImpl(jwtUtil,
+                new VerifiedTokenCache(10000, new SimpleMeterRegistry()),
+                new AccessTokenDenylist(broadcaster, new TokenEpochRegistry(broadcaster, 1800000L), 1800000L, 1000),
+                new PrincipalRevocationRegistry(1800000L, broadcaster),
+                null);
+
+        List<String> tokens = new ArrayList<>();
+        for (long id = 1; id <= DISTINCT_USERS; id++) {
+            User user = new User();
+            user.setId(id);
+            user.setUsername("user" + id);
+            user.setRole(Role.USER);
+            tokens.add(jwtUtil.generateAccessToken(user));
+        }
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(tokens.get(i % DISTINCT_USERS));
+        }
+    }
+
+    @Benchmark
+    public Object batchOf100() {
+        return introspectionService.introspect(batch);
+    }
+
+    @Benchmark
+    public void singleCalls100(Blackhole blackhole) {
+        for (String token : batch) {
+            blackhole.consume(introspectionService.introspect(List.of(token)));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(IntrospectionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
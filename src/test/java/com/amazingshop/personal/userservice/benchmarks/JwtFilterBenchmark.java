@@ -0,0 +1,141 @@
+package com.amazingshop.personal.userservice.benchmarks;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.security.clients.ServiceClientRegistry;
+import com.amazingshop.personal.userservice.security.jwt.JwtAuthenticationEntryPoint;
+import com.amazingshop.personal.userservice.security.jwt.JwtFilter;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.security.jwt.VerifiedTokenCache;
+import com.amazingshop.personal.userservice.security.revocation.AccessTokenDenylist;
+import com.amazingshop.personal.userservice.security.revocation.PrincipalRevocationRegistry;
+import com.amazingshop.personal.userservice.security.revocation.RevocationBroadcaster;
+import com.amazingshop.personal.userservice.security.revocation.RevocationStore;
+import com.amazingshop.personal.userservice.security.revocation.TokenEpochRegistry;
+import com.amazingshop.personal.userservice.services.UserDetailsServiceImpl;
+import com.amazingshop.personal.userservice.util.errors.ErrorResponseWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость JwtFilter по классам маршрутов: публичный маршрут с устаревшим токеном
+ * (пропуск через shouldNotFilter против прежней полной обработки), защищённый с валидным
+ * токеном, с битым токеном (одна быстрая 401) и без токена.
+ * <p>
+ * Запуск: main() из IDE после mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-for-jwt-minimum-256-bits-1234567890";
+    private static final FilterChain NOOP_CHAIN = (request, response) -> {
+    };
+
+    private JwtFilter jwtFilter;
+    private JwtFilter filterWithoutAllowList;
+    private String validToken;
+    private String staleToken;
+
+    @Setup
+    public void setUp() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenExpiration", 1800000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpiration", 1209600000L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("benchmarkUser");
+        user.setRole(Role.USER);
+        validToken = jwtUtil.generateAccessToken(user);
+        // Подпись другим ключом — такой заголовок остаётся у клиента после ротации/перелогина
+        staleToken = validToken.substring(0, validToken.lastIndexOf('.') + 1) + "c3RhbGU";
+
+        RevocationBroadcaster broadcaster = new RevocationBroadcaster(
+                new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class),
+                new RevocationStore(new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class),
+                        false, "benchmark", 1800000L),
+                false, "benchmark");
+        PrincipalRevocationRegistry registry = new PrincipalRevocationRegistry(1800000L, broadcaster);
+        AccessTokenDenylist denylist = new AccessTokenDenylist(broadcaster, new TokenEpochRegistry(broadcaster, 1800000L), 1800000L, 1000);
+        VerifiedTokenCache cache = new VerifiedTokenCache(10000, new SimpleMeterRegistry());
+        JwtAuthenticationEntryPoint entryPoint = new JwtAuthenticationEntryPoint(new ErrorResponseWriter());
+        UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl(null);
+        ServiceClientRegistry clientRegistry = new ServiceClientRegistry("");
+
+        jwtFilter = new JwtFilter(jwtUtil, userDetailsService, registry, cache, denylist, entryPoint, clientRegistry);
+        filterWithoutAllowList = new JwtFilter(jwtUtil, userDetailsService, registry, cache, denylist, entryPoint, clientRegistry) {
+            @Override
+            protected boolean shouldNotFilter(HttpServletRequest request) {
+                return false;
+            }
+        };
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public int publicRouteStaleToken_AllowList() throws Exception {
+        return run(jwtFilter, "POST", "/api/v1/auth/login", staleToken);
+    }
+
+    @Benchmark
+    public int publicRouteStaleToken_FullProcessing() throws Exception {
+        return run(filterWithoutAllowList, "POST", "/api/v1/auth/login", staleToken);
+    }
+
+    @Benchmark
+    public int protectedRouteValidToken() throws Exception {
+        return run(jwtFilter, "GET", "/api/v1/users/me", validToken);
+    }
+
+    @Benchmark
+    public int protectedRouteMalformedToken() throws Exception {
+        return run(jwtFilter, "GET", "/api/v1/users/me", "not-a-jwt");
+    }
+
+    @Benchmark
+    public int protectedRouteNoToken() throws Exception {
+        return run(jwtFilter, "GET", "/api/v1/users/me", null);
+    }
+
+    private static int run(JwtFilter filter, String method, String uri, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        if (token != null) {
+            request.addHeader("Authorization", "Bearer " + token);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, NOOP_CHAIN);
+        return response.getStatus();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtFilterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.amazingshop.personal.userservice.benchmarks;
+
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение проверки JWT: сборка Algorithm/JWTVerifier на каждый вызов (как было)
+ * против keyring с заранее собранными верификаторами.
+ * <p>
+ * Запуск: main() из IDE после mvn test-compile, прогоняется на 1, 8 и 32 потоках.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-for-jwt-minimum-256-bits-1234567890";
+
+    private JwtUtil jwtUtil;
+    private String accessToken;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenExpiration", 1800000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpiration", 1209600000L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+        accessToken = jwtUtil.generateAccessToken("benchmarkUser");
+    }
+
+    @Benchmark
+    public String verifyPerCallVerifier() {
+        JWTVerifier verifier = JWT.require(Algorithm.HMAC256(SECRET))
+                .withSubject("User details")
+                .withIssuer("ShporaAi")
+                .build();
+        return verifier.verify(accessToken).getClaim("username").asString();
+    }
+
+    @Benchmark
+    public String verifyKeyring() {
+        return jwtUtil.parseAccessToken(accessToken).username();
+    }
+
+    @Benchmark
+    public String signPerCallAlgorithm() {
+        return JWT.create()
+                .withSubject("User details")
+                .withClaim("username", "benchmarkUser")
+                .withClaim("type", "access")
+                .withIssuer("ShporaAi")
+                .sign(Algorithm.HMAC256(SECRET));
+    }
+
+    @Benchmark
+    public String signKeyring() {
+        return jwtUtil.generateAccessToken("benchmarkUser");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 8, 32}) {
+            Options options = new OptionsBuilder()
+                    .include(JwtVerificationBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
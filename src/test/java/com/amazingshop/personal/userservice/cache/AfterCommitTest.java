@@ -0,0 +1,51 @@
+package com.amazingshop.personal.userservice.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AfterCommitTest {
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("run: без транзакции — сразу, внутри — только после коммита")
+    void run_ShouldDeferUntilCommit() {
+        // Act
+        AfterCommit.run(runs::incrementAndGet);
+        TransactionSynchronizationManager.initSynchronization();
+        AfterCommit.run(runs::incrementAndGet);
+
+        // Assert
+        assertEquals(1, runs.get());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    @DisplayName("runNowAndAfterCommit: без транзакции один раз, внутри — сразу и после коммита")
+    void runNowAndAfterCommit_ShouldRepeatAfterCommitOnlyInTransaction() {
+        // Act
+        AfterCommit.runNowAndAfterCommit(runs::incrementAndGet);
+        TransactionSynchronizationManager.initSynchronization();
+        AfterCommit.runNowAndAfterCommit(runs::incrementAndGet);
+
+        // Assert
+        assertEquals(2, runs.get());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(3, runs.get());
+    }
+}
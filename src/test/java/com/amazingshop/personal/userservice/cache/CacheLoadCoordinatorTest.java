@@ -0,0 +1,130 @@
+package com.amazingshop.personal.userservice.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheLoadCoordinatorTest {
+
+    @Mock
+    private StringRedisTemplate template;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CacheLoadCoordinator loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("stringRedisTemplate", template);
+        loads = new CacheLoadCoordinator(beanFactory.getBeanProvider(StringRedisTemplate.class),
+                meterRegistry, true, Duration.ofSeconds(1), 1.0, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loads.close();
+    }
+
+    private double loadCount(String result) {
+        return meterRegistry.find("cache.loads").tags("cache", "userChats", "result", result)
+                .counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+
+    @Test
+    @DisplayName("load: без аренды значение ждётся в Redis, а не загружается повторно")
+    void load_ShouldWaitForLeaseHolder() {
+        // Arrange
+        when(template.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        AtomicInteger lookups = new AtomicInteger();
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act
+        Object value = loads.load("userChats", "1:0", () -> lookups.incrementAndGet() < 3
+                ? null : new SimpleValueWrapper("chats"), calls::incrementAndGet);
+
+        // Assert
+        assertEquals("chats", value);
+        assertEquals(0, calls.get());
+        assertEquals(1, loadCount("lease-wait"));
+    }
+
+    @Test
+    @DisplayName("load: держатель аренды загружает значение и освобождает аренду")
+    void load_ShouldLoadAndReleaseLease() {
+        // Arrange
+        when(template.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("user-service:cache-lease:userChats:1:0"), anyString(), any(Duration.class)))
+                .thenReturn(true);
+
+        // Act
+        Object value = loads.load("userChats", "1:0", () -> null, () -> "chats");
+
+        // Assert
+        assertEquals("chats", value);
+        assertEquals(1, loadCount("leader"));
+        verify(template).execute(any(), eq(List.of("user-service:cache-lease:userChats:1:0")), anyString());
+    }
+
+    @Test
+    @DisplayName("refreshAsync: ключ, который уже обновляется, второй раз не загружается")
+    void refreshAsync_ShouldSkipKeyInFlight() throws Exception {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act
+        loads.refreshAsync("userChats", "1:0", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            release.await();
+            return "chats";
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        loads.refreshAsync("userChats", "1:0", calls::incrementAndGet);
+        release.countDown();
+
+        // Assert
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    @DisplayName("shouldRefreshEarly: вероятность обновления растёт к истечению и с временем загрузки")
+    void shouldRefreshEarly_ShouldFollowXFetch() {
+        long expiresAt = 10_000;
+
+        // Далеко до истечения: не обновляем даже при малом random
+        assertFalse(CacheLoadCoordinator.shouldRefreshEarly(1_000, 100, 1.0, 0.01, expiresAt));
+        // За 100 мс до истечения при загрузке 100 мс: обновляем при random < 1/e
+        assertTrue(CacheLoadCoordinator.shouldRefreshEarly(9_900, 100, 1.0, 0.3, expiresAt));
+        assertFalse(CacheLoadCoordinator.shouldRefreshEarly(9_900, 100, 1.0, 0.5, expiresAt));
+        // beta = 0 выключает раннее обновление
+        assertFalse(CacheLoadCoordinator.shouldRefreshEarly(9_999, 100, 0.0, 0.01, expiresAt));
+        assertTrue(CacheLoadCoordinator.shouldRefreshEarly(expiresAt, 100, 0.0, 0.5, expiresAt));
+    }
+}
@@ -0,0 +1,131 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.dto.responses.ChatMessageResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatHistoryCacheTest {
+
+    private static final ChatMessageResponse HELLO = ChatMessageResponse.builder()
+            .id(1L).chatId(10L).role("user").content("Hello").build();
+
+    @Mock
+    private StringRedisTemplate template;
+
+    private ChatHistoryCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("stringRedisTemplate", template);
+        cache = new ChatHistoryCache(beanFactory.getBeanProvider(StringRedisTemplate.class), Duration.ofMinutes(30));
+        loads = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private List<ChatMessageResponse> load() {
+        loads.incrementAndGet();
+        return List.of(HELLO);
+    }
+
+    @Test
+    @DisplayName("getOrLoad: полная история из Redis читается без обращения к БД")
+    void getOrLoad_ShouldDecodeCachedList() {
+        // Arrange
+        List<byte[]> cached = List.of(ChatHistoryCache.header(), cache.encode(HELLO));
+        when(template.execute(any(RedisCallback.class))).thenReturn(cached);
+
+        // Act
+        List<ChatMessageResponse> result = cache.getOrLoad(1L, 10L, this::load);
+
+        // Assert
+        assertEquals(List.of(HELLO), result);
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    @DisplayName("getOrLoad: при промахе история кладётся с номером версии, прочитанным до загрузки")
+    @SuppressWarnings("unchecked")
+    void getOrLoad_ShouldFillWithVersionSeenBeforeLoad() {
+        // Arrange
+        when(template.execute(any(RedisCallback.class)))
+                .thenReturn(new ArrayList<byte[]>())
+                .thenReturn("7".getBytes());
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+
+        // Act
+        List<ChatMessageResponse> result = cache.getOrLoad(1L, 10L, this::load);
+
+        // Assert
+        assertEquals(List.of(HELLO), result);
+        verify(template).execute(any(RedisScript.class), any(RedisSerializer.class), isNull(),
+                eq(List.of("user-service:chat-history:{1:10}", "user-service:chat-history:{1:10}:version")),
+                args.capture());
+        Object[] values = args.getValue();
+        assertArrayEquals("7".getBytes(), (byte[]) values[0]);
+        assertArrayEquals(ChatHistoryCache.header(), (byte[]) values[2]);
+        assertArrayEquals(cache.encode(HELLO), (byte[]) values[4]);
+    }
+
+    @Test
+    @DisplayName("append: внутри транзакции сообщение дописывается только после коммита")
+    @SuppressWarnings("unchecked")
+    void append_ShouldWaitForCommit() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        cache.append(1L, 10L, HELLO);
+
+        // Assert
+        verifyNoInteractions(template);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(template).execute(any(RedisScript.class), any(RedisSerializer.class), isNull(), anyList(),
+                any(byte[].class), eq(cache.encode(HELLO)));
+    }
+
+    @Test
+    @DisplayName("getOrLoad: без Redis история каждый раз читается из БД")
+    void getOrLoad_ShouldFallBackToLoader_WithoutRedis() {
+        // Arrange
+        ChatHistoryCache noRedis = new ChatHistoryCache(
+                new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class), Duration.ofMinutes(30));
+
+        // Act
+        noRedis.getOrLoad(1L, 10L, this::load);
+        noRedis.getOrLoad(1L, 10L, this::load);
+
+        // Assert
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,101 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.config.CacheConfig;
+import com.amazingshop.personal.userservice.dto.responses.ChatMessageResponse;
+import com.amazingshop.personal.userservice.dto.responses.ChatMessagesListResponse;
+import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.models.UserIdentity;
+import com.amazingshop.personal.userservice.security.jwt.SealedTokenPair;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmileCacheSerializerTest {
+
+    private final SmileCacheSerializer serializer = new SmileCacheSerializer(CacheConfig.cacheTypeRegistry());
+
+    @Test
+    @DisplayName("serialize/deserialize: список сообщений восстанавливается без имён классов в теле")
+    void roundTrip_ShouldRestoreNestedMessages() {
+        // Arrange
+        LocalDateTime createdAt = LocalDateTime.of(2025, 3, 1, 12, 30, 15, 123_000_000);
+        ChatMessagesListResponse messages = new ChatMessagesListResponse(List.of(
+                new ChatMessageResponse(1L, 10L, "user", "Реши уравнение x² = 4", null, createdAt),
+                new ChatMessageResponse(2L, 10L, "assistant", "x = ±2", "MATH", createdAt.plusSeconds(3))));
+
+        // Act
+        byte[] bytes = serializer.serialize(messages);
+        ChatMessagesListResponse restored = (ChatMessagesListResponse) serializer.deserialize(bytes);
+
+        // Assert
+        assertEquals(messages.getMessages(), restored.getMessages());
+        assertFalse(new String(bytes, java.nio.charset.StandardCharsets.ISO_8859_1).contains("ChatMessageResponse"));
+    }
+
+    @Test
+    @DisplayName("serialize/deserialize: UserIdentity и зашифрованная пара токенов сохраняют все поля")
+    void roundTrip_ShouldRestoreUserIdentityAndTokenPair() {
+        // Arrange
+        UserIdentity user = new UserIdentity(1L, "testUser", Role.ADMIN, 3);
+        TokenPairResponse pair = new TokenPairResponse("access", 900, "refresh", 3600, "testUser");
+        SealedTokenPair sealed = SealedTokenPair.seal(pair, "old.refresh");
+
+        // Act & Assert
+        assertEquals(user, serializer.deserialize(serializer.serialize(user)));
+        assertEquals(pair, ((SealedTokenPair) serializer.deserialize(serializer.serialize(sealed))).open("old.refresh"));
+        assertSame(NullValue.INSTANCE, serializer.deserialize(serializer.serialize(NullValue.INSTANCE)));
+    }
+
+    @Test
+    @DisplayName("deserialize: чужая версия формата и прежний JSON читаются как промах")
+    void deserialize_ShouldTreatForeignFormatAsMiss() {
+        // Arrange
+        byte[] bytes = serializer.serialize(new UserIdentity(1L, "testUser", Role.USER, 0));
+        bytes[1] = (byte) (SmileCacheSerializer.FORMAT_VERSION + 1);
+
+        // Act & Assert
+        assertNull(serializer.deserialize(bytes));
+        assertNull(serializer.deserialize("{\"@class\":\"x\"}".getBytes()));
+    }
+
+    @Test
+    @DisplayName("serialize: незарегистрированный тип — ошибка, а не молчаливый JSON")
+    void serialize_ShouldRejectUnregisteredType() {
+        assertThrows(SerializationException.class, () -> serializer.serialize(List.of("value")));
+    }
+
+    @Test
+    @DisplayName("оба кодека: UserIdentity и id из индекса по username читаются своими типами")
+    void roundTrip_ShouldRestoreIdentityIndexValues() {
+        // Arrange
+        UserIdentity user = new UserIdentity(1L, "testUser", Role.USER, 0);
+        GenericJackson2JsonRedisSerializer json = CacheConfig.jsonCacheSerializer();
+
+        // Act & Assert
+        assertEquals(42L, serializer.deserialize(serializer.serialize(42L)));
+        assertEquals(user, serializer.deserialize(serializer.serialize(user)));
+        assertEquals(user, json.deserialize(json.serialize(user)));
+    }
+
+    @Test
+    @DisplayName("JSON-кодек: зашифрованная пара токенов читается своим типом")
+    void jsonRoundTrip_ShouldRestoreSealedTokenPair() {
+        // Arrange
+        TokenPairResponse pair = new TokenPairResponse("access", 900, "refresh", 3600, "testUser");
+        GenericJackson2JsonRedisSerializer json = CacheConfig.jsonCacheSerializer();
+
+        // Act
+        Object restored = json.deserialize(json.serialize(SealedTokenPair.seal(pair, "old.refresh")));
+
+        // Assert
+        assertEquals(pair, assertInstanceOf(SealedTokenPair.class, restored).open("old.refresh"));
+    }
+}
@@ -0,0 +1,298 @@
+package com.amazingshop.personal.userservice.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TwoLevelCacheTest {
+
+    @Mock
+    private CacheInvalidationBroadcaster broadcaster;
+
+    private SimpleMeterRegistry meterRegistry;
+    private Cache remote;
+    private CacheLoadCoordinator loads;
+    private TwoLevelCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        remote = spy(new ConcurrentMapCache("userById"));
+        loads = new CacheLoadCoordinator(noRedis(), meterRegistry, false, Duration.ofSeconds(2), 1.0, 1);
+        cache = new TwoLevelCache("userById", remote, new LocalCacheSpec(100, Duration.ofSeconds(10)),
+                broadcaster, meterRegistry, loads, Duration.ofMinutes(1), noRedis());
+    }
+
+    private static ObjectProvider<StringRedisTemplate> noRedis() {
+        return new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loads.close();
+    }
+
+    private double loadCount(String result) {
+        return meterRegistry.find("cache.loads").tags("cache", "userById", "result", result)
+                .counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+
+    private double gets(String tier, String result) {
+        return meterRegistry.find("cache.gets").tags("cache", "userById", "tier", tier, "result", result)
+                .functionCounters().stream().mapToDouble(counter -> counter.count()).sum()
+                + meterRegistry.find("cache.gets").tags("cache", "userById", "tier", tier, "result", result)
+                .counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+
+    @Test
+    @DisplayName("get: второй запрос отдаётся из L1 без обращения к Redis")
+    void get_ShouldServeRepeatedReadsFromLocalTier() {
+        // Arrange
+        remote.put(5L, "user");
+
+        // Act
+        Cache.ValueWrapper first = cache.get(5L);
+        Cache.ValueWrapper second = cache.get(5L);
+
+        // Assert
+        assertEquals("user", first.get());
+        assertEquals("user", second.get());
+        verify(remote, times(1)).get(5L);
+        assertEquals(1, gets("l1", "hit"));
+        assertEquals(1, gets("l1", "miss"));
+        assertEquals(1, gets("l2", "hit"));
+    }
+
+    @Test
+    @DisplayName("get: null из Redis кэшируется в L1 как значение, промах L2 считается отдельно")
+    void get_ShouldCacheNullAndCountRemoteMiss() {
+        // Arrange
+        remote.put(5L, null);
+
+        // Act & Assert
+        assertNull(cache.get(5L).get());
+        assertNull(cache.get(5L).get());
+        assertNull(cache.get(6L));
+
+        verify(remote, times(1)).get(5L);
+        assertEquals(1, gets("l2", "miss"));
+    }
+
+    @Test
+    @DisplayName("get с loader: одновременные промахи по ключу загружают значение один раз")
+    void getWithLoader_ShouldCoalesceConcurrentMisses() throws Exception {
+        // Arrange
+        int readers = 8;
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(readers);
+
+        try {
+            // Act
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < readers; i++) {
+                results.add(pool.submit(() -> cache.get(5L, () -> {
+                    calls.incrementAndGet();
+                    release.await();
+                    return "user";
+                })));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (loadCount("coalesced") < readers - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            // Assert
+            for (Future<String> result : results) {
+                assertEquals("user", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, loadCount("leader"));
+        assertEquals(readers - 1, loadCount("coalesced"));
+        assertEquals("user", remote.get(5L).get());
+    }
+
+    @Test
+    @DisplayName("get с loader: ошибка загрузки приходит как ValueRetrievalException и не кэшируется")
+    void getWithLoader_ShouldWrapLoaderFailure() {
+        // Act & Assert
+        Cache.ValueRetrievalException e = assertThrows(Cache.ValueRetrievalException.class,
+                () -> cache.get(5L, () -> {
+                    throw new IllegalStateException("db down");
+                }));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals("user", cache.get(5L, () -> "user"));
+    }
+
+    @Test
+    @DisplayName("evict: сбрасывает оба уровня и рассылает строковый ключ")
+    void evict_ShouldClearBothTiersAndBroadcast() {
+        // Arrange
+        cache.put(5L, "user");
+
+        // Act
+        cache.evict(5L);
+
+        // Assert
+        assertNull(remote.get(5L));
+        assertNull(cache.get(5L));
+        verify(broadcaster).publishEvict("userById", "5");
+    }
+
+    @Test
+    @DisplayName("evictLocal: сообщение другого инстанса сбрасывает только L1")
+    void evictLocal_ShouldDropOnlyLocalEntry() {
+        // Arrange
+        cache.put(5L, "user");
+        remote.put(5L, "updated");
+
+        // Act
+        cache.evictLocal("5");
+
+        // Assert
+        assertEquals("updated", cache.get(5L).get());
+        verifyNoInteractions(broadcaster);
+    }
+
+    @Test
+    @DisplayName("putIfAbsent: в L1 попадает значение, которое уже лежит в Redis")
+    void putIfAbsent_ShouldKeepRemoteWinner() {
+        // Arrange
+        remote.put(5L, "winner");
+
+        // Act
+        Cache.ValueWrapper existing = cache.putIfAbsent(5L, "loser");
+
+        // Assert
+        assertEquals("winner", existing.get());
+        assertEquals("winner", cache.get(5L).get());
+    }
+
+    @Test
+    @DisplayName("weigh: списки весят по числу элементов")
+    void weigh_ShouldCountElements() {
+        assertEquals(1, TwoLevelCache.weigh("k", "user"));
+        assertEquals(3, TwoLevelCache.weigh("k", List.of(1, 2, 3)));
+        assertEquals(1, TwoLevelCache.weigh("k", List.of()));
+        assertEquals(4, TwoLevelCache.weigh("k", (CacheWeighted) () -> 4));
+    }
+
+    @Test
+    @DisplayName("TwoLevelCacheManager: L1 только у кэшей из спецификации, свои сообщения пропускаются")
+    void manager_ShouldDecorateOnlyConfiguredCachesAndSkipOwnMessages() {
+        // Arrange
+        TwoLevelCacheManager manager = new TwoLevelCacheManager(new ConcurrentMapCacheManager(),
+                LocalCacheSpec.parse("userById:100:10s"), broadcaster, meterRegistry, loads,
+                Map.of(), Duration.ofMinutes(1), noRedis());
+        Cache userById = manager.getCache("userById");
+        userById.put(5L, "user");
+        CacheInvalidation own = new CacheInvalidation("me", CacheInvalidation.Kind.CLEAR, "userById", "");
+        CacheInvalidation foreign = CacheInvalidation.fromMessage("other|EVICT|userById|5");
+        when(broadcaster.isOwn(own)).thenReturn(true);
+
+        // Act & Assert
+        assertInstanceOf(TwoLevelCache.class, userById);
+        assertInstanceOf(ConcurrentMapCache.class, manager.getCache("refreshGrace"));
+
+        manager.apply(own);
+        assertEquals(1, ((com.github.benmanes.caffeine.cache.Cache<?, ?>) userById.getNativeCache()).estimatedSize());
+
+        manager.apply(foreign);
+        assertEquals(0, ((com.github.benmanes.caffeine.cache.Cache<?, ?>) userById.getNativeCache()).estimatedSize());
+    }
+
+    @Test
+    @DisplayName("LocalCacheSpec.parse: разбирает размер и TTL, отвергает нулевые значения")
+    void parseSpecs_ShouldReadSizeAndTtl() {
+        Map<String, LocalCacheSpec> specs = LocalCacheSpec.parse("userById:100:10s, chatMessages:500:5s,");
+
+        assertEquals(new LocalCacheSpec(100, Duration.ofSeconds(10)), specs.get("userById"));
+        assertEquals(new LocalCacheSpec(500, Duration.ofSeconds(5)), specs.get("chatMessages"));
+        assertThrows(IllegalStateException.class, () -> LocalCacheSpec.parse("userById:0:10s"));
+        assertThrows(IllegalStateException.class, () -> LocalCacheSpec.parse("userById:100"));
+    }
+
+    @Test
+    @DisplayName("getAll: попадания L1 без Redis, остальные ключи одним MGET с префиксом и кодеком RedisCache")
+    @SuppressWarnings("unchecked")
+    void getAll_ShouldReadLocalMissesWithSingleMget() {
+        // Arrange
+        SmileCacheSerializer serializer = new SmileCacheSerializer(new CacheTypeRegistry().register(6, Long.class));
+        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig()
+                .computePrefixWith(name -> name + "::v1::")
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer));
+        Cache redisCache = RedisCacheManager.builder(mock(RedisCacheWriter.class))
+                .cacheDefaults(configuration).build().getCache("userById");
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("redisTemplate", template);
+        TwoLevelCache mgetCache = new TwoLevelCache("userById", redisCache, new LocalCacheSpec(100, Duration.ofSeconds(10)),
+                broadcaster, meterRegistry, loads, Duration.ofMinutes(1), beans.getBeanProvider(StringRedisTemplate.class));
+        ((com.github.benmanes.caffeine.cache.Cache<String, Object>) mgetCache.getNativeCache()).put("1", 10L);
+        List<byte[]> raw = new ArrayList<>();
+        raw.add(serializer.serialize(20L));
+        raw.add(null);
+        when(template.execute(any(RedisCallback.class))).thenReturn(raw);
+
+        // Act
+        Map<Object, Object> found = mgetCache.getAll(List.of(1L, 2L, 3L));
+
+        // Assert
+        assertEquals(Map.of(1L, 10L, 2L, 20L), found);
+        assertEquals(List.of(1L, 2L), List.copyOf(found.keySet()));
+        verify(template, times(1)).execute(any(RedisCallback.class));
+        // Найденное в L2 теперь в L1
+        assertEquals(Map.of(2L, 20L), mgetCache.getAll(List.of(2L)));
+        verifyNoMoreInteractions(template);
+    }
+
+    @Test
+    @DisplayName("getAll: без Redis L2 читается по ключу, отсутствующие ключи в результат не попадают")
+    void getAll_ShouldFallBackToPerKeyReads_WithoutRedis() {
+        // Arrange
+        remote.put(1L, "alice");
+
+        // Act
+        Map<Object, Object> found = cache.getAll(List.of(1L, 2L));
+
+        // Assert
+        assertEquals(Map.of(1L, "alice"), found);
+        assertEquals(1.0, gets("l2", "hit"));
+        assertEquals(1.0, gets("l2", "miss"));
+    }
+}
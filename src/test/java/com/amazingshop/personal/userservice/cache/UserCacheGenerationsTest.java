@@ -0,0 +1,112 @@
+package com.amazingshop.personal.userservice.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserCacheGenerationsTest {
+
+    @Mock
+    private CacheInvalidationBroadcaster broadcaster;
+
+    private UserCacheGenerations generations;
+
+    @BeforeEach
+    void setUp() {
+        // Без Redis: счётчики только локальные
+        generations = new UserCacheGenerations(
+                new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class), broadcaster,
+                Duration.ofSeconds(60), Duration.ofMinutes(5), 1000,
+                Clock.fixed(Instant.ofEpochMilli(1_000), ZoneOffset.UTC));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("advance: меняет ключи только этого пользователя и рассылает сброс")
+    void advance_ShouldChangeOnlyThatUsersKeys() {
+        // Arrange
+        String ownKey = generations.key(1L, "title", null);
+        String otherKey = generations.key(2L, "title", null);
+
+        // Act
+        generations.advance(1L);
+
+        // Assert
+        assertNotEquals(ownKey, generations.key(1L, "title", null));
+        assertEquals(otherKey, generations.key(2L, "title", null));
+        assertTrue(ownKey.startsWith("1:") && ownKey.endsWith(":5#title:~"));
+        verify(broadcaster).publishEvict(UserCacheGenerations.NAME, "1");
+    }
+
+    @Test
+    @DisplayName("advance: внутри транзакции поколение меняется только после коммита")
+    void advance_ShouldWaitForCommit() {
+        // Arrange
+        long before = generations.current(1L);
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        generations.advance(1L);
+
+        // Assert
+        assertEquals(before, generations.current(1L));
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertTrue(generations.current(1L) > before);
+    }
+
+    @Test
+    @DisplayName("apply: сообщение другого инстанса сбрасывает локальное поколение, своё — нет")
+    void apply_ShouldDropForeignGenerationOnly() {
+        // Arrange
+        generations.advance(1L);
+        generations.advance(1L);
+        long advanced = generations.current(1L);
+        CacheInvalidation own = new CacheInvalidation("me", CacheInvalidation.Kind.EVICT, UserCacheGenerations.NAME, "1");
+        when(broadcaster.isOwn(own)).thenReturn(true);
+
+        // Act & Assert
+        generations.apply(own);
+        assertEquals(advanced, generations.current(1L));
+
+        generations.apply(new CacheInvalidation("other", CacheInvalidation.Kind.EVICT, UserCacheGenerations.NAME, "1"));
+        // Без общего счётчика начинается новое поколение от текущего времени
+        assertEquals(1_000, generations.current(1L));
+    }
+
+    @Test
+    @DisplayName("key: ':' внутри частей и null вместо пустой строки не склеиваются в один ключ")
+    void key_ShouldNotCollide_WhenPartsContainSeparatorOrNull() {
+        // Act
+        String joined = generations.key(1L, "a:b", null);
+        String split = generations.key(1L, "a", "b");
+        String shifted = generations.key(1L, "a", "b:");
+        String empty = generations.key(1L, "a:b", "");
+
+        // Assert
+        assertEquals(4, java.util.Set.of(joined, split, shifted, empty).size());
+        assertNotEquals(generations.key(1L, (Object) null), generations.key(1L, ""));
+    }
+}
@@ -0,0 +1,149 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.repositories.UsersRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserExistenceFilterTest {
+
+    @Mock
+    private UsersRepository usersRepository;
+
+    @Mock
+    private CacheInvalidationBroadcaster broadcaster;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserExistenceFilter filter;
+    private AtomicInteger queries;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new UserExistenceFilter(usersRepository, broadcaster, meterRegistry, true, true, 0.01, 1000,
+                Duration.ofSeconds(30), 1000);
+        queries = new AtomicInteger();
+    }
+
+    private Optional<String> query(String value) {
+        queries.incrementAndGet();
+        return Optional.empty();
+    }
+
+    private double skipped(String source) {
+        return meterRegistry.get("user.lookups.skipped").tag("source", source).counter().count();
+    }
+
+    private static UsersRepository.UserKeysView keys(String username, String email) {
+        return new UsersRepository.UserKeysView() {
+            @Override
+            public String getUsername() {
+                return username;
+            }
+
+            @Override
+            public String getEmail() {
+                return email;
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("byUsername: после построения фильтра неизвестный username отсекается без запроса")
+    void byUsername_ShouldSkipQuery_WhenBloomSaysAbsent() {
+        // Arrange
+        when(usersRepository.count()).thenReturn(1L);
+        when(usersRepository.streamAllKeys()).thenReturn(Stream.of(keys("alice", "alice@mail.com")));
+        filter.rebuild();
+
+        // Act
+        Optional<String> unknown = filter.byUsername("mallory", this::query);
+        filter.byUsername("alice", this::query);
+        filter.byEmail("alice@mail.com", this::query);
+
+        // Assert
+        assertTrue(unknown.isEmpty());
+        assertEquals(2, queries.get());
+        assertEquals(1, skipped("bloom"));
+    }
+
+    @Test
+    @DisplayName("byEmail: до построения фильтра промах запоминается в кэше промахов")
+    void byEmail_ShouldRememberMiss_BeforeRebuild() {
+        // Act
+        filter.byEmail("ghost@mail.com", this::query);
+        filter.byEmail("ghost@mail.com", this::query);
+
+        // Assert
+        assertEquals(1, queries.get());
+        assertEquals(1, skipped("negative-cache"));
+    }
+
+    @Test
+    @DisplayName("byEmail: без pub/sub промах не запоминается — регистрацию на другом инстансе не узнать")
+    void byEmail_ShouldNotRememberMiss_WithoutPubSub() {
+        // Arrange
+        UserExistenceFilter local = new UserExistenceFilter(usersRepository, broadcaster, meterRegistry, false, false,
+                0.01, 1000, Duration.ofSeconds(30), 1000);
+
+        // Act
+        local.byEmail("ghost@mail.com", this::query);
+        local.byEmail("ghost@mail.com", this::query);
+
+        // Assert
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    @DisplayName("Конструктор: фильтр Блума без pub/sub не запускается")
+    void constructor_ShouldFailFast_WhenBloomWithoutPubSub() {
+        assertThrows(IllegalStateException.class, () -> new UserExistenceFilter(usersRepository, broadcaster,
+                meterRegistry, true, false, 0.01, 1000, Duration.ofSeconds(30), 1000));
+    }
+
+    @Test
+    @DisplayName("recordExisting: новый username сразу виден и рассылается остальным инстансам")
+    void recordExisting_ShouldAddToFilterAndBroadcast() {
+        // Arrange
+        when(usersRepository.count()).thenReturn(0L);
+        when(usersRepository.streamAllKeys()).thenReturn(Stream.empty());
+        filter.rebuild();
+        filter.byUsername("bob", this::query);
+
+        // Act
+        filter.recordExisting("bob", "bob@mail.com");
+        filter.byUsername("bob", this::query);
+
+        // Assert
+        assertEquals(1, queries.get());
+        verify(broadcaster).publishEvict(UserExistenceFilter.NAME, "u:bob");
+        verify(broadcaster).publishEvict(UserExistenceFilter.NAME, "e:bob@mail.com");
+    }
+
+    @Test
+    @DisplayName("apply: регистрация на другом инстансе снимает закэшированный промах")
+    void apply_ShouldForgetMissFromOtherInstance() {
+        // Arrange
+        filter.byUsername("carol", this::query);
+
+        // Act
+        filter.apply(new CacheInvalidation("other", CacheInvalidation.Kind.EVICT, UserExistenceFilter.NAME, "u:carol"));
+        filter.byUsername("carol", this::query);
+
+        // Assert
+        assertEquals(2, queries.get());
+    }
+}
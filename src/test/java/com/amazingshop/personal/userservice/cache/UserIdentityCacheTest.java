@@ -0,0 +1,144 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.models.UserIdentity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserIdentityCacheTest {
+
+    private static final UserIdentity ALICE = new UserIdentity(1L, "alice", Role.USER, 0);
+    private static final UserIdentity BOB = new UserIdentity(2L, "bob", Role.USER, 0);
+
+    private ConcurrentMapCacheManager cacheManager;
+    private UserIdentityCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager();
+        cache = new UserIdentityCache(cacheManager, new CacheLoadCoordinator(
+                new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class),
+                new SimpleMeterRegistry(), false, Duration.ofSeconds(2), 1.0, 1));
+        loads = new AtomicInteger();
+    }
+
+    private Optional<UserIdentity> load(UserIdentity identity) {
+        loads.incrementAndGet();
+        return Optional.of(identity);
+    }
+
+    @Test
+    @DisplayName("getByUsername: загруженная проекция доступна и по username, и по id")
+    void getByUsername_ShouldIndexUnderBothKeys() {
+        // Act
+        cache.getByUsername("alice", name -> load(ALICE));
+        Optional<UserIdentity> byName = cache.getByUsername("alice", name -> load(ALICE));
+        Optional<UserIdentity> byId = cache.getById(1L, id -> load(ALICE));
+
+        // Assert
+        assertEquals(Optional.of(ALICE), byName);
+        assertEquals(Optional.of(ALICE), byId);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("evict: после смены роли оба ключа читают новую проекцию")
+    void evict_ShouldDropBothKeysTogether() {
+        // Arrange
+        UserIdentity promoted = new UserIdentity(1L, "alice", Role.ADMIN, 0);
+        cache.getById(1L, id -> load(ALICE));
+
+        // Act
+        cache.evict(1L, "alice");
+
+        // Assert
+        assertEquals(Role.ADMIN, cache.getByUsername("alice", name -> load(promoted)).orElseThrow().role());
+        assertEquals(Role.ADMIN, cache.getById(1L, id -> load(ALICE)).orElseThrow().role());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("evict без username: имя берётся из закэшированной проекции")
+    void evict_ShouldResolveUsernameFromProjection() {
+        // Arrange
+        cache.getByUsername("alice", name -> load(ALICE));
+
+        // Act
+        cache.evict(1L, null);
+
+        // Assert
+        assertNull(cacheManager.getCache(UserIdentityCache.BY_ID).get(1L));
+        assertNull(cacheManager.getCache(UserIdentityCache.ID_BY_USERNAME).get("alice"));
+    }
+
+    @Test
+    @DisplayName("getByUsername: индекс на проекцию с другим username считается промахом")
+    void getByUsername_ShouldIgnoreIndexPointingToOtherUser() {
+        // Arrange
+        cache.put(BOB);
+        cacheManager.getCache(UserIdentityCache.ID_BY_USERNAME).put("alice", 2);
+
+        // Act
+        Optional<UserIdentity> result = cache.getByUsername("alice", name -> load(ALICE));
+
+        // Assert
+        assertEquals(Optional.of(ALICE), result);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("getAllById: промахи загружаются одним вызовом, порядок — как в запросе")
+    void getAllById_ShouldLoadMissesInOneCall() {
+        // Arrange
+        cache.put(BOB);
+        AtomicInteger batches = new AtomicInteger();
+
+        // Act
+        Map<Long, UserIdentity> result = cache.getAllById(List.of(1L, 2L, 3L), (Collection<Long> missing) -> {
+            batches.incrementAndGet();
+            assertEquals(List.of(1L, 3L), missing);
+            return List.of(ALICE);
+        });
+
+        // Assert
+        assertEquals(List.of(1L, 2L), List.copyOf(result.keySet()));
+        assertEquals(ALICE, result.get(1L));
+        assertEquals(1, batches.get());
+        assertEquals(Optional.of(ALICE), cache.getByUsername("alice", name -> load(BOB)));
+    }
+
+    @Test
+    @DisplayName("getAllByUsername: закэшированные по индексу отдаются без загрузки, промахи — одним вызовом")
+    void getAllByUsername_ShouldLoadMissesInOneCall() {
+        // Arrange
+        cache.put(BOB);
+        AtomicInteger batches = new AtomicInteger();
+
+        // Act
+        Map<String, UserIdentity> result = cache.getAllByUsername(List.of("alice", "bob", "ghost"), (Collection<String> missing) -> {
+            batches.incrementAndGet();
+            assertEquals(List.of("alice", "ghost"), missing);
+            return List.of(ALICE);
+        });
+
+        // Assert
+        assertEquals(Map.of("alice", ALICE, "bob", BOB), result);
+        assertEquals(1, batches.get());
+        assertEquals(Optional.of(ALICE), cache.getById(1L, id -> load(BOB)));
+    }
+}
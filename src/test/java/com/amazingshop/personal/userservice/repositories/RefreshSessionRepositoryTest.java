@@ -0,0 +1,140 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.models.RefreshSession;
+import com.amazingshop.personal.userservice.models.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Условный UPDATE ротации на настоящей БД (H2): из параллельных попыток выигрывает ровно одна
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RefreshSessionRepositoryTest {
+
+    @Autowired
+    private RefreshSessionRepository refreshSessionRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User("rotationUser", "encodedPassword", "rotation@example.com");
+        user.setRole(Role.USER);
+        userId = usersRepository.save(user).getId();
+
+        RefreshSession session = new RefreshSession();
+        session.setUserId(userId);
+        session.setTokenHash("old-hash");
+        session.setExpiresAt(LocalDateTime.now().plusDays(7));
+        refreshSessionRepository.save(session);
+    }
+
+    @AfterEach
+    void tearDown() {
+        refreshSessionRepository.deleteAll();
+        usersRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("rotate: из 50 параллельных попыток с одним хэшем выигрывает ровно одна")
+    void rotate_ShouldHaveSingleWinner_WhenHammeredFrom50Threads() throws Exception {
+        // Arrange
+        int threads = 50;
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < threads; i++) {
+            String newHash = "new-hash-" + i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                LocalDateTime now = LocalDateTime.now();
+                return transaction.execute(status -> refreshSessionRepository.rotate(
+                        userId, "old-hash", newHash, now.plusDays(7), now));
+            }));
+        }
+        start.countDown();
+
+        int winners = 0;
+        for (Future<Integer> future : futures) {
+            winners += future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(1, winners);
+        RefreshSession rotated = refreshSessionRepository.findAll().get(0);
+        assertTrue(rotated.getTokenHash().startsWith("new-hash-"));
+        assertEquals("old-hash", rotated.getPreviousTokenHash());
+        assertNotNull(rotated.getRotatedAt());
+        assertTrue(refreshSessionRepository.existsByPreviousTokenHashAndRotatedAtAfter(
+                "old-hash", LocalDateTime.now().minusSeconds(10)));
+    }
+
+    @Test
+    @DisplayName("rotate: истекшая сессия не ротируется")
+    void rotate_ShouldNotMatch_WhenSessionExpired() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        LocalDateTime later = LocalDateTime.now().plusDays(8);
+
+        Integer updated = transaction.execute(status -> refreshSessionRepository.rotate(
+                userId, "old-hash", "new-hash", later.plusDays(7), later));
+
+        assertEquals(0, updated);
+    }
+
+    @Test
+    @DisplayName("claimLegacyToken: токен прежней версии из Users забирается ровно один раз")
+    void claimLegacyToken_ShouldMatchOnce() {
+        // Arrange - схема тестов строится по сущностям (как после db/contract), колонки прежней версии добавляем сами
+        jdbcTemplate.execute("ALTER TABLE Users ADD COLUMN IF NOT EXISTS refresh_token VARCHAR(500)");
+        jdbcTemplate.execute("ALTER TABLE Users ADD COLUMN IF NOT EXISTS refresh_token_expiry TIMESTAMP");
+        jdbcTemplate.update("UPDATE Users SET refresh_token = ?, refresh_token_expiry = ? WHERE id = ?",
+                "legacy-token", LocalDateTime.now().plusDays(7), userId);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        LocalDateTime now = LocalDateTime.now();
+
+        // Act
+        Integer first = transaction.execute(status -> refreshSessionRepository.claimLegacyToken(userId, "legacy-token", now));
+        Integer second = transaction.execute(status -> refreshSessionRepository.claimLegacyToken(userId, "legacy-token", now));
+
+        // Assert
+        assertEquals(1, first);
+        assertEquals(0, second);
+    }
+}
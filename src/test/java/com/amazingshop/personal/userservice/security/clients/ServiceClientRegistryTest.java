@@ -0,0 +1,48 @@
+package com.amazingshop.personal.userservice.security.clients;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HexFormat;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceClientRegistryTest {
+
+    private static final String SECRET = "orders-service-secret";
+
+    private final ServiceClientRegistry registry = new ServiceClientRegistry(
+            "orders:" + HexFormat.of().formatHex(ServiceClientRegistry.sha256(SECRET)) + ":introspect users:read");
+
+    @Test
+    @DisplayName("authenticate: верный секрет возвращает клиента со scopes из конфигурации")
+    void authenticate_ShouldReturnClient_WhenSecretMatches() {
+        ServiceClient client = registry.authenticate("orders", SECRET).orElseThrow();
+
+        assertEquals("orders", client.clientId());
+        assertEquals(Set.of("introspect", "users:read"), client.scopes());
+    }
+
+    @Test
+    @DisplayName("authenticate: неверный секрет или неизвестный клиент — пусто")
+    void authenticate_ShouldBeEmpty_WhenCredentialsInvalid() {
+        assertTrue(registry.authenticate("orders", "wrong").isEmpty());
+        assertTrue(registry.authenticate("billing", SECRET).isEmpty());
+        assertTrue(registry.authenticate(null, null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("currentScopes: у незарегистрированного клиента scopes нет")
+    void currentScopes_ShouldBeEmpty_ForUnknownClient() {
+        assertTrue(registry.isRegistered("orders"));
+        assertFalse(registry.isRegistered("billing"));
+        assertEquals(Set.of(), registry.currentScopes("billing"));
+    }
+
+    @Test
+    @DisplayName("constructor: запись без scopes — ошибка на старте")
+    void constructor_ShouldFail_WhenEntryMalformed() {
+        assertThrows(IllegalStateException.class, () -> new ServiceClientRegistry("orders:abcd"));
+    }
+}
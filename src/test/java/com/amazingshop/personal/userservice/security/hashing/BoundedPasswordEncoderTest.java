@@ -0,0 +1,146 @@
+package com.amazingshop.personal.userservice.security.hashing;
+
+import com.amazingshop.personal.userservice.util.exceptions.PasswordHashingOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (encoder != null) {
+            encoder.close();
+        }
+    }
+
+    @Test
+    @DisplayName("encode и matches выполняются делегатом на пуле, время пишется в метрики")
+    void encodeAndMatches_DelegateOnPool() {
+        // Arrange
+        encoder = new BoundedPasswordEncoder(new PlainEncoder(), 1, 1,
+                Duration.ofSeconds(2), Duration.ofSeconds(1), meterRegistry);
+
+        // Act
+        String encoded = encoder.encode("secret");
+        boolean matches = encoder.matches("secret", encoded);
+
+        // Assert
+        assertEquals("{plain}secret", encoded);
+        assertTrue(matches);
+        assertEquals(1, meterRegistry.get("auth.password.hashing.duration").tag("operation", "encode").timer().count());
+        assertEquals(1, meterRegistry.get("auth.password.hashing.wait").tag("operation", "matches").timer().count());
+        assertEquals(0.0, meterRegistry.get("auth.password.hashing.queue.depth").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Переполненная очередь сразу отклоняет запрос с Retry-After")
+    void encode_QueueFull_RejectsImmediately() throws Exception {
+        // Arrange
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1,
+                Duration.ofSeconds(5), Duration.ofSeconds(3), meterRegistry);
+        CompletableFuture.runAsync(() -> encoder.encode("running"));
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        CompletableFuture.runAsync(() -> encoder.encode("queued"));
+        awaitQueueDepth(1);
+
+        // Act
+        long startedAt = System.nanoTime();
+        PasswordHashingOverloadedException exception = assertThrows(PasswordHashingOverloadedException.class,
+                () -> encoder.encode("rejected"));
+
+        // Assert
+        assertTrue(System.nanoTime() - startedAt < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(Duration.ofSeconds(3), exception.getRetryAfter());
+        assertEquals(1.0, meterRegistry.get("auth.password.hashing.rejected").counter().count());
+    }
+
+    @Test
+    @DisplayName("Слишком долгое ожидание результата тоже отдаётся как перегрузка")
+    void matches_WaitTooLong_Overloaded() throws Exception {
+        // Arrange
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 4,
+                Duration.ofMillis(100), Duration.ofSeconds(1), meterRegistry);
+
+        // Act & Assert
+        assertThrows(PasswordHashingOverloadedException.class, () -> encoder.matches("secret", "{plain}secret"));
+        assertEquals(1.0, meterRegistry.get("auth.password.hashing.rejected").counter().count());
+    }
+
+    @Test
+    @DisplayName("Исключение делегата пробрасывается как есть")
+    void encode_DelegateThrows_Propagates() {
+        // Arrange
+        PasswordEncoder failing = new PlainEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                throw new IllegalArgumentException("rawPassword cannot be null");
+            }
+        };
+        encoder = new BoundedPasswordEncoder(failing, 1, 1,
+                Duration.ofSeconds(2), Duration.ofSeconds(1), meterRegistry);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode(null));
+    }
+
+    private void awaitQueueDepth(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (meterRegistry.get("auth.password.hashing.queue.depth").gauge().value() < expected) {
+            assertTrue(System.nanoTime() < deadline, "task was not queued in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private static class PlainEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return "{plain}" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+
+    private class BlockingEncoder extends PlainEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            block();
+            return super.encode(rawPassword);
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            block();
+            return super.matches(rawPassword, encodedPassword);
+        }
+
+        private void block() {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
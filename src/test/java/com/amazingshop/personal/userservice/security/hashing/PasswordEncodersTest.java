@@ -0,0 +1,97 @@
+package com.amazingshop.personal.userservice.security.hashing;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.interfaces.UserService;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.services.UserDetailsServiceImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PasswordEncodersTest {
+
+    @Test
+    @DisplayName("Новые хеши пишутся с префиксом и настроенным cost BCrypt")
+    void encode_UsesConfiguredBcryptStrength() {
+        // Arrange
+        PasswordEncoder encoder = PasswordEncoders.delegating(PasswordEncoders.BCRYPT, 5, 1000, 1024, 1);
+
+        // Act
+        String encoded = encoder.encode("secret");
+
+        // Assert
+        assertTrue(encoded.startsWith("{bcrypt}$2a$05$"));
+        assertTrue(encoder.matches("secret", encoded));
+        assertFalse(encoder.upgradeEncoding(encoded));
+    }
+
+    @Test
+    @DisplayName("Старый хеш без префикса принимается и помечается на перехеширование")
+    void legacyHash_MatchesAndNeedsUpgrade() {
+        // Arrange
+        PasswordEncoder encoder = PasswordEncoders.delegating(PasswordEncoders.BCRYPT, 5, 1000, 1024, 1);
+        String legacy = new BCryptPasswordEncoder(4).encode("secret");
+
+        // Act & Assert
+        assertTrue(encoder.matches("secret", legacy));
+        assertTrue(encoder.upgradeEncoding(legacy));
+        assertTrue(encoder.upgradeEncoding("{bcrypt}" + legacy));
+    }
+
+    @Test
+    @DisplayName("PBKDF2 как алгоритм по умолчанию, BCrypt-хеши требуют перехеширования")
+    void pbkdf2_EncodesAndUpgradesBcrypt() {
+        // Arrange
+        PasswordEncoder encoder = PasswordEncoders.delegating(PasswordEncoders.PBKDF2, 4, 1000, 1024, 1);
+        String bcrypt = "{bcrypt}" + new BCryptPasswordEncoder(4).encode("secret");
+
+        // Act
+        String encoded = encoder.encode("secret");
+
+        // Assert
+        assertTrue(encoded.startsWith("{pbkdf2}"));
+        assertTrue(encoder.matches("secret", encoded));
+        assertTrue(encoder.matches("secret", bcrypt));
+        assertTrue(encoder.upgradeEncoding(bcrypt));
+        assertFalse(encoder.upgradeEncoding(encoded));
+    }
+
+    @Test
+    @DisplayName("Неизвестный алгоритм — ошибка на старте")
+    void unknownEncodingId_Throws() {
+        assertThrows(IllegalStateException.class,
+                () -> PasswordEncoders.delegating("md5", 4, 1000, 1024, 1));
+    }
+
+    @Test
+    @DisplayName("Успешный вход со старым хешем сохраняет новый хеш через UserDetailsPasswordService")
+    void login_WithOutdatedHash_RehashesPassword() {
+        // Arrange
+        PasswordEncoder encoder = PasswordEncoders.delegating(PasswordEncoders.BCRYPT, 5, 1000, 1024, 1);
+        User user = new User("testUser", new BCryptPasswordEncoder(4).encode("secret"), "test@example.com");
+        user.setId(1L);
+        user.setRole(Role.USER);
+        UserService userService = mock(UserService.class);
+        when(userService.findByUsername("testUser")).thenReturn(Optional.of(user));
+        UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl(userService);
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(userDetailsService);
+        provider.setPasswordEncoder(encoder);
+        provider.setUserDetailsPasswordService(userDetailsService);
+
+        // Act
+        provider.authenticate(new UsernamePasswordAuthenticationToken("testUser", "secret"));
+
+        // Assert
+        verify(userService).updatePasswordHash(eq(1L), eq("testUser"), startsWith("{bcrypt}$2a$05$"));
+    }
+}
@@ -2,7 +2,11 @@ package com.amazingshop.personal.userservice.security.jwt;
 
 import com.amazingshop.personal.userservice.enums.Role;
 import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.security.clients.ServiceClientRegistry;
+import com.amazingshop.personal.userservice.security.clients.ServicePrincipal;
 import com.amazingshop.personal.userservice.security.details.UserDetailsImpl;
+import com.amazingshop.personal.userservice.security.revocation.AccessTokenDenylist;
+import com.amazingshop.personal.userservice.security.revocation.PrincipalRevocationRegistry;
 import com.amazingshop.personal.userservice.services.UserDetailsServiceImpl;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.exceptions.TokenExpiredException;
@@ -14,20 +18,30 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -40,6 +54,21 @@ class JwtFilterTest {
     @Mock
     private UserDetailsServiceImpl userDetailsService;
 
+    @Mock
+    private PrincipalRevocationRegistry revocationRegistry;
+
+    @Mock
+    private AccessTokenDenylist denylist;
+
+    @Mock
+    private JwtAuthenticationEntryPoint authenticationEntryPoint;
+
+    @Mock
+    private ServiceClientRegistry clientRegistry;
+
+    @Spy
+    private VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(100, new SimpleMeterRegistry());
+
     @Mock
     private HttpServletRequest request;
 
@@ -71,6 +100,15 @@ class JwtFilterTest {
         return new UserDetailsImpl(user);
     }
 
+    // Токен без identity claims (выпущен до их появления)
+    private ParsedToken legacyToken(String username) {
+        return new ParsedToken(username, TokenType.ACCESS, "jti-legacy", null, null, Instant.now(), Instant.now().plusSeconds(900));
+    }
+
+    private ParsedToken statelessToken(Long userId, String username, Role role) {
+        return new ParsedToken(username, TokenType.ACCESS, "jti-" + userId, userId, role, Instant.now(), Instant.now().plusSeconds(900));
+    }
+
     @Test
     @DisplayName("doFilterInternal: должен установить аутентификацию для валидного токена с ролью USER")
     void doFilterInternal_ShouldSetAuthentication_WhenValidToken() throws ServletException, IOException {
@@ -79,8 +117,8 @@ class JwtFilterTest {
         UserDetailsImpl userDetails = createUserDetails(TEST_USERNAME, Role.USER);
 
         when(request.getHeader("Authorization")).thenReturn(authHeader);
-        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_TOKEN)).thenReturn(TEST_USERNAME);
-        when(userDetailsService.loadUserByUsername(TEST_USERNAME)).thenReturn(userDetails);
+        when(jwtUtil.parseBearerToken(VALID_TOKEN)).thenReturn(legacyToken(TEST_USERNAME));
+        when(userDetailsService.loadPrincipalByUsername(TEST_USERNAME)).thenReturn(userDetails);
 
         // Act
         jwtFilter.doFilterInternal(request, response, filterChain);
@@ -96,8 +134,8 @@ class JwtFilterTest {
                         .anyMatch(a -> a.getAuthority().equals("ROLE_USER")),
                 "Пользователь должен иметь роль ROLE_USER");
 
-        verify(jwtUtil, times(1)).validateTokenAndRetrieveClaim(VALID_TOKEN);
-        verify(userDetailsService, times(1)).loadUserByUsername(TEST_USERNAME);
+        verify(jwtUtil, times(1)).parseBearerToken(VALID_TOKEN);
+        verify(userDetailsService, times(1)).loadPrincipalByUsername(TEST_USERNAME);
         verify(filterChain, times(1)).doFilter(request, response);
     }
 
@@ -114,8 +152,8 @@ class JwtFilterTest {
         assertNull(SecurityContextHolder.getContext().getAuthentication(),
                 "Аутентификация не должна быть установлена");
 
-        verify(jwtUtil, never()).validateTokenAndRetrieveClaim(any());
-        verify(userDetailsService, never()).loadUserByUsername(any());
+        verify(jwtUtil, never()).parseBearerToken(any());
+        verify(userDetailsService, never()).loadPrincipalByUsername(any());
         verify(filterChain, times(1)).doFilter(request, response);
     }
 
@@ -158,7 +196,7 @@ class JwtFilterTest {
 
         // Assert
         assertNull(SecurityContextHolder.getContext().getAuthentication());
-        verify(jwtUtil, never()).validateTokenAndRetrieveClaim(any());
+        verify(jwtUtil, never()).parseBearerToken(any());
         verify(filterChain, times(1)).doFilter(request, response);
     }
 
@@ -173,10 +211,10 @@ class JwtFilterTest {
 
         String authHeader = "Bearer " + VALID_TOKEN;
         when(request.getHeader("Authorization")).thenReturn(authHeader);
-        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_TOKEN)).thenReturn(TEST_USERNAME);
+        when(jwtUtil.parseBearerToken(VALID_TOKEN)).thenReturn(legacyToken(TEST_USERNAME));
 
         UserDetailsImpl userDetails = mock(UserDetailsImpl.class);
-        when(userDetailsService.loadUserByUsername(TEST_USERNAME)).thenReturn(userDetails);
+        when(userDetailsService.loadPrincipalByUsername(TEST_USERNAME)).thenReturn(userDetails);
 
         // Act
         jwtFilter.doFilterInternal(request, response, filterChain);
@@ -189,8 +227,8 @@ class JwtFilterTest {
     }
 
     @Test
-    @DisplayName("doFilterInternal: должен вернуть 400 для пустого JWT токена после 'Bearer '")
-    void doFilterInternal_ShouldReturn400_WhenEmptyJwtToken() throws ServletException, IOException {
+    @DisplayName("doFilterInternal: пустой JWT после 'Bearer ' отклоняется один раз, без продолжения цепочки")
+    void doFilterInternal_ShouldRejectOnce_WhenEmptyJwtToken() throws ServletException, IOException {
         // Arrange
         when(request.getHeader("Authorization")).thenReturn("Bearer ");
 
@@ -198,41 +236,110 @@ class JwtFilterTest {
         jwtFilter.doFilterInternal(request, response, filterChain);
 
         // Assert
-        verify(response, times(1)).sendError(
-                HttpServletResponse.SC_BAD_REQUEST,
-                "Invalid JWT token in Bearer Header"
-        );
-        // Проверяем, что doFilter ВСЁ РАВНО вызывается из-за finally блока
-        verify(filterChain, times(1)).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
+        verify(authenticationEntryPoint, times(1)).commence(eq(request), eq(response), any(BadCredentialsException.class));
+        verify(response).setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+        verify(response, never()).sendError(anyInt(), anyString());
+        verify(filterChain, never()).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
     }
 
     @Test
-    @DisplayName("doFilterInternal: должен продолжить цепочку при истекшем токене")
-    void doFilterInternal_ShouldContinueChain_WhenTokenExpired() throws ServletException, IOException {
+    @DisplayName("doFilterInternal: истекший токен отклоняется сразу с 401")
+    void doFilterInternal_ShouldReject_WhenTokenExpired() throws ServletException, IOException {
         String authHeader = "Bearer " + VALID_TOKEN;
         when(request.getHeader("Authorization")).thenReturn(authHeader);
-        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_TOKEN))
+        when(jwtUtil.parseBearerToken(VALID_TOKEN))
                 .thenThrow(new TokenExpiredException("Token expired", null));
 
         jwtFilter.doFilterInternal(request, response, filterChain);
 
         assertNull(SecurityContextHolder.getContext().getAuthentication());
-        verify(userDetailsService, never()).loadUserByUsername(any());
-        verify(filterChain, times(1)).doFilter(request, response);
+        verify(userDetailsService, never()).loadPrincipalByUsername(any());
+        verify(authenticationEntryPoint, times(1)).commence(eq(request), eq(response), any());
+        verify(filterChain, never()).doFilter(request, response);
     }
 
     @Test
-    @DisplayName("doFilterInternal: должен продолжить цепочку при невалидном токене")
-    void doFilterInternal_ShouldContinueChain_WhenInvalidToken() throws ServletException, IOException {
+    @DisplayName("doFilterInternal: невалидный токен отклоняется сразу с 401")
+    void doFilterInternal_ShouldReject_WhenInvalidToken() throws ServletException, IOException {
         String authHeader = "Bearer invalid.token";
         when(request.getHeader("Authorization")).thenReturn(authHeader);
-        when(jwtUtil.validateTokenAndRetrieveClaim("invalid.token"))
+        when(jwtUtil.parseBearerToken("invalid.token"))
                 .thenThrow(new JWTVerificationException("Invalid signature"));
 
         jwtFilter.doFilterInternal(request, response, filterChain);
 
         assertNull(SecurityContextHolder.getContext().getAuthentication());
-        verify(filterChain, times(1)).doFilter(request, response);
+        verify(authenticationEntryPoint, times(1)).commence(eq(request), eq(response), any());
+        verify(filterChain, never()).doFilter(request, response);
+    }
+
+    @Test
+    @DisplayName("shouldNotFilter: публичные маршруты пропускают JWT полностью, даже с устаревшим токеном")
+    void doFilter_ShouldSkipTokenWork_OnPublicRoutes() throws ServletException, IOException {
+        for (String uri : new String[]{"/api/v1/auth/login", "/api/v1/auth/refresh", "/api/v1/auth/token", "/actuator/health", "/actuator/health/liveness"}) {
+            MockHttpServletRequest publicRequest = new MockHttpServletRequest("POST", uri);
+            publicRequest.addHeader("Authorization", "Bearer stale.token");
+            MockHttpServletResponse publicResponse = new MockHttpServletResponse();
+
+            jwtFilter.doFilter(publicRequest, publicResponse, filterChain);
+
+            verify(filterChain).doFilter(publicRequest, publicResponse);
+        }
+        verifyNoInteractions(jwtUtil, authenticationEntryPoint);
+    }
+
+    @Test
+    @DisplayName("shouldNotFilter: защищённые маршруты проходят через JwtFilter")
+    void shouldNotFilter_ShouldBeFalse_OnProtectedRoutes() {
+        assertFalse(jwtFilter.shouldNotFilter(new MockHttpServletRequest("GET", "/api/v1/users/me")));
+        assertFalse(jwtFilter.shouldNotFilter(new MockHttpServletRequest("GET", "/api/v1/authx")));
+        assertFalse(jwtFilter.shouldNotFilter(new MockHttpServletRequest("GET", "/actuator/metrics")));
+        assertFalse(jwtFilter.shouldNotFilter(new MockHttpServletRequest("POST", "/api/v1/auth/introspect")));
+    }
+
+    @Test
+    @DisplayName("doFilterInternal: сервисный токен аутентифицируется по claims и реестру, без загрузки пользователя")
+    void doFilterInternal_ShouldAuthenticateServiceClient_WithoutUserLookup() throws ServletException, IOException {
+        // Arrange
+        ParsedToken serviceToken = new ParsedToken(JwtKeyring.SERVICE_SUBJECT, TokenType.SERVICE, "jti-svc", null, null,
+                Instant.now(), Instant.now().plusSeconds(3600), "orders", Set.of("introspect", "users:read"));
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
+        when(jwtUtil.parseBearerToken(VALID_TOKEN)).thenReturn(serviceToken);
+        when(clientRegistry.isRegistered("orders")).thenReturn(true);
+        // users:read у клиента отозван в конфигурации — в права он не попадает
+        when(clientRegistry.currentScopes("orders")).thenReturn(Set.of("introspect"));
+
+        // Act
+        jwtFilter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(auth);
+        assertEquals("orders", ((ServicePrincipal) auth.getPrincipal()).clientId());
+        assertEquals(Set.of("SCOPE_introspect"), auth.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority).collect(Collectors.toSet()));
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    @DisplayName("doFilterInternal: сервисный токен незарегистрированного клиента отклоняется")
+    void doFilterInternal_ShouldReject_WhenServiceClientUnknown() throws ServletException, IOException {
+        // Arrange
+        ParsedToken serviceToken = new ParsedToken(JwtKeyring.SERVICE_SUBJECT, TokenType.SERVICE, "jti-svc", null, null,
+                Instant.now(), Instant.now().plusSeconds(3600), "removed", Set.of("introspect"));
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
+        when(jwtUtil.parseBearerToken(VALID_TOKEN)).thenReturn(serviceToken);
+        when(clientRegistry.isRegistered("removed")).thenReturn(false);
+
+        // Act
+        jwtFilter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(authenticationEntryPoint).commence(eq(request), eq(response), any());
+        verify(filterChain, never()).doFilter(request, response);
+        verifyNoInteractions(userDetailsService);
     }
 
     @Test
@@ -240,8 +347,8 @@ class JwtFilterTest {
     void doFilterInternal_ShouldContinueChain_WhenUserNotFound() throws ServletException, IOException {
         String authHeader = "Bearer " + VALID_TOKEN;
         when(request.getHeader("Authorization")).thenReturn(authHeader);
-        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_TOKEN)).thenReturn(TEST_USERNAME);
-        when(userDetailsService.loadUserByUsername(TEST_USERNAME))
+        when(jwtUtil.parseBearerToken(VALID_TOKEN)).thenReturn(legacyToken(TEST_USERNAME));
+        when(userDetailsService.loadPrincipalByUsername(TEST_USERNAME))
                 .thenThrow(new UsernameNotFoundException("User not found"));
 
         jwtFilter.doFilterInternal(request, response, filterChain);
@@ -256,7 +363,7 @@ class JwtFilterTest {
         // Arrange
         String authHeader = "Bearer " + VALID_TOKEN;
         when(request.getHeader("Authorization")).thenReturn(authHeader);
-        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_TOKEN))
+        when(jwtUtil.parseBearerToken(VALID_TOKEN))
                 .thenThrow(new RuntimeException("Unexpected error"));
 
         // Act
@@ -277,8 +384,8 @@ class JwtFilterTest {
         when(request.getHeader("Authorization")).thenReturn(authHeader);
 
         // ← Мокаем уже обрезанный токен!
-        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_TOKEN)).thenReturn(TEST_USERNAME);
-        when(userDetailsService.loadUserByUsername(TEST_USERNAME)).thenReturn(userDetails);
+        when(jwtUtil.parseBearerToken(VALID_TOKEN)).thenReturn(legacyToken(TEST_USERNAME));
+        when(userDetailsService.loadPrincipalByUsername(TEST_USERNAME)).thenReturn(userDetails);
 
         // Act
         jwtFilter.doFilterInternal(request, response, filterChain);
@@ -301,7 +408,7 @@ class JwtFilterTest {
         assertNull(SecurityContextHolder.getContext().getAuthentication(),
                 "Фильтр должен быть case-sensitive для 'Bearer'");
 
-        verify(jwtUtil, never()).validateTokenAndRetrieveClaim(any());
+        verify(jwtUtil, never()).parseBearerToken(any());
         verify(filterChain, times(1)).doFilter(request, response);
     }
 
@@ -309,11 +416,102 @@ class JwtFilterTest {
     @DisplayName("doFilterInternal: filterChain всегда должен вызываться в finally блоке")
     void doFilterInternal_ShouldAlwaysCallFilterChain_EvenOnException() throws ServletException, IOException {
         when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
-        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_TOKEN))
+        when(jwtUtil.parseBearerToken(VALID_TOKEN))
                 .thenThrow(new RuntimeException("Critical error"));
 
         jwtFilter.doFilterInternal(request, response, filterChain);
 
         verify(filterChain, times(1)).doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("doFilterInternal: должен собрать principal из claims без загрузки пользователя")
+    void doFilterInternal_ShouldBuildPrincipalFromClaims_WithoutUserLookup() throws ServletException, IOException {
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
+        when(jwtUtil.parseBearerToken(VALID_TOKEN)).thenReturn(statelessToken(42L, TEST_USERNAME, Role.ADMIN));
+
+        jwtFilter.doFilterInternal(request, response, filterChain);
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(auth);
+        UserDetailsImpl principal = (UserDetailsImpl) auth.getPrincipal();
+        assertEquals(42L, principal.getUser().getId());
+        assertEquals(TEST_USERNAME, principal.getUsername());
+        assertNull(principal.getPassword(), "Principal из claims не должен содержать пароль");
+        assertTrue(auth.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN")));
+
+        verify(userDetailsService, never()).loadPrincipalByUsername(any());
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    @DisplayName("doFilterInternal: должен загрузить пользователя, если claims устарели после смены роли/удаления")
+    void doFilterInternal_ShouldLoadUser_WhenClaimsAreStale() throws ServletException, IOException {
+        ParsedToken token = statelessToken(42L, TEST_USERNAME, Role.USER);
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
+        when(jwtUtil.parseBearerToken(VALID_TOKEN)).thenReturn(token);
+        when(revocationRegistry.isStale(42L, token.issuedAt())).thenReturn(true);
+        when(userDetailsService.loadPrincipalByUsername(TEST_USERNAME))
+                .thenThrow(new UsernameNotFoundException("User not found"));
+
+        jwtFilter.doFilterInternal(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication(),
+                "Удалённый пользователь не должен пройти аутентификацию по старым claims");
+        verify(userDetailsService, times(1)).loadPrincipalByUsername(TEST_USERNAME);
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    @DisplayName("doFilterInternal: повторный запрос с тем же токеном не должен проверять подпись заново")
+    void doFilterInternal_ShouldVerifyTokenOnce_WhenTokenRepeated() throws ServletException, IOException {
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
+        when(jwtUtil.parseBearerToken(VALID_TOKEN)).thenReturn(statelessToken(42L, TEST_USERNAME, Role.USER));
+
+        jwtFilter.doFilterInternal(request, response, filterChain);
+        SecurityContextHolder.clearContext();
+        jwtFilter.doFilterInternal(request, response, filterChain);
+
+        assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(jwtUtil, times(1)).parseBearerToken(VALID_TOKEN);
+        verify(filterChain, times(2)).doFilter(request, response);
+    }
+
+    @Test
+    @DisplayName("doFilterInternal: закэшированный токен должен отклоняться после отзыва claims")
+    void doFilterInternal_ShouldRejectCachedToken_WhenRevoked() throws ServletException, IOException {
+        ParsedToken token = statelessToken(42L, TEST_USERNAME, Role.USER);
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
+        when(jwtUtil.parseBearerToken(VALID_TOKEN)).thenReturn(token);
+
+        jwtFilter.doFilterInternal(request, response, filterChain);
+        SecurityContextHolder.clearContext();
+
+        when(revocationRegistry.isStale(42L, token.issuedAt())).thenReturn(true);
+        when(userDetailsService.loadPrincipalByUsername(TEST_USERNAME))
+                .thenThrow(new UsernameNotFoundException("User not found"));
+        jwtFilter.doFilterInternal(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    @DisplayName("doFilterInternal: отозванный access token не должен аутентифицировать, даже из кэша")
+    void doFilterInternal_ShouldNotAuthenticate_WhenTokenInDenylist() throws ServletException, IOException {
+        ParsedToken token = statelessToken(42L, TEST_USERNAME, Role.USER);
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
+        when(jwtUtil.parseBearerToken(VALID_TOKEN)).thenReturn(token);
+
+        jwtFilter.doFilterInternal(request, response, filterChain);
+        assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+        SecurityContextHolder.clearContext();
+
+        when(denylist.isRevoked(token)).thenReturn(true);
+        jwtFilter.doFilterInternal(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(userDetailsService, never()).loadPrincipalByUsername(any());
+        verify(filterChain, times(2)).doFilter(request, response);
+    }
+}
@@ -1,5 +1,9 @@
 package com.amazingshop.personal.userservice.security.jwt;
 
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.security.revocation.RevocationBroadcaster;
+import com.amazingshop.personal.userservice.security.revocation.TokenEpochRegistry;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
@@ -12,11 +16,22 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.Map;
 import java.util.Date;
+import java.util.Set;
 
 import static org.hibernate.validator.internal.util.Contracts.assertNotNull;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
 
 @ExtendWith(MockitoExtension.class)
 public class JwtUtilTest {
@@ -35,6 +50,7 @@ public class JwtUtilTest {
         ReflectionTestUtils.setField(jwtUtil, "secret", TEST_SECRET);
         ReflectionTestUtils.setField(jwtUtil, "accessTokenExpiration", ACCESS_EXPIRATION_MS);
         ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpiration", REFRESH_EXPIRATION_MS);
+        jwtUtil.init();
     }
 
     @Test
@@ -183,29 +199,103 @@ public class JwtUtilTest {
     }
 
     @Test
-    @DisplayName("getTokenType: должен вернуть 'access' для access токена")
-    void getTokenType_ShouldReturnAccess_ForAccessToken() {
+    @DisplayName("parseAccessToken: должен вернуть тип ACCESS и jti для access токена")
+    void parseAccessToken_ShouldReturnAccessType() {
         // Arrange
         String token = jwtUtil.generateAccessToken(TEST_USERNAME);
 
         // Act
-        String tokenType = jwtUtil.getTokenType(token);
+        ParsedToken parsed = jwtUtil.parseAccessToken(token);
 
         // Assert
-        assertEquals("access", tokenType);
+        assertEquals(TokenType.ACCESS, parsed.type());
+        assertNotNull(parsed.jti());
     }
 
     @Test
-    @DisplayName("getTokenType: должен вернуть 'refresh' для refresh токена")
-    void getTokenType_ShouldReturnRefresh_ForRefreshToken() {
+    @DisplayName("parseRefreshToken: должен вернуть тип REFRESH, username, jti и сроки для refresh токена")
+    void parseRefreshToken_ShouldReturnRefreshType() {
         // Arrange
         String token = jwtUtil.generateRefreshToken(TEST_USERNAME);
 
         // Act
-        String tokenType = jwtUtil.getTokenType(token);
+        ParsedToken parsed = jwtUtil.parseRefreshToken(token);
 
         // Assert
-        assertEquals("refresh", tokenType);
+        assertEquals(TokenType.REFRESH, parsed.type());
+        assertEquals(TEST_USERNAME, parsed.username());
+        assertNotNull(parsed.jti());
+        assertNotNull(parsed.issuedAt());
+        assertTrue(parsed.expiresAt().isAfter(parsed.issuedAt()));
+    }
+
+    @Test
+    @DisplayName("parseRefreshToken: должен отклонить access токен при проверке подписи")
+    void parseRefreshToken_ShouldRejectAccessToken() {
+        String accessToken = jwtUtil.generateAccessToken(TEST_USERNAME);
+
+        assertThrows(JWTVerificationException.class,
+                () -> jwtUtil.parseRefreshToken(accessToken));
+    }
+
+    @Test
+    @DisplayName("parseAccessToken: должен отклонить refresh токен при проверке подписи")
+    void parseAccessToken_ShouldRejectRefreshToken() {
+        String refreshToken = jwtUtil.generateRefreshToken(TEST_USERNAME);
+
+        assertThrows(JWTVerificationException.class,
+                () -> jwtUtil.parseAccessToken(refreshToken));
+    }
+
+    @Test
+    @DisplayName("generateRefreshToken: эпохи пользователя и глобальная вшиваются в токен")
+    void generateRefreshToken_ShouldCarryTokenEpochs() {
+        TokenEpochRegistry tokenEpochRegistry = new TokenEpochRegistry(mock(RevocationBroadcaster.class), 900000L);
+        tokenEpochRegistry.loadGlobalEpoch(2);
+        jwtUtil.setTokenEpochRegistry(tokenEpochRegistry);
+        User user = new User();
+        user.setId(7L);
+        user.setUsername(TEST_USERNAME);
+        user.setRole(Role.USER);
+        user.setTokenEpoch(3);
+
+        ParsedToken refresh = jwtUtil.parseRefreshToken(jwtUtil.generateRefreshToken(user));
+        ParsedToken access = jwtUtil.parseAccessToken(jwtUtil.generateAccessToken(user));
+
+        assertEquals(7L, refresh.userId());
+        assertEquals(3, refresh.tokenEpoch());
+        assertEquals(2, refresh.globalEpoch());
+        assertEquals(3, access.tokenEpoch());
+        assertEquals(2, access.globalEpoch());
+    }
+
+    @Test
+    @DisplayName("generateServiceToken: сервисный токен несёт client_id и scopes и разбирается parseBearerToken")
+    void generateServiceToken_ShouldRoundTrip() {
+        String token = jwtUtil.generateServiceToken("orders", Set.of("introspect", "users:read"), Duration.ofHours(1));
+
+        ParsedToken parsed = jwtUtil.parseBearerToken(token);
+
+        assertTrue(parsed.isServiceToken());
+        assertEquals("orders", parsed.clientId());
+        assertEquals(Set.of("introspect", "users:read"), parsed.scopes());
+        assertNull(parsed.userId());
+    }
+
+    @Test
+    @DisplayName("parseAccessToken: сервисный токен не принимается как пользовательский")
+    void parseAccessToken_ShouldRejectServiceToken() {
+        String token = jwtUtil.generateServiceToken("orders", Set.of("introspect"), Duration.ofHours(1));
+
+        assertThrows(JWTVerificationException.class, () -> jwtUtil.parseAccessToken(token));
+    }
+
+    @Test
+    @DisplayName("parseBearerToken: refresh токен не принимается как bearer")
+    void parseBearerToken_ShouldRejectRefreshToken() {
+        String refreshToken = jwtUtil.generateRefreshToken(TEST_USERNAME);
+
+        assertThrows(JWTVerificationException.class, () -> jwtUtil.parseBearerToken(refreshToken));
     }
 
     @Test
@@ -280,4 +370,193 @@ public class JwtUtilTest {
         assertThrows(Exception.class,
                 () -> jwtUtil.validateTokenAndRetrieveClaim(null));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("generateAccessToken: токен должен содержать kid активного ключа")
+    void generateAccessToken_ShouldCarryKeyId() {
+        String token = jwtUtil.generateAccessToken(TEST_USERNAME);
+
+        assertEquals("k1", JWT.decode(token).getKeyId());
+    }
+
+    @Test
+    @DisplayName("validateTokenAndRetrieveClaim: должен принимать токены без kid, подписанные jwt.secret")
+    void validateToken_ShouldAcceptLegacyTokenWithoutKeyId() {
+        String legacyToken = JWT.create()
+                .withSubject("User details")
+                .withClaim("username", TEST_USERNAME)
+                .withClaim("type", "access")
+                .withIssuer("ShporaAi")
+                .withExpiresAt(Date.from(ZonedDateTime.now().plusMinutes(10).toInstant()))
+                .sign(Algorithm.HMAC256(TEST_SECRET));
+
+        assertEquals(TEST_USERNAME, jwtUtil.validateTokenAndRetrieveClaim(legacyToken));
+    }
+
+    @Test
+    @DisplayName("init: ключи из jwt.previous-keys должны использоваться только для проверки")
+    void init_ShouldLoadPreviousKeysForVerification() {
+        String previousSecret = "previousSecretForTesting123456789012345678901234567";
+        String tokenFromPreviousKey = JWT.create()
+                .withKeyId("k0")
+                .withSubject("User details")
+                .withClaim("username", TEST_USERNAME)
+                .withClaim("type", "access")
+                .withIssuer("ShporaAi")
+                .withExpiresAt(Date.from(ZonedDateTime.now().plusMinutes(10).toInstant()))
+                .sign(Algorithm.HMAC256(previousSecret));
+
+        ReflectionTestUtils.setField(jwtUtil, "previousKeys", "k0:" + previousSecret);
+        jwtUtil.init();
+
+        assertEquals(TEST_USERNAME, jwtUtil.validateTokenAndRetrieveClaim(tokenFromPreviousKey));
+        assertEquals("k1", JWT.decode(jwtUtil.generateAccessToken(TEST_USERNAME)).getKeyId());
+    }
+
+    @Test
+    @DisplayName("validateTokenAndRetrieveClaim: должен отклонить токен с неизвестным kid")
+    void validateToken_ShouldThrowException_WhenUnknownKeyId() {
+        String token = JWT.create()
+                .withKeyId("unknown")
+                .withSubject("User details")
+                .withClaim("username", TEST_USERNAME)
+                .withIssuer("ShporaAi")
+                .withExpiresAt(Date.from(ZonedDateTime.now().plusMinutes(10).toInstant()))
+                .sign(Algorithm.HMAC256(TEST_SECRET));
+
+        assertThrows(JWTVerificationException.class,
+                () -> jwtUtil.validateTokenAndRetrieveClaim(token));
+    }
+
+    @Test
+    @DisplayName("parseAccessToken: должен вернуть uid и role из access токена с identity claims")
+    void parseAccessToken_ShouldReturnIdentityClaims() {
+        User user = new User(TEST_USERNAME, "encodedPassword", "test@example.com");
+        user.setId(7L);
+        user.setRole(Role.ADMIN);
+
+        ParsedToken parsed = jwtUtil.parseAccessToken(jwtUtil.generateAccessToken(user));
+
+        assertTrue(parsed.hasIdentityClaims());
+        assertEquals(TEST_USERNAME, parsed.username());
+        assertEquals(7L, parsed.userId());
+        assertEquals(Role.ADMIN, parsed.role());
+        assertNotNull(parsed.issuedAt());
+        assertNotNull(parsed.expiresAt());
+    }
+
+    @Test
+    @DisplayName("parseAccessToken: токен без identity claims должен вернуть только username")
+    void parseAccessToken_ShouldReturnUsernameOnly_ForLegacyToken() {
+        ParsedToken parsed = jwtUtil.parseAccessToken(jwtUtil.generateAccessToken(TEST_USERNAME));
+
+        assertFalse(parsed.hasIdentityClaims());
+        assertEquals(TEST_USERNAME, parsed.username());
+    }
+
+    private KeyPair enableEs256() {
+        KeyPair keyPair = EcKeys.generate();
+        ReflectionTestUtils.setField(jwtUtil, "algorithm", "ES256");
+        ReflectionTestUtils.setField(jwtUtil, "ecPublicKey", Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+        ReflectionTestUtils.setField(jwtUtil, "ecPrivateKey", Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()));
+        jwtUtil.init();
+        return keyPair;
+    }
+
+    @Test
+    @DisplayName("init: при jwt.algorithm=ES256 токены подписываются ключом ec1")
+    void es256_ShouldSignWithEcKey() {
+        enableEs256();
+
+        String token = jwtUtil.generateAccessToken(TEST_USERNAME);
+
+        assertEquals("ES256", JWT.decode(token).getAlgorithm());
+        assertEquals("ec1", JWT.decode(token).getKeyId());
+        assertEquals(TEST_USERNAME, jwtUtil.parseAccessToken(token).username());
+    }
+
+    @Test
+    @DisplayName("init: HMAC-токены, выданные до перехода на ES256, остаются валидными")
+    void es256_ShouldStillAcceptHmacTokens() {
+        String hmacToken = jwtUtil.generateAccessToken(TEST_USERNAME);
+
+        enableEs256();
+
+        assertEquals(TEST_USERNAME, jwtUtil.parseAccessToken(hmacToken).username());
+    }
+
+    @Test
+    @DisplayName("publicSigningKeys: JWKS содержит только открытые EC-ключи, токен проверяется по JWK без секрета")
+    void publicSigningKeys_ShouldVerifyTokenFromJwk() throws Exception {
+        enableEs256();
+        String token = jwtUtil.generateAccessToken(TEST_USERNAME);
+
+        Map<String, ECPublicKey> keys = jwtUtil.publicSigningKeys();
+        assertEquals(java.util.Set.of("ec1"), keys.keySet());
+
+        // Как это сделает ai-service: восстановить ключ из x/y и проверить подпись
+        Map<String, Object> jwk = EcKeys.toJwk("ec1", keys.get("ec1"));
+        assertEquals("EC", jwk.get("kty"));
+        assertEquals("ES256", jwk.get("alg"));
+        ECPoint point = new ECPoint(
+                new BigInteger(1, Base64.getUrlDecoder().decode((String) jwk.get("x"))),
+                new BigInteger(1, Base64.getUrlDecoder().decode((String) jwk.get("y"))));
+        ECPublicKey restored = (ECPublicKey) KeyFactory.getInstance("EC")
+                .generatePublic(new ECPublicKeySpec(point, keys.get("ec1").getParams()));
+
+        assertEquals(TEST_USERNAME, JWT.require(Algorithm.ECDSA256(restored, null))
+                .build()
+                .verify(token)
+                .getClaim("username").asString());
+    }
+
+    @Test
+    @DisplayName("parseAccessToken: токен с kid ES256-ключа, подписанный HMAC, должен отклоняться")
+    void es256_ShouldRejectAlgorithmSubstitution() {
+        KeyPair keyPair = enableEs256();
+        String forged = JWT.create()
+                .withKeyId("ec1")
+                .withSubject("User details")
+                .withIssuer("ShporaAi")
+                .withClaim("username", TEST_USERNAME)
+                .withClaim("type", "access")
+                .withExpiresAt(Date.from(ZonedDateTime.now().plusMinutes(10).toInstant()))
+                .sign(Algorithm.HMAC256(keyPair.getPublic().getEncoded()));
+
+        assertThrows(JWTVerificationException.class, () -> jwtUtil.parseAccessToken(forged));
+    }
+
+    @Test
+    @DisplayName("init: неподдерживаемый jwt.algorithm — ошибка на старте")
+    void init_ShouldFail_WhenAlgorithmUnsupported() {
+        ReflectionTestUtils.setField(jwtUtil, "algorithm", "EdDSA");
+
+        assertThrows(IllegalStateException.class, () -> jwtUtil.init());
+    }
+
+    @Test
+    @DisplayName("init: ES256 без ключей — ошибка на старте")
+    void init_ShouldFail_WhenEs256KeysMissing() {
+        ReflectionTestUtils.setField(jwtUtil, "algorithm", "ES256");
+
+        assertThrows(IllegalStateException.class, () -> jwtUtil.init());
+    }
+
+    @Test
+    @DisplayName("init: jwt.ec.generate-dev-key генерирует временный ключ со случайным kid")
+    void init_ShouldGenerateDevKeyWithRandomKid_WhenAllowed() {
+        // Arrange
+        ReflectionTestUtils.setField(jwtUtil, "algorithm", "ES256");
+        ReflectionTestUtils.setField(jwtUtil, "ecGenerateDevKey", true);
+
+        // Act
+        jwtUtil.init();
+        String token = jwtUtil.generateAccessToken(TEST_USERNAME);
+
+        // Assert
+        String kid = JWT.decode(token).getKeyId();
+        assertTrue(kid.startsWith("dev-"));
+        assertEquals(java.util.Set.of(kid), jwtUtil.publicSigningKeys().keySet());
+        assertEquals(TEST_USERNAME, jwtUtil.parseAccessToken(token).username());
+    }
+}
@@ -0,0 +1,38 @@
+package com.amazingshop.personal.userservice.security.jwt;
+
+import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SealedTokenPairTest {
+
+    private static final TokenPairResponse PAIR =
+            new TokenPairResponse("access.jwt", 900L, "refresh.jwt", 604800L, "alice");
+
+    @Test
+    @DisplayName("open: пара расшифровывается только старым refresh token")
+    void open_ShouldRequireSameRefreshToken() {
+        // Act
+        SealedTokenPair sealed = SealedTokenPair.seal(PAIR, "old.refresh.jwt");
+
+        // Assert
+        assertEquals(PAIR, sealed.open("old.refresh.jwt"));
+        assertNull(sealed.open("another.refresh.jwt"));
+    }
+
+    @Test
+    @DisplayName("open: подмена username в записи ломает проверку шифртекста")
+    void open_ShouldRejectTamperedUsername() {
+        // Arrange
+        SealedTokenPair sealed = SealedTokenPair.seal(PAIR, "old.refresh.jwt");
+
+        // Act
+        SealedTokenPair tampered = new SealedTokenPair("mallory", sealed.accessTokenExpiresIn(),
+                sealed.refreshTokenExpiresIn(), sealed.sealed());
+
+        // Assert
+        assertNull(tampered.open("old.refresh.jwt"));
+    }
+}
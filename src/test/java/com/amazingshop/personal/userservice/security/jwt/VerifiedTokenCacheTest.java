@@ -0,0 +1,79 @@
+package com.amazingshop.personal.userservice.security.jwt;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifiedTokenCacheTest {
+
+    private static final String TOKEN = "header.payload.signature";
+
+    private SimpleMeterRegistry meterRegistry;
+    private VerifiedTokenCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new VerifiedTokenCache(100, meterRegistry);
+    }
+
+    private ParsedToken tokenExpiringAt(Instant expiresAt) {
+        return new ParsedToken("testUser", TokenType.ACCESS, "jti-1", 1L, null, Instant.now(), expiresAt);
+    }
+
+    @Test
+    @DisplayName("get: должен проверить токен один раз и отдавать claims из кэша")
+    void get_ShouldVerifyOnce_AndServeFromCache() {
+        AtomicInteger verifications = new AtomicInteger();
+        Function<String, ParsedToken> verifier = token -> {
+            verifications.incrementAndGet();
+            return tokenExpiringAt(Instant.now().plusSeconds(60));
+        };
+
+        ParsedToken first = cache.get(TOKEN, verifier);
+        ParsedToken second = cache.get(TOKEN, verifier);
+
+        assertSame(first, second);
+        assertEquals(1, verifications.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "jwtVerifiedTokens")
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("get: истекший токен не должен отдаваться из кэша")
+    void get_ShouldNotServeExpiredToken() {
+        AtomicInteger verifications = new AtomicInteger();
+        cache.get(TOKEN, token -> {
+            verifications.incrementAndGet();
+            return tokenExpiringAt(Instant.now().minusSeconds(1));
+        });
+
+        assertThrows(JWTVerificationException.class, () -> cache.get(TOKEN, token -> {
+            verifications.incrementAndGet();
+            throw new JWTVerificationException("Token expired");
+        }));
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    @DisplayName("get: невалидный токен не должен кэшироваться")
+    void get_ShouldNotCacheFailedVerification() {
+        AtomicInteger verifications = new AtomicInteger();
+        Function<String, ParsedToken> failing = token -> {
+            verifications.incrementAndGet();
+            throw new JWTVerificationException("Invalid signature");
+        };
+
+        assertThrows(JWTVerificationException.class, () -> cache.get(TOKEN, failing));
+        assertThrows(JWTVerificationException.class, () -> cache.get(TOKEN, failing));
+        assertEquals(2, verifications.get());
+    }
+}
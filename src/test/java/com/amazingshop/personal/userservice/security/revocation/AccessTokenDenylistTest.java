@@ -0,0 +1,101 @@
+package com.amazingshop.personal.userservice.security.revocation;
+
+import com.amazingshop.personal.userservice.security.jwt.ParsedToken;
+import com.amazingshop.personal.userservice.security.jwt.TokenType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AccessTokenDenylistTest {
+
+    @Mock
+    private RevocationBroadcaster broadcaster;
+
+    private AccessTokenDenylist denylist;
+
+    @BeforeEach
+    void setUp() {
+        denylist = new AccessTokenDenylist(broadcaster, new TokenEpochRegistry(broadcaster, 1800000L), 1800000L, 1000);
+    }
+
+    private ParsedToken token(String jti, Long userId, Instant issuedAt) {
+        return new ParsedToken("testUser", TokenType.ACCESS, jti, userId, null, issuedAt, issuedAt.plusSeconds(900));
+    }
+
+    @Test
+    @DisplayName("revokeToken: отозванный jti отклоняется, остальные нет, событие уходит другим инстансам")
+    void revokeToken_ShouldDenyOnlyThatJti() {
+        // Arrange
+        Instant now = Instant.now();
+
+        // Act
+        denylist.revokeToken("revoked-jti", now.plusSeconds(900));
+
+        // Assert
+        assertTrue(denylist.isRevoked(token("revoked-jti", 1L, now)));
+        assertFalse(denylist.isRevoked(token("other-jti", 1L, now)));
+
+        ArgumentCaptor<RevocationEvent> captor = ArgumentCaptor.forClass(RevocationEvent.class);
+        verify(broadcaster).publish(captor.capture());
+        assertEquals(RevocationEvent.Kind.TOKEN, captor.getValue().kind());
+        assertEquals("revoked-jti", captor.getValue().subject());
+    }
+
+    @Test
+    @DisplayName("revokeAllForUser: токены, выданные до отзыва, отклоняются, выданные позже — нет")
+    void revokeAllForUser_ShouldDenyTokensIssuedBefore() {
+        Instant before = Instant.now().minusSeconds(60).truncatedTo(ChronoUnit.SECONDS);
+
+        denylist.revokeAllForUser(7L);
+
+        assertTrue(denylist.isRevoked(token("old-jti", 7L, before)));
+        assertFalse(denylist.isRevoked(token("new-jti", 7L, Instant.now().plusSeconds(2))));
+        assertFalse(denylist.isRevoked(token("foreign-jti", 8L, before)));
+    }
+
+    @Test
+    @DisplayName("apply: событие от другого инстанса применяется без повторной рассылки")
+    void apply_ShouldApplyRemoteEvent() {
+        Instant now = Instant.now();
+        String message = new RevocationEvent(RevocationEvent.Kind.TOKEN, "remote-jti", now.plusSeconds(900)).toMessage();
+
+        denylist.apply(RevocationEvent.fromMessage(message));
+
+        assertTrue(denylist.isRevoked(token("remote-jti", 1L, now)));
+        verify(broadcaster, never()).publish(any());
+    }
+
+    @Test
+    @DisplayName("purgeExpired: истекшие jti удаляются, живые остаются отозванными")
+    void purgeExpired_ShouldDropExpiredJtis() {
+        Instant now = Instant.now();
+        denylist.apply(new RevocationEvent(RevocationEvent.Kind.TOKEN, "expired-jti", now.minusSeconds(1)));
+        denylist.apply(new RevocationEvent(RevocationEvent.Kind.TOKEN, "live-jti", now.plusSeconds(900)));
+
+        denylist.purgeExpired();
+
+        assertFalse(denylist.isRevoked(token("expired-jti", 1L, now)));
+        assertTrue(denylist.isRevoked(token("live-jti", 1L, now)));
+    }
+
+    @Test
+    @DisplayName("RevocationEvent: сообщение должно переживать кодирование и разбор")
+    void revocationEvent_ShouldRoundTrip() {
+        RevocationEvent event = new RevocationEvent(RevocationEvent.Kind.USER, "42", Instant.ofEpochMilli(1700000000000L));
+
+        assertEquals(event, RevocationEvent.fromMessage(event.toMessage()));
+    }
+}
@@ -0,0 +1,124 @@
+package com.amazingshop.personal.userservice.security.revocation;
+
+import com.amazingshop.personal.userservice.security.jwt.ParsedToken;
+import com.amazingshop.personal.userservice.security.jwt.TokenType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class RevocationSyncTest {
+
+    private static final long ACCESS_TTL_MS = 1800000L;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    // Содержимое sorted set в Redis: сообщение -> score
+    private final Map<String, Double> stored = new ConcurrentHashMap<>();
+
+    private RevocationStore store;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        lenient().when(zSetOperations.add(anyString(), anyString(), anyDouble())).thenAnswer(invocation -> {
+            stored.put(invocation.getArgument(1), invocation.getArgument(2));
+            return true;
+        });
+        lenient().when(zSetOperations.rangeByScore(anyString(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+            double min = invocation.getArgument(1);
+            return stored.entrySet().stream()
+                    .filter(entry -> entry.getValue() >= min)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+        });
+        store = new RevocationStore(new StaticListableBeanFactory(Map.of("redisTemplate", redisTemplate))
+                .getBeanProvider(StringRedisTemplate.class), true, "revocations", ACCESS_TTL_MS);
+    }
+
+    private Instance newInstance() {
+        RevocationBroadcaster broadcaster = new RevocationBroadcaster(
+                new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class), store, false, "test");
+        TokenEpochRegistry epochs = new TokenEpochRegistry(broadcaster, ACCESS_TTL_MS);
+        AccessTokenDenylist denylist = new AccessTokenDenylist(broadcaster, epochs, ACCESS_TTL_MS, 1000);
+        PrincipalRevocationRegistry principals = new PrincipalRevocationRegistry(ACCESS_TTL_MS, broadcaster);
+        return new Instance(denylist, epochs, principals, new RevocationSync(store, denylist, principals, epochs));
+    }
+
+    private ParsedToken token(String jti, Long userId, long tokenEpoch, Instant issuedAt) {
+        return new ParsedToken("testUser", TokenType.ACCESS, jti, userId, null, issuedAt, issuedAt.plusSeconds(900),
+                null, Set.of(), tokenEpoch, 0);
+    }
+
+    @Test
+    @DisplayName("loadAll: инстанс, запущенный после отзыва, отклоняет токены, отозванные до его старта")
+    void loadAll_ShouldRejectTokensRevokedBeforeStart() {
+        // Arrange - отзывы на уже работающем инстансе
+        Instant issuedAt = Instant.now().minusSeconds(60);
+        Instance running = newInstance();
+        running.denylist().revokeToken("logged-out", issuedAt.plusSeconds(900));
+        running.epochs().advanceUserEpoch(7L, 1);
+        running.principals().markChanged(9L);
+
+        // Act - новый инстанс ничего не получал по pub/sub
+        Instance started = newInstance();
+        assertFalse(started.denylist().isRevoked(token("logged-out", 1L, 0, issuedAt)));
+        started.sync().loadAll();
+
+        // Assert
+        assertTrue(started.denylist().isRevoked(token("logged-out", 1L, 0, issuedAt)));
+        assertTrue(started.denylist().isRevoked(token("old-session", 7L, 0, issuedAt)));
+        assertFalse(started.denylist().isRevoked(token("new-session", 7L, 1, issuedAt)));
+        assertTrue(started.principals().isStale(9L, issuedAt));
+        assertFalse(started.denylist().isRevoked(token("other", 2L, 0, issuedAt)));
+    }
+
+    @Test
+    @DisplayName("reload: потерянное сообщение pub/sub применяется при следующем чтении хранилища")
+    void reload_ShouldCatchUpMissedEvents() {
+        // Arrange
+        Instant issuedAt = Instant.now().minusSeconds(60);
+        Instance first = newInstance();
+        Instance second = newInstance();
+        second.sync().loadAll();
+
+        // Act
+        first.denylist().revokeToken("missed", issuedAt.plusSeconds(900));
+        second.sync().reload();
+
+        // Assert
+        assertTrue(second.denylist().isRevoked(token("missed", 1L, 0, issuedAt)));
+    }
+
+    @Test
+    @DisplayName("save: глобальная эпоха в хранилище не пишется — она в БД")
+    void save_ShouldSkipGlobalEpoch() {
+        store.save(new RevocationEvent(RevocationEvent.Kind.GLOBAL_EPOCH, "3", Instant.now()));
+
+        assertTrue(stored.isEmpty());
+    }
+
+    private record Instance(AccessTokenDenylist denylist, TokenEpochRegistry epochs,
+                            PrincipalRevocationRegistry principals, RevocationSync sync) {
+    }
+}
@@ -0,0 +1,86 @@
+package com.amazingshop.personal.userservice.security.revocation;
+
+import com.amazingshop.personal.userservice.security.jwt.ParsedToken;
+import com.amazingshop.personal.userservice.security.jwt.TokenType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TokenEpochRegistryTest {
+
+    @Mock
+    private RevocationBroadcaster broadcaster;
+
+    private TokenEpochRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new TokenEpochRegistry(broadcaster, 1800000L);
+    }
+
+    private ParsedToken token(Long userId, long tokenEpoch, long globalEpoch) {
+        Instant now = Instant.now();
+        return new ParsedToken("testUser", TokenType.ACCESS, "jti", userId, null, now, now.plusSeconds(900),
+                null, Set.of(), tokenEpoch, globalEpoch);
+    }
+
+    @Test
+    @DisplayName("advanceUserEpoch: токены пользователя со старой эпохой отозваны, чужие и новые — нет")
+    void advanceUserEpoch_ShouldRevokeOnlyOlderTokensOfThatUser() {
+        // Act
+        registry.advanceUserEpoch(1L, 1);
+
+        // Assert
+        assertFalse(registry.isCurrent(token(1L, 0, 0)));
+        assertTrue(registry.isCurrent(token(1L, 1, 0)));
+        assertTrue(registry.isCurrent(token(2L, 0, 0)));
+
+        ArgumentCaptor<RevocationEvent> event = ArgumentCaptor.forClass(RevocationEvent.class);
+        verify(broadcaster).publish(event.capture());
+        assertEquals(RevocationEvent.Kind.USER_EPOCH, event.getValue().kind());
+        assertEquals("1:1", event.getValue().subject());
+    }
+
+    @Test
+    @DisplayName("advanceGlobalEpoch: отозваны токены всех пользователей, кроме сервисных")
+    void advanceGlobalEpoch_ShouldRevokeEveryUserToken() {
+        registry.advanceGlobalEpoch(3);
+
+        assertFalse(registry.isCurrent(token(1L, 0, 2)));
+        assertFalse(registry.isCurrent(token(null, 0, 0)));
+        assertTrue(registry.isCurrent(token(1L, 0, 3)));
+        assertTrue(registry.isCurrent(new ParsedToken(null, TokenType.SERVICE, "jti", null, null,
+                Instant.now(), Instant.now().plusSeconds(900), "orders", Set.of("introspect"))));
+    }
+
+    @Test
+    @DisplayName("apply: события от других инстансов не уменьшают эпоху")
+    void apply_ShouldKeepHighestEpoch() {
+        registry.apply(RevocationEvent.fromMessage("USER_EPOCH|1:5|0"));
+        registry.apply(RevocationEvent.fromMessage("USER_EPOCH|1:2|0"));
+        registry.apply(RevocationEvent.fromMessage("GLOBAL_EPOCH|4|0"));
+        registry.apply(RevocationEvent.fromMessage("GLOBAL_EPOCH|1|0"));
+
+        assertFalse(registry.isCurrent(token(1L, 4, 4)));
+        assertTrue(registry.isCurrent(token(1L, 5, 4)));
+        assertEquals(4, registry.globalEpoch());
+    }
+
+    @Test
+    @DisplayName("isCurrent: refresh token сверяется и с эпохой из строки пользователя")
+    void isCurrent_ShouldUsePersistedUserEpoch() {
+        assertFalse(registry.isCurrent(token(1L, 0, 0), 1));
+        assertTrue(registry.isCurrent(token(1L, 1, 0), 1));
+    }
+}
@@ -0,0 +1,138 @@
+package com.amazingshop.personal.userservice.security.throttling;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemorySlidingWindowCounterTest {
+
+    private static final Duration WINDOW = Duration.ofMinutes(1);
+
+    private final AtomicLong now = new AtomicLong(Instant.parse("2026-01-01T00:00:00Z").toEpochMilli());
+    private final InMemorySlidingWindowCounter counter = new InMemorySlidingWindowCounter(new MutableClock(now));
+
+    @Test
+    @DisplayName("События в текущем окне считаются целиком")
+    void increment_SameWindow_CountsAll() {
+        // Act
+        for (int i = 0; i < 4; i++) {
+            counter.increment("ip:1", WINDOW);
+        }
+
+        // Assert
+        assertEquals(5, counter.increment("ip:1", WINDOW));
+        assertEquals(5, counter.estimate("ip:1", WINDOW));
+        assertEquals(0, counter.estimate("ip:2", WINDOW));
+    }
+
+    @Test
+    @DisplayName("Предыдущее окно учитывается с весом оставшейся доли")
+    void estimate_NextWindow_WeighsPrevious() {
+        // Arrange
+        for (int i = 0; i < 10; i++) {
+            counter.increment("ip:1", WINDOW);
+        }
+
+        // Act
+        now.addAndGet(WINDOW.toMillis() + WINDOW.toMillis() / 4);
+
+        // Assert — 75% предыдущего окна ещё в скользящем окне
+        assertEquals(7, counter.estimate("ip:1", WINDOW));
+        assertEquals(8, counter.increment("ip:1", WINDOW));
+    }
+
+    @Test
+    @DisplayName("Через два окна счётчик обнуляется и удаляется при чистке")
+    void purgeIdle_RemovesStaleKeys() {
+        // Arrange
+        counter.increment("ip:1", WINDOW);
+        now.addAndGet(2 * WINDOW.toMillis());
+
+        // Act & Assert
+        assertEquals(0, counter.estimate("ip:1", WINDOW));
+        assertEquals(1, counter.purgeIdle());
+        assertEquals(0L, counter.size());
+    }
+
+    @Test
+    @DisplayName("Число ключей ограничено: поток новых IP не раздувает память")
+    void increment_ManyKeys_StaysBounded() {
+        // Arrange
+        InMemorySlidingWindowCounter bounded = new InMemorySlidingWindowCounter(new MutableClock(now), 100);
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            bounded.increment("ip:" + i, WINDOW);
+        }
+
+        // Assert
+        assertTrue(bounded.size() <= 100, "keys: " + bounded.size());
+    }
+
+    @Test
+    @DisplayName("Параллельные инкременты не теряются")
+    void increment_Concurrent_NoLostUpdates() throws Exception {
+        // Arrange
+        int threads = 16;
+        int perThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Act
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    counter.increment("ip:1", WINDOW);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Assert
+        assertEquals((long) threads * perThread, counter.estimate("ip:1", WINDOW));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private final AtomicLong millis;
+
+        MutableClock(AtomicLong millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis.get());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.amazingshop.personal.userservice.security.throttling;
+
+import com.amazingshop.personal.userservice.util.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginThrottleTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LoginThrottle throttle = new LoginThrottle(new InMemorySlidingWindowCounter(Clock.systemUTC()),
+            3, Duration.ofMinutes(1), 2, Duration.ofMinutes(15), 1, Duration.ofHours(1), meterRegistry);
+
+    @Test
+    @DisplayName("По IP отклоняется попытка сверх лимита, с Retry-After по длине окна")
+    void checkLogin_IpOverLimit_Rejected() {
+        // Arrange
+        for (int i = 0; i < 3; i++) {
+            throttle.checkLogin("user" + i, "10.0.0.1");
+        }
+
+        // Act
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                () -> throttle.checkLogin("other", "10.0.0.1"));
+
+        // Assert
+        assertEquals(Duration.ofMinutes(1), exception.getRetryAfter());
+        assertDoesNotThrow(() -> throttle.checkLogin("other", "10.0.0.2"));
+        assertEquals(1.0, meterRegistry.get("auth.throttling.rejected").tag("scope", "ip").counter().count());
+    }
+
+    @Test
+    @DisplayName("По username считаются только неудачные попытки")
+    void checkLogin_UsernameFailures_Rejected() {
+        // Arrange — успешные входы лимит не расходуют
+        throttle.checkLogin("victim", "10.0.0.1");
+        throttle.checkLogin("victim", "10.0.0.2");
+        throttle.recordLoginFailure("victim");
+        throttle.recordLoginFailure("victim");
+
+        // Act & Assert
+        assertThrows(TooManyRequestsException.class, () -> throttle.checkLogin("victim", "10.0.0.3"));
+        assertDoesNotThrow(() -> throttle.checkLogin("someoneElse", "10.0.0.3"));
+    }
+
+    @Test
+    @DisplayName("Регистрация ограничивается отдельно от входа")
+    void checkSignup_OverLimit_Rejected() {
+        // Act & Assert
+        throttle.checkSignup("10.0.0.1");
+        assertThrows(TooManyRequestsException.class, () -> throttle.checkSignup("10.0.0.1"));
+        assertDoesNotThrow(() -> throttle.checkLogin("user", "10.0.0.1"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.amazingshop.personal.userservice.security.web;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.security.details.AuthenticatedUser;
+import com.amazingshop.personal.userservice.security.details.UserDetailsImpl;
+import com.amazingshop.personal.userservice.util.exceptions.UnauthorizedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CurrentUserArgumentResolverTest {
+
+    private CurrentUserArgumentResolver resolver;
+    private NativeWebRequest webRequest;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new CurrentUserArgumentResolver();
+        webRequest = new ServletWebRequest(new MockHttpServletRequest());
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("supportsParameter: только AuthenticatedUser с аннотацией @CurrentUser")
+    void supportsParameter_ShouldRequireAnnotationAndType() throws NoSuchMethodException {
+        assertTrue(resolver.supportsParameter(parameter("annotated", 0)));
+        assertFalse(resolver.supportsParameter(parameter("notAnnotated", 0)));
+        assertFalse(resolver.supportsParameter(parameter("wrongType", 0)));
+    }
+
+    @Test
+    @DisplayName("resolveArgument: должен собрать пользователя из principal без обращения к БД")
+    void resolveArgument_ShouldBuildFromPrincipal() throws Exception {
+        // Arrange
+        authenticate(UserDetailsImpl.fromClaims(7L, "chatUser", Role.USER));
+
+        // Act
+        Object result = resolver.resolveArgument(parameter("annotated", 0), null, webRequest, null);
+
+        // Assert
+        assertEquals(new AuthenticatedUser(7L, "chatUser", Role.USER), result);
+    }
+
+    @Test
+    @DisplayName("resolveArgument: в пределах одного запроса возвращает тот же экземпляр")
+    void resolveArgument_ShouldResolveOncePerRequest() throws Exception {
+        authenticate(UserDetailsImpl.fromClaims(7L, "chatUser", Role.USER));
+
+        Object first = resolver.resolveArgument(parameter("annotated", 0), null, webRequest, null);
+        SecurityContextHolder.clearContext();
+        Object second = resolver.resolveArgument(parameter("annotated", 0), null, webRequest, null);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    @DisplayName("resolveArgument: без аутентификации должен выбросить UnauthorizedException")
+    void resolveArgument_ShouldThrow_WhenNotAuthenticated() throws NoSuchMethodException {
+        MethodParameter parameter = parameter("annotated", 0);
+
+        assertThrows(UnauthorizedException.class,
+                () -> resolver.resolveArgument(parameter, null, webRequest, null));
+    }
+
+    private void authenticate(UserDetailsImpl userDetails) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+    }
+
+    private MethodParameter parameter(String methodName, int index) throws NoSuchMethodException {
+        for (Method method : Handlers.class.getDeclaredMethods()) {
+            if (method.getName().equals(methodName)) {
+                return new MethodParameter(method, index);
+            }
+        }
+        throw new NoSuchMethodException(methodName);
+    }
+
+    @SuppressWarnings("unused")
+    private static class Handlers {
+        void annotated(@CurrentUser AuthenticatedUser user) {
+        }
+
+        void notAnnotated(AuthenticatedUser user) {
+        }
+
+        void wrongType(@CurrentUser String user) {
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.amazingshop.personal.userservice.security.web;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PublicEndpointsTest {
+
+    @Test
+    @DisplayName("matches: вход и выдача сервисного токена публичны")
+    void matches_ShouldAllowAuthEntryPoints() {
+        assertTrue(PublicEndpoints.matches(new MockHttpServletRequest("POST", "/api/v1/auth/login")));
+        assertTrue(PublicEndpoints.matches(new MockHttpServletRequest("POST", "/api/v1/auth/token")));
+    }
+
+    @Test
+    @DisplayName("matches: introspect не публичный — нужен сервисный токен со scope introspect")
+    void matches_ShouldNotExposeIntrospection() {
+        assertFalse(PublicEndpoints.matches(new MockHttpServletRequest("POST", "/api/v1/auth/introspect")));
+    }
+}
@@ -3,9 +3,18 @@ package com.amazingshop.personal.userservice.services;
 import com.amazingshop.personal.userservice.dto.requests.AuthenticationDTO;
 import com.amazingshop.personal.userservice.dto.requests.RefreshTokenRequest;
 import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.interfaces.RefreshSessionService;
+import com.amazingshop.personal.userservice.interfaces.SessionInvalidationService;
 import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.models.UserIdentity;
 import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.security.jwt.ParsedToken;
+import com.amazingshop.personal.userservice.security.jwt.TokenType;
+import com.amazingshop.personal.userservice.security.revocation.AccessTokenDenylist;
+import com.amazingshop.personal.userservice.security.throttling.LoginThrottle;
+import com.amazingshop.personal.userservice.util.exceptions.TooManyRequestsException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,6 +25,8 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -34,6 +45,18 @@ class AuthenticationServiceImplTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private RefreshSessionService refreshSessionService;
+
+    @Mock
+    private AccessTokenDenylist denylist;
+
+    @Mock
+    private LoginThrottle loginThrottle;
+
+    @Mock
+    private SessionInvalidationService sessionInvalidationService;
+
     @InjectMocks
     private AuthenticationServiceImpl authenticationService;
 
@@ -45,20 +68,18 @@ class AuthenticationServiceImplTest {
         authDTO.setUsername("testUser");
         authDTO.setPassword("password123");
 
-        User user = new User();
-        user.setUsername("testUser");
+        UserIdentity user = new UserIdentity(1L, "testUser", Role.USER, 0);
 
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenReturn(null);
-        when(userService.findByUsername("testUser")).thenReturn(Optional.of(user));
-        when(jwtUtil.generateAccessToken("testUser")).thenReturn("access_token");
-        when(jwtUtil.generateRefreshToken("testUser")).thenReturn("refresh_token");
+        when(userService.findIdentityByUsername("testUser")).thenReturn(Optional.of(user));
+        when(jwtUtil.generateAccessToken(user)).thenReturn("access_token");
+        when(jwtUtil.generateRefreshToken(user)).thenReturn("refresh_token");
         when(jwtUtil.getAccessTokenExpiration()).thenReturn(900L);
         when(jwtUtil.getRefreshTokenExpiration()).thenReturn(604800L);
-        when(userService.save(any(User.class))).thenReturn(user);
 
         // Act
-        TokenPairResponse response = authenticationService.performLogin(authDTO);
+        TokenPairResponse response = authenticationService.performLogin(authDTO, "127.0.0.1");
 
         // Assert
         assertNotNull(response);
@@ -67,7 +88,8 @@ class AuthenticationServiceImplTest {
         assertEquals("testUser", response.getUsername());
 
         verify(authenticationManager, times(1)).authenticate(any());
-        verify(userService, times(1)).save(any(User.class));
+        verify(refreshSessionService, times(1)).openSession(1L, "refresh_token");
+        verify(userService, never()).save(any(User.class));
     }
 
     @Test
@@ -83,31 +105,97 @@ class AuthenticationServiceImplTest {
 
         // Act & Assert
         assertThrows(BadCredentialsException.class,
-                () -> authenticationService.performLogin(authDTO));
+                () -> authenticationService.performLogin(authDTO, "127.0.0.1"));
+        verify(loginThrottle).recordLoginFailure("testUser");
+    }
+
+    @Test
+    @DisplayName("performLogin: превышен лимит — отказ до AuthenticationManager")
+    void performLogin_ShouldRejectBeforeAuthenticate_WhenThrottled() {
+        // Arrange
+        AuthenticationDTO authDTO = new AuthenticationDTO();
+        authDTO.setUsername("testUser");
+        authDTO.setPassword("password123");
+
+        doThrow(new TooManyRequestsException("Too many login attempts", Duration.ofMinutes(1)))
+                .when(loginThrottle).checkLogin("testUser", "127.0.0.1");
+
+        // Act & Assert
+        assertThrows(TooManyRequestsException.class,
+                () -> authenticationService.performLogin(authDTO, "127.0.0.1"));
+        verifyNoInteractions(authenticationManager, userService);
+    }
+
+    @Test
+    @DisplayName("logout: должен удалить refresh-сессию, не трогая пользователя")
+    void logout_ShouldRevokeRefreshSession() {
+        // Arrange
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken("valid_refresh_token");
+
+        when(jwtUtil.parseRefreshToken("valid_refresh_token"))
+                .thenReturn(new ParsedToken("testUser", TokenType.REFRESH, "jti-1", null, null,
+                        Instant.now(), Instant.now().plusSeconds(604800)));
+        when(refreshSessionService.revoke("valid_refresh_token")).thenReturn(true);
+
+        // Act
+        authenticationService.logout(request, null);
+
+        // Assert
+        verify(refreshSessionService).revoke("valid_refresh_token");
+        verify(userService, never()).findIdentityByUsername(any());
+        verify(userService, never()).save(any(User.class));
+        verifyNoInteractions(denylist);
     }
 
     @Test
-    @DisplayName("logout: должен удалить refresh token из БД")
-    void logout_ShouldRemoveRefreshToken() {
+    @DisplayName("logout: должен отозвать переданный access token того же пользователя до его exp")
+    void logout_ShouldRevokeAccessToken_WhenProvided() {
         // Arrange
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken("valid_refresh_token");
+        Instant accessExpiresAt = Instant.now().plusSeconds(900);
 
-        User user = new User();
-        user.setUsername("testUser");
-        user.setRefreshToken("valid_refresh_token");
+        when(jwtUtil.parseRefreshToken("valid_refresh_token"))
+                .thenReturn(new ParsedToken("testUser", TokenType.REFRESH, "refresh-jti", null, null,
+                        Instant.now(), Instant.now().plusSeconds(604800)));
+        when(jwtUtil.parseAccessToken("access_token"))
+                .thenReturn(new ParsedToken("testUser", TokenType.ACCESS, "access-jti", 1L, null,
+                        Instant.now(), accessExpiresAt));
 
-        when(jwtUtil.validateTokenAndRetrieveClaim("valid_refresh_token"))
-                .thenReturn("testUser");
-        when(userService.findByUsername("testUser")).thenReturn(Optional.of(user));
-        when(userService.save(any(User.class))).thenReturn(user);
+        // Act
+        authenticationService.logout(request, "access_token");
 
+        // Assert
+        verify(denylist).revokeToken("access-jti", accessExpiresAt);
+    }
+
+    @Test
+    @DisplayName("logout: не должен отзывать access token другого пользователя")
+    void logout_ShouldIgnoreAccessToken_WhenUserDiffers() {
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken("valid_refresh_token");
+
+        when(jwtUtil.parseRefreshToken("valid_refresh_token"))
+                .thenReturn(new ParsedToken("testUser", TokenType.REFRESH, "refresh-jti", null, null,
+                        Instant.now(), Instant.now().plusSeconds(604800)));
+        when(jwtUtil.parseAccessToken("foreign_access_token"))
+                .thenReturn(new ParsedToken("otherUser", TokenType.ACCESS, "foreign-jti", 2L, null,
+                        Instant.now(), Instant.now().plusSeconds(900)));
+
+        authenticationService.logout(request, "foreign_access_token");
+
+        verifyNoInteractions(denylist);
+    }
+
+    @Test
+    @DisplayName("logoutEverywhere: эпоха токенов пользователя увеличивается")
+    void logoutEverywhere_ShouldInvalidateAllUserSessions() {
         // Act
-        authenticationService.logout(request);
+        authenticationService.logoutEverywhere(1L);
 
         // Assert
-        verify(userService).save(argThat(u ->
-                u.getRefreshToken() == null && u.getRefreshTokenExpiry() == null
-        ));
+        verify(sessionInvalidationService).invalidateUser(1L);
+        verifyNoInteractions(refreshSessionService, denylist);
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,7 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.cache.ChatHistoryCache;
+import com.amazingshop.personal.userservice.cache.UserCacheGenerations;
 import com.amazingshop.personal.userservice.dto.responses.ChatMessageResponse;
 import com.amazingshop.personal.userservice.dto.responses.ChatMessagesListResponse;
 import com.amazingshop.personal.userservice.dto.responses.ChatResponse;
@@ -17,8 +19,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -40,6 +46,14 @@ public class ChatServiceImplTest {
     @Mock
     private ChatMessageRepository messageRepository;
 
+    @Mock
+    private UserCacheGenerations cacheGenerations;
+
+    // Без Redis история всегда читается из репозитория
+    @Spy
+    private ChatHistoryCache chatHistoryCache = new ChatHistoryCache(
+            new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class), Duration.ofMinutes(30));
+
     @InjectMocks
     private ChatServiceImpl chatService;
 
@@ -201,6 +215,7 @@ public class ChatServiceImplTest {
 
         // Assert
         verify(chatRepository, times(1)).deleteById(CHAT_ID);
+        verify(chatHistoryCache).evict(USER_ID, CHAT_ID);
     }
 
     @Test
@@ -289,6 +304,7 @@ public class ChatServiceImplTest {
         assertNotNull(result);
         assertEquals("Test message", result.getContent());
         verify(chatRepository, times(1)).save(any(Chat.class));
+        verify(chatHistoryCache).append(eq(USER_ID), eq(CHAT_ID), any());
     }
 
     @Test
@@ -389,6 +405,11 @@ public class ChatServiceImplTest {
 
         // Assert
         verify(chatRepository, times(1)).deleteAll(userChats);
+        // Сбрасывается кэш только этого пользователя
+        verify(cacheGenerations).advance(USER_ID);
+        verifyNoMoreInteractions(cacheGenerations);
+        verify(chatHistoryCache).evict(USER_ID, 1L);
+        verify(chatHistoryCache).evict(USER_ID, 2L);
     }
 
     @Test
@@ -0,0 +1,93 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.responses.ServiceTokenResponse;
+import com.amazingshop.personal.userservice.security.clients.ServiceClient;
+import com.amazingshop.personal.userservice.security.clients.ServiceClientRegistry;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.util.exceptions.OAuthErrorException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClientCredentialsServiceImplTest {
+
+    @Mock
+    private ServiceClientRegistry clientRegistry;
+
+    @Mock
+    private JwtUtil jwtUtil;
+
+    private ClientCredentialsServiceImpl clientCredentialsService;
+
+    private final ServiceClient client = new ServiceClient("orders", new byte[32], Set.of("introspect", "users:read"));
+
+    @BeforeEach
+    void setUp() {
+        clientCredentialsService = new ClientCredentialsServiceImpl(clientRegistry, jwtUtil, Duration.ofHours(1));
+    }
+
+    @Test
+    @DisplayName("issueToken: без scope в запросе выдаются все scopes клиента")
+    void issueToken_ShouldGrantAllClientScopes_WhenScopeOmitted() {
+        // Arrange
+        when(clientRegistry.authenticate("orders", "secret")).thenReturn(Optional.of(client));
+        when(jwtUtil.generateServiceToken("orders", Set.of("introspect", "users:read"), Duration.ofHours(1)))
+                .thenReturn("service.jwt.token");
+
+        // Act
+        ServiceTokenResponse response = clientCredentialsService.issueToken("orders", "secret", null);
+
+        // Assert
+        assertEquals("service.jwt.token", response.getAccessToken());
+        assertEquals("Bearer", response.getTokenType());
+        assertEquals(3600, response.getExpiresIn());
+        assertEquals("introspect users:read", response.getScope());
+    }
+
+    @Test
+    @DisplayName("issueToken: запрошенный scope сужает набор прав")
+    void issueToken_ShouldNarrowScopes_WhenScopeRequested() {
+        when(clientRegistry.authenticate("orders", "secret")).thenReturn(Optional.of(client));
+        when(jwtUtil.generateServiceToken(eq("orders"), eq(Set.of("introspect")), any())).thenReturn("service.jwt.token");
+
+        ServiceTokenResponse response = clientCredentialsService.issueToken("orders", "secret", "introspect");
+
+        assertEquals("introspect", response.getScope());
+    }
+
+    @Test
+    @DisplayName("issueToken: scope вне разрешённых клиенту отклоняется")
+    void issueToken_ShouldReject_WhenScopeNotAllowed() {
+        when(clientRegistry.authenticate("orders", "secret")).thenReturn(Optional.of(client));
+
+        OAuthErrorException e = assertThrows(OAuthErrorException.class,
+                () -> clientCredentialsService.issueToken("orders", "secret", "introspect users:write"));
+        assertEquals(OAuthErrorException.INVALID_SCOPE, e.getError());
+        verifyNoInteractions(jwtUtil);
+    }
+
+    @Test
+    @DisplayName("issueToken: неверные учётные данные клиента — invalid_client, 401")
+    void issueToken_ShouldThrow_WhenCredentialsInvalid() {
+        when(clientRegistry.authenticate("orders", "wrong")).thenReturn(Optional.empty());
+
+        OAuthErrorException e = assertThrows(OAuthErrorException.class,
+                () -> clientCredentialsService.issueToken("orders", "wrong", null));
+        assertEquals(OAuthErrorException.INVALID_CLIENT, e.getError());
+        assertEquals(HttpStatus.UNAUTHORIZED, e.getStatus());
+        verifyNoInteractions(jwtUtil);
+    }
+}
@@ -0,0 +1,156 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.responses.IntrospectionResponse;
+import com.amazingshop.personal.userservice.dto.responses.TokenIntrospectionResponse;
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.interfaces.UserService;
+import com.amazingshop.personal.userservice.models.UserIdentity;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.security.jwt.ParsedToken;
+import com.amazingshop.personal.userservice.security.jwt.TokenType;
+import com.amazingshop.personal.userservice.security.jwt.VerifiedTokenCache;
+import com.amazingshop.personal.userservice.security.revocation.AccessTokenDenylist;
+import com.amazingshop.personal.userservice.security.revocation.PrincipalRevocationRegistry;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IntrospectionServiceImplTest {
+
+    @Mock
+    private JwtUtil jwtUtil;
+
+    @Mock
+    private AccessTokenDenylist denylist;
+
+    @Mock
+    private PrincipalRevocationRegistry revocationRegistry;
+
+    @Mock
+    private UserService userService;
+
+    private IntrospectionServiceImpl introspectionService;
+
+    private final Instant expiresAt = Instant.now().plusSeconds(900);
+
+    @BeforeEach
+    void setUp() {
+        introspectionService = new IntrospectionServiceImpl(jwtUtil, new VerifiedTokenCache(100, new SimpleMeterRegistry()),
+                denylist, revocationRegistry, userService);
+    }
+
+    private ParsedToken claimsToken(Long userId, String username) {
+        return new ParsedToken(username, TokenType.ACCESS, "jti-" + userId, userId, Role.USER, Instant.now(), expiresAt);
+    }
+
+    private ParsedToken legacyToken(String username) {
+        return new ParsedToken(username, TokenType.ACCESS, null, null, null, Instant.now(), expiresAt);
+    }
+
+    @Test
+    @DisplayName("introspect: identity из claims, без загрузки пользователя")
+    void introspect_ShouldUseClaims_WithoutUserLookup() {
+        // Arrange
+        when(jwtUtil.parseAccessToken("t1")).thenReturn(claimsToken(1L, "alice"));
+
+        // Act
+        IntrospectionResponse response = introspectionService.introspect(List.of("t1"));
+
+        // Assert
+        TokenIntrospectionResponse result = response.getResults().get(0);
+        assertTrue(result.isActive());
+        assertEquals("alice", result.getUsername());
+        assertEquals(1L, result.getUserId());
+        assertEquals(Role.USER, result.getRole());
+        assertEquals(expiresAt.getEpochSecond(), result.getExpiresAt());
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    @DisplayName("introspect: невалидный и отозванный токены неактивны, порядок ответа совпадает с запросом")
+    void introspect_ShouldMarkInvalidAndRevokedInactive() {
+        // Arrange
+        ParsedToken revoked = claimsToken(2L, "bob");
+        when(jwtUtil.parseAccessToken("bad")).thenThrow(new JWTVerificationException("Invalid signature"));
+        when(jwtUtil.parseAccessToken("revoked")).thenReturn(revoked);
+        when(jwtUtil.parseAccessToken("good")).thenReturn(claimsToken(1L, "alice"));
+        when(denylist.isRevoked(any())).thenAnswer(invocation -> invocation.getArgument(0) == revoked);
+
+        // Act
+        List<TokenIntrospectionResponse> results = introspectionService.introspect(List.of("bad", "revoked", "good")).getResults();
+
+        // Assert
+        assertFalse(results.get(0).isActive());
+        assertNull(results.get(0).getUsername());
+        assertFalse(results.get(1).isActive());
+        assertTrue(results.get(2).isActive());
+    }
+
+    @Test
+    @DisplayName("introspect: повторы в пакете проверяются один раз")
+    void introspect_ShouldVerifyDuplicatesOnce() {
+        // Arrange
+        when(jwtUtil.parseAccessToken("t1")).thenReturn(claimsToken(1L, "alice"));
+
+        // Act
+        List<TokenIntrospectionResponse> results = introspectionService.introspect(List.of("t1", "t1", "t1")).getResults();
+
+        // Assert
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(TokenIntrospectionResponse::isActive));
+        verify(jwtUtil, times(1)).parseAccessToken("t1");
+    }
+
+    @Test
+    @DisplayName("introspect: токены без claims загружают пользователей одним пакетным чтением")
+    void introspect_ShouldLoadUsersInOneBatch_ForLegacyTokens() {
+        // Arrange
+        UserIdentity user = new UserIdentity(3L, "carol", Role.ADMIN, 0);
+        when(jwtUtil.parseAccessToken("legacy1")).thenReturn(legacyToken("carol"));
+        when(jwtUtil.parseAccessToken("legacy2")).thenReturn(legacyToken("carol"));
+        when(jwtUtil.parseAccessToken("ghost")).thenReturn(legacyToken("ghost"));
+        when(userService.findIdentitiesByUsernames(Set.of("carol", "ghost"))).thenReturn(Map.of("carol", user));
+
+        // Act
+        List<TokenIntrospectionResponse> results = introspectionService.introspect(List.of("legacy1", "legacy2", "ghost")).getResults();
+
+        // Assert
+        assertEquals(3L, results.get(0).getUserId());
+        assertEquals(Role.ADMIN, results.get(1).getRole());
+        assertFalse(results.get(2).isActive());
+        verify(userService, times(1)).findIdentitiesByUsernames(any());
+        verify(userService, never()).findIdentityByUsername(any());
+    }
+
+    @Test
+    @DisplayName("introspect: устаревшие claims (смена роли) берутся из актуального пользователя")
+    void introspect_ShouldReloadUser_WhenClaimsStale() {
+        // Arrange
+        ParsedToken token = claimsToken(1L, "alice");
+        UserIdentity user = new UserIdentity(1L, "alice", Role.ADMIN, 0);
+        when(jwtUtil.parseAccessToken("t1")).thenReturn(token);
+        when(revocationRegistry.isStale(1L, token.issuedAt())).thenReturn(true);
+        when(userService.findIdentitiesByUsernames(Set.of("alice"))).thenReturn(Map.of("alice", user));
+
+        // Act
+        TokenIntrospectionResponse result = introspectionService.introspect(List.of("t1")).getResults().get(0);
+
+        // Assert
+        assertEquals(Role.ADMIN, result.getRole());
+    }
+}
@@ -0,0 +1,159 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.enums.RefreshRotationOutcome;
+import com.amazingshop.personal.userservice.models.RefreshSession;
+import com.amazingshop.personal.userservice.repositories.RefreshSessionRepository;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.security.jwt.TokenDigests;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshSessionServiceImplTest {
+
+    @Mock
+    private RefreshSessionRepository refreshSessionRepository;
+
+    @Mock
+    private JwtUtil jwtUtil;
+
+    private RefreshSessionServiceImpl refreshSessionService;
+
+    @BeforeEach
+    void setUp() {
+        refreshSessionService = new RefreshSessionServiceImpl(refreshSessionRepository, jwtUtil, Duration.ofSeconds(10), true);
+    }
+
+    @Test
+    @DisplayName("openSession: должен сохранить хэш токена, а не сам токен, с expiry по TTL refresh token")
+    void openSession_ShouldStoreHashAndExpiry() {
+        // Arrange
+        when(jwtUtil.getRefreshTokenExpiration()).thenReturn(604800L);
+
+        // Act
+        refreshSessionService.openSession(7L, "raw.refresh.token");
+
+        // Assert
+        ArgumentCaptor<RefreshSession> captor = ArgumentCaptor.forClass(RefreshSession.class);
+        verify(refreshSessionRepository).save(captor.capture());
+        RefreshSession session = captor.getValue();
+
+        assertEquals(7L, session.getUserId());
+        assertEquals(TokenDigests.sha256Hex("raw.refresh.token"), session.getTokenHash());
+        assertEquals(64, session.getTokenHash().length());
+        long diffSeconds = Math.abs(Duration.between(
+                LocalDateTime.now().plusSeconds(604800L), session.getExpiresAt()).getSeconds());
+        assertTrue(diffSeconds < 5, "Expiry должен быть примерно через 604800 секунд");
+    }
+
+    @Test
+    @DisplayName("rotate: должен заменить хэш одним условным UPDATE и сообщить о победе")
+    void rotate_ShouldSwapHashes() {
+        // Arrange
+        when(jwtUtil.getRefreshTokenExpiration()).thenReturn(604800L);
+        when(refreshSessionRepository.rotate(eq(7L), eq(TokenDigests.sha256Hex("old")),
+                eq(TokenDigests.sha256Hex("new")), any(), any())).thenReturn(1);
+
+        // Act
+        RefreshRotationOutcome outcome = refreshSessionService.rotate(7L, "old", "new");
+
+        // Assert
+        assertEquals(RefreshRotationOutcome.ROTATED, outcome);
+        verify(refreshSessionRepository, never()).findByTokenHash(any());
+    }
+
+    @Test
+    @DisplayName("rotate: проигравший параллельный запрос в grace-окне должен получить CONCURRENT_DUPLICATE")
+    void rotate_ShouldReportConcurrentDuplicate_WhenJustRotated() {
+        // Arrange
+        when(jwtUtil.getRefreshTokenExpiration()).thenReturn(604800L);
+        when(refreshSessionRepository.rotate(any(), any(), any(), any(), any())).thenReturn(0);
+        when(refreshSessionRepository.existsByPreviousTokenHashAndRotatedAtAfter(
+                eq(TokenDigests.sha256Hex("old")), any())).thenReturn(true);
+
+        // Act
+        RefreshRotationOutcome outcome = refreshSessionService.rotate(7L, "old", "new");
+
+        // Assert
+        assertEquals(RefreshRotationOutcome.CONCURRENT_DUPLICATE, outcome);
+        verify(refreshSessionRepository, never()).deleteByPreviousTokenHash(any());
+    }
+
+    @Test
+    @DisplayName("rotate: повторное использование старого токена вне grace-окна должно отозвать сессию")
+    void rotate_ShouldRevokeSession_WhenRotatedTokenReusedAfterGrace() {
+        // Arrange
+        when(jwtUtil.getRefreshTokenExpiration()).thenReturn(604800L);
+        when(refreshSessionRepository.rotate(any(), any(), any(), any(), any())).thenReturn(0);
+        when(refreshSessionRepository.existsByPreviousTokenHashAndRotatedAtAfter(any(), any())).thenReturn(false);
+        when(refreshSessionRepository.deleteByPreviousTokenHash(TokenDigests.sha256Hex("old"))).thenReturn(1);
+
+        // Act
+        RefreshRotationOutcome outcome = refreshSessionService.rotate(7L, "old", "new");
+
+        // Assert
+        assertEquals(RefreshRotationOutcome.REJECTED, outcome);
+        verify(refreshSessionRepository).deleteByPreviousTokenHash(TokenDigests.sha256Hex("old"));
+    }
+
+    @Test
+    @DisplayName("rotate: токен прежней версии из Users.refresh_token становится ротированной сессией")
+    void rotate_ShouldMoveLegacyToken_WhenNoSessionFound() {
+        // Arrange
+        when(jwtUtil.getRefreshTokenExpiration()).thenReturn(604800L);
+        when(refreshSessionRepository.rotate(any(), any(), any(), any(), any())).thenReturn(0);
+        when(refreshSessionRepository.existsByPreviousTokenHashAndRotatedAtAfter(any(), any())).thenReturn(false);
+        when(refreshSessionRepository.deleteByPreviousTokenHash(any())).thenReturn(0);
+        when(refreshSessionRepository.claimLegacyToken(eq(7L), eq("old"), any())).thenReturn(1);
+
+        // Act
+        RefreshRotationOutcome outcome = refreshSessionService.rotate(7L, "old", "new");
+
+        // Assert
+        assertEquals(RefreshRotationOutcome.ROTATED, outcome);
+        ArgumentCaptor<RefreshSession> captor = ArgumentCaptor.forClass(RefreshSession.class);
+        verify(refreshSessionRepository).save(captor.capture());
+        assertEquals(7L, captor.getValue().getUserId());
+        assertEquals(TokenDigests.sha256Hex("new"), captor.getValue().getTokenHash());
+        assertEquals(TokenDigests.sha256Hex("old"), captor.getValue().getPreviousTokenHash());
+        assertNotNull(captor.getValue().getRotatedAt());
+    }
+
+    @Test
+    @DisplayName("rotate: после db/contract (legacy-fallback=false) колонки Users не читаются")
+    void rotate_ShouldSkipLegacyColumn_WhenFallbackDisabled() {
+        // Arrange
+        RefreshSessionServiceImpl contracted = new RefreshSessionServiceImpl(refreshSessionRepository, jwtUtil,
+                Duration.ofSeconds(10), false);
+        when(jwtUtil.getRefreshTokenExpiration()).thenReturn(604800L);
+        when(refreshSessionRepository.rotate(any(), any(), any(), any(), any())).thenReturn(0);
+
+        // Act
+        RefreshRotationOutcome outcome = contracted.rotate(7L, "old", "new");
+
+        // Assert
+        assertEquals(RefreshRotationOutcome.REJECTED, outcome);
+        verify(refreshSessionRepository, never()).claimLegacyToken(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("revoke: должен удалить сессию по хэшу токена")
+    void revoke_ShouldDeleteByHash() {
+        when(refreshSessionRepository.deleteByTokenHash(TokenDigests.sha256Hex("token"))).thenReturn(1);
+
+        assertTrue(refreshSessionService.revoke("token"));
+    }
+}
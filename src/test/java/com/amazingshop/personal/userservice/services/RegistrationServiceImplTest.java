@@ -1,6 +1,8 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.interfaces.RefreshSessionService;
 import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.security.throttling.LoginThrottle;
 import com.amazingshop.personal.userservice.util.validators.UserValidator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -21,6 +23,12 @@ public class RegistrationServiceImplTest {
     @Mock
     private UserValidator userValidator;
 
+    @Mock
+    private RefreshSessionService refreshSessionService;
+
+    @Mock
+    private LoginThrottle loginThrottle;
+
     @InjectMocks
     private RegistrationServiceImpl registrationService;
 
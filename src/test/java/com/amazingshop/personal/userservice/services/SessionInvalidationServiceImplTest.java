@@ -0,0 +1,82 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.interfaces.UserService;
+import com.amazingshop.personal.userservice.models.GlobalTokenEpoch;
+import com.amazingshop.personal.userservice.repositories.GlobalTokenEpochRepository;
+import com.amazingshop.personal.userservice.security.revocation.TokenEpochRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SessionInvalidationServiceImplTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private GlobalTokenEpochRepository globalTokenEpochRepository;
+
+    @Mock
+    private TokenEpochRegistry tokenEpochRegistry;
+
+    private SessionInvalidationServiceImpl sessionInvalidationService;
+
+    @BeforeEach
+    void setUp() {
+        sessionInvalidationService = new SessionInvalidationServiceImpl(userService, globalTokenEpochRepository,
+                tokenEpochRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("invalidateAll: новая глобальная эпоха рассылается только после коммита")
+    void invalidateAll_ShouldPublishEpochAfterCommit() {
+        // Arrange
+        when(globalTokenEpochRepository.increment(GlobalTokenEpoch.SINGLETON_ID)).thenReturn(1);
+        when(globalTokenEpochRepository.findById(GlobalTokenEpoch.SINGLETON_ID))
+                .thenReturn(Optional.of(new GlobalTokenEpoch(GlobalTokenEpoch.SINGLETON_ID, 3)));
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        long epoch = sessionInvalidationService.invalidateAll();
+
+        // Assert
+        assertEquals(3, epoch);
+        verify(tokenEpochRegistry, never()).advanceGlobalEpoch(anyLong());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(tokenEpochRegistry).advanceGlobalEpoch(3);
+    }
+
+    @Test
+    @DisplayName("refreshGlobalEpoch: эпоха перечитывается из БД без рассылки")
+    void refreshGlobalEpoch_ShouldLoadEpochFromDatabase() {
+        // Arrange
+        when(globalTokenEpochRepository.findById(GlobalTokenEpoch.SINGLETON_ID))
+                .thenReturn(Optional.of(new GlobalTokenEpoch(GlobalTokenEpoch.SINGLETON_ID, 5)));
+
+        // Act
+        sessionInvalidationService.refreshGlobalEpoch();
+
+        // Assert
+        verify(tokenEpochRegistry).loadGlobalEpoch(5);
+        verify(tokenEpochRegistry, never()).advanceGlobalEpoch(anyLong());
+    }
+}
@@ -1,26 +1,57 @@
 package com.amazingshop.personal.userservice.services;
 
 
+import com.amazingshop.personal.userservice.cache.CacheLoadCoordinator;
 import com.amazingshop.personal.userservice.dto.requests.RefreshTokenRequest;
 import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
+import com.amazingshop.personal.userservice.enums.RefreshRotationOutcome;
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.interfaces.RefreshSessionService;
 import com.amazingshop.personal.userservice.interfaces.UserService;
-import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.models.UserIdentity;
 import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.security.jwt.ParsedToken;
+import com.amazingshop.personal.userservice.security.jwt.SealedTokenPair;
+import com.amazingshop.personal.userservice.security.jwt.TokenType;
+import com.amazingshop.personal.userservice.security.jwt.TokenDigests;
+import com.amazingshop.personal.userservice.security.revocation.RevocationBroadcaster;
+import com.amazingshop.personal.userservice.security.revocation.TokenEpochRegistry;
+import com.amazingshop.personal.userservice.util.exceptions.UnauthorizedException;
+import com.auth0.jwt.exceptions.IncorrectClaimException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.exceptions.TokenExpiredException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
-import java.time.LocalDateTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,11 +63,26 @@ class TokenServiceImplTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private RefreshSessionService refreshSessionService;
+
+    @Spy
+    private TokenEpochRegistry tokenEpochRegistry = new TokenEpochRegistry(mock(RevocationBroadcaster.class), 900000L);
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager("refreshGrace");
+
+    @Spy
+    private CacheLoadCoordinator loads = new CacheLoadCoordinator(
+            new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class),
+            new SimpleMeterRegistry(), false, Duration.ofMillis(500), 1.0, 1);
+
     @InjectMocks
     private TokenServiceImpl tokenService;
 
     private static final String VALID_REFRESH_TOKEN = "valid.refresh.token";
     private static final String TEST_USERNAME = "testUser";
+    private static final Long TEST_USER_ID = 42L;
 
     @Test
     @DisplayName("refreshToken: должен вернуть новые токены для валидного refresh token")
@@ -45,20 +91,16 @@ class TokenServiceImplTest {
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken(VALID_REFRESH_TOKEN);
 
-        User user = new User();
-        user.setUsername(TEST_USERNAME);
-        user.setRefreshToken(VALID_REFRESH_TOKEN);
-        user.setRefreshTokenExpiry(LocalDateTime.now().plusDays(7));
-
-        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_REFRESH_TOKEN))
-                .thenReturn(TEST_USERNAME);
-        when(jwtUtil.getTokenType(VALID_REFRESH_TOKEN)).thenReturn("refresh");
-        when(userService.findByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
-        when(jwtUtil.generateAccessToken(TEST_USERNAME)).thenReturn("new_access_token");
-        when(jwtUtil.generateRefreshToken(TEST_USERNAME)).thenReturn("new_refresh_token");
+        UserIdentity user = testUser();
+
+        when(jwtUtil.parseRefreshToken(VALID_REFRESH_TOKEN)).thenReturn(refreshToken(TEST_USERNAME));
+        when(userService.findIdentityByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
+        when(jwtUtil.generateAccessToken(user)).thenReturn("new_access_token");
+        when(jwtUtil.generateRefreshToken(any(UserIdentity.class))).thenReturn("new_refresh_token");
         when(jwtUtil.getAccessTokenExpiration()).thenReturn(900L);
         when(jwtUtil.getRefreshTokenExpiration()).thenReturn(604800L);
-        when(userService.save(any(User.class))).thenReturn(user);
+        when(refreshSessionService.rotate(TEST_USER_ID, VALID_REFRESH_TOKEN, "new_refresh_token"))
+                .thenReturn(RefreshRotationOutcome.ROTATED);
 
         // Act
         TokenPairResponse response = tokenService.refreshToken(request);
@@ -72,14 +114,13 @@ class TokenServiceImplTest {
         assertEquals(604800L, response.getRefreshTokenExpiresIn());
 
         // Verify interactions
-        verify(jwtUtil, times(1)).validateTokenAndRetrieveClaim(VALID_REFRESH_TOKEN);
-        verify(jwtUtil, times(1)).getTokenType(VALID_REFRESH_TOKEN);
-        verify(userService, times(1)).findByUsername(TEST_USERNAME);
-        verify(jwtUtil, times(1)).generateAccessToken(TEST_USERNAME);
-        verify(jwtUtil, times(1)).generateRefreshToken(TEST_USERNAME);
-        verify(userService, times(1)).save(argThat(u ->
-                u.getRefreshToken().equals("new_refresh_token") && u.getRefreshTokenExpiry() != null
-        ));
+        verify(jwtUtil, times(1)).parseRefreshToken(VALID_REFRESH_TOKEN);
+        verify(userService, times(1)).findIdentityByUsername(TEST_USERNAME);
+        verify(jwtUtil, times(1)).generateAccessToken(user);
+        verify(jwtUtil, times(1)).generateRefreshToken(any(UserIdentity.class));
+        verify(refreshSessionService, times(1))
+                .rotate(TEST_USER_ID, VALID_REFRESH_TOKEN, "new_refresh_token");
+        verify(userService, never()).save(any());
     }
 
     @Test
@@ -89,15 +130,15 @@ class TokenServiceImplTest {
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken("expired_token");
 
-        when(jwtUtil.validateTokenAndRetrieveClaim("expired_token"))
+        when(jwtUtil.parseRefreshToken("expired_token"))
                 .thenThrow(new TokenExpiredException("Token expired", null));
 
         // Act & Assert
         assertThrows(RuntimeException.class,
                 () -> tokenService.refreshToken(request));
 
-        verify(userService, never()).findByUsername(any());
-        verify(userService, never()).save(any());
+        verify(userService, never()).findIdentityByUsername(any());
+        verify(refreshSessionService, never()).rotate(any(), any(), any());
     }
 
     @Test
@@ -107,15 +148,15 @@ class TokenServiceImplTest {
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken("invalid.token");
 
-        when(jwtUtil.validateTokenAndRetrieveClaim("invalid.token"))
+        when(jwtUtil.parseRefreshToken("invalid.token"))
                 .thenThrow(new JWTVerificationException("Invalid token"));
 
         // Act & Assert
         assertThrows(RuntimeException.class,
                 () -> tokenService.refreshToken(request));
 
-        verify(userService, never()).findByUsername(any());
-        verify(userService, never()).save(any());
+        verify(userService, never()).findIdentityByUsername(any());
+        verify(refreshSessionService, never()).rotate(any(), any(), any());
     }
 
     @Test
@@ -125,9 +166,9 @@ class TokenServiceImplTest {
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken("access_token");
 
-        when(jwtUtil.validateTokenAndRetrieveClaim("access_token"))
-                .thenReturn(TEST_USERNAME);
-        when(jwtUtil.getTokenType("access_token")).thenReturn("access"); // не refresh
+        // Типизированный верификатор отклоняет access token по claim "type"
+        when(jwtUtil.parseRefreshToken("access_token"))
+                .thenThrow(new IncorrectClaimException("The Claim 'type' value doesn't match the required one.", "type", null));
 
         // Act & Assert
         RuntimeException exception = assertThrows(RuntimeException.class,
@@ -136,8 +177,8 @@ class TokenServiceImplTest {
         assertTrue(exception.getMessage().contains("token type") ||
                 exception.getMessage().contains("refresh"));
 
-        verify(userService, never()).findByUsername(any());
-        verify(userService, never()).save(any());
+        verify(userService, never()).findIdentityByUsername(any());
+        verify(refreshSessionService, never()).rotate(any(), any(), any());
     }
 
     @Test
@@ -147,148 +188,262 @@ class TokenServiceImplTest {
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken(VALID_REFRESH_TOKEN);
 
-        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_REFRESH_TOKEN))
-                .thenReturn(TEST_USERNAME);
-        when(jwtUtil.getTokenType(VALID_REFRESH_TOKEN)).thenReturn("refresh");
-        when(userService.findByUsername(TEST_USERNAME)).thenReturn(Optional.empty());
+        when(jwtUtil.parseRefreshToken(VALID_REFRESH_TOKEN)).thenReturn(refreshToken(TEST_USERNAME));
+        when(userService.findIdentityByUsername(TEST_USERNAME)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(UsernameNotFoundException.class,
                 () -> tokenService.refreshToken(request));
 
-        verify(userService, never()).save(any());
+        verify(refreshSessionService, never()).rotate(any(), any(), any());
     }
 
     @Test
-    @DisplayName("refreshToken: должен выбросить исключение если токен не совпадает с БД")
-    void refreshToken_ShouldThrowException_WhenTokenMismatch() {
+    @DisplayName("refreshToken: должен выбросить исключение, если сессия уже ротирована, отозвана или истекла")
+    void refreshToken_ShouldThrowException_WhenSessionNotActive() {
         // Arrange
         RefreshTokenRequest request = new RefreshTokenRequest();
-        request.setRefreshToken("token_from_request");
+        request.setRefreshToken(VALID_REFRESH_TOKEN);
 
-        User user = new User();
-        user.setUsername(TEST_USERNAME);
-        user.setRefreshToken("different_token_in_db");
-        user.setRefreshTokenExpiry(LocalDateTime.now().plusDays(7));
+        UserIdentity user = testUser();
 
-        when(jwtUtil.validateTokenAndRetrieveClaim("token_from_request"))
-                .thenReturn(TEST_USERNAME);
-        when(jwtUtil.getTokenType("token_from_request")).thenReturn("refresh");
-        when(userService.findByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
+        when(jwtUtil.parseRefreshToken(VALID_REFRESH_TOKEN)).thenReturn(refreshToken(TEST_USERNAME));
+        when(userService.findIdentityByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
+        when(jwtUtil.generateRefreshToken(any(UserIdentity.class))).thenReturn("new_refresh");
+        when(refreshSessionService.rotate(TEST_USER_ID, VALID_REFRESH_TOKEN, "new_refresh"))
+                .thenReturn(RefreshRotationOutcome.REJECTED);
 
         // Act & Assert
-        RuntimeException exception = assertThrows(RuntimeException.class,
+        assertThrows(UnauthorizedException.class,
                 () -> tokenService.refreshToken(request));
 
-        assertTrue(exception.getMessage().contains("mismatch") ||
-                exception.getMessage().contains("token"));
+        verify(jwtUtil, never()).generateAccessToken(any(UserIdentity.class));
+    }
+
+    @Test
+    @DisplayName("refreshToken: не должен изменять строку пользователя")
+    void refreshToken_ShouldNotWriteUserRow() {
+        // Arrange
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken(VALID_REFRESH_TOKEN);
+
+        UserIdentity user = testUser();
+
+        when(jwtUtil.parseRefreshToken(VALID_REFRESH_TOKEN)).thenReturn(refreshToken(TEST_USERNAME));
+        when(userService.findIdentityByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
+        when(jwtUtil.generateAccessToken(user)).thenReturn("new_access");
+        when(jwtUtil.generateRefreshToken(any(UserIdentity.class))).thenReturn("new_refresh");
+        when(refreshSessionService.rotate(TEST_USER_ID, VALID_REFRESH_TOKEN, "new_refresh"))
+                .thenReturn(RefreshRotationOutcome.ROTATED);
 
+        // Act
+        tokenService.refreshToken(request);
+
+        // Assert
         verify(userService, never()).save(any());
+        verify(refreshSessionService).rotate(TEST_USER_ID, VALID_REFRESH_TOKEN, "new_refresh");
+        verifyNoMoreInteractions(refreshSessionService);
     }
 
     @Test
-    @DisplayName("refreshToken: должен выбросить исключение если токен истек в БД")
-    void refreshToken_ShouldThrowException_WhenTokenExpiredInDb() {
+    @DisplayName("refreshToken: повторный запрос со старым токеном в grace-окне получает ту же пару")
+    void refreshToken_ShouldReturnSamePair_WhenDuplicateWithinGraceWindow() {
         // Arrange
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken(VALID_REFRESH_TOKEN);
 
-        User user = new User();
-        user.setUsername(TEST_USERNAME);
-        user.setRefreshToken(VALID_REFRESH_TOKEN);
-        user.setRefreshTokenExpiry(LocalDateTime.now().minusDays(1)); // истек вчера
+        UserIdentity user = testUser();
 
-        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_REFRESH_TOKEN))
-                .thenReturn(TEST_USERNAME);
-        when(jwtUtil.getTokenType(VALID_REFRESH_TOKEN)).thenReturn("refresh");
-        when(userService.findByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
+        when(jwtUtil.parseRefreshToken(VALID_REFRESH_TOKEN)).thenReturn(refreshToken(TEST_USERNAME));
+        when(userService.findIdentityByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
+        when(jwtUtil.generateAccessToken(user)).thenReturn("new_access");
+        when(jwtUtil.generateRefreshToken(any(UserIdentity.class))).thenReturn("new_refresh");
+        when(refreshSessionService.rotate(TEST_USER_ID, VALID_REFRESH_TOKEN, "new_refresh"))
+                .thenReturn(RefreshRotationOutcome.ROTATED);
+        when(refreshSessionService.isJustRotated(VALID_REFRESH_TOKEN)).thenReturn(true);
 
-        // Act & Assert
-        RuntimeException exception = assertThrows(RuntimeException.class,
-                () -> tokenService.refreshToken(request));
-
-        assertTrue(exception.getMessage().contains("expired") ||
-                exception.getMessage().contains("DB"));
+        // Act
+        TokenPairResponse first = tokenService.refreshToken(request);
+        TokenPairResponse duplicate = tokenService.refreshToken(request);
 
-        verify(userService, never()).save(any());
+        // Assert
+        assertEquals(first, duplicate);
+        verify(refreshSessionService, times(1)).rotate(any(), any(), any());
     }
 
     @Test
-    @DisplayName("refreshToken: должен корректно обновить refresh token в БД")
-    void refreshToken_ShouldUpdateRefreshTokenInDb() {
+    @DisplayName("refreshToken: в grace-кэше пара зашифрована, ключ записи — хэш старого токена")
+    void refreshToken_ShouldStoreSealedPairUnderTokenHash() {
         // Arrange
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken(VALID_REFRESH_TOKEN);
 
-        User user = new User();
-        user.setUsername(TEST_USERNAME);
-        user.setRefreshToken(VALID_REFRESH_TOKEN);
-        user.setRefreshTokenExpiry(LocalDateTime.now().plusDays(7));
-
-        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_REFRESH_TOKEN))
-                .thenReturn(TEST_USERNAME);
-        when(jwtUtil.getTokenType(VALID_REFRESH_TOKEN)).thenReturn("refresh");
-        when(userService.findByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
-        when(jwtUtil.generateAccessToken(TEST_USERNAME)).thenReturn("new_access");
-        when(jwtUtil.generateRefreshToken(TEST_USERNAME)).thenReturn("new_refresh");
-        when(jwtUtil.getAccessTokenExpiration()).thenReturn(900L);
-        when(jwtUtil.getRefreshTokenExpiration()).thenReturn(604800L);
-        when(userService.save(any(User.class))).thenReturn(user);
+        UserIdentity user = testUser();
+
+        when(jwtUtil.parseRefreshToken(VALID_REFRESH_TOKEN)).thenReturn(refreshToken(TEST_USERNAME));
+        when(userService.findIdentityByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
+        when(jwtUtil.generateAccessToken(user)).thenReturn("new_access");
+        when(jwtUtil.generateRefreshToken(any(UserIdentity.class))).thenReturn("new_refresh");
+        when(refreshSessionService.rotate(TEST_USER_ID, VALID_REFRESH_TOKEN, "new_refresh"))
+                .thenReturn(RefreshRotationOutcome.ROTATED);
 
         // Act
-        tokenService.refreshToken(request);
+        TokenPairResponse response = tokenService.refreshToken(request);
 
-        // Assert - проверяем что старый токен заменён на новый
-        verify(userService).save(argThat(u -> {
-            assertNotEquals(VALID_REFRESH_TOKEN, u.getRefreshToken(),
-                    "Старый refresh token должен быть заменён");
-            assertEquals("new_refresh", u.getRefreshToken(),
-                    "Должен быть сохранён новый refresh token");
-            assertNotNull(u.getRefreshTokenExpiry(),
-                    "Expiry должен быть установлен");
-            assertTrue(u.getRefreshTokenExpiry().isAfter(LocalDateTime.now()),
-                    "Expiry должен быть в будущем");
-            return true;
-        }));
+        // Assert
+        Object stored = cacheManager.getCache("refreshGrace").get(TokenDigests.sha256Hex(VALID_REFRESH_TOKEN)).get();
+        SealedTokenPair sealed = assertInstanceOf(SealedTokenPair.class, stored);
+        assertFalse(new String(sealed.sealed(), java.nio.charset.StandardCharsets.ISO_8859_1).contains("new_refresh"));
+        assertEquals(response, sealed.open(VALID_REFRESH_TOKEN));
+        assertNull(sealed.open("other.refresh.token"));
     }
 
     @Test
-    @DisplayName("refreshToken: должен корректно установить expiry время")
-    void refreshToken_ShouldSetCorrectExpiryTime() {
+    @DisplayName("refreshToken: пара из grace-кэша не выдаётся, если сессию уже отозвали (logout)")
+    void refreshToken_ShouldRejectGracePair_WhenSessionRevoked() {
         // Arrange
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken(VALID_REFRESH_TOKEN);
+        TokenPairResponse rotated = new TokenPairResponse("access", 900L, "rotated_refresh", 604800L, TEST_USERNAME);
+        cacheManager.getCache("refreshGrace")
+                .put(TokenDigests.sha256Hex(VALID_REFRESH_TOKEN), SealedTokenPair.seal(rotated, VALID_REFRESH_TOKEN));
 
-        User user = new User();
-        user.setUsername(TEST_USERNAME);
-        user.setRefreshToken(VALID_REFRESH_TOKEN);
-        user.setRefreshTokenExpiry(LocalDateTime.now().plusDays(7));
-
-        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_REFRESH_TOKEN))
-                .thenReturn(TEST_USERNAME);
-        when(jwtUtil.getTokenType(VALID_REFRESH_TOKEN)).thenReturn("refresh");
-        when(userService.findByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
-        when(jwtUtil.generateAccessToken(TEST_USERNAME)).thenReturn("new_access");
-        when(jwtUtil.generateRefreshToken(TEST_USERNAME)).thenReturn("new_refresh");
-        when(jwtUtil.getAccessTokenExpiration()).thenReturn(900L);
-        when(jwtUtil.getRefreshTokenExpiration()).thenReturn(604800L); // 7 дней
-        when(userService.save(any(User.class))).thenReturn(user);
+        when(jwtUtil.parseRefreshToken(VALID_REFRESH_TOKEN)).thenReturn(refreshToken(TEST_USERNAME));
+        when(userService.findIdentityByUsername(TEST_USERNAME)).thenReturn(Optional.of(testUser()));
+        when(refreshSessionService.isJustRotated(VALID_REFRESH_TOKEN)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(UnauthorizedException.class, () -> tokenService.refreshToken(request));
+        verify(refreshSessionService, never()).rotate(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("refreshToken: пара из grace-кэша не выдаётся после \"выйти везде\" (эпоха проверяется раньше кэша)")
+    void refreshToken_ShouldRejectGracePair_WhenEpochOutdated() {
+        // Arrange
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken(VALID_REFRESH_TOKEN);
+        TokenPairResponse rotated = new TokenPairResponse("access", 900L, "rotated_refresh", 604800L, TEST_USERNAME);
+        cacheManager.getCache("refreshGrace")
+                .put(TokenDigests.sha256Hex(VALID_REFRESH_TOKEN), SealedTokenPair.seal(rotated, VALID_REFRESH_TOKEN));
+
+        when(jwtUtil.parseRefreshToken(VALID_REFRESH_TOKEN)).thenReturn(refreshToken(TEST_USERNAME));
+        when(userService.findIdentityByUsername(TEST_USERNAME)).thenReturn(Optional.of(testUser(1)));
+
+        // Act & Assert
+        assertThrows(UnauthorizedException.class, () -> tokenService.refreshToken(request));
+        verifyNoInteractions(refreshSessionService);
+    }
+
+    @Test
+    @DisplayName("refreshToken: проигравший гонку получает пару, выданную другим инстансом")
+    void refreshToken_ShouldReturnPairFromGraceCache_WhenConcurrentDuplicate() {
+        // Arrange
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken(VALID_REFRESH_TOKEN);
+
+        UserIdentity user = testUser();
+        TokenPairResponse winnerPair = new TokenPairResponse("winner_access", 900L, "winner_refresh", 604800L, TEST_USERNAME);
+
+        when(jwtUtil.parseRefreshToken(VALID_REFRESH_TOKEN)).thenReturn(refreshToken(TEST_USERNAME));
+        when(userService.findIdentityByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
+        when(jwtUtil.generateRefreshToken(any(UserIdentity.class))).thenReturn("loser_refresh");
+        when(refreshSessionService.rotate(TEST_USER_ID, VALID_REFRESH_TOKEN, "loser_refresh"))
+                .thenAnswer(invocation -> {
+                    // Победитель на другом инстансе успел положить пару в общий кэш
+                    cacheManager.getCache("refreshGrace").put(TokenDigests.sha256Hex(VALID_REFRESH_TOKEN),
+                            SealedTokenPair.seal(winnerPair, VALID_REFRESH_TOKEN));
+                    return RefreshRotationOutcome.CONCURRENT_DUPLICATE;
+                });
+        when(refreshSessionService.isJustRotated(VALID_REFRESH_TOKEN)).thenReturn(true);
 
         // Act
-        tokenService.refreshToken(request);
+        TokenPairResponse response = tokenService.refreshToken(request);
 
         // Assert
-        verify(userService).save(argThat(u -> {
-            LocalDateTime expectedExpiry = LocalDateTime.now().plusSeconds(604800L);
-            LocalDateTime actualExpiry = u.getRefreshTokenExpiry();
-
-            // Проверяем что expiry примерно равен ожидаемому (с точностью до 5 секунд)
-            long diffSeconds = Math.abs(
-                    java.time.Duration.between(expectedExpiry, actualExpiry).getSeconds()
-            );
-            assertTrue(diffSeconds < 5,
-                    "Expiry должен быть установлен примерно на " + 604800L + " секунд в будущем");
-            return true;
-        }));
+        assertEquals(winnerPair, response);
+        verify(jwtUtil, never()).generateAccessToken(any(UserIdentity.class));
+    }
+
+    @Test
+    @DisplayName("refreshToken: 50 параллельных запросов с одним токеном получают одну пару, ротация ровно одна")
+    void refreshToken_ShouldRotateOnce_WhenHammeredFrom50Threads() throws Exception {
+        // Arrange
+        int threads = 50;
+        UserIdentity user = testUser();
+        AtomicInteger generated = new AtomicInteger();
+        AtomicInteger rotations = new AtomicInteger();
+        AtomicReference<String> activeToken = new AtomicReference<>(VALID_REFRESH_TOKEN);
+
+        when(jwtUtil.parseRefreshToken(VALID_REFRESH_TOKEN)).thenReturn(refreshToken(TEST_USERNAME));
+        when(userService.findIdentityByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
+        when(jwtUtil.generateAccessToken(user)).thenAnswer(invocation -> "access_" + generated.get());
+        when(jwtUtil.generateRefreshToken(any(UserIdentity.class))).thenAnswer(invocation -> "refresh_" + generated.incrementAndGet());
+        // Эмуляция условного UPDATE: выигрывает только тот, кто застал исходный токен
+        when(refreshSessionService.rotate(eq(TEST_USER_ID), eq(VALID_REFRESH_TOKEN), any())).thenAnswer(invocation -> {
+            if (activeToken.compareAndSet(VALID_REFRESH_TOKEN, invocation.getArgument(2))) {
+                rotations.incrementAndGet();
+                return RefreshRotationOutcome.ROTATED;
+            }
+            return RefreshRotationOutcome.CONCURRENT_DUPLICATE;
+        });
+        // Опоздавшие к ротации берут пару из grace-кэша
+        lenient().when(refreshSessionService.isJustRotated(VALID_REFRESH_TOKEN)).thenReturn(true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<TokenPairResponse>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                RefreshTokenRequest request = new RefreshTokenRequest();
+                request.setRefreshToken(VALID_REFRESH_TOKEN);
+                start.await();
+                return tokenService.refreshToken(request);
+            }));
+        }
+        start.countDown();
+
+        Set<String> issuedRefreshTokens = new HashSet<>();
+        for (Future<TokenPairResponse> future : futures) {
+            issuedRefreshTokens.add(future.get(10, TimeUnit.SECONDS).getRefreshToken());
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(1, rotations.get(), "Ротация должна выиграть ровно один раз");
+        assertEquals(Set.of(activeToken.get()), issuedRefreshTokens, "Все запросы должны получить пару победителя");
+    }
+
+    @Test
+    @DisplayName("refreshToken: refresh token с эпохой меньше эпохи пользователя отклоняется")
+    void refreshToken_ShouldReject_WhenTokenEpochOutdated() {
+        // Arrange
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken(VALID_REFRESH_TOKEN);
+
+        UserIdentity user = testUser(1); // пользователь вышел на всех устройствах после выдачи токена
+
+        when(jwtUtil.parseRefreshToken(VALID_REFRESH_TOKEN)).thenReturn(refreshToken(TEST_USERNAME));
+        when(userService.findIdentityByUsername(TEST_USERNAME)).thenReturn(Optional.of(user));
+
+        // Act & Assert
+        assertThrows(UnauthorizedException.class, () -> tokenService.refreshToken(request));
+        verifyNoInteractions(refreshSessionService);
+        verify(jwtUtil, never()).generateAccessToken(any(UserIdentity.class));
+    }
+
+    private ParsedToken refreshToken(String username) {
+        return new ParsedToken(username, TokenType.REFRESH, "jti-1", null, null,
+                Instant.now(), Instant.now().plusSeconds(604800));
+    }
+
+    private UserIdentity testUser() {
+        return testUser(0);
+    }
+
+    private UserIdentity testUser(long tokenEpoch) {
+        return new UserIdentity(TEST_USER_ID, TEST_USERNAME, Role.USER, tokenEpoch);
     }
-}
\ No newline at end of file
+}
@@ -1,25 +1,27 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.cache.CacheInvalidationBroadcaster;
+import com.amazingshop.personal.userservice.cache.CacheLoadCoordinator;
+import com.amazingshop.personal.userservice.cache.UserExistenceFilter;
+import com.amazingshop.personal.userservice.cache.UserIdentityCache;
 import com.amazingshop.personal.userservice.dto.responses.CurrentUserResponse;
 import com.amazingshop.personal.userservice.enums.Role;
 import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.models.UserIdentity;
 import com.amazingshop.personal.userservice.repositories.UsersRepository;
-import com.amazingshop.personal.userservice.security.details.UserDetailsImpl;
 import com.amazingshop.personal.userservice.util.exceptions.UserNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.MockedStatic;
-import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContext;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -33,13 +35,19 @@ public class UserServiceImplTest {
     @Mock // не идет в бд
     private UsersRepository usersRepository;
 
-    @InjectMocks
     private UserServiceImpl userService;
 
     @BeforeEach
     void setUp() {
-        userService = new UserServiceImpl(usersRepository, null);
-            ReflectionTestUtils.setField(userService, "self", userService);
+        CacheLoadCoordinator loads = new CacheLoadCoordinator(
+                new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class),
+                new SimpleMeterRegistry(), false, Duration.ofSeconds(2), 1.0, 1);
+        UserExistenceFilter existenceFilter = new UserExistenceFilter(usersRepository,
+                new CacheInvalidationBroadcaster(new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class),
+                        false, "test"),
+                new SimpleMeterRegistry(), false, true, 0.01, 1000, Duration.ofSeconds(30), 1000);
+        userService = new UserServiceImpl(usersRepository, new UserIdentityCache(new ConcurrentMapCacheManager(), loads),
+                existenceFilter);
     }
 
     @Test
@@ -75,6 +83,24 @@ public class UserServiceImplTest {
         verify(usersRepository, times(1)).findByUsername(username);
     }
 
+    @Test
+    @DisplayName("findIdentityByUsername: в кэш попадает проекция без хеша пароля и email")
+    void findIdentityByUsername_ShouldMapToIdentity() {
+        // Arrange
+        User mockUser = new User("testUser", "{bcrypt}hash", "test@example.com");
+        mockUser.setId(5L);
+        mockUser.setRole(Role.ADMIN);
+        mockUser.setTokenEpoch(2);
+
+        when(usersRepository.findByUsername("testUser")).thenReturn(Optional.of(mockUser));
+
+        // Act
+        Optional<UserIdentity> result = userService.findIdentityByUsername("testUser");
+
+        // Assert
+        assertEquals(Optional.of(new UserIdentity(5L, "testUser", Role.ADMIN, 2)), result);
+    }
+
     @Test
     @DisplayName("findByEmail: должен вернуть пользователя по email, если он существует")
     void findByEmail_ShouldReturnUser_WhenExists() {
@@ -96,6 +122,29 @@ public class UserServiceImplTest {
 
     }
 
+    @Test
+    @DisplayName("findByEmail: повторный поиск отсутствующего email не идёт в БД, пока email не сохранён")
+    void findByEmail_ShouldRememberMiss_UntilSaved() {
+        // Arrange
+        String email = "new@gmail.com";
+        User user = new User();
+        user.setUsername("newUser");
+        user.setEmail(email);
+        when(usersRepository.findByEmail(email)).thenReturn(Optional.empty(), Optional.of(user));
+        when(usersRepository.save(user)).thenReturn(user);
+
+        // Act
+        userService.findByEmail(email);
+        Optional<User> cachedMiss = userService.findByEmail(email);
+        userService.save(user);
+        Optional<User> afterSave = userService.findByEmail(email);
+
+        // Assert
+        assertTrue(cachedMiss.isEmpty());
+        assertEquals(Optional.of(user), afterSave);
+        verify(usersRepository, times(2)).findByEmail(email);
+    }
+
     @Test
     @DisplayName("findUserByIdOrThrow: если id нет - то должно быть исключение")
     void findUserByIdOrThrow_ShouldThrowException_WhenNotFound() {
@@ -167,51 +216,9 @@ public class UserServiceImplTest {
     }
 
     @Test
-    @DisplayName("getCurrentUserId: должен достать id из контекста безопасности")
-    void getCurrentUserId_ShouldReturnId() {
-        // Arrange
-        String username = "authUser";
-        Long userId = 10L;
-
-        User dbUser = new User();
-        dbUser.setId(userId);
-        dbUser.setUsername(username);
-
-        when(usersRepository.findByUsername(username)).thenReturn(Optional.of(dbUser));
-
-        SecurityContext securityContext = mockSecurityContext(username);
-
-        // Статический мок
-        try (MockedStatic<SecurityContextHolder> mockedSecurity = Mockito.mockStatic(SecurityContextHolder.class)) {
-            mockedSecurity.when(SecurityContextHolder::getContext).thenReturn(securityContext);
-
-            // Act
-            Long resultId = userService.getCurrentUserId();
-
-            // Assert
-            assertEquals(userId, resultId);
-        }
-    }
-
-    @Test
-    @DisplayName("getCurrentUserId: должен выбросить исключение, если пользователь не найден в БД")
-    void getCurrentUserId_ShouldThrowException_WhenUserNotFoundInDb() {
-        String username = "unknownUser";
-
-        when(usersRepository.findByUsername(username)).thenReturn(Optional.empty());
-
-        SecurityContext securityContext = mockSecurityContext(username);
-
-        try (MockedStatic<SecurityContextHolder> mockedSecurity = Mockito.mockStatic(SecurityContextHolder.class)) {
-            mockedSecurity.when(SecurityContextHolder::getContext).thenReturn(securityContext);
-
-            assertThrows(UserNotFoundException.class, () -> userService.getCurrentUserId());
-        }
-    }
-
-    @Test
-    @DisplayName("getCurrentUserResponse: должен вернуть DTO текущего пользователя")
+    @DisplayName("getCurrentUserResponse: должен вернуть DTO пользователя по id из principal")
     void getCurrentUserResponse_ShouldReturnDto() {
+        // Arrange
         String username = "me";
 
         User dbUser = new User();
@@ -220,27 +227,32 @@ public class UserServiceImplTest {
         dbUser.setEmail("me@mail.com");
         dbUser.setRole(Role.USER);
 
-        when(usersRepository.findByUsername(username)).thenReturn(Optional.of(dbUser));
+        when(usersRepository.findById(5L)).thenReturn(Optional.of(dbUser));
 
-        SecurityContext securityContext = mockSecurityContext(username);
-
-        try (MockedStatic<SecurityContextHolder> mockedSecurity = Mockito.mockStatic(SecurityContextHolder.class)) {
-            mockedSecurity.when(SecurityContextHolder::getContext).thenReturn(securityContext);
+        // Act
+        CurrentUserResponse response = userService.getCurrentUserResponse(5L);
 
-            CurrentUserResponse response = userService.getCurrentUserResponse();
+        // Assert
+        assertNotNull(response);
+        assertEquals(username, response.getUsername());
+        assertEquals("me@mail.com", response.getEmail());
+        assertEquals(Role.USER, response.getRole());
+        assertEquals("FREE", response.getSubscriptionPlan());
+        verify(usersRepository, never()).findByUsername(any());
+    }
 
-            assertNotNull(response);
-            assertEquals(username, response.getUsername());
-            assertEquals("me@mail.com", response.getEmail());
-            assertEquals(Role.USER, response.getRole());
-            assertEquals("FREE", response.getSubscriptionPlan());
+    @Test
+    @DisplayName("getCurrentUserResponse: должен выбросить исключение, если пользователь удалён")
+    void getCurrentUserResponse_ShouldThrowException_WhenUserNotFound() {
+        when(usersRepository.findById(404L)).thenReturn(Optional.empty());
 
-        }
+        assertThrows(UserNotFoundException.class, () -> userService.getCurrentUserResponse(404L));
     }
 
     @Test
     @DisplayName("updateCurrentUserResponse: должен обновить поля и вернуть DTO")
     void updateCurrentUserResponse_ShouldUpdateAndReturnDto() {
+        // Arrange
         String username = "updatableUser";
         String newEmail = "new@mail.com";
 
@@ -250,34 +262,94 @@ public class UserServiceImplTest {
         dbUser.setEmail("old@mail.com");
         dbUser.setRole(Role.ADMIN);
 
-
-        when(usersRepository.findByUsername(username)).thenReturn(Optional.of(dbUser));
+        when(usersRepository.findById(1L)).thenReturn(Optional.of(dbUser));
         // Эмулируем, что save возвращает обновленный объект
         when(usersRepository.save(any(User.class))).thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0));
 
-        SecurityContext securityContext = mockSecurityContext(username);
+        // Act
+        CurrentUserResponse response = userService.updateCurrentUserResponse(1L, Map.of("email", newEmail));
+
+        // Assert
+        assertEquals(newEmail, response.getEmail());
+        verify(usersRepository).save(argThat(u -> u.getEmail().equals(newEmail)));
+    }
+
+    @Test
+    @DisplayName("updatePasswordHash: обновляет только хеш пароля")
+    void updatePasswordHash_ShouldUpdateOnlyPassword() {
+        // Arrange
+        when(usersRepository.updatePassword(1L, "{bcrypt}hash")).thenReturn(1);
+
+        // Act
+        userService.updatePasswordHash(1L, "testUser", "{bcrypt}hash");
+
+        // Assert
+        verify(usersRepository).updatePassword(1L, "{bcrypt}hash");
+        verify(usersRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("updatePasswordHash: бросает UserNotFoundException, если строки нет")
+    void updatePasswordHash_ShouldThrow_WhenUserMissing() {
+        // Arrange
+        when(usersRepository.updatePassword(1L, "{bcrypt}hash")).thenReturn(0);
+
+        // Act & Assert
+        assertThrows(UserNotFoundException.class, () -> userService.updatePasswordHash(1L, "testUser", "{bcrypt}hash"));
+    }
+
+    @Test
+    @DisplayName("updateRole: меняет роль UPDATE по id, без save всей сущности")
+    void updateRole_ShouldUpdateOnlyRole() {
+        // Arrange
+        when(usersRepository.updateRole(1L, Role.ADMIN)).thenReturn(1);
+
+        // Act
+        userService.updateRole(1L, "testUser", Role.ADMIN);
+
+        // Assert
+        verify(usersRepository).updateRole(1L, Role.ADMIN);
+        verify(usersRepository, never()).save(any());
+    }
 
-        try (MockedStatic<SecurityContextHolder> mockedSecurity = Mockito.mockStatic(SecurityContextHolder.class)) {
-            mockedSecurity.when(SecurityContextHolder::getContext).thenReturn(securityContext);
+    @Test
+    @DisplayName("updateRole: чтения по username и по id сразу видят новую роль")
+    void updateRole_ShouldInvalidateBothIdentityKeys() {
+        // Arrange
+        User user = new User("testUser", "{bcrypt}hash", "test@example.com");
+        user.setId(1L);
+        user.setRole(Role.USER);
+        when(usersRepository.findByUsername("testUser")).thenReturn(Optional.of(user));
+        when(usersRepository.updateRole(1L, Role.ADMIN)).thenReturn(1);
+        when(usersRepository.findAllById(List.of(1L))).thenReturn(List.of(user));
+        userService.findIdentityByUsername("testUser");
 
-            // Act
-            CurrentUserResponse response = userService.updateCurrentUserResponse(Map.of("email", newEmail));
+        // Act
+        user.setRole(Role.ADMIN);
+        userService.updateRole(1L, "testUser", Role.ADMIN);
 
-            // Assert
-            assertEquals(newEmail, response.getEmail());
-            verify(usersRepository).save(argThat(u -> u.getEmail().equals(newEmail)));
-        }
+        // Assert
+        assertEquals(Role.ADMIN, userService.findIdentitiesByIds(List.of(1L)).get(1L).role());
+        assertEquals(Role.ADMIN, userService.findIdentityByUsername("testUser").orElseThrow().role());
+        verify(usersRepository, times(1)).findAllById(any());
     }
 
-    private SecurityContext mockSecurityContext(String username) {
-        Authentication authentication = mock(Authentication.class);
-        SecurityContext securityContext = mock(SecurityContext.class);
-        UserDetailsImpl userDetails = mock(UserDetailsImpl.class);
+    @Test
+    @DisplayName("findIdentitiesByIds: кэшированные id не запрашиваются повторно")
+    void findIdentitiesByIds_ShouldQueryOnlyMisses() {
+        // Arrange
+        User alice = new User("alice", "{bcrypt}hash", "alice@example.com");
+        alice.setId(1L);
+        User bob = new User("bob", "{bcrypt}hash", "bob@example.com");
+        bob.setId(2L);
+        when(usersRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(alice, bob));
+        userService.findIdentitiesByIds(List.of(1L, 2L));
 
-        when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getPrincipal()).thenReturn(userDetails);
-        when(userDetails.getUsername()).thenReturn(username);
+        // Act
+        Map<Long, UserIdentity> result = userService.findIdentitiesByIds(List.of(2L, 1L));
 
-        return securityContext;
+        // Assert
+        assertEquals("bob", result.get(2L).username());
+        verify(usersRepository, times(1)).findAllById(any());
     }
-}
\ No newline at end of file
+}
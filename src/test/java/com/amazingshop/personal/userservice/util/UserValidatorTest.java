@@ -1,7 +1,9 @@
 package com.amazingshop.personal.userservice.util;
 
+import com.amazingshop.personal.userservice.enums.Role;
 import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.models.UserIdentity;
 import com.amazingshop.personal.userservice.util.exceptions.UserValidationException;
 import com.amazingshop.personal.userservice.util.validators.UserValidator;
 import org.junit.jupiter.api.DisplayName;
@@ -31,11 +33,11 @@ public class UserValidatorTest {
     void validateUsername_ShouldPass_WhenValid() {
         // Arrange
         String validUsername = "testUser";
-        when(userService.findByUsername(validUsername)).thenReturn(Optional.empty());
+        when(userService.findIdentityByUsername(validUsername)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertDoesNotThrow(() -> userValidator.validateUsername(validUsername));
-        Mockito.verify(userService, times(1)).findByUsername(validUsername);
+        Mockito.verify(userService, times(1)).findIdentityByUsername(validUsername);
     }
 
     @Test
@@ -86,10 +88,9 @@ public class UserValidatorTest {
     void validateUsername_ShouldThrowException_WhenAlreadyExists() {
         // Arrange
         String existingUsername = "existingUser";
-        User existingUser = new User();
-        existingUser.setUsername(existingUsername);
+        UserIdentity existingUser = new UserIdentity(7L, existingUsername, Role.USER, 0);
 
-        when(userService.findByUsername(existingUsername)).thenReturn(Optional.of(existingUser));
+        when(userService.findIdentityByUsername(existingUsername)).thenReturn(Optional.of(existingUser));
 
         // Act & Assert
         UserValidationException exception = assertThrows(
@@ -184,13 +185,13 @@ public class UserValidatorTest {
         validUser.setEmail("valid@example.com");
         validUser.setPassword("password123");
 
-        when(userService.findByUsername("validUser")).thenReturn(Optional.empty());
+        when(userService.findIdentityByUsername("validUser")).thenReturn(Optional.empty());
         when(userService.findByEmail("valid@example.com")).thenReturn(Optional.empty());
 
         // Act & Assert
         assertDoesNotThrow(() -> userValidator.validateAndThrow(validUser));
 
-        verify(userService, times(1)).findByUsername("validUser");
+        verify(userService, times(1)).findIdentityByUsername("validUser");
         verify(userService, times(1)).findByEmail("valid@example.com");
     }
 
@@ -220,7 +221,7 @@ public class UserValidatorTest {
         user.setEmail("invalid-email"); // Невалидный формат
         user.setPassword("password123");
 
-        when(userService.findByUsername("validUser")).thenReturn(Optional.empty());
+        when(userService.findIdentityByUsername("validUser")).thenReturn(Optional.empty());
 
         // Act & Assert
         UserValidationException exception = assertThrows(
@@ -239,7 +240,7 @@ public class UserValidatorTest {
         user.setEmail("valid@example.com");
         user.setPassword("123"); // Слишком короткий
 
-        when(userService.findByUsername("validUser")).thenReturn(Optional.empty());
+        when(userService.findIdentityByUsername("validUser")).thenReturn(Optional.empty());
         when(userService.findByEmail("valid@example.com")).thenReturn(Optional.empty());
 
         // Act & Assert
@@ -0,0 +1,122 @@
+package com.amazingshop.personal.userservice.util.errors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.validation.FieldError;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ErrorResponseWriterTest {
+
+    private final ErrorResponseWriter writer = new ErrorResponseWriter();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("writeUnauthorized: прежняя форма 401, path экранируется, Content-Length выставлен")
+    void writeUnauthorized_ShouldRenderEntryPointBody() throws Exception {
+        // Arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        String path = "/api/v1/users/\"me\"\\ünï/\u0001";
+
+        // Act
+        writer.writeUnauthorized(response, path);
+
+        // Assert
+        assertEquals(401, response.getStatus());
+        assertEquals(MediaType.APPLICATION_JSON_VALUE, response.getContentType());
+        assertEquals(response.getContentAsByteArray().length, response.getContentLength());
+
+        JsonNode body = objectMapper.readTree(response.getContentAsByteArray());
+        assertEquals(401, body.get("status").asInt());
+        assertEquals("Unauthorized", body.get("error").asText());
+        assertEquals("Authentication is required to access this resource", body.get("message").asText());
+        assertEquals(path, body.get("path").asText());
+    }
+
+    @Test
+    @DisplayName("template: постоянное сообщение в форме ErrorResponse со свежим timestamp")
+    void template_ShouldRenderErrorResponseShape() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        long before = System.currentTimeMillis();
+
+        writer.template("Invalid username or password").write(response, HttpStatus.UNAUTHORIZED);
+
+        JsonNode body = objectMapper.readTree(response.getContentAsByteArray());
+        assertEquals(401, response.getStatus());
+        assertEquals("Invalid username or password", body.get("message").asText());
+        assertTrue(body.get("timestamp").asLong() >= before);
+        assertTrue(body.get("path").isNull());
+        assertEquals(0, body.get("status").asInt());
+    }
+
+    @Test
+    @DisplayName("write: динамическое сообщение с кириллицей и emoji остаётся корректным UTF-8 JSON")
+    void write_ShouldEscapeDynamicMessage() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        String message = "Пользователь \"x\"\n не найден 😀\t";
+
+        writer.write(response, HttpStatus.FORBIDDEN, message);
+
+        JsonNode body = objectMapper.readTree(response.getContentAsByteArray());
+        assertEquals(403, response.getStatus());
+        assertEquals(message, body.get("message").asText());
+    }
+
+    @Test
+    @DisplayName("writeValidationErrors: по полю остаётся первая ошибка, пустое сообщение заменяется")
+    void writeValidationErrors_ShouldKeepFirstErrorPerField() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<FieldError> errors = List.of(
+                new FieldError("userDTO", "username", "Username should be not empty"),
+                new FieldError("userDTO", "username", "Username should be for 2 to 30 symbols"),
+                new FieldError("userDTO", "email", null));
+
+        writer.writeValidationErrors(response, errors);
+
+        JsonNode body = objectMapper.readTree(response.getContentAsByteArray());
+        assertEquals(400, response.getStatus());
+        assertEquals("Validation Failed", body.get("error").asText());
+        assertEquals("Input validation failed", body.get("message").asText());
+        assertEquals(2, body.get("fieldErrors").size());
+        assertEquals("Username should be not empty", body.get("fieldErrors").get("username").asText());
+        assertEquals("Validation error occurred!", body.get("fieldErrors").get("email").asText());
+        // Прежний формат Jackson для LocalDateTime: ISO-строка, не epoch millis
+        assertTrue(body.get("timestamp").isTextual());
+        assertDoesNotThrow(() -> LocalDateTime.parse(body.get("timestamp").asText()));
+    }
+
+    @Test
+    @DisplayName("Template: заголовки, выставленные до записи (Retry-After), сохраняются")
+    void template_ShouldKeepHeadersSetBefore() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+
+        writer.template("Too many attempts, please retry later").write(response, HttpStatus.TOO_MANY_REQUESTS);
+
+        assertEquals("5", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(429, response.getStatus());
+    }
+
+    @Test
+    @DisplayName("writeOAuthError: тело token endpoint по RFC 6749 — error и error_description")
+    void writeOAuthError_ShouldRenderOAuthBody() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.writeOAuthError(response, HttpStatus.BAD_REQUEST, "unsupported_grant_type", "Only \"client_credentials\"");
+
+        JsonNode body = objectMapper.readTree(response.getContentAsByteArray());
+        assertEquals(400, response.getStatus());
+        assertEquals(2, body.size());
+        assertEquals("unsupported_grant_type", body.get("error").asText());
+        assertEquals("Only \"client_credentials\"", body.get("error_description").asText());
+    }
+}
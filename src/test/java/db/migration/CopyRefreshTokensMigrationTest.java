@@ -0,0 +1,67 @@
+package db.migration;
+
+import com.amazingshop.personal.userservice.security.jwt.TokenDigests;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CopyRefreshTokensMigrationTest {
+
+    @Test
+    @DisplayName("V4_1: действующий refresh token переносится в сессию по хешу, истёкший — нет")
+    void migrate_ShouldCopyOnlyLiveTokens() throws Exception {
+        // Arrange
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:migration;DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).target("4").load().migrate();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO Users (username, email, role, refresh_token, refresh_token_expiry) "
+                    + "VALUES ('live', 'live@mail.com', 0, 'live-token', DATEADD('DAY', 1, CURRENT_TIMESTAMP))");
+            statement.execute("INSERT INTO Users (username, email, role, refresh_token, refresh_token_expiry) "
+                    + "VALUES ('expired', 'expired@mail.com', 0, 'expired-token', DATEADD('DAY', -1, CURRENT_TIMESTAMP))");
+        }
+
+        // Act
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        // Assert
+        List<String> hashes = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT token_hash FROM Refresh_Sessions")) {
+            while (rows.next()) {
+                hashes.add(rows.getString(1));
+            }
+            // Старые колонки на месте: их читает прежняя версия во время rolling deploy
+            assertTrue(statement.executeQuery("SELECT refresh_token FROM Users").next());
+        }
+        assertEquals(List.of(TokenDigests.sha256Hex("live-token")), hashes);
+    }
+
+    @Test
+    @DisplayName("db/contract/V7: после раскатки старые колонки удаляются, сессии остаются")
+    void contract_ShouldDropLegacyColumns() throws Exception {
+        // Arrange
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:contract;DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        // Act
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration", "classpath:db/contract")
+                .load().migrate();
+
+        // Assert
+        try (Connection connection = dataSource.getConnection();
+             ResultSet columns = connection.getMetaData().getColumns(null, null, "USERS", "REFRESH_TOKEN")) {
+            assertFalse(columns.next());
+        }
+    }
+}